@@ -35,6 +35,7 @@ import org.mule.api.registry.MuleRegistry;
 import org.mule.api.registry.RegistrationException;
 import org.mule.api.registry.Registry;
 import org.mule.api.security.SecurityManager;
+import org.mule.api.serialization.ObjectSerializer;
 import org.mule.api.store.ListableObjectStore;
 import org.mule.api.store.ObjectStoreManager;
 import org.mule.api.transaction.TransactionManagerFactory;
@@ -55,10 +56,13 @@ import org.mule.management.stats.AllStatistics;
 import org.mule.management.stats.ProcessingTimeWatcher;
 import org.mule.registry.DefaultRegistryBroker;
 import org.mule.registry.MuleRegistryHelper;
+import org.mule.serialization.CompactObjectSerializer;
+import org.mule.serialization.JavaObjectSerializer;
 import org.mule.transport.DefaultPollingController;
 import org.mule.transport.PollingController;
 import org.mule.util.ApplicationShutdownSplashScreen;
 import org.mule.util.ApplicationStartupSplashScreen;
+import org.mule.util.ClassUtils;
 import org.mule.util.JdkVersionUtils;
 import org.mule.util.ServerShutdownSplashScreen;
 import org.mule.util.ServerStartupSplashScreen;
@@ -168,6 +172,8 @@ public class DefaultMuleContext implements MuleContext
 
     private QueueManager queueManager;
 
+    private volatile ObjectSerializer objectSerializer;
+
     /**
      * @deprecated Use empty constructor instead and use setter for dependencies.
      */
@@ -919,6 +925,52 @@ public class DefaultMuleContext implements MuleContext
         return this.lockFactory;
     }
 
+    @Override
+    public ObjectSerializer getObjectSerializer()
+    {
+        if (this.objectSerializer == null)
+        {
+            ObjectSerializer serializer = registryBroker.get(MuleProperties.OBJECT_SERIALIZER);
+            if (serializer == null)
+            {
+                serializer = createObjectSerializer(config.getDefaultObjectSerializer());
+            }
+            this.objectSerializer = serializer;
+        }
+
+        return this.objectSerializer;
+    }
+
+    private ObjectSerializer createObjectSerializer(String name)
+    {
+        ObjectSerializer serializer;
+        if (name == null || DefaultMuleConfiguration.JAVA_OBJECT_SERIALIZER.equals(name))
+        {
+            serializer = new JavaObjectSerializer();
+        }
+        else if (DefaultMuleConfiguration.COMPACT_OBJECT_SERIALIZER.equals(name))
+        {
+            serializer = new CompactObjectSerializer();
+        }
+        else
+        {
+            try
+            {
+                serializer = (ObjectSerializer) ClassUtils.instanciateClass(name, ClassUtils.NO_ARGS, getExecutionClassLoader());
+            }
+            catch (Exception e)
+            {
+                throw new MuleRuntimeException(CoreMessages.failedToCreate("object serializer " + name), e);
+            }
+        }
+
+        if (serializer instanceof MuleContextAware)
+        {
+            ((MuleContextAware) serializer).setMuleContext(this);
+        }
+        return serializer;
+    }
+
     @Override
     public ProcessingTimeWatcher getProcessorTimeWatcher()
     {
@@ -25,6 +25,7 @@ import org.mule.api.transport.ReplyToHandler;
 import org.mule.config.i18n.CoreMessages;
 import org.mule.management.stats.ProcessingTime;
 import org.mule.security.MuleCredentials;
+import org.mule.serialization.TypeSerializer;
 import org.mule.session.DefaultMuleSession;
 import org.mule.transaction.TransactionCoordination;
 import org.mule.transformer.types.DataTypeFactory;
@@ -33,7 +34,9 @@ import org.mule.util.CopyOnWriteCaseInsensitiveMap;
 import org.mule.util.store.DeserializationPostInitialisable;
 
 import java.io.IOException;
+import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OptionalDataException;
 import java.io.OutputStream;
@@ -399,6 +402,39 @@ public class DefaultMuleEvent implements MuleEvent, ThreadSafeAccess, Deserializ
         this.outputStream = outputStream;
     }
 
+    /**
+     * Used by {@link CompactSerializer} to create the deserialized events
+     */
+    private DefaultMuleEvent(String id,
+                             MuleMessage message,
+                             MuleSession session,
+                             Credentials credentials,
+                             String encoding,
+                             MessageExchangePattern exchangePattern,
+                             URI messageSourceURI,
+                             String messageSourceName,
+                             ReplyToHandler replyToHandler,
+                             Object replyToDestination,
+                             ProcessingTime processingTime,
+                             boolean transacted,
+                             boolean synchronous)
+    {
+        this.id = id;
+        this.session = session;
+        setMessage(message);
+
+        this.credentials = credentials;
+        this.encoding = encoding;
+        this.exchangePattern = exchangePattern;
+        this.messageSourceURI = messageSourceURI;
+        this.messageSourceName = messageSourceName;
+        this.replyToHandler = replyToHandler;
+        this.replyToDestination = replyToDestination;
+        this.processingTime = processingTime;
+        this.transacted = transacted;
+        this.synchronous = synchronous;
+    }
+
     protected boolean resolveEventSynchronicity()
     {
         boolean syncProcessingStrategy = false;
@@ -933,6 +969,11 @@ public class DefaultMuleEvent implements MuleEvent, ThreadSafeAccess, Deserializ
                 out.writeObject(getFlowConstruct() != null ? getFlowConstruct().getName() : "null");
             }
         }
+        checkFlowVariablesSerializable();
+    }
+
+    private void checkFlowVariablesSerializable() throws IOException
+    {
         for (Map.Entry<String, Object> entry : flowVariables.entrySet())
         {
             Object value = entry.getValue();
@@ -944,7 +985,6 @@ public class DefaultMuleEvent implements MuleEvent, ThreadSafeAccess, Deserializ
                 throw new IOException(message);
             }
         }
-
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
@@ -984,6 +1024,79 @@ public class DefaultMuleEvent implements MuleEvent, ThreadSafeAccess, Deserializ
         return serializedData != null ? (String) serializedData.get("serviceName") : null;
     }
 
+    /**
+     * Writes and reads events for the {@link org.mule.serialization.CompactObjectSerializer},
+     * keeping the same state as their Java serialization. As with Java serialization, the flow
+     * construct is written by name and looked up again when the event is initialised after
+     * deserialization.
+     */
+    public static class CompactSerializer implements TypeSerializer<DefaultMuleEvent>
+    {
+
+        @Override
+        public void write(DefaultMuleEvent event, ObjectOutput out) throws IOException
+        {
+            event.checkFlowVariablesSerializable();
+
+            out.writeObject(event.id);
+            out.writeObject(event.message);
+            out.writeObject(event.session);
+            if (event.serializedData != null)
+            {
+                out.writeObject(event.getTransientServiceName());
+            }
+            else
+            {
+                out.writeObject(event.flowConstruct != null ? event.flowConstruct.getName() : null);
+            }
+            out.writeObject(event.credentials);
+            out.writeObject(event.encoding);
+            out.writeObject(event.exchangePattern != null ? event.exchangePattern.name() : null);
+            out.writeObject(event.messageSourceURI != null ? event.messageSourceURI.toString() : null);
+            out.writeObject(event.messageSourceName);
+            out.writeObject(event.replyToHandler);
+            out.writeObject(event.replyToDestination);
+            out.writeObject(event.processingTime);
+            out.writeBoolean(event.transacted);
+            out.writeBoolean(event.synchronous);
+            out.writeBoolean(event.stopFurtherProcessing);
+            out.writeBoolean(event.notificationsEnabled);
+            out.writeInt(event.timeout);
+            out.writeObject(new HashMap<String, Object>(event.flowVariables));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public DefaultMuleEvent read(ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            String id = (String) in.readObject();
+            MuleMessage message = (MuleMessage) in.readObject();
+            MuleSession session = (MuleSession) in.readObject();
+            Object serviceName = in.readObject();
+            Credentials credentials = (Credentials) in.readObject();
+            String encoding = (String) in.readObject();
+            String exchangePattern = (String) in.readObject();
+            String messageSourceURI = (String) in.readObject();
+            String messageSourceName = (String) in.readObject();
+            ReplyToHandler replyToHandler = (ReplyToHandler) in.readObject();
+            Object replyToDestination = in.readObject();
+            ProcessingTime processingTime = (ProcessingTime) in.readObject();
+            boolean transacted = in.readBoolean();
+            boolean synchronous = in.readBoolean();
+
+            DefaultMuleEvent event = new DefaultMuleEvent(id, message, session, credentials, encoding,
+                exchangePattern != null ? MessageExchangePattern.valueOf(exchangePattern) : null,
+                messageSourceURI != null ? URI.create(messageSourceURI) : null, messageSourceName,
+                replyToHandler, replyToDestination, processingTime, transacted, synchronous);
+            event.stopFurtherProcessing = in.readBoolean();
+            event.notificationsEnabled = in.readBoolean();
+            event.timeout = in.readInt();
+            event.flowVariables.putAll((Map<String, Object>) in.readObject());
+            event.setTransientServiceName(serviceName);
+            return event;
+        }
+    }
+
     @Override
     public void setMessage(MuleMessage message)
     {
@@ -26,6 +26,7 @@ import org.mule.config.MuleManifest;
 import org.mule.config.i18n.CoreMessages;
 import org.mule.message.ds.ByteArrayDataSource;
 import org.mule.message.ds.StringDataSource;
+import org.mule.serialization.TypeSerializer;
 import org.mule.transformer.TransformerUtils;
 import org.mule.transformer.types.DataTypeFactory;
 import org.mule.transformer.types.MimeTypes;
@@ -43,7 +44,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.Reader;
 import java.io.Serializable;
@@ -138,6 +141,13 @@ public class DefaultMuleMessage implements MuleMessage, ThreadSafeAccess, Deseri
         }
     }
 
+    /**
+     * Used by {@link CompactSerializer} to create the deserialized messages
+     */
+    private DefaultMuleMessage()
+    {
+    }
+
     public DefaultMuleMessage(Object message, MuleContext muleContext)
     {
         this(message, (Map<String, Object>) null, muleContext);
@@ -1806,6 +1816,65 @@ public class DefaultMuleMessage implements MuleMessage, ThreadSafeAccess, Deseri
         outboundAttachments = deserializeAttachments((Map<String, SerializedDataHandler>)in.readObject());
     }
 
+    /**
+     * Writes and reads messages for the {@link org.mule.serialization.CompactObjectSerializer},
+     * keeping the same state as their Java serialization. Properties are written as plain maps so
+     * their keys and values use the compact format. The flow variables of a message that belongs
+     * to an event are written by the event.
+     */
+    public static class CompactSerializer implements TypeSerializer<DefaultMuleMessage>
+    {
+
+        @Override
+        public void write(DefaultMuleMessage message, ObjectOutput out) throws IOException
+        {
+            out.writeObject(message.id);
+            out.writeObject(message.rootId);
+            if (message.payload instanceof Serializable)
+            {
+                out.writeObject(message.payload);
+            }
+            else
+            {
+                byte[] serializablePayload;
+                try
+                {
+                    serializablePayload = message.getPayloadAsBytes();
+                }
+                catch (Exception e)
+                {
+                    throw new IOException("Unable to serialize the payload of message " + message.id, e);
+                }
+                out.writeObject(serializablePayload);
+            }
+            out.writeObject(message.exceptionPayload);
+            out.writeObject(new HashMap<String, Object>(message.properties.inboundMap));
+            out.writeObject(new HashMap<String, Object>(message.properties.outboundMap));
+            out.writeObject(new HashMap<String, Object>(message.properties.getOrphanFlowVariables()));
+            out.writeObject(message.serializeAttachments(message.inboundAttachments));
+            out.writeObject(message.serializeAttachments(message.outboundAttachments));
+            out.writeObject(message.dataType);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public DefaultMuleMessage read(ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            DefaultMuleMessage message = new DefaultMuleMessage();
+            message.id = (String) in.readObject();
+            message.rootId = (String) in.readObject();
+            message.payload = in.readObject();
+            message.exceptionPayload = (ExceptionPayload) in.readObject();
+            message.properties.inboundMap.putAll((Map<String, Object>) in.readObject());
+            message.properties.outboundMap.putAll((Map<String, Object>) in.readObject());
+            message.properties.invocationMap.putAll((Map<String, Object>) in.readObject());
+            message.inboundAttachments = message.deserializeAttachments((Map<String, SerializedDataHandler>) in.readObject());
+            message.outboundAttachments = message.deserializeAttachments((Map<String, SerializedDataHandler>) in.readObject());
+            message.dataType = (DataType<?>) in.readObject();
+            return message;
+        }
+    }
+
     /**
      * Invoked after deserialization. This is called when the marker interface
      * {@link org.mule.util.store.DeserializationPostInitialisable} is used. This will get invoked
@@ -26,6 +26,7 @@ import org.mule.api.registry.MuleRegistry;
 import org.mule.api.registry.RegistrationException;
 import org.mule.api.registry.Registry;
 import org.mule.api.security.SecurityManager;
+import org.mule.api.serialization.ObjectSerializer;
 import org.mule.api.store.ListableObjectStore;
 import org.mule.api.store.ObjectStoreManager;
 import org.mule.api.util.StreamCloserService;
@@ -321,6 +322,16 @@ public interface MuleContext extends Lifecycle
      */
     LockFactory getLockFactory();
 
+    /**
+     * Serializer used to persist objects and to send them over the wire. Unless an
+     * {@link ObjectSerializer} is registered as
+     * {@link org.mule.api.config.MuleProperties#OBJECT_SERIALIZER}, it is the one
+     * selected by {@link MuleConfiguration#getDefaultObjectSerializer()}.
+     *
+     * @return the serializer of this context
+     */
+    ObjectSerializer getObjectSerializer();
+
     /**
      * @return {@link {ProcessingTimeWatcher} used to compute processing time of finalized events
      */
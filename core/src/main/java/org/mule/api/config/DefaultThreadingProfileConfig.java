@@ -15,6 +15,7 @@ public class DefaultThreadingProfileConfig
     public static final String MAX_BUFFER_SIZE_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "defaultThreadingProfile.maxBufferSize";
     public static final String MAX_THREAD_TTL_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "defaultThreadingProfile.maxThreadTTL";
     public static final String MAX_WAIT_TIMEOUT_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "defaultThreadingProfile.maxWaitTimeout";
+    public static final String VIRTUAL_THREADS_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "defaultThreadingProfile.virtualThreads";
 
     /**
      * Default value for MAX_THREADS_ACTIVE
@@ -41,6 +42,11 @@ public class DefaultThreadingProfileConfig
      */
     public static final long DEFAULT_THREAD_WAIT_TIMEOUT = Long.parseLong(System.getProperty(MAX_WAIT_TIMEOUT_PROPERTY, "30000"));
 
+    /**
+     * Default value for VIRTUAL_THREADS
+     */
+    public static final boolean DEFAULT_VIRTUAL_THREADS = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY);
+
     private DefaultThreadingProfileConfig()
     {
     }
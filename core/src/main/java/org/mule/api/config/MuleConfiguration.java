@@ -86,6 +86,14 @@ public interface MuleConfiguration
 
     boolean isDisableTimeouts();
 
+    /**
+     * @return the {@link org.mule.api.serialization.ObjectSerializer} used by Mule to
+     *         serialize objects. Either one of the serializers provided by Mule, "java"
+     *         or "compact", or the name of a class implementing
+     *         {@link org.mule.api.serialization.ObjectSerializer}
+     */
+    String getDefaultObjectSerializer();
+
     /**
      * @param extensionType class instance of the extension type
      * @param <T> type of the extension
@@ -72,6 +72,11 @@ public interface ThreadingProfile extends MuleContextAware
      */
     boolean DEFAULT_DO_THREADING = true;
 
+    /**
+     * Default value for VIRTUAL_THREADS
+     */
+    boolean DEFAULT_VIRTUAL_THREADS = DefaultThreadingProfileConfig.DEFAULT_VIRTUAL_THREADS;
+
     /**
      * Actions to perform on pool exhaustion
      */
@@ -124,6 +129,7 @@ public interface ThreadingProfile extends MuleContextAware
                     DEFAULT_THREAD_WAIT_TIMEOUT,
                     DEFAULT_POOL_EXHAUST_ACTION,
                     DEFAULT_DO_THREADING,
+                    DEFAULT_VIRTUAL_THREADS,
                     null,
                     null
                     );
@@ -174,6 +180,15 @@ public interface ThreadingProfile extends MuleContextAware
 
     void setDoThreading(boolean doThreading);
 
+    /**
+     * @return true if pools created from this profile run each task on its own virtual
+     *         thread, capping concurrency at {@link #getMaxThreadsActive()}. Falls back
+     *         to a regular thread pool when the runtime does not support virtual threads.
+     */
+    boolean isVirtualThreads();
+
+    void setVirtualThreads(boolean virtualThreads);
+
     ThreadPoolFactory getPoolFactory();
 
     ScheduledExecutorService createScheduledPool(String name);
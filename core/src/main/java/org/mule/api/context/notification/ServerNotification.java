@@ -14,6 +14,8 @@ import org.mule.api.context.MuleContextAware;
 import org.mule.endpoint.MuleEndpointURI;
 import org.mule.util.ClassUtils;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.EventObject;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -61,7 +63,9 @@ public abstract class ServerNotification extends EventObject implements MuleCont
     public static final int NULL_ACTION = 0;
     public static final Object NULL_MESSAGE = "";
 
-    public final String EVENT_NAME = ClassUtils.getClassName(getClass());
+    private static final Map<Class<?>, String> eventNames = new ConcurrentHashMap<Class<?>, String>();
+
+    public final String EVENT_NAME = getEventName(getClass());
 
     protected String serverId;
 
@@ -97,20 +101,35 @@ public abstract class ServerNotification extends EventObject implements MuleCont
         timestamp = System.currentTimeMillis();
     }
 
+    private static String getEventName(Class<?> type)
+    {
+        String name = eventNames.get(type);
+        if (name == null)
+        {
+            name = ClassUtils.getClassName(type);
+            eventNames.put(type, name);
+        }
+        return name;
+    }
+
+    /**
+     * The server id is only generated when first requested, as most notifications are
+     * delivered without it being used.
+     */
     @Override
     public void setMuleContext(MuleContext context)
     {
-        muleContext = context;
-        serverId = generateId(context);
+        if (context != muleContext)
+        {
+            muleContext = context;
+            serverId = null;
+        }
     }
 
     protected static String generateId(MuleContext context)
     {
         MuleConfiguration conf = context.getConfiguration();
-        return String.format("%s.%s.%s",
-                             conf.getDomainId(),
-                             context.getClusterId(),
-                             conf.getId());
+        return conf.getDomainId() + "." + context.getClusterId() + "." + conf.getId();
     }
 
     protected static MuleMessage cloneMessage(MuleMessage message)
@@ -129,6 +148,10 @@ public abstract class ServerNotification extends EventObject implements MuleCont
 
     public String getServerId()
     {
+        if (serverId == null && muleContext != null)
+        {
+            serverId = generateId(muleContext);
+        }
         return serverId;
     }
 
@@ -151,7 +174,7 @@ public abstract class ServerNotification extends EventObject implements MuleCont
     public String toString()
     {
         return EVENT_NAME + "{" + "action=" + getActionName(action) + ", resourceId=" + resourceIdentifier
-               + ", serverId=" + serverId + ", timestamp=" + timestamp + "}";
+               + ", serverId=" + getServerId() + ", timestamp=" + timestamp + "}";
     }
 
     protected String getPayloadToString()
@@ -159,6 +182,13 @@ public abstract class ServerNotification extends EventObject implements MuleCont
         return source.toString();
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        // the context is not serialized, so the id has to be generated before
+        getServerId();
+        out.defaultWriteObject();
+    }
+
     public String getType()
     {
         return TYPE_INFO;
@@ -191,10 +221,10 @@ public abstract class ServerNotification extends EventObject implements MuleCont
         {
             return NO_ACTION_NAME;
         }
-        Integer key = new Integer(action);
-        if (actionIdToName.containsKey(key))
+        String name = actionIdToName.get(action);
+        if (name != null)
         {
-            return actionIdToName.get(key);
+            return name;
         }
         else
         {
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.api.serialization;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.lang.SerializationException;
+
+/**
+ * Converts objects to and from a byte representation. Used by Mule whenever an object
+ * has to be persisted or sent over the wire, like in persistent object stores and
+ * queues, serialized wire formats and session handlers.
+ * <p/>
+ * The instance used by a Mule application is obtained with
+ * {@link org.mule.api.MuleContext#getObjectSerializer()} and is selected with
+ * {@link org.mule.api.config.MuleConfiguration#getDefaultObjectSerializer()}.
+ * Implementations must be thread safe.
+ * <p/>
+ * Objects that implement {@link org.mule.util.store.DeserializationPostInitialisable}
+ * are initialised after being deserialized.
+ */
+public interface ObjectSerializer
+{
+
+    /**
+     * Serializes an object
+     *
+     * @param object the object to serialize, may be null
+     * @return the serialized object
+     * @throws SerializationException (runtime) if the object can't be serialized
+     */
+    byte[] serialize(Object object) throws SerializationException;
+
+    /**
+     * Serializes an object into a stream. The stream is closed once the object is
+     * written.
+     *
+     * @param object the object to serialize, may be null
+     * @param out the stream to write the object to, must not be null
+     * @throws SerializationException (runtime) if the object can't be serialized
+     */
+    void serialize(Object object, OutputStream out) throws SerializationException;
+
+    /**
+     * Deserializes an object using the execution class loader of the Mule application
+     *
+     * @param bytes the serialized object, must not be null
+     * @return the deserialized object
+     * @throws SerializationException (runtime) if the object can't be deserialized
+     */
+    <T> T deserialize(byte[] bytes) throws SerializationException;
+
+    /**
+     * Deserializes an object
+     *
+     * @param bytes the serialized object, must not be null
+     * @param classLoader the class loader used to load the classes of the object
+     * @return the deserialized object
+     * @throws SerializationException (runtime) if the object can't be deserialized
+     */
+    <T> T deserialize(byte[] bytes, ClassLoader classLoader) throws SerializationException;
+
+    /**
+     * Deserializes an object from a stream using the execution class loader of the Mule
+     * application. The stream is closed once the object is read.
+     *
+     * @param in the stream to read the object from, must not be null
+     * @return the deserialized object
+     * @throws SerializationException (runtime) if the object can't be deserialized
+     */
+    <T> T deserialize(InputStream in) throws SerializationException;
+
+    /**
+     * Deserializes an object from a stream. The stream is closed once the object is read.
+     *
+     * @param in the stream to read the object from, must not be null
+     * @param classLoader the class loader used to load the classes of the object
+     * @return the deserialized object
+     * @throws SerializationException (runtime) if the object can't be deserialized
+     */
+    <T> T deserialize(InputStream in, ClassLoader classLoader) throws SerializationException;
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.cache;
+
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.cache.CachingStrategy;
+import org.mule.api.lifecycle.InitialisationException;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.processor.AbstractMessageProcessorOwner;
+import org.mule.processor.chain.DefaultMessageProcessorChainBuilder;
+
+import java.util.List;
+
+/**
+ * Scope that processes the events with the nested message processors through a
+ * {@link CachingStrategy}, so repeated requests can be answered without invoking them.
+ * <p/>
+ * When no caching strategy is configured, a {@link ObjectStoreCachingStrategy} with its
+ * default configuration is used.
+ */
+public class CachingMessageProcessor extends AbstractMessageProcessorOwner implements MessageProcessor
+{
+
+    private List<MessageProcessor> messageProcessors;
+    private MessageProcessor ownedMessageProcessor;
+    private CachingStrategy cachingStrategy;
+    private ObjectStoreCachingStrategy defaultCachingStrategy;
+
+    @Override
+    public MuleEvent process(MuleEvent event) throws MuleException
+    {
+        return cachingStrategy.process(event, ownedMessageProcessor);
+    }
+
+    @Override
+    public void initialise() throws InitialisationException
+    {
+        if (cachingStrategy == null)
+        {
+            defaultCachingStrategy = new ObjectStoreCachingStrategy();
+            defaultCachingStrategy.setMuleContext(muleContext);
+            defaultCachingStrategy.initialise();
+            cachingStrategy = defaultCachingStrategy;
+        }
+
+        try
+        {
+            this.ownedMessageProcessor = new DefaultMessageProcessorChainBuilder().chain(messageProcessors)
+                    .build();
+        }
+        catch (MuleException e)
+        {
+            throw new InitialisationException(e, this);
+        }
+        super.initialise();
+    }
+
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+        if (defaultCachingStrategy != null)
+        {
+            defaultCachingStrategy.dispose();
+            defaultCachingStrategy = null;
+            cachingStrategy = null;
+        }
+    }
+
+    @Override
+    protected List<MessageProcessor> getOwnedMessageProcessors()
+    {
+        return messageProcessors;
+    }
+
+    public void setMessageProcessors(List<MessageProcessor> messageProcessors)
+    {
+        this.messageProcessors = messageProcessors;
+    }
+
+    public CachingStrategy getCachingStrategy()
+    {
+        return cachingStrategy;
+    }
+
+    public void setCachingStrategy(CachingStrategy cachingStrategy)
+    {
+        this.cachingStrategy = cachingStrategy;
+    }
+}
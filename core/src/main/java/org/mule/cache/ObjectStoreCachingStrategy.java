@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.cache;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+import org.mule.VoidMuleEvent;
+import org.mule.api.MessagingException;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleEventKeyGenerator;
+import org.mule.api.MuleException;
+import org.mule.api.MuleMessage;
+import org.mule.api.cache.CachingStrategy;
+import org.mule.api.cache.InvalidatableCachingStrategy;
+import org.mule.api.cache.InvalidateCacheException;
+import org.mule.api.construct.FlowConstruct;
+import org.mule.api.context.MuleContextAware;
+import org.mule.api.lifecycle.Disposable;
+import org.mule.api.lifecycle.Initialisable;
+import org.mule.api.lifecycle.InitialisationException;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStore;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.CoreMessages;
+import org.mule.keygenerator.ExpressionMuleEventKeyGenerator;
+import org.mule.keygenerator.SHA256MuleEventKeyGenerator;
+import org.mule.management.stats.FlowConstructStatistics;
+import org.mule.util.concurrent.Latch;
+import org.mule.util.store.DeserializationPostInitialisable;
+import org.mule.util.store.LruInMemoryObjectStore;
+
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link CachingStrategy} that keeps the responses in an {@link ObjectStore}, using a
+ * {@link MuleEventKeyGenerator} to find the response that corresponds to each request.
+ * <p/>
+ * When no store is configured, a {@link LruInMemoryObjectStore} bounded by <code>maxEntries</code>
+ * and expiring entries after <code>entryTTL</code> milliseconds is used.
+ * <p/>
+ * Only one request for a given key is processed at a time: concurrent requests with the same key
+ * wait for that response instead of processing the request again, for up to the response timeout
+ * of the waiting request. If the response could not be cached or did not arrive in time, each of
+ * the waiting requests is processed on its own.
+ * <p/>
+ * Requests with a consumable payload are always processed without using the cache, as the key
+ * cannot be generated without consuming them. Consumable responses are read into memory before
+ * being cached. The payload of the cached responses is shared with the requests that use them, so
+ * it must not be modified in place.
+ * <p/>
+ * Cache hits and misses are reported to the {@link FlowConstructStatistics} of the flow that
+ * processes the request.
+ */
+public class ObjectStoreCachingStrategy implements CachingStrategy, InvalidatableCachingStrategy, MuleContextAware, Initialisable, Disposable
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 4000;
+    public static final int DEFAULT_ENTRY_TTL = 60000;
+    public static final int DEFAULT_EXPIRATION_INTERVAL = 1000;
+
+    protected transient Log logger = LogFactory.getLog(getClass());
+
+    private final ConcurrentMap<Serializable, PendingResponse> pendingResponses = new ConcurrentHashMap<Serializable, PendingResponse>();
+
+    private MuleContext muleContext;
+    private String name;
+    private MuleEventKeyGenerator keyGenerator = new SHA256MuleEventKeyGenerator();
+    private ObjectStore<Serializable> store;
+    private boolean internalStore;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private int entryTTL = DEFAULT_ENTRY_TTL;
+    private int expirationInterval = DEFAULT_EXPIRATION_INTERVAL;
+
+    @Override
+    public void initialise() throws InitialisationException
+    {
+        if (keyGenerator == null)
+        {
+            throw new InitialisationException(CoreMessages.objectIsNull("keyGenerator"), this);
+        }
+
+        if (store == null)
+        {
+            LruInMemoryObjectStore<Serializable> defaultStore = new LruInMemoryObjectStore<Serializable>();
+            defaultStore.setName(name == null ? null : name + "-cache");
+            defaultStore.setMaxEntries(maxEntries);
+            defaultStore.setEntryTTL(entryTTL);
+            defaultStore.setExpirationInterval(expirationInterval);
+            defaultStore.setMuleContext(muleContext);
+            defaultStore.initialise();
+            store = defaultStore;
+            internalStore = true;
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (internalStore)
+        {
+            ((Disposable) store).dispose();
+            store = null;
+            internalStore = false;
+        }
+    }
+
+    @Override
+    public MuleEvent process(MuleEvent request, MessageProcessor messageProcessor) throws MuleException
+    {
+        if (!isCacheable(request))
+        {
+            return messageProcessor.process(request);
+        }
+
+        Serializable key = generateKey(request);
+        if (key == null)
+        {
+            return messageProcessor.process(request);
+        }
+
+        MuleMessage cachedResponse = lookup(key);
+        if (cachedResponse != null)
+        {
+            return hit(request, cachedResponse);
+        }
+
+        PendingResponse pendingResponse = new PendingResponse();
+        PendingResponse inFlightResponse = pendingResponses.putIfAbsent(key, pendingResponse);
+        if (inFlightResponse != null)
+        {
+            cachedResponse = inFlightResponse.await(request.getTimeout());
+            if (cachedResponse != null)
+            {
+                return hit(request, cachedResponse);
+            }
+            if (!inFlightResponse.isComplete() && logger.isDebugEnabled())
+            {
+                logger.debug("Timed out waiting for the response being processed for the same key, processing the request");
+            }
+            miss(request);
+            return messageProcessor.process(request);
+        }
+
+        try
+        {
+            // Another request could have cached the response between the lookup and the registration
+            cachedResponse = lookup(key);
+            if (cachedResponse != null)
+            {
+                pendingResponse.complete(cachedResponse);
+                return hit(request, cachedResponse);
+            }
+
+            miss(request);
+            MuleEvent response = messageProcessor.process(request);
+            cachedResponse = cache(key, response);
+            pendingResponse.complete(cachedResponse);
+            return response;
+        }
+        finally
+        {
+            pendingResponses.remove(key, pendingResponse);
+            // Releases the waiting requests when the response could not be cached
+            pendingResponse.complete(null);
+        }
+    }
+
+    protected boolean isCacheable(MuleEvent request)
+    {
+        MuleMessage message = request.getMessage();
+        return !(message instanceof DefaultMuleMessage) || !((DefaultMuleMessage) message).isConsumable();
+    }
+
+    protected Serializable generateKey(MuleEvent request)
+    {
+        try
+        {
+            return keyGenerator.generateKey(request);
+        }
+        catch (NotSerializableException e)
+        {
+            logger.warn("Unable to generate a cache key, processing the request without using the cache: " + e.getMessage());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+            return null;
+        }
+    }
+
+    protected MuleMessage lookup(Serializable key)
+    {
+        Serializable cachedResponse;
+        try
+        {
+            cachedResponse = store.retrieve(key);
+        }
+        catch (ObjectDoesNotExistException e)
+        {
+            return null;
+        }
+        catch (ObjectStoreException e)
+        {
+            logger.warn("Unable to retrieve cached response, processing the request without using the cache: " + e.getMessage());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+            return null;
+        }
+
+        if (store.isPersistent())
+        {
+            try
+            {
+                DeserializationPostInitialisable.Implementation.init(cachedResponse, muleContext);
+            }
+            catch (Exception e)
+            {
+                logger.warn("Unable to initialise cached response, processing the request without using the cache: " + e.getMessage());
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug(e);
+                }
+                return null;
+            }
+        }
+        return (MuleMessage) cachedResponse;
+    }
+
+    /**
+     * Stores a copy of the response message in the cache, unless the response can't be cached.
+     *
+     * @return the cached message or null if the response was not cached
+     */
+    protected MuleMessage cache(Serializable key, MuleEvent response) throws MuleException
+    {
+        if (response == null || VoidMuleEvent.getInstance().equals(response))
+        {
+            return null;
+        }
+
+        MuleMessage message = response.getMessage();
+        if (message == null || message.getExceptionPayload() != null || message.getPayload() == null)
+        {
+            return null;
+        }
+
+        if (message instanceof DefaultMuleMessage && ((DefaultMuleMessage) message).isConsumable())
+        {
+            try
+            {
+                message.setPayload(message.getPayloadAsBytes());
+            }
+            catch (Exception e)
+            {
+                throw new MessagingException(CoreMessages.failedToReadPayload(), response, e);
+            }
+        }
+
+        if (store.isPersistent() && !(message.getPayload() instanceof Serializable))
+        {
+            return null;
+        }
+
+        DefaultMuleMessage cachedResponse = new DefaultMuleMessage(message);
+        try
+        {
+            store.store(key, cachedResponse);
+        }
+        catch (ObjectAlreadyExistsException e)
+        {
+            // Cached by a request that was not aware of this one, both are equivalent
+        }
+        catch (ObjectStoreException e)
+        {
+            logger.warn("Unable to cache response: " + e.getMessage());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+            return null;
+        }
+        return cachedResponse;
+    }
+
+    private MuleEvent hit(MuleEvent request, MuleMessage cachedResponse)
+    {
+        FlowConstructStatistics statistics = getStatistics(request);
+        if (statistics != null)
+        {
+            statistics.incCacheHit();
+        }
+        return new DefaultMuleEvent(new DefaultMuleMessage(cachedResponse), request);
+    }
+
+    private void miss(MuleEvent request)
+    {
+        FlowConstructStatistics statistics = getStatistics(request);
+        if (statistics != null)
+        {
+            statistics.incCacheMiss();
+        }
+    }
+
+    private FlowConstructStatistics getStatistics(MuleEvent request)
+    {
+        FlowConstruct flowConstruct = request.getFlowConstruct();
+        return flowConstruct == null ? null : flowConstruct.getStatistics();
+    }
+
+    @Override
+    public void invalidate()
+    {
+        try
+        {
+            store.clear();
+        }
+        catch (ObjectStoreException e)
+        {
+            throw new InvalidateCacheException("Unable to invalidate cache", e);
+        }
+    }
+
+    @Override
+    public void invalidate(Serializable key) throws InvalidateCacheException
+    {
+        if (key == null)
+        {
+            throw new IllegalArgumentException(CoreMessages.objectIsNull("key").getMessage());
+        }
+
+        try
+        {
+            store.remove(key);
+        }
+        catch (ObjectDoesNotExistException e)
+        {
+            // Nothing to invalidate
+        }
+        catch (ObjectStoreException e)
+        {
+            throw new InvalidateCacheException("Unable to invalidate cache entry " + key, e);
+        }
+    }
+
+    @Override
+    public void setMuleContext(MuleContext context)
+    {
+        this.muleContext = context;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public MuleEventKeyGenerator getKeyGenerator()
+    {
+        return keyGenerator;
+    }
+
+    public void setKeyGenerator(MuleEventKeyGenerator keyGenerator)
+    {
+        this.keyGenerator = keyGenerator;
+    }
+
+    /**
+     * Generates the keys evaluating the given expression, using an {@link ExpressionMuleEventKeyGenerator}.
+     */
+    public void setKeyGenerationExpression(String expression)
+    {
+        ExpressionMuleEventKeyGenerator expressionKeyGenerator = new ExpressionMuleEventKeyGenerator();
+        expressionKeyGenerator.setExpression(expression);
+        this.keyGenerator = expressionKeyGenerator;
+    }
+
+    public ObjectStore<Serializable> getStore()
+    {
+        return store;
+    }
+
+    public void setStore(ObjectStore<Serializable> store)
+    {
+        this.store = store;
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getEntryTTL()
+    {
+        return entryTTL;
+    }
+
+    public void setEntryTTL(int entryTTL)
+    {
+        this.entryTTL = entryTTL;
+    }
+
+    public int getExpirationInterval()
+    {
+        return expirationInterval;
+    }
+
+    public void setExpirationInterval(int expirationInterval)
+    {
+        this.expirationInterval = expirationInterval;
+    }
+
+    /**
+     * Response being processed for a key, shared with the concurrent requests that have the same key.
+     */
+    private static class PendingResponse
+    {
+
+        private final Latch latch = new Latch();
+        private volatile MuleMessage response;
+
+        void complete(MuleMessage response)
+        {
+            if (latch.getCount() > 0)
+            {
+                this.response = response;
+                latch.release();
+            }
+        }
+
+        boolean isComplete()
+        {
+            return latch.getCount() == 0;
+        }
+
+        /**
+         * @param timeout milliseconds to wait for the response, {@link MuleEvent#TIMEOUT_WAIT_FOREVER}
+         *            to wait until it is complete
+         * @return the cached response or null if it was not cached or did not complete in time
+         */
+        MuleMessage await(int timeout)
+        {
+            try
+            {
+                if (timeout == MuleEvent.TIMEOUT_WAIT_FOREVER)
+                {
+                    latch.await();
+                }
+                else if (!latch.await(timeout, TimeUnit.MILLISECONDS))
+                {
+                    return null;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return response;
+        }
+    }
+}
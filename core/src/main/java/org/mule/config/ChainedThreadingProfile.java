@@ -43,6 +43,7 @@ public class ChainedThreadingProfile implements ThreadingProfile
     private Long threadWaitTimeout;
     private Integer poolExhaustedAction;
     private Boolean doThreading;
+    private Boolean virtualThreads;
 
     private ThreadPoolFactory poolFactory = ThreadPoolFactory.newInstance();
     private WorkManagerFactory workManagerFactory = new ImmutableThreadingProfile.DefaultWorkManagerFactory();
@@ -195,6 +196,10 @@ public class ChainedThreadingProfile implements ThreadingProfile
     public ExecutorService createPool(String name)
     {
         // we deliberately don't instantiate the chained profile as we just want a cloned copy, not recursion
+        if (isVirtualThreads())
+        {
+            return poolFactory.createVirtualThreadPool(name, new ImmutableThreadingProfile(this));
+        }
         return poolFactory.createPool(name, new ImmutableThreadingProfile(this));
     }
 
@@ -208,6 +213,16 @@ public class ChainedThreadingProfile implements ThreadingProfile
         this.doThreading = doThreading;
     }
 
+    public boolean isVirtualThreads()
+    {
+        return null != virtualThreads ? virtualThreads : delegate.isVirtualThreads();
+    }
+
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+    }
+
     public ThreadPoolFactory getPoolFactory()
     {
         return poolFactory;
@@ -242,7 +257,8 @@ public class ChainedThreadingProfile implements ThreadingProfile
         return "ThreadingProfile{" + "maxThreadsActive=" + maxThreadsActive + ", maxThreadsIdle="
                         + maxThreadsIdle + ", maxBufferSize=" + maxBufferSize + ", threadTTL=" + threadTTL
                         + ", poolExhaustedAction=" + poolExhaustedAction + ", threadWaitTimeout="
-                        + threadWaitTimeout + ", doThreading=" + doThreading + ", workManagerFactory="
+                        + threadWaitTimeout + ", doThreading=" + doThreading + ", virtualThreads=" + virtualThreads
+                        + ", workManagerFactory="
                         + workManagerFactory + ", rejectedExecutionHandler=" + rejectedExecutionHandler
                         + ", threadFactory=" + threadFactory + "}";
     }
@@ -51,6 +51,16 @@ public class DefaultMuleConfiguration implements MuleConfiguration, MuleContextA
             "org.mule.processor.chain")
             .split(",");
 
+    /**
+     * Uses {@link org.mule.serialization.JavaObjectSerializer} to serialize objects
+     */
+    public static final String JAVA_OBJECT_SERIALIZER = "java";
+
+    /**
+     * Uses {@link org.mule.serialization.CompactObjectSerializer} to serialize objects
+     */
+    public static final String COMPACT_OBJECT_SERIALIZER = "compact";
+
     /**
      * When false (default), some internal Mule entries are removed from exception stacktraces for readability.
      * @see #stackTraceFilter
@@ -162,6 +172,11 @@ public class DefaultMuleConfiguration implements MuleConfiguration, MuleContextA
     
     private boolean enricherPropagatesSessionVariableChanges;
 
+    /**
+     * The serializer used to persist objects and to send them over the wire.
+     */
+    private String defaultObjectSerializer = JAVA_OBJECT_SERIALIZER;
+
     /**
      * Generic string/string map of properties in addition to standard Mule props.
      * Used as an extension point e.g. in MMC.
@@ -350,6 +365,12 @@ public class DefaultMuleConfiguration implements MuleConfiguration, MuleContextA
         {
             disableTimeouts = Boolean.valueOf(p);
         }
+
+        p = System.getProperty(MuleProperties.SYSTEM_PROPERTY_PREFIX + "serialization.objectSerializer");
+        if (p != null)
+        {
+            defaultObjectSerializer = p;
+        }
     }
 
     protected void validateEncoding() throws FatalException
@@ -723,6 +744,20 @@ public class DefaultMuleConfiguration implements MuleConfiguration, MuleContextA
         return disableTimeouts;
     }
 
+    @Override
+    public String getDefaultObjectSerializer()
+    {
+        return defaultObjectSerializer;
+    }
+
+    public void setDefaultObjectSerializer(String defaultObjectSerializer)
+    {
+        if (verifyContextNotInitialized())
+        {
+            this.defaultObjectSerializer = defaultObjectSerializer;
+        }
+    }
+
     public void setExtensions(List<Object> extensions)
     {
         this.extensions = extensions;
@@ -29,6 +29,7 @@ public class ImmutableThreadingProfile implements ThreadingProfile
     private long threadWaitTimeout;
     private int poolExhaustedAction;
     private boolean doThreading;
+    private boolean virtualThreads;
 
     private ThreadPoolFactory poolFactory = ThreadPoolFactory.newInstance();
     private WorkManagerFactory workManagerFactory = new DefaultWorkManagerFactory();
@@ -45,6 +46,22 @@ public class ImmutableThreadingProfile implements ThreadingProfile
                             boolean doThreading,
                             RejectedExecutionHandler rejectedExecutionHandler,
                             ThreadFactory threadFactory)
+    {
+        this(maxThreadsActive, maxThreadsIdle, maxBufferSize, threadTTL, threadWaitTimeout,
+             poolExhaustedAction, doThreading, DEFAULT_VIRTUAL_THREADS, rejectedExecutionHandler,
+             threadFactory);
+    }
+
+    public ImmutableThreadingProfile(int maxThreadsActive,
+                            int maxThreadsIdle,
+                            int maxBufferSize,
+                            long threadTTL,
+                            long threadWaitTimeout,
+                            int poolExhaustedAction,
+                            boolean doThreading,
+                            boolean virtualThreads,
+                            RejectedExecutionHandler rejectedExecutionHandler,
+                            ThreadFactory threadFactory)
     {
         this.maxThreadsActive = maxThreadsActive;
         this.maxThreadsIdle = maxThreadsIdle;
@@ -53,6 +70,7 @@ public class ImmutableThreadingProfile implements ThreadingProfile
         this.threadWaitTimeout = threadWaitTimeout;
         this.poolExhaustedAction = poolExhaustedAction;
         this.doThreading = doThreading;
+        this.virtualThreads = virtualThreads;
         this.rejectedExecutionHandler = rejectedExecutionHandler;
         this.threadFactory = threadFactory;
     }
@@ -66,6 +84,7 @@ public class ImmutableThreadingProfile implements ThreadingProfile
                 tp.getThreadWaitTimeout(),
                 tp.getPoolExhaustedAction(),
                 tp.isDoThreading(),
+                tp.isVirtualThreads(),
                 tp.getRejectedExecutionHandler(),
                 tp.getThreadFactory());
     }
@@ -172,6 +191,10 @@ public class ImmutableThreadingProfile implements ThreadingProfile
 
     public ExecutorService createPool(String name)
     {
+        if (virtualThreads)
+        {
+            return poolFactory.createVirtualThreadPool(name, new ImmutableThreadingProfile(this));
+        }
         return poolFactory.createPool(name, new ImmutableThreadingProfile(this));
     }
 
@@ -185,6 +208,16 @@ public class ImmutableThreadingProfile implements ThreadingProfile
         throw new UnsupportedOperationException(getClass().getName());
     }
 
+    public boolean isVirtualThreads()
+    {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        throw new UnsupportedOperationException(getClass().getName());
+    }
+
     public ThreadPoolFactory getPoolFactory()
     {
         return poolFactory;
@@ -219,7 +252,8 @@ public class ImmutableThreadingProfile implements ThreadingProfile
         return "ThreadingProfile{" + "maxThreadsActive=" + maxThreadsActive + ", maxThreadsIdle="
                         + maxThreadsIdle + ", maxBufferSize=" + maxBufferSize + ", threadTTL=" + threadTTL
                         + ", poolExhaustedAction=" + poolExhaustedAction + ", threadWaitTimeout="
-                        + threadWaitTimeout + ", doThreading=" + doThreading + ", workManagerFactory="
+                        + threadWaitTimeout + ", doThreading=" + doThreading + ", virtualThreads=" + virtualThreads
+                        + ", workManagerFactory="
                         + workManagerFactory + ", rejectedExecutionHandler=" + rejectedExecutionHandler
                         + ", threadFactory=" + threadFactory + "}";
     }
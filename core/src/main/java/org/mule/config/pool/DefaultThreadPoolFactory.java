@@ -9,9 +9,12 @@ package org.mule.config.pool;
 import org.mule.api.config.ThreadingProfile;
 import org.mule.util.StringUtils;
 import org.mule.util.concurrent.NamedThreadFactory;
+import org.mule.util.concurrent.VirtualThreadExecutorService;
+import org.mule.util.concurrent.VirtualThreadFactory;
 import org.mule.util.concurrent.WaitPolicy;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
@@ -23,6 +26,8 @@ import org.apache.commons.logging.LogFactory;
 
 public class DefaultThreadPoolFactory extends ThreadPoolFactory
 {
+    private static final String VIRTUAL_THREAD_NAME = "virtual";
+
     // deliberately shadow the superclass' static logger as to avoid log congestion on it
     protected final Log logger = LogFactory.getLog(getClass());
 
@@ -78,6 +83,27 @@ public class DefaultThreadPoolFactory extends ThreadPoolFactory
         }
     }
 
+    @Override
+    public ExecutorService createVirtualThreadPool(String name, ThreadingProfile tp)
+    {
+        if (!VirtualThreadFactory.isSupported())
+        {
+            logger.warn("Virtual threads are not supported by this runtime, using a regular thread pool for " + name);
+            return createPool(name, tp);
+        }
+        if (tp.getThreadFactory() != null || tp.getRejectedExecutionHandler() != null)
+        {
+            // both only make sense for platform threads owned by a ThreadPoolExecutor
+            logger.warn("Threading profile for " + name + " has a custom thread factory or rejected execution handler, using a regular thread pool");
+            return createPool(name, tp);
+        }
+
+        String threadName = StringUtils.isNotBlank(name) ? name : VIRTUAL_THREAD_NAME;
+        return new VirtualThreadExecutorService(new VirtualThreadFactory(threadName, Thread.currentThread().getContextClassLoader()),
+                                                tp.getMaxThreadsActive(), tp.getMaxBufferSize(),
+                                                tp.getPoolExhaustedAction(), tp.getThreadWaitTimeout());
+    }
+
     @Override
     public ScheduledThreadPoolExecutor createScheduledPool(String name, ThreadingProfile tp)
     {
@@ -14,6 +14,7 @@ import org.mule.config.PreferredObjectSelector;
 import org.mule.config.i18n.MessageFactory;
 
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -67,4 +68,13 @@ public abstract class ThreadPoolFactory implements MuleContextAware
     public abstract ThreadPoolExecutor createPool(String name, ThreadingProfile tp);
 
     public abstract ScheduledThreadPoolExecutor createScheduledPool(String name, ThreadingProfile tp);
+
+    /**
+     * Creates a pool that runs each task on its own virtual thread. Factories that don't
+     * support virtual threads create a regular pool instead.
+     */
+    public ExecutorService createVirtualThreadPool(String name, ThreadingProfile tp)
+    {
+        return createPool(name, tp);
+    }
 }
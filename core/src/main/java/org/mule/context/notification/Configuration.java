@@ -17,6 +17,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,6 +37,9 @@ class Configuration
     private Set<ListenerSubscriptionPair> listenerSubscriptionPairs = new HashSet<ListenerSubscriptionPair>();
     private Set<Class<? extends ServerNotificationListener>> disabledInterfaces = new HashSet<Class<? extends ServerNotificationListener>>();
     private Set<Class<? extends ServerNotification>> disabledNotificationTypes = new HashSet<Class<? extends ServerNotification>>();
+    private ConcurrentMap<ServerNotificationListener, NotificationListenerStatistics> listenerStatistics =
+            new ConcurrentHashMap<ServerNotificationListener, NotificationListenerStatistics>();
+    private int partitions = 1;
     private volatile boolean dirty = true;
     private Policy policy;
 
@@ -106,6 +111,7 @@ class Configuration
             }
         }
         listenerSubscriptionPairs.removeAll(toRemove);
+        listenerStatistics.remove(listener);
     }
 
     synchronized void removeAllListeners(Collection listeners)
@@ -147,6 +153,12 @@ class Configuration
         }
     }
 
+    synchronized void setPartitions(int partitions)
+    {
+        dirty = true;
+        this.partitions = partitions;
+    }
+
     protected Policy getPolicy()
     {
         if (dirty)
@@ -155,7 +167,8 @@ class Configuration
             {
                 if (dirty)
                 {
-                    policy = new Policy(interfaceToTypes, listenerSubscriptionPairs, disabledInterfaces, disabledNotificationTypes);
+                    policy = new Policy(interfaceToTypes, listenerSubscriptionPairs, disabledInterfaces, disabledNotificationTypes,
+                                        partitions, listenerStatistics);
                     dirty = false;
                 }
             }
@@ -163,6 +176,11 @@ class Configuration
         return policy;
     }
 
+    Map<ServerNotificationListener, NotificationListenerStatistics> getListenerStatistics()
+    {
+        return Collections.unmodifiableMap(listenerStatistics);
+    }
+
     // for tests -------------------------------
 
     Map<Class<? extends ServerNotificationListener>, Set<Class<? extends ServerNotification>>> getInterfaceToTypes()
@@ -98,7 +98,7 @@ public class EndpointMessageNotification extends ServerNotification
     {
         return EVENT_NAME + "{action=" + getActionName(action) + ", endpoint: " + endpoint
                         + ", resourceId=" + resourceIdentifier + ", timestamp=" + timestamp + ", serverId="
-                        + serverId + ", message: " + source + "}";
+                        + getServerId() + ", message: " + source + "}";
     }
 
     public String getEndpoint()
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.context.notification;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery statistics of a notification listener. The lag of a notification is the
+ * time in milliseconds between its creation and its delivery to the listener.
+ */
+public class NotificationListenerStatistics
+{
+
+    private final AtomicLong deliveredNotifications = new AtomicLong();
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile long lastLag;
+
+    void notificationDelivered(long lag)
+    {
+        deliveredNotifications.incrementAndGet();
+        totalLag.addAndGet(lag);
+        lastLag = lag;
+
+        long max = maxLag.get();
+        while (lag > max && !maxLag.compareAndSet(max, lag))
+        {
+            max = maxLag.get();
+        }
+    }
+
+    public long getDeliveredNotifications()
+    {
+        return deliveredNotifications.get();
+    }
+
+    /**
+     * @return the lag of the last notification delivered to the listener
+     */
+    public long getLastLag()
+    {
+        return lastLag;
+    }
+
+    public long getMaxLag()
+    {
+        return maxLag.get();
+    }
+
+    public long getAverageLag()
+    {
+        long delivered = deliveredNotifications.get();
+        return delivered == 0 ? 0 : totalLag.get() / delivered;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NotificationListenerStatistics{delivered=" + getDeliveredNotifications() + ", lastLag="
+               + getLastLag() + ", averageLag=" + getAverageLag() + ", maxLag=" + getMaxLag() + "}";
+    }
+}
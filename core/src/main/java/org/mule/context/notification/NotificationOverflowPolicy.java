@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.context.notification;
+
+/**
+ * What {@link ServerNotificationManager} does with a notification fired when the
+ * buffer of a dispatching partition is full.
+ */
+public enum NotificationOverflowPolicy
+{
+    /**
+     * The thread firing the notification waits until there is room in the buffer.
+     */
+    BLOCK,
+
+    /**
+     * The oldest notification in the buffer is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Only one out of every sample rate notifications is kept, replacing the oldest
+     * notification in the buffer. The rest are discarded.
+     */
+    SAMPLE;
+
+    /**
+     * Accepts both the constant names and their lower case, hyphenated form, like
+     * <code>drop-oldest</code>.
+     */
+    public static NotificationOverflowPolicy fromString(String value)
+    {
+        return valueOf(value.trim().replace('-', '_').toUpperCase());
+    }
+}
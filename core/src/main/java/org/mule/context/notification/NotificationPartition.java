@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.context.notification;
+
+import org.mule.api.context.notification.ServerNotification;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.resource.spi.work.Work;
+
+/**
+ * Delivers the asynchronous notifications of the listeners assigned to a partition of
+ * a {@link ServerNotificationManager}. Notifications are kept in a bounded buffer, and
+ * what happens when it is full is decided by a {@link NotificationOverflowPolicy}.
+ */
+class NotificationPartition implements Work
+{
+
+    /**
+     * How long a blocked thread waits before checking again whether the manager was
+     * disposed
+     */
+    private static final long BLOCK_CHECK_INTERVAL = 100;
+
+    private final ServerNotificationManager manager;
+    private final int index;
+    private final BlockingQueue<ServerNotification> buffer;
+    private final NotificationOverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedNotifications = new AtomicLong();
+    private volatile boolean scheduled;
+    private volatile Thread dispatcherThread;
+
+    NotificationPartition(ServerNotificationManager manager, int index, int bufferSize,
+                          NotificationOverflowPolicy overflowPolicy, int sampleRate)
+    {
+        this.manager = manager;
+        this.index = index;
+        this.buffer = new ArrayBlockingQueue<ServerNotification>(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+    }
+
+    void enqueue(ServerNotification notification) throws InterruptedException
+    {
+        if (buffer.offer(notification))
+        {
+            return;
+        }
+
+        if (Thread.currentThread() == dispatcherThread)
+        {
+            // A listener firing notifications must not wait for itself to empty the buffer
+            manager.notifyListeners(notification, index);
+        }
+        else if (overflowPolicy == NotificationOverflowPolicy.BLOCK && scheduled)
+        {
+            while (!buffer.offer(notification, BLOCK_CHECK_INTERVAL, TimeUnit.MILLISECONDS))
+            {
+                if (manager.isDisposed())
+                {
+                    replaceOldest(notification);
+                    return;
+                }
+            }
+        }
+        else if (overflowPolicy == NotificationOverflowPolicy.SAMPLE
+                 && overflowCount.incrementAndGet() % sampleRate != 0)
+        {
+            droppedNotifications.incrementAndGet();
+        }
+        else
+        {
+            // Also when blocking but nothing dispatches the buffer yet
+            replaceOldest(notification);
+        }
+    }
+
+    /**
+     * Marks the partition as scheduled for dispatching. Until then there is nothing to
+     * wait for when the buffer is full, so {@link NotificationOverflowPolicy#BLOCK}
+     * drops the oldest notification instead.
+     */
+    void setScheduled(boolean scheduled)
+    {
+        this.scheduled = scheduled;
+    }
+
+    private void replaceOldest(ServerNotification notification)
+    {
+        while (!buffer.offer(notification))
+        {
+            if (buffer.poll() != null)
+            {
+                droppedNotifications.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        dispatcherThread = Thread.currentThread();
+        try
+        {
+            while (!manager.isDisposed())
+            {
+                ServerNotification notification = buffer.poll(manager.getDispatchTimeout(), TimeUnit.MILLISECONDS);
+                if (notification != null)
+                {
+                    manager.notifyListeners(notification, index);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            dispatcherThread = null;
+        }
+    }
+
+    @Override
+    public void release()
+    {
+        // no-op, the partition stops when the manager is disposed
+    }
+
+    BlockingQueue<ServerNotification> getBuffer()
+    {
+        return buffer;
+    }
+
+    int getPendingNotifications()
+    {
+        return buffer.size();
+    }
+
+    long getDroppedNotifications()
+    {
+        return droppedNotifications.get();
+    }
+}
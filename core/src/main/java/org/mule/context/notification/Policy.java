@@ -26,9 +26,26 @@ import java.util.concurrent.ConcurrentMap;
 class Policy
 {
 
+    /**
+     * Partition to pass to {@link #dispatch(ServerNotification, int)} to dispatch to
+     * the listeners of every partition
+     */
+    static final int ALL_PARTITIONS = -1;
+
+    /**
+     * Partitions are tracked as the bits of a long
+     */
+    static final int MAX_PARTITIONS = 64;
+
     // map from event to set of senders
     private Map<Class<? extends ServerNotification>, Collection<Sender>> eventToSenders = new HashMap<Class<? extends ServerNotification>, Collection<Sender>>();
 
+    // map from event to the bits of the partitions of its senders
+    private Map<Class<? extends ServerNotification>, Long> eventToPartitions = new HashMap<Class<? extends ServerNotification>, Long>();
+
+    // cache of the partitions that receive a particular notification class
+    private ConcurrentMap<Class, Long> knownEventPartitions = new ConcurrentHashMap<Class, Long>();
+
     // these are cumulative - set values should never change, they are just a cache of known info
     // they are co and contra-variant wrt to exact event type (see code below).
     private ConcurrentMap knownEventsExact = new ConcurrentHashMap();
@@ -41,10 +58,36 @@ class Policy
         Set<ListenerSubscriptionPair> listenerSubscriptionPairs, 
         Set<Class<? extends ServerNotificationListener>> disabledInterfaces, 
         Set<Class<? extends ServerNotification>> disabledEvents)
+    {
+        this(interfaceToEvents, listenerSubscriptionPairs, disabledInterfaces, disabledEvents, 1,
+            new ConcurrentHashMap<ServerNotificationListener, NotificationListenerStatistics>());
+    }
+
+    /**
+     * Each listener is assigned to one of the given number of partitions, and its
+     * delivery statistics are kept in the given map.
+     */
+    Policy(Map<Class<? extends ServerNotificationListener>, Set<Class<? extends ServerNotification>>> interfaceToEvents,
+        Set<ListenerSubscriptionPair> listenerSubscriptionPairs,
+        Set<Class<? extends ServerNotificationListener>> disabledInterfaces,
+        Set<Class<? extends ServerNotification>> disabledEvents,
+        int partitions,
+        ConcurrentMap<ServerNotificationListener, NotificationListenerStatistics> listenerStatistics)
     {
         for (ListenerSubscriptionPair pair : listenerSubscriptionPairs)
         {
             ServerNotificationListener listener = pair.getListener();
+            int partition = partitionOf(listener, partitions);
+            NotificationListenerStatistics statistics = listenerStatistics.get(listener);
+            if (statistics == null)
+            {
+                statistics = new NotificationListenerStatistics();
+                NotificationListenerStatistics previous = listenerStatistics.putIfAbsent(listener, statistics);
+                if (previous != null)
+                {
+                    statistics = previous;
+                }
+            }
             for (Class<? extends ServerNotificationListener> iface : interfaceToEvents.keySet())
             {
                 if (notASubclassOfAnyClassInSet(disabledInterfaces, iface))
@@ -63,7 +106,9 @@ class Policy
                                     // use a collection with predictable iteration order
                                     eventToSenders.put(event, new ArrayList<Sender>());
                                 }
-                                eventToSenders.get(event).add(new Sender(pair));
+                                eventToSenders.get(event).add(new Sender(pair, partition, statistics));
+                                Long eventPartitions = eventToPartitions.get(event);
+                                eventToPartitions.put(event, (eventPartitions == null ? 0L : eventPartitions) | (1L << partition));
                             }
                         }
                     }
@@ -72,6 +117,17 @@ class Policy
         }
     }
 
+    /**
+     * Spreads listeners over the partitions by identity, so a listener is always in
+     * the same partition while the number of partitions does not change.
+     */
+    static int partitionOf(ServerNotificationListener listener, int partitions)
+    {
+        int hash = System.identityHashCode(listener);
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % partitions;
+    }
+
     protected static boolean notASubclassOfAnyClassInSet(Set set,  Class clazz)
     {
         for (Iterator iterator = set.iterator(); iterator.hasNext();)
@@ -99,6 +155,14 @@ class Policy
     }
 
     void dispatch(ServerNotification notification)
+    {
+        dispatch(notification, ALL_PARTITIONS);
+    }
+
+    /**
+     * Dispatches a notification only to the listeners of a partition.
+     */
+    void dispatch(ServerNotification notification, int partition)
     {
         if (null != notification)
         {
@@ -115,7 +179,11 @@ class Policy
                         found = true;
                         for (Iterator senders = ((Collection) eventToSenders.get(event)).iterator(); senders.hasNext();)
                         {
-                            ((Sender) senders.next()).dispatch(notification);
+                            Sender sender = (Sender) senders.next();
+                            if (partition == ALL_PARTITIONS || sender.getPartition() == partition)
+                            {
+                                sender.dispatch(notification);
+                            }
                         }
                     }
                 }
@@ -124,6 +192,30 @@ class Policy
         }
     }
 
+    /**
+     * @param notfnClass the class of the notification being dispatched
+     * @return a long where bit <i>n</i> is set if a listener in partition <i>n</i>
+     *         receives notifications of the given class
+     */
+    long getPartitions(Class notfnClass)
+    {
+        Long partitions = knownEventPartitions.get(notfnClass);
+        if (partitions == null)
+        {
+            long found = 0;
+            for (Map.Entry<Class<? extends ServerNotification>, Long> entry : eventToPartitions.entrySet())
+            {
+                if (entry.getKey().isAssignableFrom(notfnClass))
+                {
+                    found |= entry.getValue();
+                }
+            }
+            partitions = found;
+            knownEventPartitions.put(notfnClass, partitions);
+        }
+        return partitions;
+    }
+
     /**
      * This returns a very "conservative" value - it is true if the notification or any subclass would be
      * accepted.  So if it returns false then you can be sure that there is no need to send the
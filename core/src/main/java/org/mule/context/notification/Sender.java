@@ -19,20 +19,41 @@ class Sender
 
     private ListenerSubscriptionPair pair;
     private WildcardFilter subscriptionFilter;
+    private int partition;
+    private NotificationListenerStatistics statistics;
 
     Sender(ListenerSubscriptionPair pair)
+    {
+        this(pair, 0, null);
+    }
+
+    Sender(ListenerSubscriptionPair pair, int partition, NotificationListenerStatistics statistics)
     {
         this.pair = pair;
+        this.partition = partition;
+        this.statistics = statistics;
         subscriptionFilter = new WildcardFilter(pair.getSubscription());
         subscriptionFilter.setCaseSensitive(false);
     }
 
+    /**
+     * @return the dispatching partition of the listener
+     */
+    int getPartition()
+    {
+        return partition;
+    }
+
     public void dispatch(ServerNotification notification)
     {
         if (pair.isNullSubscription() ||
                 (null != notification.getResourceIdentifier() &&
                         subscriptionFilter.accept(notification.getResourceIdentifier())))
         {
+            if (statistics != null)
+            {
+                statistics.notificationDelivered(System.currentTimeMillis() - notification.getTimestamp());
+            }
             try
             {
                 pair.getListener().onNotification(notification);
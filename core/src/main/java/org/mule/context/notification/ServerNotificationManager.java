@@ -7,6 +7,7 @@
 package org.mule.context.notification;
 
 import org.mule.api.MuleContext;
+import org.mule.api.config.MuleProperties;
 import org.mule.api.context.MuleContextAware;
 import org.mule.api.context.WorkManager;
 import org.mule.api.context.notification.BlockingServerEvent;
@@ -22,9 +23,6 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.resource.spi.work.Work;
@@ -59,17 +57,71 @@ import org.apache.commons.logging.LogFactory;
  * <li>Disabling an event or interface disables all uses of that class or any subclass.</li>
  * <li>Enquiring whether an event is enabled returns true if any subclass is enabled.</li>
  * </ul>
+ *
+ * <p>Notifications that are not {@link BlockingServerEvent}s are delivered asynchronously.
+ * Listeners are spread over a number of partitions, each one with its own bounded buffer
+ * and its own dispatching thread, so a slow listener only delays the listeners of its
+ * partition, and a listener always receives notifications in the order they were fired.
+ * When the buffer of a partition is full the {@link NotificationOverflowPolicy} decides
+ * whether the firing thread waits or notifications are dropped. The number of partitions,
+ * their buffer size, the overflow policy and the sample rate of
+ * {@link NotificationOverflowPolicy#SAMPLE} can be set with the <code>mule.notifications.*</code>
+ * system properties or with the setters, before any notification is fired.</p>
  */
 public class ServerNotificationManager implements Work, Disposable, ServerNotificationHandler, MuleContextAware
 {
     public static final String NULL_SUBSCRIPTION = "NULL";
+
+    public static final String PARTITIONS_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "notifications.partitions";
+    public static final String BUFFER_SIZE_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "notifications.bufferSize";
+    public static final String OVERFLOW_POLICY_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "notifications.overflowPolicy";
+    public static final String SAMPLE_RATE_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "notifications.sampleRate";
+
+    public static final int DEFAULT_PARTITIONS = 1;
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    public static final NotificationOverflowPolicy DEFAULT_OVERFLOW_POLICY = NotificationOverflowPolicy.BLOCK;
+    public static final int DEFAULT_SAMPLE_RATE = 10;
+
     protected Log logger = LogFactory.getLog(getClass());
     private boolean dynamic = false;
     private Configuration configuration = new Configuration();
     private AtomicBoolean disposed = new AtomicBoolean(false);
-    private BlockingDeque<ServerNotification> eventQueue = new LinkedBlockingDeque<ServerNotification>();
+    private int partitionCount = Integer.getInteger(PARTITIONS_PROPERTY, DEFAULT_PARTITIONS);
+    private int bufferSize = Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE);
+    private NotificationOverflowPolicy overflowPolicy = getOverflowPolicyProperty();
+    private int sampleRate = Integer.getInteger(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE);
+    private volatile NotificationPartition[] partitions;
     private MuleContext muleContext;
 
+    public ServerNotificationManager()
+    {
+        validateSettings(partitionCount, bufferSize, sampleRate);
+        configuration.setPartitions(partitionCount);
+    }
+
+    private static NotificationOverflowPolicy getOverflowPolicyProperty()
+    {
+        String value = System.getProperty(OVERFLOW_POLICY_PROPERTY);
+        return value == null ? DEFAULT_OVERFLOW_POLICY : NotificationOverflowPolicy.fromString(value);
+    }
+
+    private static void validateSettings(int partitions, int bufferSize, int sampleRate)
+    {
+        if (partitions < 1 || partitions > Policy.MAX_PARTITIONS)
+        {
+            throw new IllegalArgumentException("Notification partitions must be between 1 and "
+                                               + Policy.MAX_PARTITIONS + ": " + partitions);
+        }
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Notification buffer size must be greater than zero: " + bufferSize);
+        }
+        if (sampleRate < 1)
+        {
+            throw new IllegalArgumentException("Notification sample rate must be greater than zero: " + sampleRate);
+        }
+    }
+
     @Override
     public boolean isNotificationDynamic()
     {
@@ -91,7 +143,11 @@ public class ServerNotificationManager implements Work, Disposable, ServerNotifi
     {
         try
         {
-            workManager.scheduleWork(this, WorkManager.INDEFINITE, null, workListener);
+            for (NotificationPartition partition : getPartitions())
+            {
+                partition.setScheduled(true);
+                workManager.scheduleWork(partition, WorkManager.INDEFINITE, null, workListener);
+            }
         }
         catch (WorkException e)
         {
@@ -99,6 +155,96 @@ public class ServerNotificationManager implements Work, Disposable, ServerNotifi
         }
     }
 
+    private NotificationPartition[] getPartitions()
+    {
+        NotificationPartition[] current = partitions;
+        if (current == null)
+        {
+            synchronized (this)
+            {
+                current = partitions;
+                if (current == null)
+                {
+                    current = new NotificationPartition[partitionCount];
+                    for (int i = 0; i < current.length; i++)
+                    {
+                        current[i] = new NotificationPartition(this, i, bufferSize, overflowPolicy, sampleRate);
+                    }
+                    partitions = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void checkPartitionsNotCreated()
+    {
+        if (partitions != null)
+        {
+            throw new IllegalStateException("Notification dispatching can not be changed once notifications were fired or the manager was started");
+        }
+    }
+
+    /**
+     * @param partitions number of partitions the listeners are spread over, each one
+     *            dispatched by its own thread. Between 1 and 64
+     */
+    public synchronized void setPartitions(int partitions)
+    {
+        checkPartitionsNotCreated();
+        validateSettings(partitions, bufferSize, sampleRate);
+        this.partitionCount = partitions;
+        configuration.setPartitions(partitions);
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    /**
+     * @param bufferSize maximum number of notifications waiting to be dispatched in
+     *            each partition
+     */
+    public synchronized void setBufferSize(int bufferSize)
+    {
+        checkPartitionsNotCreated();
+        validateSettings(partitionCount, bufferSize, sampleRate);
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    public synchronized void setOverflowPolicy(NotificationOverflowPolicy overflowPolicy)
+    {
+        checkPartitionsNotCreated();
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public NotificationOverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param sampleRate with {@link NotificationOverflowPolicy#SAMPLE}, one out of
+     *            this many notifications is kept when a buffer is full
+     */
+    public synchronized void setSampleRate(int sampleRate)
+    {
+        checkPartitionsNotCreated();
+        validateSettings(partitionCount, bufferSize, sampleRate);
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate()
+    {
+        return sampleRate;
+    }
+
     public void addInterfaceToType(Class<? extends ServerNotificationListener> iface, Class<? extends ServerNotification> event)
     {
         configuration.addInterfaceToType(iface, event);
@@ -199,7 +345,14 @@ public class ServerNotificationManager implements Work, Disposable, ServerNotifi
             {
                 try
                 {
-                    eventQueue.put(notification);
+                    NotificationPartition[] currentPartitions = getPartitions();
+                    long notifiedPartitions = configuration.getPolicy().getPartitions(notification.getClass());
+                    while (notifiedPartitions != 0)
+                    {
+                        int partition = Long.numberOfTrailingZeros(notifiedPartitions);
+                        currentPartitions[partition].enqueue(notification);
+                        notifiedPartitions &= notifiedPartitions - 1;
+                    }
                 }
                 catch (InterruptedException e)
                 {
@@ -238,6 +391,50 @@ public class ServerNotificationManager implements Work, Disposable, ServerNotifi
         configuration = null;
     }
 
+    /**
+     * @return delivery statistics of each registered listener
+     */
+    public Map<ServerNotificationListener, NotificationListenerStatistics> getListenerStatistics()
+    {
+        return configuration.getListenerStatistics();
+    }
+
+    /**
+     * @return number of notifications waiting to be dispatched
+     */
+    public int getPendingNotifications()
+    {
+        int pending = 0;
+        for (NotificationPartition partition : getPartitions())
+        {
+            pending += partition.getPendingNotifications();
+        }
+        return pending;
+    }
+
+    /**
+     * @return number of notifications discarded because of a full buffer
+     */
+    public long getDroppedNotifications()
+    {
+        long dropped = 0;
+        for (NotificationPartition partition : getPartitions())
+        {
+            dropped += partition.getDroppedNotifications();
+        }
+        return dropped;
+    }
+
+    boolean isDisposed()
+    {
+        return disposed.get();
+    }
+
+    long getDispatchTimeout()
+    {
+        return muleContext.getConfiguration().getDefaultQueueTimeout();
+    }
+
     protected void notifyListeners(ServerNotification notification)
     {
         if (!disposed.get())
@@ -250,39 +447,43 @@ public class ServerNotificationManager implements Work, Disposable, ServerNotifi
         }
     }
 
+    void notifyListeners(ServerNotification notification, int partition)
+    {
+        Configuration currentConfiguration = configuration;
+        if (!disposed.get() && currentConfiguration != null)
+        {
+            currentConfiguration.getPolicy().dispatch(notification, partition);
+        }
+        else
+        {
+            logger.warn("Notification not delivered after ServerNotificationManager disposal: " + notification);
+        }
+    }
+
     @Override
     public void release()
     {
         dispose();
     }
 
+    /**
+     * Dispatches the notifications of the first partition. {@link #start(WorkManager, WorkListener)}
+     * schedules a separate work for each partition instead.
+     */
     @Override
     public void run()
     {
-        while (!disposed.get())
-        {
-            try
-            {
-                int timeout = muleContext.getConfiguration().getDefaultQueueTimeout();
-                ServerNotification notification = eventQueue.poll(timeout, TimeUnit.MILLISECONDS);
-                if (notification != null)
-                {
-                    notifyListeners(notification);
-                }
-            }
-            catch (InterruptedException e)
-            {
-                Thread.currentThread().interrupt();
-            }
-        }
+        getPartitions()[0].run();
     }
 
     /**
-     * @return DIRECT reference to an event queue
+     * @return DIRECT reference to the buffer of the first partition
+     * @deprecated notifications are buffered by partition, use {@link #getPendingNotifications()}
      */
+    @Deprecated
     public Queue<ServerNotification> getEventQueue()
     {
-        return eventQueue;
+        return getPartitions()[0].getBuffer();
     }
 
     /**
@@ -32,6 +32,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -51,9 +54,23 @@ public class DefaultExpressionManager implements ExpressionManager, MuleContextA
 
     private static final String OBJECT_FOR_ENRICHMENT = "__object_for_enrichment";
 
+    protected static final int COMPILED_TEMPLATE_MAX_CACHE_SIZE = 1000;
+
     // default style parser
     private TemplateParser parser = TemplateParser.createMuleStyleParser();
 
+    // templates never change once compiled, so entries are only evicted by size
+    private final LoadingCache<String, TemplateParser.CompiledTemplate> compiledTemplatesCache = CacheBuilder.newBuilder()
+        .maximumSize(COMPILED_TEMPLATE_MAX_CACHE_SIZE)
+        .build(new CacheLoader<String, TemplateParser.CompiledTemplate>()
+        {
+            @Override
+            public TemplateParser.CompiledTemplate load(String key) throws Exception
+            {
+                return parser.compile(key);
+            }
+        });
+
     private ConcurrentMap evaluators = new ConcurrentHashMap(8);
     private ConcurrentMap enrichers = new ConcurrentHashMap(8);
 
@@ -448,7 +465,7 @@ public class DefaultExpressionManager implements ExpressionManager, MuleContextA
     public String parse(final String expression, final MuleMessage message, final boolean failIfNull)
         throws ExpressionRuntimeException
     {
-        return parser.parse(new TemplateParser.TemplateCallback()
+        return getCompiledTemplate(expression).resolve(new TemplateParser.TemplateCallback()
         {
             public Object match(String token)
             {
@@ -462,14 +479,14 @@ public class DefaultExpressionManager implements ExpressionManager, MuleContextA
                     return result;
                 }
             }
-        }, expression);
+        });
     }
 
     @Override
     public String parse(String expression, final MuleEvent event, final boolean failIfNull)
         throws ExpressionRuntimeException
     {
-        return parser.parse(new TemplateParser.TemplateCallback()
+        return getCompiledTemplate(expression).resolve(new TemplateParser.TemplateCallback()
         {
             public Object match(String token)
             {
@@ -483,7 +500,17 @@ public class DefaultExpressionManager implements ExpressionManager, MuleContextA
                     return result;
                 }
             }
-        }, expression);
+        });
+    }
+
+    /**
+     * Returns the template split into literal text and expressions. Templates are
+     * compiled once and cached, so parsing the same template for every event doesn't
+     * match the expression pattern again.
+     */
+    protected TemplateParser.CompiledTemplate getCompiledTemplate(String expression)
+    {
+        return compiledTemplatesCache.getUnchecked(expression);
     }
 
     /**
@@ -16,6 +16,8 @@ public class FlowConstructStatistics extends AbstractFlowConstructStatistics imp
     private static final long serialVersionUID = 5337576392583767442L;
     private final AtomicLong executionError = new AtomicLong(0);
     private final AtomicLong fatalError = new AtomicLong(0);
+    private final AtomicLong cacheHits = new AtomicLong(0);
+    private final AtomicLong cacheMisses = new AtomicLong(0);
     private int threadPoolSize = 0;
     protected final ComponentStatistics flowStatistics = new ComponentStatistics();
     
@@ -75,6 +77,16 @@ public class FlowConstructStatistics extends AbstractFlowConstructStatistics imp
         fatalError.addAndGet(1);
     }
 
+    public void incCacheHit()
+    {
+        cacheHits.addAndGet(1);
+    }
+
+    public void incCacheMiss()
+    {
+        cacheMisses.addAndGet(1);
+    }
+
     /**
      * Enable statistics logs (this is a dynamic parameter)
      */
@@ -90,6 +102,8 @@ public class FlowConstructStatistics extends AbstractFlowConstructStatistics imp
 
         executionError.set(0);
         fatalError.set(0);        
+        cacheHits.set(0);
+        cacheMisses.set(0);
         if (flowStatistics != null)
         {
             flowStatistics.clear();
@@ -141,6 +155,22 @@ public class FlowConstructStatistics extends AbstractFlowConstructStatistics imp
         return fatalError.get();
     }
 
+    /**
+     * @return the number of responses that were served from a cache
+     */
+    public long getCacheHits()
+    {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the number of responses that had to be processed because they were not in a cache
+     */
+    public long getCacheMisses()
+    {
+        return cacheMisses.get();
+    }
+
     public int getThreadPoolSize()
     {
         return threadPoolSize;
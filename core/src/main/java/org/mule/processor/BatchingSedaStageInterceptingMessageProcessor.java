@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.processor;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.config.ThreadingProfile;
+import org.mule.api.context.WorkManager;
+import org.mule.config.ChainedThreadingProfile;
+import org.mule.config.QueueProfile;
+import org.mule.management.stats.QueueStatistics;
+import org.mule.service.Pausable;
+import org.mule.util.queue.QueueSession;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+
+/**
+ * A SEDA stage where the queue is drained directly by a set of consumer threads, one
+ * per thread of the stage's threading profile. Each consumer takes a batch of events
+ * from the queue and processes them with the next {@link org.mule.api.processor.MessageProcessor}
+ * in its own thread, so events are not handed off again to another thread after being
+ * dequeued and there is no single polling thread limiting the throughput of the stage.
+ * <p/>
+ * A consumer waits up to the queue timeout for the first event of a batch, then keeps
+ * taking events until the batch is full or the max batch latency has elapsed since the
+ * first event was taken. With a max batch latency of zero a batch is made only of the
+ * events already waiting in the queue.
+ * <p/>
+ * As consumers never release their threads, the work manager of the stage is created
+ * without a buffer and with all of its threads kept alive.
+ */
+public class BatchingSedaStageInterceptingMessageProcessor extends SedaStageInterceptingMessageProcessor
+{
+
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    public static final long DEFAULT_MAX_BATCH_LATENCY = 0;
+
+    private final int consumers;
+    private final int batchSize;
+    private final long maxBatchLatency;
+    private volatile CountDownLatch consumersStopped;
+
+    public BatchingSedaStageInterceptingMessageProcessor(String threadName,
+                                                         String queueName,
+                                                         QueueProfile queueProfile,
+                                                         int queueTimeout,
+                                                         ThreadingProfile threadingProfile,
+                                                         QueueStatistics queueStatistics,
+                                                         MuleContext muleContext)
+    {
+        this(threadName, queueName, queueProfile, queueTimeout, threadingProfile, queueStatistics,
+            muleContext, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_LATENCY);
+    }
+
+    public BatchingSedaStageInterceptingMessageProcessor(String threadName,
+                                                         String queueName,
+                                                         QueueProfile queueProfile,
+                                                         int queueTimeout,
+                                                         ThreadingProfile threadingProfile,
+                                                         QueueStatistics queueStatistics,
+                                                         MuleContext muleContext,
+                                                         int batchSize,
+                                                         long maxBatchLatency)
+    {
+        super(threadName, queueName, queueProfile, queueTimeout,
+            createConsumersThreadingProfile(threadingProfile, muleContext), queueStatistics, muleContext);
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be greater than zero: " + batchSize);
+        }
+        if (maxBatchLatency < 0)
+        {
+            throw new IllegalArgumentException("Max batch latency must not be negative: " + maxBatchLatency);
+        }
+        this.consumers = Math.max(1, threadingProfile.getMaxThreadsActive());
+        this.batchSize = batchSize;
+        this.maxBatchLatency = maxBatchLatency;
+    }
+
+    private static ThreadingProfile createConsumersThreadingProfile(ThreadingProfile threadingProfile,
+                                                                    MuleContext muleContext)
+    {
+        ChainedThreadingProfile consumersThreadingProfile = new ChainedThreadingProfile(threadingProfile, false);
+        consumersThreadingProfile.setMaxBufferSize(0);
+        consumersThreadingProfile.setMaxThreadsIdle(threadingProfile.getMaxThreadsActive());
+        consumersThreadingProfile.setMuleContext(muleContext);
+        return consumersThreadingProfile;
+    }
+
+    @Override
+    protected void schedulePolling() throws MuleException, WorkException
+    {
+        CountDownLatch stopped = new CountDownLatch(consumers);
+        consumersStopped = stopped;
+        WorkManager workManager = workManagerSource.getWorkManager();
+        for (int i = 0; i < consumers; i++)
+        {
+            try
+            {
+                workManager.scheduleWork(new Consumer(stopped), WorkManager.INDEFINITE, null,
+                    new AsyncWorkListener(next));
+            }
+            catch (WorkException e)
+            {
+                // Consumers that were not scheduled will never count down
+                for (int j = i; j < consumers; j++)
+                {
+                    stopped.countDown();
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    protected void waitUntilPollingStops() throws InterruptedException
+    {
+        CountDownLatch stopped = consumersStopped;
+        if (stopped != null)
+        {
+            stopped.await();
+        }
+    }
+
+    /**
+     * Takes the next batch of events from the queue.
+     *
+     * @param batch list where the events are added
+     */
+    protected void dequeueBatch(List<MuleEvent> batch) throws Exception
+    {
+        MuleEvent event = dequeue();
+        if (event == null)
+        {
+            return;
+        }
+        batch.add(event);
+
+        long deadline = System.currentTimeMillis() + maxBatchLatency;
+        while (batch.size() < batchSize && queue != null)
+        {
+            long remaining = maxBatchLatency > 0 ? deadline - System.currentTimeMillis() : 0;
+            try
+            {
+                event = (MuleEvent) queue.poll(Math.max(remaining, 0));
+            }
+            catch (InterruptedException e)
+            {
+                // Events already taken are processed, next poll ends the consumer
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (event == null)
+            {
+                break;
+            }
+            if (lifecycleManager.isPhaseComplete(Pausable.PHASE_NAME))
+            {
+                queue.untake(event);
+                break;
+            }
+            batch.add(event);
+        }
+    }
+
+    protected void processDequeuedEvent(MuleEvent event)
+    {
+        if (isStatsEnabled())
+        {
+            queueStatistics.decQueuedEvent();
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(MessageFormat.format("{0}: Dequeued event from {1}", getStageDescription(),
+                getQueueName()));
+        }
+        new AsyncMessageProcessorWorker(event).run();
+    }
+
+    public int getConsumers()
+    {
+        return consumers;
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public long getMaxBatchLatency()
+    {
+        return maxBatchLatency;
+    }
+
+    private class Consumer implements Work
+    {
+
+        private final CountDownLatch stopped;
+
+        Consumer(CountDownLatch stopped)
+        {
+            this.stopped = stopped;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                consume();
+            }
+            finally
+            {
+                stopped.countDown();
+            }
+        }
+
+        private void consume()
+        {
+            QueueSession queueSession = muleContext.getQueueManager().getQueueSession();
+            List<MuleEvent> batch = new ArrayList<MuleEvent>(batchSize);
+
+            while (!lifecycleManager.getState().isStopped())
+            {
+                batch.clear();
+                try
+                {
+                    if (!waitUntilReadyToPoll(queueSession))
+                    {
+                        break;
+                    }
+                    dequeueBatch(batch);
+                }
+                catch (InterruptedException e)
+                {
+                    break;
+                }
+                catch (Exception e)
+                {
+                    muleContext.getExceptionListener().handleException(e);
+                }
+
+                for (MuleEvent event : batch)
+                {
+                    try
+                    {
+                        processDequeuedEvent(event);
+                    }
+                    catch (Exception e)
+                    {
+                        muleContext.getExceptionListener().handleException(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void release()
+        {
+            // no-op
+        }
+    }
+}
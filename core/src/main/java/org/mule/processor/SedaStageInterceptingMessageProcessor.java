@@ -175,33 +175,9 @@ public class SedaStageInterceptingMessageProcessor extends AsyncInterceptingMess
         {
             try
             {
-                // Wait if the service is paused
-                if (lifecycleManager.isPhaseComplete(Pausable.PHASE_NAME))
+                if (!waitUntilReadyToPoll(queueSession))
                 {
-                    waitIfPaused();
-
-                    // If service is resumed as part of stopping
-                    if (lifecycleManager.getState().isStopping())
-                    {
-                        if (!isQueuePersistent() && (queueSession != null && getQueueSize() > 0))
-                        {
-                            // Any messages in a non-persistent queue when paused
-                            // service is stopped are lost
-                            logger.warn(CoreMessages.stopPausedSedaStageNonPeristentQueueMessageLoss(
-                                getQueueSize(), getQueueName()));
-                        }
-                        break;
-                    }
-                }
-
-                // If we're doing a draining stop, read all events from the queue
-                // before stopping
-                if (lifecycleManager.getState().isStopping())
-                {
-                    if (isQueuePersistent() || queueSession == null || getQueueSize() <= 0)
-                    {
-                        break;
-                    }
+                    break;
                 }
 
                 event = (DefaultMuleEvent)dequeue();
@@ -271,6 +247,64 @@ public class SedaStageInterceptingMessageProcessor extends AsyncInterceptingMess
         running.set(false);
     }
 
+    /**
+     * Waits while the stage is paused and checks whether polling has to end because
+     * the stage is being stopped. When stopping, polling goes on until a non
+     * persistent queue is drained.
+     *
+     * @return true if the queue can be polled, false if polling has to end
+     */
+    protected boolean waitUntilReadyToPoll(QueueSession queueSession) throws InterruptedException
+    {
+        // Wait if the service is paused
+        if (lifecycleManager.isPhaseComplete(Pausable.PHASE_NAME))
+        {
+            waitIfPaused();
+
+            // If service is resumed as part of stopping
+            if (lifecycleManager.getState().isStopping())
+            {
+                if (!isQueuePersistent() && (queueSession != null && getQueueSize() > 0))
+                {
+                    // Any messages in a non-persistent queue when paused
+                    // service is stopped are lost
+                    logger.warn(CoreMessages.stopPausedSedaStageNonPeristentQueueMessageLoss(
+                        getQueueSize(), getQueueName()));
+                }
+                return false;
+            }
+        }
+
+        // If we're doing a draining stop, read all events from the queue
+        // before stopping
+        if (lifecycleManager.getState().isStopping())
+        {
+            if (isQueuePersistent() || queueSession == null || getQueueSize() <= 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the work that polls the queue, which is this stage itself.
+     */
+    protected void schedulePolling() throws MuleException, WorkException
+    {
+        workManagerSource.getWorkManager().scheduleWork(this, WorkManager.INDEFINITE, null,
+            new AsyncWorkListener(next));
+    }
+
+    /**
+     * Blocks until the work scheduled by {@link #schedulePolling()} stops polling the
+     * queue.
+     */
+    protected void waitUntilPollingStops() throws InterruptedException
+    {
+        running.whenFalse(null);
+    }
+
     /** Are the events in the SEDA queue persistent? */
     protected boolean isQueuePersistent()
     {
@@ -367,9 +401,7 @@ public class SedaStageInterceptingMessageProcessor extends AsyncInterceptingMess
                 SedaStageInterceptingMessageProcessor.super.start();
                 try
                 {
-                    workManagerSource.getWorkManager().scheduleWork(
-                        SedaStageInterceptingMessageProcessor.this, WorkManager.INDEFINITE, null,
-                        new AsyncWorkListener(next));
+                    schedulePolling();
                 }
                 catch (WorkException e)
                 {
@@ -390,7 +422,7 @@ public class SedaStageInterceptingMessageProcessor extends AsyncInterceptingMess
             {
                 try
                 {
-                    running.whenFalse(null);
+                    waitUntilPollingStops();
                 }
                 catch (InterruptedException e)
                 {
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.processor.strategy;
+
+import org.mule.api.MuleContext;
+import org.mule.api.config.ThreadingProfile;
+import org.mule.config.QueueProfile;
+import org.mule.processor.AsyncInterceptingMessageProcessor;
+import org.mule.processor.BatchingSedaStageInterceptingMessageProcessor;
+import org.mule.util.concurrent.ThreadNameHelper;
+import org.mule.util.queue.QueueManager;
+
+/**
+ * This strategy uses a {@link QueueManager} to decouple receipt and processing of messages, like
+ * {@link QueuedAsynchronousProcessingStrategy}, but the queue is drained in batches by as many consumer
+ * threads as the maximum number of threads, and each consumer processes the pipeline of message processors
+ * itself instead of scheduling its processing in another worker thread.
+ *
+ * @see BatchingSedaStageInterceptingMessageProcessor
+ */
+public class BatchingQueuedAsynchronousProcessingStrategy extends QueuedAsynchronousProcessingStrategy
+{
+
+    protected Integer batchSize;
+    protected Long maxBatchLatency;
+
+    @Override
+    protected AsyncInterceptingMessageProcessor createAsyncMessageProcessor(org.mule.api.processor.StageNameSource nameSource,
+                                                                            MuleContext muleContext)
+    {
+        Integer timeout = queueTimeout != null ? queueTimeout : muleContext.getConfiguration()
+            .getDefaultQueueTimeout();
+
+        initQueueStore(muleContext);
+
+        QueueProfile queueProfile = new QueueProfile(maxQueueSize, queueStore);
+        ThreadingProfile threadingProfile = createThreadingProfile(muleContext);
+        String stageName = nameSource.getName();
+        return new BatchingSedaStageInterceptingMessageProcessor(ThreadNameHelper.flow(muleContext, stageName),
+            stageName, queueProfile, timeout, threadingProfile, queueStatistics, muleContext,
+            batchSize != null ? batchSize : BatchingSedaStageInterceptingMessageProcessor.DEFAULT_BATCH_SIZE,
+            maxBatchLatency != null ? maxBatchLatency : BatchingSedaStageInterceptingMessageProcessor.DEFAULT_MAX_BATCH_LATENCY);
+    }
+
+    public Integer getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    public Long getMaxBatchLatency()
+    {
+        return maxBatchLatency;
+    }
+
+    public void setMaxBatchLatency(Long maxBatchLatency)
+    {
+        this.maxBatchLatency = maxBatchLatency;
+    }
+}
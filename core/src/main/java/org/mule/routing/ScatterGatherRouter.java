@@ -8,6 +8,8 @@
 package org.mule.routing;
 
 import org.mule.DefaultMuleEvent;
+import org.mule.OptimizedRequestContext;
+import org.mule.RequestContext;
 import org.mule.api.DefaultMuleException;
 import org.mule.api.ExceptionPayload;
 import org.mule.api.MuleEvent;
@@ -32,12 +34,14 @@ import org.mule.processor.chain.DefaultMessageProcessorChainBuilder;
 import org.mule.routing.outbound.MulticastingRouter;
 import org.mule.util.Preconditions;
 import org.mule.util.concurrent.ThreadNameHelper;
-import org.mule.work.ProcessingMuleEventWork;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.resource.spi.work.Work;
 import javax.resource.spi.work.WorkException;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -73,6 +77,15 @@ import org.slf4j.LoggerFactory;
  * customize the logic used to aggregate the route responses back into one single
  * element or to throw exception
  * <p>
+ * By default every invocation schedules one work per route and waits for all of
+ * them. For wide fan-outs, the number of routes processed at the same time can be
+ * limited with {@link #setMaxConcurrentRoutes(int)}, in which case the scheduled
+ * works take the pending routes as they finish the previous ones. Aggregation can
+ * start as soon as a number of routes complete successfully using
+ * {@link #setQuorum(int)}, and {@link #setUseCallerThread(boolean)} makes the
+ * invoking thread process routes too, saving a thread hand-off.
+ * </p>
+ * <p>
  * <b>EIP Reference:</b> <a
  * href="http://www.eaipatterns.com/BroadcastAggregate.html"<a/>
  * </p>
@@ -120,6 +133,31 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
      */
     private WorkManager workManager;
 
+    /**
+     * Maximum number of routes processed at the same time by the
+     * {@link #workManager}, across all the invocations of this router. Values
+     * lower or equal to zero means no limit
+     */
+    private int maxConcurrentRoutes = 0;
+
+    /**
+     * Number of routes that need to complete successfully before aggregating the
+     * responses. Routes that did not complete by then are left out of the
+     * aggregation. Values lower or equal to zero means all routes
+     */
+    private int quorum = 0;
+
+    /**
+     * Whether or not the thread invoking this router also processes routes
+     * instead of only waiting for them
+     */
+    private boolean useCallerThread = false;
+
+    /**
+     * Limits the routes processed at the same time when {@link #maxConcurrentRoutes} is set
+     */
+    private Semaphore routePermits;
+
     @Override
     public MuleEvent process(MuleEvent event) throws MuleException
     {
@@ -131,8 +169,15 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
         MuleMessage message = event.getMessage();
         AbstractRoutingStrategy.validateMessageIsNotConsumable(event, message);
 
-        List<ProcessingMuleEventWork> works = executeWork(event);
-        MuleEvent response = processResponses(event, works);
+        RoutesInvocation invocation = new RoutesInvocation(event);
+        scheduleRoutes(invocation);
+
+        if (useCallerThread)
+        {
+            processRoutesInCallerThread(invocation);
+        }
+
+        MuleEvent response = aggregationStrategy.aggregate(new AggregationContext(event, invocation.awaitResponses()));
 
         if (response instanceof DefaultMuleEvent)
         {
@@ -145,87 +190,92 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
         return response;
     }
 
-    private MuleEvent processResponses(MuleEvent event, List<ProcessingMuleEventWork> works)
-        throws MuleException
+    /**
+     * Schedules the works that process the routes. Each work keeps processing
+     * pending routes of the invocation until there are none left, so when the
+     * number of concurrent routes is limited, less works than routes are scheduled.
+     */
+    private void scheduleRoutes(RoutesInvocation invocation) throws MuleException
     {
-        List<MuleEvent> responses = new ArrayList<MuleEvent>(works.size());
+        int works = useCallerThread ? routes.size() - 1 : routes.size();
 
-        long remainingTimeout = timeout;
-        for (int routeIndex = 0; routeIndex < works.size(); routeIndex++)
+        for (int i = 0; i < works; i++)
         {
-            MuleEvent response = null;
-            Exception exception = null;
-
-            ProcessingMuleEventWork work = works.get(routeIndex);
-            MessageProcessor route = routes.get(routeIndex);
-
-            long startedAt = System.currentTimeMillis();
-            try
-            {
-                response = work.getResult(remainingTimeout, TimeUnit.MILLISECONDS);
-            }
-            catch (ResponseTimeoutException e)
-            {
-                exception = e;
-            }
-            catch (InterruptedException e)
-            {
-                throw new DefaultMuleException(MessageFactory.createStaticMessage(String.format(
-                    "Was interrupted while waiting for route %d", routeIndex)), e);
-            }
-            catch (Exception e)
+            if (routePermits != null && !routePermits.tryAcquire())
             {
-                exception = new DispatchException(MessageFactory.createStaticMessage(String.format(
-                    "route number %d failed to be executed", routeIndex)), event, route, e);
-            }
-
-            remainingTimeout -= System.currentTimeMillis() - startedAt;
+                if (i > 0 || useCallerThread)
+                {
+                    // Routes already running will process the pending ones
+                    break;
+                }
 
-            if (exception != null)
-            {
-                if (logger.isDebugEnabled())
+                if (!acquireRoutePermit(invocation))
                 {
-                    logger.debug(
-                        String.format("route %d generated exception for MuleEvent %s", routeIndex,
-                            event.getId()), exception);
+                    return;
                 }
-                response = DefaultMuleEvent.copy(event);
-                response.getMessage().setExceptionPayload(new DefaultExceptionPayload(exception));
             }
-            else
+
+            try
             {
-                if (logger.isDebugEnabled())
-                {
-                    logger.debug(String.format("route %d executed successfully for event %s", routeIndex,
-                        event.getId()));
-                }
+                workManager.scheduleWork(new RoutesWork(invocation));
             }
+            catch (WorkException e)
+            {
+                releaseRoutePermit();
+                invocation.cancel();
+                throw new DefaultMuleException(
+                    MessageFactory.createStaticMessage("Could not schedule work for route"), e);
+            }
+        }
+    }
 
-            responses.add(response);
+    private boolean acquireRoutePermit(RoutesInvocation invocation) throws MuleException
+    {
+        try
+        {
+            return routePermits.tryAcquire(invocation.getRemainingTimeout(), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            invocation.cancel();
+            throw new DefaultMuleException(
+                MessageFactory.createStaticMessage("Was interrupted while waiting to process routes"), e);
         }
+    }
 
-        return aggregationStrategy.aggregate(new AggregationContext(event, responses));
+    private void releaseRoutePermit()
+    {
+        if (routePermits != null)
+        {
+            routePermits.release();
+        }
     }
 
-    private List<ProcessingMuleEventWork> executeWork(MuleEvent event) throws MuleException
+    /**
+     * Processes pending routes in the invoking thread, which takes a route permit
+     * like the scheduled works do. If no permit is available before the timeout
+     * expires, the routes are left to the scheduled works.
+     */
+    private void processRoutesInCallerThread(RoutesInvocation invocation) throws MuleException
     {
-        List<ProcessingMuleEventWork> works = new ArrayList<ProcessingMuleEventWork>(routes.size());
+        if (routePermits != null && !acquireRoutePermit(invocation))
+        {
+            return;
+        }
+
+        MuleEvent currentEvent = RequestContext.getEvent();
         try
         {
-            for (final MessageProcessor route : routes)
+            while (invocation.processNextRoute())
             {
-                ProcessingMuleEventWork work = new ProcessingMuleEventWork(route, event);
-                workManager.scheduleWork(work);
-                works.add(work);
+                // keeps processing routes until there are none left
             }
         }
-        catch (WorkException e)
+        finally
         {
-            throw new DefaultMuleException(
-                MessageFactory.createStaticMessage("Could not schedule work for route"), e);
+            releaseRoutePermit();
+            OptimizedRequestContext.unsafeSetEvent(currentEvent);
         }
-
-        return works;
     }
 
     @Override
@@ -250,6 +300,11 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
                 timeout = Long.MAX_VALUE;
             }
 
+            if (maxConcurrentRoutes > 0)
+            {
+                routePermits = new Semaphore(maxConcurrentRoutes);
+            }
+
             workManager = threadingProfile.createWorkManager(
                 ThreadNameHelper.getPrefix(muleContext) + "ScatterGatherWorkManager",
                 muleContext.getConfiguration().getShutdownTimeout());
@@ -317,6 +372,7 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
     private void buildRouteChains() throws MuleException
     {
         Preconditions.checkState(routes.size() > 1, "At least 2 routes are required for ScatterGather");
+        Preconditions.checkState(quorum <= routes.size(), "ScatterGather quorum cannot be greater than the number of routes");
         routeChains = new ArrayList<MessageProcessor>(routes.size());
         for (MessageProcessor route : routes)
         {
@@ -355,4 +411,245 @@ public class ScatterGatherRouter extends AbstractMessageProcessorOwner implement
     {
         this.routes = routes;
     }
+
+    public void setMaxConcurrentRoutes(int maxConcurrentRoutes)
+    {
+        this.maxConcurrentRoutes = maxConcurrentRoutes;
+    }
+
+    public void setQuorum(int quorum)
+    {
+        this.quorum = quorum;
+    }
+
+    public void setUseCallerThread(boolean useCallerThread)
+    {
+        this.useCallerThread = useCallerThread;
+    }
+
+    /**
+     * Keeps the state of the routes processed for one event. Routes are taken in
+     * order by the threads processing them, and the responses are collected
+     * until all of them complete, the {@link #quorum} is reached or the
+     * {@link #timeout} expires.
+     */
+    private class RoutesInvocation
+    {
+
+        private final MuleEvent event;
+        private final MuleEvent[] routeEvents;
+        private final MuleEvent[] responses;
+        private final Exception[] exceptions;
+        private final boolean[] completed;
+        private final AtomicInteger nextRoute = new AtomicInteger();
+        private final long startedAt = System.currentTimeMillis();
+        private int completedRoutes = 0;
+        private int successfulRoutes = 0;
+        private volatile boolean finished = false;
+
+        private RoutesInvocation(MuleEvent event)
+        {
+            this.event = event;
+            int size = routes.size();
+            routeEvents = new MuleEvent[size];
+            responses = new MuleEvent[size];
+            exceptions = new Exception[size];
+            completed = new boolean[size];
+
+            for (int i = 0; i < size; i++)
+            {
+                routeEvents[i] = DefaultMuleEvent.copy(event);
+            }
+        }
+
+        /**
+         * Processes the next pending route
+         *
+         * @return false if there are no more routes to process
+         */
+        private boolean processNextRoute()
+        {
+            if (finished || isDone())
+            {
+                return false;
+            }
+
+            int routeIndex = nextRoute.getAndIncrement();
+            if (routeIndex >= routeEvents.length)
+            {
+                return false;
+            }
+
+            MessageProcessor route = routes.get(routeIndex);
+            MuleEvent routeEvent = routeEvents[routeIndex];
+            OptimizedRequestContext.unsafeSetEvent(routeEvent);
+
+            MuleEvent response = null;
+            Exception exception = null;
+            try
+            {
+                response = route.process(routeEvent);
+            }
+            catch (Exception e)
+            {
+                exception = new DispatchException(MessageFactory.createStaticMessage(String.format(
+                    "route number %d failed to be executed", routeIndex)), event, route, e);
+            }
+
+            complete(routeIndex, response, exception);
+            return true;
+        }
+
+        private synchronized void complete(int routeIndex, MuleEvent response, Exception exception)
+        {
+            responses[routeIndex] = response;
+            exceptions[routeIndex] = exception;
+            completed[routeIndex] = true;
+            completedRoutes++;
+            if (exception == null)
+            {
+                successfulRoutes++;
+            }
+            notifyAll();
+        }
+
+        private synchronized void cancel()
+        {
+            finished = true;
+            notifyAll();
+        }
+
+        private long getRemainingTimeout()
+        {
+            return Math.max(0, timeout - (System.currentTimeMillis() - startedAt));
+        }
+
+        private synchronized boolean isDone()
+        {
+            return completedRoutes == routeEvents.length || isQuorumReached();
+        }
+
+        private boolean isQuorumReached()
+        {
+            return quorum > 0 && successfulRoutes >= quorum;
+        }
+
+        /**
+         * Waits for the routes to complete. Once the quorum is reached, the routes
+         * that have not completed yet are left out of the responses. Routes that
+         * don't complete before the timeout get a {@link ResponseTimeoutException}.
+         *
+         * @return the responses in the order of the routes
+         */
+        private synchronized List<MuleEvent> awaitResponses() throws MuleException
+        {
+            try
+            {
+                long remainingTimeout = getRemainingTimeout();
+                while (!isDone() && remainingTimeout > 0)
+                {
+                    TimeUnit.MILLISECONDS.timedWait(this, remainingTimeout);
+                    remainingTimeout = getRemainingTimeout();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                throw new DefaultMuleException(MessageFactory.createStaticMessage(
+                    "Was interrupted while waiting for routes"), e);
+            }
+            finally
+            {
+                finished = true;
+            }
+
+            boolean partialResults = isQuorumReached();
+            List<Integer> abandonedRoutes = new ArrayList<Integer>();
+            List<MuleEvent> routeResponses = new ArrayList<MuleEvent>(routeEvents.length);
+            for (int routeIndex = 0; routeIndex < routeEvents.length; routeIndex++)
+            {
+                MuleEvent response = responses[routeIndex];
+                Exception exception = exceptions[routeIndex];
+
+                if (!completed[routeIndex])
+                {
+                    if (partialResults)
+                    {
+                        abandonedRoutes.add(routeIndex);
+                        continue;
+                    }
+                    exception = new ResponseTimeoutException(
+                        MessageFactory.createStaticMessage("Processing did not completed in time"),
+                        routeEvents[routeIndex], routes.get(routeIndex));
+                }
+
+                if (exception != null)
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(
+                            String.format("route %d generated exception for MuleEvent %s", routeIndex,
+                                event.getId()), exception);
+                    }
+                    response = DefaultMuleEvent.copy(event);
+                    response.getMessage().setExceptionPayload(new DefaultExceptionPayload(exception));
+                }
+                else
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(String.format("route %d executed successfully for event %s", routeIndex,
+                            event.getId()));
+                    }
+                }
+
+                routeResponses.add(response);
+            }
+
+            if (!abandonedRoutes.isEmpty() && logger.isInfoEnabled())
+            {
+                logger.info(String.format(
+                    "Quorum of %d routes reached for event %s, routes %s did not complete and were left out of the aggregation",
+                    quorum, event.getId(), abandonedRoutes));
+            }
+
+            return routeResponses;
+        }
+    }
+
+    /**
+     * Processes routes of an invocation until there are none left, releasing the
+     * route permit at the end
+     */
+    private class RoutesWork implements Work
+    {
+
+        private final RoutesInvocation invocation;
+
+        private RoutesWork(RoutesInvocation invocation)
+        {
+            this.invocation = invocation;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (invocation.processNextRoute())
+                {
+                    // keeps processing routes until there are none left
+                }
+            }
+            finally
+            {
+                releaseRoutePermit();
+            }
+        }
+
+        @Override
+        public void release()
+        {
+            // no-op
+        }
+    }
 }
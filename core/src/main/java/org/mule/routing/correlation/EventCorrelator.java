@@ -71,9 +71,15 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
      */
     protected ListableObjectStore<EventGroup> eventGroups;
 
-    protected final Object groupsLock = new Object();
+    private static final int GROUP_LOCK_STRIPES = 32;
 
-    // @GuardedBy groupsLock
+    /**
+     * Locks used to evaluate one group at a time. Each group is guarded by the stripe selected by its
+     * id, so events of different groups are usually processed concurrently.
+     */
+    private final Object[] groupLocks;
+
+    // @GuardedBy the group lock of each id
     protected ObjectStore<Long> processedGroups = null;
 
     private long timeout = -1; // undefined
@@ -140,6 +146,22 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
                                                                                           + ".eventGroups",
                                                                                           persistentStores);
         this.flowConstruct = flowConstruct;
+        groupLocks = new Object[GROUP_LOCK_STRIPES];
+        for (int i = 0; i < GROUP_LOCK_STRIPES; i++)
+        {
+            groupLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param groupId the id of a correlation group
+     * @return the lock that guards the given group
+     */
+    protected Object getGroupLock(Object groupId)
+    {
+        int hash = groupId.hashCode();
+        hash ^= (hash >>> 16);
+        return groupLocks[hash & (GROUP_LOCK_STRIPES - 1)];
     }
 
     public void forceGroupExpiry(String groupId) throws MessagingException
@@ -186,8 +208,9 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
             throw new RoutingException(CoreMessages.noCorrelationId(), event, timeoutMessageProcessor);
         }
 
-        // spinloop for the EventGroup lookup
-        while (true)
+        // ensure that only one thread at a time evaluates this EventGroup, the lookup must be
+        // done holding the lock so the group can't be aggregated and removed in between
+        synchronized (getGroupLock(groupId))
         {
             try
             {
@@ -236,54 +259,50 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
                 }
             }
 
-            // ensure that only one thread at a time evaluates this EventGroup
-            synchronized (groupsLock)
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Adding event to aggregator group: " + groupId);
+            }
+
+            // add the incoming event to the group
+            try
+            {
+                group.addEvent(event);
+            }
+            catch (ObjectStoreException e)
+            {
+                throw new RoutingException(event, timeoutMessageProcessor, e);
+            }
+
+            // check to see if the event group is ready to be aggregated
+            if (callback.shouldAggregateEvents(group))
             {
-                if (logger.isDebugEnabled())
+                // create the response event
+                MuleEvent returnEvent = callback.aggregateEvents(group);
+                returnEvent.getMessage().setCorrelationId(groupId);
+                String rootId = group.getCommonRootId();
+                if (rootId != null)
                 {
-                    logger.debug("Adding event to aggregator group: " + groupId);
+                    returnEvent.getMessage().setMessageRootId(rootId);
                 }
 
-                // add the incoming event to the group
+                // remove the eventGroup as no further message will be received
+                // for this group once we aggregate
                 try
                 {
-                    group.addEvent(event);
+                    this.removeEventGroup(group);
+                    group.clear();
                 }
                 catch (ObjectStoreException e)
                 {
                     throw new RoutingException(event, timeoutMessageProcessor, e);
                 }
 
-                // check to see if the event group is ready to be aggregated
-                if (callback.shouldAggregateEvents(group))
-                {
-                    // create the response event
-                    MuleEvent returnEvent = callback.aggregateEvents(group);
-                    returnEvent.getMessage().setCorrelationId(groupId);
-                    String rootId = group.getCommonRootId();
-                    if (rootId != null)
-                    {
-                        returnEvent.getMessage().setMessageRootId(rootId);
-                    }
-
-                    // remove the eventGroup as no further message will be received
-                    // for this group once we aggregate
-                    try
-                    {
-                        this.removeEventGroup(group);
-                        group.clear();
-                    }
-                    catch (ObjectStoreException e)
-                    {
-                        throw new RoutingException(event, timeoutMessageProcessor, e);
-                    }
-
-                    return returnEvent;
-                }
-                else
-                {
-                    return null;
-                }
+                return returnEvent;
+            }
+            else
+            {
+                return null;
             }
         }
     }
@@ -328,13 +347,16 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
     protected void removeEventGroup(EventGroup group) throws ObjectStoreException
     {
         final Object groupId = group.getGroupId();
-        eventGroups.remove((Serializable) groupId);
-        addProcessedGroup(groupId);
+        synchronized (getGroupLock(groupId))
+        {
+            eventGroups.remove((Serializable) groupId);
+            addProcessedGroup(groupId);
+        }
     }
 
     protected void addProcessedGroup(Object id) throws ObjectStoreException
     {
-        synchronized (groupsLock)
+        synchronized (getGroupLock(id))
         {
             processedGroups.store((Serializable) id, System.currentTimeMillis());
         }
@@ -342,7 +364,7 @@ public class EventCorrelator implements Startable, Stoppable, Disposable
 
     protected boolean isGroupAlreadyProcessed(Object id) throws ObjectStoreException
     {
-        synchronized (groupsLock)
+        synchronized (getGroupLock(id))
         {
             return processedGroups.contains((Serializable) id);
         }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import org.mule.api.MuleContext;
+import org.mule.api.context.MuleContextAware;
+import org.mule.api.serialization.ObjectSerializer;
+import org.mule.util.store.DeserializationPostInitialisable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.SerializationException;
+
+/**
+ * Base class for {@link ObjectSerializer} implementations. Validates the arguments,
+ * closes the streams, wraps any failure in a {@link SerializationException} and
+ * initialises the {@link DeserializationPostInitialisable} objects, so implementations
+ * only have to write and read the objects.
+ */
+public abstract class AbstractObjectSerializer implements ObjectSerializer, MuleContextAware
+{
+
+    protected MuleContext muleContext;
+
+    @Override
+    public byte[] serialize(Object object) throws SerializationException
+    {
+        try
+        {
+            return doSerialize(object);
+        }
+        catch (SerializationException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException(e);
+        }
+    }
+
+    @Override
+    public void serialize(Object object, OutputStream out) throws SerializationException
+    {
+        if (out == null)
+        {
+            throw new IllegalArgumentException("The OutputStream must not be null");
+        }
+
+        try
+        {
+            doSerialize(object, out);
+        }
+        catch (SerializationException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException(e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes) throws SerializationException
+    {
+        return deserialize(bytes, getExecutionClassLoader());
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, ClassLoader classLoader) throws SerializationException
+    {
+        if (bytes == null)
+        {
+            throw new IllegalArgumentException("The byte[] must not be null");
+        }
+        if (classLoader == null)
+        {
+            throw new IllegalArgumentException("The ClassLoader must not be null");
+        }
+
+        try
+        {
+            return postInitialise(doDeserialize(bytes, classLoader));
+        }
+        catch (SerializationException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException(e);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in) throws SerializationException
+    {
+        return deserialize(in, getExecutionClassLoader());
+    }
+
+    @Override
+    public <T> T deserialize(InputStream in, ClassLoader classLoader) throws SerializationException
+    {
+        if (in == null)
+        {
+            throw new IllegalArgumentException("The InputStream must not be null");
+        }
+        if (classLoader == null)
+        {
+            throw new IllegalArgumentException("The ClassLoader must not be null");
+        }
+
+        try
+        {
+            return postInitialise(doDeserialize(in, classLoader));
+        }
+        catch (SerializationException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new SerializationException(e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Serializes an object into a byte array. By default the object is written with
+     * {@link #doSerialize(Object, OutputStream)}.
+     */
+    protected byte[] doSerialize(Object object) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        doSerialize(object, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes an object into a stream. The stream must not be closed.
+     */
+    protected abstract void doSerialize(Object object, OutputStream out) throws Exception;
+
+    /**
+     * Reads an object from a byte array. By default the object is read with
+     * {@link #doDeserialize(InputStream, ClassLoader)}.
+     */
+    protected Object doDeserialize(byte[] bytes, ClassLoader classLoader) throws Exception
+    {
+        return doDeserialize(new ByteArrayInputStream(bytes), classLoader);
+    }
+
+    /**
+     * Reads an object from a stream. The stream must not be closed.
+     */
+    protected abstract Object doDeserialize(InputStream in, ClassLoader classLoader) throws Exception;
+
+    @SuppressWarnings("unchecked")
+    private <T> T postInitialise(Object object) throws Exception
+    {
+        if (object instanceof DeserializationPostInitialisable)
+        {
+            DeserializationPostInitialisable.Implementation.init(object, muleContext);
+        }
+        return (T) object;
+    }
+
+    protected ClassLoader getExecutionClassLoader()
+    {
+        if (muleContext != null)
+        {
+            return muleContext.getExecutionClassLoader();
+        }
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    public void setMuleContext(MuleContext muleContext)
+    {
+        this.muleContext = muleContext;
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import org.mule.serialization.CompactObjectSerializer.Registration;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+
+/**
+ * Reads objects written by {@link CompactObjectOutput} directly from a byte array.
+ */
+class CompactObjectInput extends InputStream implements ObjectInput
+{
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CompactObjectSerializer serializer;
+    private final byte[] buffer;
+    private final ClassLoader classLoader;
+    private int position;
+
+    CompactObjectInput(CompactObjectSerializer serializer, byte[] buffer, int offset, ClassLoader classLoader)
+    {
+        this.serializer = serializer;
+        this.buffer = buffer;
+        this.position = offset;
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public Object readObject() throws IOException, ClassNotFoundException
+    {
+        int type = readUnsignedByte();
+        switch (type)
+        {
+            case CompactObjectSerializer.TYPE_NULL:
+                return null;
+            case CompactObjectSerializer.TYPE_STRING:
+                return readString();
+            case CompactObjectSerializer.TYPE_TRUE:
+                return Boolean.TRUE;
+            case CompactObjectSerializer.TYPE_FALSE:
+                return Boolean.FALSE;
+            case CompactObjectSerializer.TYPE_INTEGER:
+                int intValue = readVarInt();
+                return (intValue >>> 1) ^ -(intValue & 1);
+            case CompactObjectSerializer.TYPE_LONG:
+                return unZigZag(readVarLong());
+            case CompactObjectSerializer.TYPE_DOUBLE:
+                return readDouble();
+            case CompactObjectSerializer.TYPE_FLOAT:
+                return readFloat();
+            case CompactObjectSerializer.TYPE_SHORT:
+                return readShort();
+            case CompactObjectSerializer.TYPE_BYTE:
+                return readByte();
+            case CompactObjectSerializer.TYPE_CHARACTER:
+                return readChar();
+            case CompactObjectSerializer.TYPE_BYTES:
+                byte[] bytes = new byte[readVarInt()];
+                readFully(bytes);
+                return bytes;
+            case CompactObjectSerializer.TYPE_DATE:
+                return new Date(unZigZag(readVarLong()));
+            case CompactObjectSerializer.TYPE_BIG_DECIMAL:
+                int scale = readVarInt();
+                return new BigDecimal(readBigInteger(), (scale >>> 1) ^ -(scale & 1));
+            case CompactObjectSerializer.TYPE_BIG_INTEGER:
+                return readBigInteger();
+            case CompactObjectSerializer.TYPE_ARRAY_LIST:
+                int size = readVarInt();
+                return readElements(new ArrayList<Object>(size), size);
+            case CompactObjectSerializer.TYPE_LINKED_LIST:
+                return readElements(new LinkedList<Object>(), readVarInt());
+            case CompactObjectSerializer.TYPE_HASH_SET:
+                size = readVarInt();
+                return readElements(new HashSet<Object>(capacityFor(size)), size);
+            case CompactObjectSerializer.TYPE_LINKED_HASH_SET:
+                size = readVarInt();
+                return readElements(new LinkedHashSet<Object>(capacityFor(size)), size);
+            case CompactObjectSerializer.TYPE_HASH_MAP:
+                return readMap();
+            case CompactObjectSerializer.TYPE_REGISTERED:
+            case CompactObjectSerializer.TYPE_BUILT_IN:
+                int id = readVarInt();
+                Registration registration = type == CompactObjectSerializer.TYPE_REGISTERED ? serializer.getRegistration(id) : serializer.getBuiltInRegistration(id);
+                if (registration == null)
+                {
+                    throw new InvalidClassException("No class registered with id " + id);
+                }
+                return registration.serializer.read(this);
+            case CompactObjectSerializer.TYPE_SERIALIZED:
+                return readSerialized();
+            default:
+                throw new StreamCorruptedException("Unknown value type: " + type);
+        }
+    }
+
+    private Collection<Object> readElements(Collection<Object> collection, int size) throws IOException, ClassNotFoundException
+    {
+        for (int i = 0; i < size; i++)
+        {
+            collection.add(readObject());
+        }
+        return collection;
+    }
+
+    private Map<Object, Object> readMap() throws IOException, ClassNotFoundException
+    {
+        int size = readVarInt();
+        Map<Object, Object> map = new HashMap<Object, Object>(capacityFor(size));
+        for (int i = 0; i < size; i++)
+        {
+            Object key = readObject();
+            map.put(key, readObject());
+        }
+        return map;
+    }
+
+    private Object readSerialized() throws IOException, ClassNotFoundException
+    {
+        int length = readInt();
+        ensureAvailable(length);
+        ByteArrayInputStream serialized = new ByteArrayInputStream(buffer, position, length);
+        position += length;
+        return new ClassLoaderObjectInputStream(classLoader, serialized).readObject();
+    }
+
+    private BigInteger readBigInteger() throws IOException
+    {
+        byte[] bytes = new byte[readVarInt()];
+        readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private static int capacityFor(int size)
+    {
+        return Math.max((int) (size / .75f) + 1, 16);
+    }
+
+    private static long unZigZag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() throws IOException
+    {
+        int length = readVarInt();
+        ensureAvailable(length);
+        String value = new String(buffer, position, length, UTF_8);
+        position += length;
+        return value;
+    }
+
+    int readVarInt() throws IOException
+    {
+        return (int) readVarLong();
+    }
+
+    long readVarLong() throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length number");
+    }
+
+    private void ensureAvailable(int length) throws EOFException
+    {
+        if (length < 0 || position + length > buffer.length)
+        {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public int read()
+    {
+        return position < buffer.length ? buffer[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length)
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+        int available = buffer.length - position;
+        if (available <= 0)
+        {
+            return -1;
+        }
+        int read = Math.min(length, available);
+        System.arraycopy(buffer, position, bytes, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        int skipped = (int) Math.max(0, Math.min(n, buffer.length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return buffer.length - position;
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException
+    {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int offset, int length) throws IOException
+    {
+        ensureAvailable(length);
+        System.arraycopy(buffer, position, bytes, offset, length);
+        position += length;
+    }
+
+    @Override
+    public int skipBytes(int n)
+    {
+        return (int) skip(n);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException
+    {
+        return readUnsignedByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException
+    {
+        return (byte) readUnsignedByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException
+    {
+        ensureAvailable(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException
+    {
+        return (short) readUnsignedShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException
+    {
+        ensureAvailable(2);
+        int value = ((buffer[position] & 0xFF) << 8) | (buffer[position + 1] & 0xFF);
+        position += 2;
+        return value;
+    }
+
+    @Override
+    public char readChar() throws IOException
+    {
+        return (char) readUnsignedShort();
+    }
+
+    @Override
+    public int readInt() throws IOException
+    {
+        ensureAvailable(4);
+        int value = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+                    | ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+        position += 4;
+        return value;
+    }
+
+    @Override
+    public long readLong() throws IOException
+    {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public float readFloat() throws IOException
+    {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException
+    {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine()
+    {
+        throw new UnsupportedOperationException("readLine");
+    }
+
+    /**
+     * Reads a string written by {@link CompactObjectOutput#writeUTF(String)}
+     */
+    @Override
+    public String readUTF() throws IOException
+    {
+        return readString();
+    }
+
+    @Override
+    public void close()
+    {
+        // nothing to close
+    }
+}
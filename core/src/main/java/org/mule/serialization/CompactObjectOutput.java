@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import static org.mule.serialization.CompactObjectSerializer.HEADER_LENGTH;
+import static org.mule.serialization.CompactObjectSerializer.MAGIC;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_ARRAY_LIST;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_BIG_DECIMAL;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_BIG_INTEGER;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_BYTE;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_BYTES;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_CHARACTER;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_DATE;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_DOUBLE;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_FALSE;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_FLOAT;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_HASH_MAP;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_HASH_SET;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_INTEGER;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_LINKED_HASH_SET;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_LINKED_LIST;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_LONG;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_NULL;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_SERIALIZED;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_SHORT;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_STRING;
+import static org.mule.serialization.CompactObjectSerializer.TYPE_TRUE;
+import static org.mule.serialization.CompactObjectSerializer.VERSION;
+
+import org.mule.serialization.CompactObjectSerializer.Registration;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Writes objects in the {@link CompactObjectSerializer} format into a growable buffer
+ * that is reused between serializations.
+ */
+class CompactObjectOutput extends OutputStream implements ObjectOutput
+{
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INITIAL_CAPACITY = 512;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int position;
+
+    /**
+     * Containers and registered objects being written, used to detect cycles
+     */
+    private final Map<Object, Object> parents = new IdentityHashMap<Object, Object>();
+
+    private CompactObjectSerializer serializer;
+
+    void attach(CompactObjectSerializer serializer)
+    {
+        this.serializer = serializer;
+        position = 0;
+        parents.clear();
+    }
+
+    void detach()
+    {
+        // Do not keep the serializer and its registrations referenced from the thread
+        serializer = null;
+        parents.clear();
+    }
+
+    int capacity()
+    {
+        return buffer.length;
+    }
+
+    byte[] toByteArray()
+    {
+        byte[] bytes = new byte[position];
+        System.arraycopy(buffer, 0, bytes, 0, position);
+        return bytes;
+    }
+
+    void writeTo(OutputStream out) throws IOException
+    {
+        out.write(buffer, 0, position);
+    }
+
+    /**
+     * Writes the header and a top level object
+     */
+    void writeRoot(Object object) throws IOException
+    {
+        write(MAGIC);
+        write(VERSION);
+        try
+        {
+            writeObject(object);
+        }
+        catch (CyclicReferenceException e)
+        {
+            position = HEADER_LENGTH;
+            parents.clear();
+            writeSerialized(object);
+        }
+    }
+
+    @Override
+    public void writeObject(Object value) throws IOException
+    {
+        if (value == null)
+        {
+            write(TYPE_NULL);
+            return;
+        }
+
+        Class<?> type = value.getClass();
+        if (type == String.class)
+        {
+            write(TYPE_STRING);
+            writeString((String) value);
+        }
+        else if (type == Integer.class)
+        {
+            write(TYPE_INTEGER);
+            int intValue = (Integer) value;
+            writeVarInt((intValue << 1) ^ (intValue >> 31));
+        }
+        else if (type == Long.class)
+        {
+            write(TYPE_LONG);
+            writeVarLong(zigZag((Long) value));
+        }
+        else if (type == Boolean.class)
+        {
+            write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        }
+        else if (type == Double.class)
+        {
+            write(TYPE_DOUBLE);
+            writeDouble((Double) value);
+        }
+        else if (type == Float.class)
+        {
+            write(TYPE_FLOAT);
+            writeFloat((Float) value);
+        }
+        else if (type == Short.class)
+        {
+            write(TYPE_SHORT);
+            writeShort((Short) value);
+        }
+        else if (type == Byte.class)
+        {
+            write(TYPE_BYTE);
+            write((Byte) value);
+        }
+        else if (type == Character.class)
+        {
+            write(TYPE_CHARACTER);
+            writeChar((Character) value);
+        }
+        else if (type == byte[].class)
+        {
+            write(TYPE_BYTES);
+            byte[] bytes = (byte[]) value;
+            writeVarInt(bytes.length);
+            write(bytes);
+        }
+        else if (type == Date.class)
+        {
+            write(TYPE_DATE);
+            writeVarLong(zigZag(((Date) value).getTime()));
+        }
+        else if (type == BigDecimal.class)
+        {
+            BigDecimal decimal = (BigDecimal) value;
+            write(TYPE_BIG_DECIMAL);
+            writeVarInt((decimal.scale() << 1) ^ (decimal.scale() >> 31));
+            writeBigInteger(decimal.unscaledValue());
+        }
+        else if (type == BigInteger.class)
+        {
+            write(TYPE_BIG_INTEGER);
+            writeBigInteger((BigInteger) value);
+        }
+        else if (type == ArrayList.class)
+        {
+            writeCollection(TYPE_ARRAY_LIST, (Collection<?>) value);
+        }
+        else if (type == LinkedList.class)
+        {
+            writeCollection(TYPE_LINKED_LIST, (Collection<?>) value);
+        }
+        else if (type == HashSet.class)
+        {
+            writeCollection(TYPE_HASH_SET, (Collection<?>) value);
+        }
+        else if (type == LinkedHashSet.class)
+        {
+            writeCollection(TYPE_LINKED_HASH_SET, (Collection<?>) value);
+        }
+        else if (type == HashMap.class)
+        {
+            writeMap((Map<?, ?>) value);
+        }
+        else
+        {
+            Registration registration = serializer.getRegistration(type);
+            if (registration != null)
+            {
+                enter(value);
+                write(registration.tag);
+                writeVarInt(registration.id);
+                registration.serializer.write(value, this);
+                exit(value);
+            }
+            else
+            {
+                writeSerialized(value);
+            }
+        }
+    }
+
+    private void writeCollection(int type, Collection<?> collection) throws IOException
+    {
+        enter(collection);
+        write(type);
+        writeVarInt(collection.size());
+        for (Object element : collection)
+        {
+            writeObject(element);
+        }
+        exit(collection);
+    }
+
+    private void writeMap(Map<?, ?> map) throws IOException
+    {
+        enter(map);
+        write(TYPE_HASH_MAP);
+        writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet())
+        {
+            writeObject(entry.getKey());
+            writeObject(entry.getValue());
+        }
+        exit(map);
+    }
+
+    /**
+     * Writes an object with Java serialization, prefixed by its length so the reader
+     * does not consume anything after it
+     */
+    private void writeSerialized(Object value) throws IOException
+    {
+        write(TYPE_SERIALIZED);
+        int lengthPosition = position;
+        writeInt(0);
+
+        ObjectOutputStream out = new ObjectOutputStream(this);
+        out.writeObject(value);
+        out.flush();
+
+        int length = position - lengthPosition - 4;
+        buffer[lengthPosition] = (byte) (length >>> 24);
+        buffer[lengthPosition + 1] = (byte) (length >>> 16);
+        buffer[lengthPosition + 2] = (byte) (length >>> 8);
+        buffer[lengthPosition + 3] = (byte) length;
+    }
+
+    private void writeBigInteger(BigInteger value) throws IOException
+    {
+        byte[] bytes = value.toByteArray();
+        writeVarInt(bytes.length);
+        write(bytes);
+    }
+
+    private void enter(Object container) throws CyclicReferenceException
+    {
+        if (parents.put(container, container) != null)
+        {
+            throw new CyclicReferenceException();
+        }
+    }
+
+    private void exit(Object container)
+    {
+        parents.remove(container);
+    }
+
+    void writeString(String value)
+    {
+        int length = value.length();
+        ensureCapacity(5 + length);
+
+        // Most strings are ASCII, write them without encoding them first
+        int start = position;
+        writeVarInt(length);
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c >= 0x80)
+            {
+                position = start;
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarInt(bytes.length);
+                write(bytes, 0, bytes.length);
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    void writeVarInt(int value)
+    {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    void writeVarLong(long value)
+    {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private static long zigZag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensureCapacity(int length)
+    {
+        if (position + length > buffer.length)
+        {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+
+    @Override
+    public void write(int b)
+    {
+        ensureCapacity(1);
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes)
+    {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    @Override
+    public void writeBoolean(boolean value)
+    {
+        write(value ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int value)
+    {
+        write(value);
+    }
+
+    @Override
+    public void writeShort(int value)
+    {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    @Override
+    public void writeChar(int value)
+    {
+        writeShort(value);
+    }
+
+    @Override
+    public void writeInt(int value)
+    {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    @Override
+    public void writeLong(long value)
+    {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void writeBytes(String value)
+    {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    @Override
+    public void writeChars(String value)
+    {
+        int length = value.length();
+        for (int i = 0; i < length; i++)
+        {
+            writeChar(value.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a string with the same encoding used for string values, which is not the
+     * modified UTF-8 used by {@link java.io.DataOutputStream}
+     */
+    @Override
+    public void writeUTF(String value)
+    {
+        writeString(value);
+    }
+
+    @Override
+    public void flush()
+    {
+        // nothing to flush
+    }
+
+    @Override
+    public void close()
+    {
+        // nothing to close
+    }
+
+    private static class CyclicReferenceException extends IOException
+    {
+
+        private static final long serialVersionUID = -2416853624393127281L;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+
+/**
+ * {@link org.mule.api.serialization.ObjectSerializer} that writes objects in a compact
+ * binary format, much faster to write and read than Java serialization.
+ * <p/>
+ * Strings, primitive wrappers, byte arrays, dates, big numbers and the common
+ * collections are written with a type tag and a compact representation. Instances of
+ * the classes registered with {@link #register(int, Class, TypeSerializer)} are
+ * written with their registration id followed by whatever their
+ * {@link TypeSerializer} writes, so no class names or field descriptors are written
+ * and no reflection is used. Any other object falls back to Java serialization. The
+ * same classes must be registered with the same ids wherever the objects are read.
+ * <p/>
+ * {@link DefaultMuleEvent} and {@link DefaultMuleMessage} are always registered, with
+ * ids of their own that do not take any of the ids available to
+ * {@link #register(int, Class, TypeSerializer)}, so persisted events and messages are
+ * written in the compact format.
+ * <p/>
+ * Unlike Java serialization, references to the same object are not shared: an object
+ * that appears twice is written twice. Objects with cyclic references are written
+ * using Java serialization.
+ * <p/>
+ * Objects serialized with Java serialization are also accepted when deserializing, so
+ * data persisted before switching to this serializer can still be read. Writing
+ * buffers are reused by each thread.
+ */
+public class CompactObjectSerializer extends AbstractObjectSerializer
+{
+
+    static final byte[] MAGIC = {'M', 'O'};
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_STRING = 1;
+    static final int TYPE_TRUE = 2;
+    static final int TYPE_FALSE = 3;
+    static final int TYPE_INTEGER = 4;
+    static final int TYPE_LONG = 5;
+    static final int TYPE_DOUBLE = 6;
+    static final int TYPE_FLOAT = 7;
+    static final int TYPE_SHORT = 8;
+    static final int TYPE_BYTE = 9;
+    static final int TYPE_CHARACTER = 10;
+    static final int TYPE_BYTES = 11;
+    static final int TYPE_DATE = 12;
+    static final int TYPE_BIG_DECIMAL = 13;
+    static final int TYPE_BIG_INTEGER = 14;
+    static final int TYPE_ARRAY_LIST = 15;
+    static final int TYPE_LINKED_LIST = 16;
+    static final int TYPE_HASH_SET = 17;
+    static final int TYPE_LINKED_HASH_SET = 18;
+    static final int TYPE_HASH_MAP = 19;
+    static final int TYPE_REGISTERED = 20;
+    static final int TYPE_SERIALIZED = 21;
+    static final int TYPE_BUILT_IN = 22;
+
+    static final int BUILT_IN_MULE_MESSAGE = 0;
+    static final int BUILT_IN_MULE_EVENT = 1;
+
+    private static final byte[] JAVA_SERIALIZATION_MAGIC = {(byte) 0xAC, (byte) 0xED};
+
+    /**
+     * Writing buffers bigger than this are not kept for the next serialization
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private final Map<Class<?>, Registration> registrationsByType = new ConcurrentHashMap<Class<?>, Registration>();
+    private final Map<Integer, Registration> registrationsById = new ConcurrentHashMap<Integer, Registration>();
+    private final Map<Integer, Registration> builtInsById = new ConcurrentHashMap<Integer, Registration>();
+
+    private final ThreadLocal<CompactObjectOutput> outputs = new ThreadLocal<CompactObjectOutput>();
+
+    public CompactObjectSerializer()
+    {
+        registerBuiltIn(BUILT_IN_MULE_MESSAGE, DefaultMuleMessage.class, new DefaultMuleMessage.CompactSerializer());
+        registerBuiltIn(BUILT_IN_MULE_EVENT, DefaultMuleEvent.class, new DefaultMuleEvent.CompactSerializer());
+    }
+
+    /**
+     * Registers a class so its instances are written by a {@link TypeSerializer}.
+     * Only instances of that exact class are written by the serializer, not the ones of
+     * its subclasses.
+     *
+     * @param id identifies the class in the serialized objects. Must not be negative
+     * @param type the class to register
+     * @param serializer writes and reads the instances of the class
+     * @throws IllegalArgumentException if the id or the class are already registered
+     */
+    public synchronized <T> void register(int id, Class<T> type, TypeSerializer<T> serializer)
+    {
+        if (id < 0)
+        {
+            throw new IllegalArgumentException("Registration id must not be negative: " + id);
+        }
+        if (registrationsById.containsKey(id))
+        {
+            throw new IllegalArgumentException("Registration id " + id + " is already used by " + registrationsById.get(id).type.getName());
+        }
+        if (registrationsByType.containsKey(type))
+        {
+            throw new IllegalArgumentException("Class " + type.getName() + " is already registered");
+        }
+
+        Registration registration = new Registration(TYPE_REGISTERED, id, type, serializer);
+        registrationsById.put(id, registration);
+        registrationsByType.put(type, registration);
+    }
+
+    private <T> void registerBuiltIn(int id, Class<T> type, TypeSerializer<T> serializer)
+    {
+        Registration registration = new Registration(TYPE_BUILT_IN, id, type, serializer);
+        builtInsById.put(id, registration);
+        registrationsByType.put(type, registration);
+    }
+
+    @Override
+    protected byte[] doSerialize(Object object) throws Exception
+    {
+        CompactObjectOutput output = acquireOutput();
+        try
+        {
+            output.writeRoot(object);
+            return output.toByteArray();
+        }
+        finally
+        {
+            releaseOutput(output);
+        }
+    }
+
+    @Override
+    protected void doSerialize(Object object, OutputStream out) throws Exception
+    {
+        CompactObjectOutput output = acquireOutput();
+        try
+        {
+            output.writeRoot(object);
+            output.writeTo(out);
+        }
+        finally
+        {
+            releaseOutput(output);
+        }
+    }
+
+    @Override
+    protected Object doDeserialize(byte[] bytes, ClassLoader classLoader) throws Exception
+    {
+        if (startsWith(bytes, JAVA_SERIALIZATION_MAGIC))
+        {
+            return new ClassLoaderObjectInputStream(classLoader, new ByteArrayInputStream(bytes)).readObject();
+        }
+        if (!startsWith(bytes, MAGIC) || bytes.length < HEADER_LENGTH)
+        {
+            throw new StreamCorruptedException("Data was not serialized by " + getClass().getSimpleName());
+        }
+        int version = bytes[MAGIC.length];
+        if (version != VERSION)
+        {
+            throw new StreamCorruptedException("Unsupported serialization format version: " + version);
+        }
+
+        return new CompactObjectInput(this, bytes, HEADER_LENGTH, classLoader).readObject();
+    }
+
+    @Override
+    protected Object doDeserialize(InputStream in, ClassLoader classLoader) throws Exception
+    {
+        return doDeserialize(IOUtils.toByteArray(in), classLoader);
+    }
+
+    Registration getRegistration(Class<?> type)
+    {
+        return registrationsByType.get(type);
+    }
+
+    Registration getRegistration(int id)
+    {
+        return registrationsById.get(id);
+    }
+
+    Registration getBuiltInRegistration(int id)
+    {
+        return builtInsById.get(id);
+    }
+
+    private CompactObjectOutput acquireOutput()
+    {
+        // Taken out of the thread local so a TypeSerializer serializing nested objects
+        // on its own gets a new buffer
+        CompactObjectOutput output = outputs.get();
+        if (output == null)
+        {
+            output = new CompactObjectOutput();
+        }
+        else
+        {
+            outputs.set(null);
+        }
+        output.attach(this);
+        return output;
+    }
+
+    private void releaseOutput(CompactObjectOutput output)
+    {
+        output.detach();
+        if (output.capacity() <= MAX_RETAINED_BUFFER_SIZE)
+        {
+            outputs.set(output);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix)
+    {
+        if (bytes.length < prefix.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++)
+        {
+            if (bytes[i] != prefix[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static class Registration
+    {
+
+        final int tag;
+        final int id;
+        final Class<?> type;
+        final TypeSerializer<Object> serializer;
+
+        @SuppressWarnings("unchecked")
+        Registration(int tag, int id, Class<?> type, TypeSerializer<?> serializer)
+        {
+            this.tag = tag;
+            this.id = id;
+            this.type = type;
+            this.serializer = (TypeSerializer<Object>) serializer;
+        }
+    }
+}
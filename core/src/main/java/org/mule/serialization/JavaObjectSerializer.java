@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.input.ClassLoaderObjectInputStream;
+
+/**
+ * {@link org.mule.api.serialization.ObjectSerializer} that uses plain Java
+ * serialization. The serialized objects are the same ones created by
+ * {@link org.mule.util.SerializationUtils}, so this is the default serializer.
+ */
+public class JavaObjectSerializer extends AbstractObjectSerializer
+{
+
+    @Override
+    protected void doSerialize(Object object, OutputStream out) throws Exception
+    {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
+        objectOutputStream.writeObject(object);
+        objectOutputStream.flush();
+    }
+
+    @Override
+    protected Object doDeserialize(InputStream in, ClassLoader classLoader) throws Exception
+    {
+        return new ClassLoaderObjectInputStream(classLoader, in).readObject();
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes and reads the instances of a class registered in a
+ * {@link CompactObjectSerializer}. Nested objects are written with
+ * {@link ObjectOutput#writeObject(Object)}, so they are serialized by the same
+ * serializer.
+ *
+ * @param <T> the registered class
+ */
+public interface TypeSerializer<T>
+{
+
+    void write(T value, ObjectOutput out) throws IOException;
+
+    T read(ObjectInput in) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.session;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleSession;
+import org.mule.api.model.SessionException;
+import org.mule.api.security.SecurityContext;
+import org.mule.api.serialization.ObjectSerializer;
+import org.mule.config.i18n.MessageFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes a {@link MuleSession} in a compact binary format, used by
+ * {@link BinarySessionHandler}.
+ * <p/>
+ * The encoded session starts with a magic number, a format version and a flags byte,
+ * followed by the session id, its valid flag, its security context and its
+ * properties. Values of common types are written with a type tag and a compact
+ * representation, while any other {@link Serializable} value is serialized with the
+ * {@link ObjectSerializer} of the Mule context. Strings already written in the same session are replaced by a
+ * reference to their first occurrence. Sessions bigger than
+ * {@link #getCompressionThreshold()} bytes are deflated.
+ */
+public class BinarySessionCodec
+{
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    static final byte[] MAGIC = {'M', 'S'};
+    static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = MAGIC.length + 2;
+    private static final int FLAG_COMPRESSED = 1;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_FALSE = 3;
+    private static final int TYPE_INTEGER = 4;
+    private static final int TYPE_LONG = 5;
+    private static final int TYPE_DOUBLE = 6;
+    private static final int TYPE_FLOAT = 7;
+    private static final int TYPE_SHORT = 8;
+    private static final int TYPE_BYTE = 9;
+    private static final int TYPE_CHARACTER = 10;
+    private static final int TYPE_BYTES = 11;
+    private static final int TYPE_DATE = 12;
+    private static final int TYPE_BIG_DECIMAL = 13;
+    private static final int TYPE_BIG_INTEGER = 14;
+    private static final int TYPE_SERIALIZED = 15;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    /**
+     * Encodes a session. Properties with values that are not {@link Serializable} must
+     * have been removed from the session before.
+     *
+     * @param session session to encode
+     * @param muleContext context whose {@link ObjectSerializer} serializes the values of
+     *            types without a compact representation
+     * @return the encoded session
+     * @throws SessionException if any of the session values can't be encoded
+     */
+    public byte[] encode(MuleSession session, MuleContext muleContext) throws SessionException
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            SessionOutput output = new SessionOutput(bytes, muleContext.getObjectSerializer());
+
+            output.writeString(session.getId());
+            output.writeBoolean(session.isValid());
+            // Same as with Java serialization, the security context is only kept if it is serializable
+            SecurityContext securityContext = session.getSecurityContext();
+            output.writeValue(securityContext instanceof Serializable ? securityContext : null);
+
+            Map<String, Object> properties = new HashMap<String, Object>();
+            for (String key : session.getPropertyNamesAsSet())
+            {
+                properties.put(key, session.getProperty(key));
+            }
+            output.writeVarInt(properties.size());
+            for (Map.Entry<String, Object> property : properties.entrySet())
+            {
+                output.writeString(property.getKey());
+                output.writeValue(property.getValue());
+            }
+            output.flush();
+
+            byte[] body = bytes.toByteArray();
+            int flags = 0;
+            if (compressionThreshold > 0 && body.length > compressionThreshold)
+            {
+                byte[] compressedBody = deflate(body);
+                if (compressedBody.length < body.length)
+                {
+                    body = compressedBody;
+                    flags |= FLAG_COMPRESSED;
+                }
+            }
+
+            byte[] encoded = new byte[HEADER_LENGTH + body.length];
+            System.arraycopy(MAGIC, 0, encoded, 0, MAGIC.length);
+            encoded[MAGIC.length] = VERSION;
+            encoded[MAGIC.length + 1] = (byte) flags;
+            System.arraycopy(body, 0, encoded, HEADER_LENGTH, body.length);
+
+            return encoded;
+        }
+        catch (IOException e)
+        {
+            throw new SessionException(MessageFactory.createStaticMessage("Unable to encode MuleSession"), e);
+        }
+    }
+
+    /**
+     * Decodes a session encoded by {@link #encode(MuleSession, MuleContext)}
+     *
+     * @param encoded the encoded session
+     * @param muleContext context used to resolve the classes of the serialized values
+     * @return the decoded session
+     * @throws SessionException if the data is not a valid encoded session
+     */
+    public MuleSession decode(byte[] encoded, MuleContext muleContext) throws SessionException
+    {
+        if (!isEncodedSession(encoded))
+        {
+            throw new SessionException(MessageFactory.createStaticMessage("Data is not a binary encoded MuleSession"));
+        }
+
+        int version = encoded[MAGIC.length];
+        if (version != VERSION)
+        {
+            throw new SessionException(MessageFactory.createStaticMessage("Unsupported binary MuleSession version: " + version));
+        }
+
+        try
+        {
+            byte[] body = new byte[encoded.length - HEADER_LENGTH];
+            System.arraycopy(encoded, HEADER_LENGTH, body, 0, body.length);
+            if ((encoded[MAGIC.length + 1] & FLAG_COMPRESSED) != 0)
+            {
+                body = inflate(body);
+            }
+
+            SessionInput input = new SessionInput(new ByteArrayInputStream(body), muleContext.getObjectSerializer());
+
+            DefaultMuleSession session = new DefaultMuleSession(input.readString());
+            session.setValid(input.readBoolean());
+            session.setSecurityContext((SecurityContext) input.readValue());
+
+            int propertyCount = input.readVarInt();
+            for (int i = 0; i < propertyCount; i++)
+            {
+                String key = input.readString();
+                session.getProperties().put(key, input.readValue());
+            }
+
+            return session;
+        }
+        catch (Exception e)
+        {
+            throw new SessionException(MessageFactory.createStaticMessage("Unable to decode MuleSession"), e);
+        }
+    }
+
+    /**
+     * @return true if the data starts like a binary encoded session
+     */
+    public boolean isEncodedSession(byte[] data)
+    {
+        if (data == null || data.length < HEADER_LENGTH)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (data[i] != MAGIC[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] deflate(byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished())
+            {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] data) throws DataFormatException
+    {
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(data);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished())
+            {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new DataFormatException("Truncated compressed MuleSession");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    /**
+     * @param compressionThreshold size in bytes above which sessions are compressed.
+     *            Values lower or equal to zero disable compression
+     */
+    public void setCompressionThreshold(int compressionThreshold)
+    {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    private static class SessionOutput extends DataOutputStream
+    {
+
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final ObjectSerializer serializer;
+
+        SessionOutput(ByteArrayOutputStream out, ObjectSerializer serializer)
+        {
+            super(out);
+            this.serializer = serializer;
+        }
+
+        void writeVarInt(int value) throws IOException
+        {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) throws IOException
+        {
+            while ((value & ~0x7FL) != 0)
+            {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        /**
+         * Writes a string the first time it appears, or a reference to it after that
+         */
+        void writeString(String value) throws IOException
+        {
+            Integer index = strings.get(value);
+            if (index != null)
+            {
+                writeVarInt(index << 1 | 1);
+            }
+            else
+            {
+                strings.put(value, strings.size());
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarInt(bytes.length << 1);
+                write(bytes);
+            }
+        }
+
+        void writeValue(Object value) throws IOException
+        {
+            if (value == null)
+            {
+                write(TYPE_NULL);
+            }
+            else if (value instanceof String)
+            {
+                write(TYPE_STRING);
+                writeString((String) value);
+            }
+            else if (value instanceof Boolean)
+            {
+                write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            }
+            else if (value instanceof Integer)
+            {
+                write(TYPE_INTEGER);
+                int intValue = (Integer) value;
+                writeVarInt((intValue << 1) ^ (intValue >> 31));
+            }
+            else if (value instanceof Long)
+            {
+                write(TYPE_LONG);
+                long longValue = (Long) value;
+                writeVarLong((longValue << 1) ^ (longValue >> 63));
+            }
+            else if (value instanceof Double)
+            {
+                write(TYPE_DOUBLE);
+                writeDouble((Double) value);
+            }
+            else if (value instanceof Float)
+            {
+                write(TYPE_FLOAT);
+                writeFloat((Float) value);
+            }
+            else if (value instanceof Short)
+            {
+                write(TYPE_SHORT);
+                writeShort((Short) value);
+            }
+            else if (value instanceof Byte)
+            {
+                write(TYPE_BYTE);
+                writeByte((Byte) value);
+            }
+            else if (value instanceof Character)
+            {
+                write(TYPE_CHARACTER);
+                writeChar((Character) value);
+            }
+            else if (value instanceof byte[])
+            {
+                write(TYPE_BYTES);
+                writeBytes((byte[]) value);
+            }
+            else if (value.getClass() == Date.class)
+            {
+                write(TYPE_DATE);
+                writeVarLong(((Date) value).getTime());
+            }
+            else if (value.getClass() == BigDecimal.class)
+            {
+                write(TYPE_BIG_DECIMAL);
+                writeString(value.toString());
+            }
+            else if (value.getClass() == BigInteger.class)
+            {
+                write(TYPE_BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            }
+            else
+            {
+                write(TYPE_SERIALIZED);
+                writeBytes(serializer.serialize(value));
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException
+        {
+            writeVarInt(bytes.length);
+            write(bytes);
+        }
+    }
+
+    private static class SessionInput extends DataInputStream
+    {
+
+        private final List<String> strings = new ArrayList<String>();
+        private final ObjectSerializer serializer;
+
+        SessionInput(ByteArrayInputStream in, ObjectSerializer serializer)
+        {
+            super(in);
+            this.serializer = serializer;
+        }
+
+        int readVarInt() throws IOException
+        {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                int b = readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length number");
+        }
+
+        String readString() throws IOException
+        {
+            int header = readVarInt();
+            if ((header & 1) != 0)
+            {
+                return strings.get(header >>> 1);
+            }
+
+            byte[] bytes = new byte[header >>> 1];
+            readFully(bytes);
+            String value = new String(bytes, UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        Object readValue() throws IOException
+        {
+            int type = readUnsignedByte();
+            switch (type)
+            {
+                case TYPE_NULL:
+                    return null;
+                case TYPE_STRING:
+                    return readString();
+                case TYPE_TRUE:
+                    return Boolean.TRUE;
+                case TYPE_FALSE:
+                    return Boolean.FALSE;
+                case TYPE_INTEGER:
+                    int intValue = readVarInt();
+                    return (intValue >>> 1) ^ -(intValue & 1);
+                case TYPE_LONG:
+                    long longValue = readVarLong();
+                    return (longValue >>> 1) ^ -(longValue & 1);
+                case TYPE_DOUBLE:
+                    return readDouble();
+                case TYPE_FLOAT:
+                    return readFloat();
+                case TYPE_SHORT:
+                    return readShort();
+                case TYPE_BYTE:
+                    return readByte();
+                case TYPE_CHARACTER:
+                    return readChar();
+                case TYPE_BYTES:
+                    return readBytes();
+                case TYPE_DATE:
+                    return new Date(readVarLong());
+                case TYPE_BIG_DECIMAL:
+                    return new BigDecimal(readString());
+                case TYPE_BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case TYPE_SERIALIZED:
+                    return serializer.deserialize(readBytes());
+                default:
+                    throw new IOException("Unknown value type: " + type);
+            }
+        }
+
+        private byte[] readBytes() throws IOException
+        {
+            byte[] bytes = new byte[readVarInt()];
+            readFully(bytes);
+            return bytes;
+        }
+    }
+}
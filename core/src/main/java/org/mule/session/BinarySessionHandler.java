@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.session;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleException;
+import org.mule.api.MuleMessage;
+import org.mule.api.MuleSession;
+import org.mule.api.config.MuleProperties;
+import org.mule.api.model.SessionException;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.util.Base64;
+
+import java.io.IOException;
+
+/**
+ * A session handler that encodes the session using {@link BinarySessionCodec} and then
+ * Base64 encodes it, so the session header is much smaller and cheaper to produce than
+ * the one created by {@link SerializeAndEncodeSessionHandler}.
+ * <p/>
+ * Sessions stored by {@link SerializeAndEncodeSessionHandler} or
+ * {@link SerializeOnlySessionHandler} are also accepted, so this handler can be enabled
+ * on the receiving side first.
+ */
+public class BinarySessionHandler extends SerializeOnlySessionHandler
+{
+
+    private final BinarySessionCodec codec = new BinarySessionCodec();
+
+    @Override
+    public MuleSession retrieveSessionInfoFromMessage(MuleMessage message) throws MuleException
+    {
+        Object sessionProperty = message.getInboundProperty(MuleProperties.MULE_SESSION_PROPERTY);
+
+        byte[] encodedSession;
+        if (sessionProperty instanceof byte[])
+        {
+            encodedSession = (byte[]) sessionProperty;
+        }
+        else if (sessionProperty != null)
+        {
+            encodedSession = Base64.decode(sessionProperty.toString());
+        }
+        else
+        {
+            return null;
+        }
+
+        if (encodedSession == null)
+        {
+            return null;
+        }
+        else if (codec.isEncodedSession(encodedSession))
+        {
+            return codec.decode(encodedSession, message.getMuleContext());
+        }
+        else
+        {
+            return message.getMuleContext().getObjectSerializer().deserialize(encodedSession);
+        }
+    }
+
+    @Override
+    public void storeSessionInfoToMessage(MuleSession session, MuleMessage message) throws MuleException
+    {
+        MuleContext muleContext = message.getMuleContext();
+        byte[] encodedSession = codec.encode(removeNonSerializableProperties(session, muleContext), muleContext);
+        String base64EncodedSession;
+        try
+        {
+            base64EncodedSession = Base64.encodeBytes(encodedSession, Base64.DONT_BREAK_LINES);
+        }
+        catch (IOException e)
+        {
+            throw new SessionException(MessageFactory.createStaticMessage("Unable to encode MuleSession"), e);
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Adding binary encoded Session header to message: " + base64EncodedSession);
+        }
+        message.setOutboundProperty(MuleProperties.MULE_SESSION_PROPERTY, base64EncodedSession);
+    }
+
+    /**
+     * @param compressionThreshold size in bytes above which sessions are compressed.
+     *            Values lower or equal to zero disable compression
+     */
+    public void setCompressionThreshold(int compressionThreshold)
+    {
+        codec.setCompressionThreshold(compressionThreshold);
+    }
+
+    public int getCompressionThreshold()
+    {
+        return codec.getCompressionThreshold();
+    }
+}
@@ -67,6 +67,16 @@ public final class DefaultMuleSession implements MuleSession
         properties = Collections.synchronizedMap(new CaseInsensitiveHashMap/* <String, Object> */());
     }
 
+    /**
+     * Creates an empty session with a given id, used when decoding sessions received from
+     * other Mule instances
+     */
+    DefaultMuleSession(String id)
+    {
+        this.id = id;
+        properties = Collections.synchronizedMap(new CaseInsensitiveHashMap/* <String, Object> */());
+    }
+
     public DefaultMuleSession(MuleSession session)
     {
         this.id = session.getId();
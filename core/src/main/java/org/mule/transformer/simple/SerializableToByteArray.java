@@ -60,7 +60,11 @@ public class SerializableToByteArray extends AbstractTransformer implements Disc
 
         try
         {
-            return SerializationUtils.serialize((Serializable) src);
+            if (muleContext == null)
+            {
+                return SerializationUtils.serialize((Serializable) src);
+            }
+            return muleContext.getObjectSerializer().serialize(src);
         }
         catch (Exception e)
         {
@@ -140,6 +140,13 @@ public abstract class AbstractConnector implements Connector, WorkListener
 
     public static final String PROPERTY_POLLING_FREQUENCY = "pollingFrequency";
 
+    /**
+     * System property that makes connectors without a configured dispatcher pool factory
+     * pool their dispatchers in a {@link ConcurrentConfigurableKeyedObjectPool}.
+     */
+    public static final String CONCURRENT_DISPATCHER_POOL_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX
+                                                                     + "transport.concurrentDispatcherPool";
+
     /**
      * logger used by this class
      */
@@ -363,7 +370,14 @@ public abstract class AbstractConnector implements Connector, WorkListener
                     }
 
                     if (dispatcherPoolFactory == null) {
-                        dispatcherPoolFactory = new DefaultConfigurableKeyedObjectPoolFactory();
+                        if (Boolean.getBoolean(CONCURRENT_DISPATCHER_POOL_PROPERTY))
+                        {
+                            dispatcherPoolFactory = new ConcurrentConfigurableKeyedObjectPoolFactory();
+                        }
+                        else
+                        {
+                            dispatcherPoolFactory = new DefaultConfigurableKeyedObjectPoolFactory();
+                        }
                     }
 
                     dispatchers = dispatcherPoolFactory.createObjectPool();
@@ -0,0 +1,952 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport;
+
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool.KeyedPoolableObjectFactory;
+
+/**
+ * Implements {@link ConfigurableKeyedObjectPool} without a global lock. Every key has
+ * its own deque of idle instances and its own counters, and an instance moves between
+ * idle and active with a compare and set, so borrowing and returning for different
+ * keys, or for the same key while there are idle instances, never contend on a monitor.
+ * <p/>
+ * Each thread remembers the last instance it borrowed for every key and tries to take
+ * it again before looking at the deque, so a thread that keeps dispatching to the same
+ * endpoint usually gets back the instance it just returned. Instances that stay idle
+ * for longer than {@link #getMinEvictableIdleTimeMillis()} are destroyed by a
+ * background task, which also drops the keys that have no instances left.
+ * <p/>
+ * As with the {@link DefaultConfigurableKeyedObjectPool}, instances are validated when
+ * they are returned and not when they are borrowed. Time spent by borrowers blocked on
+ * an exhausted pool is recorded and exposed by {@link #getWaitCount()},
+ * {@link #getTotalWaitTime()} and {@link #getMaxWaitTime()}.
+ */
+public class ConcurrentConfigurableKeyedObjectPool implements ConfigurableKeyedObjectPool
+{
+
+    public static final int DEFAULT_MAX_IDLE = 8;
+    public static final int DEFAULT_MAX_ACTIVE = 8;
+    public static final int DEFAULT_MAX_TOTAL = -1;
+    public static final long DEFAULT_MAX_WAIT = -1;
+    public static final long DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS = 60 * 1000;
+    public static final long DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS = 30 * 60 * 1000;
+
+    private static final int IDLE = 0;
+    private static final int ACTIVE = 1;
+    private static final int DESTROYED = 2;
+
+    /**
+     * Being returned or invalidated by a single caller, so it can be neither borrowed
+     * nor returned again meanwhile
+     */
+    private static final int RELEASING = 3;
+
+    private static final ScheduledThreadPoolExecutor evictionScheduler;
+
+    static
+    {
+        evictionScheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(
+            "ConcurrentKeyedObjectPool-Evictor", ConcurrentConfigurableKeyedObjectPool.class.getClassLoader()));
+        evictionScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final ConcurrentMap<Object, KeyedPool> pools = new ConcurrentHashMap<Object, KeyedPool>();
+    private final Map<IdentityKey, PooledObject> pooledObjects = new ConcurrentHashMap<IdentityKey, PooledObject>();
+    private final AtomicInteger numTotal = new AtomicInteger();
+    private final AtomicInteger numWaiters = new AtomicInteger();
+
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile KeyedPoolableObjectFactory factory;
+    private volatile boolean closed = false;
+
+    private volatile int maxActive = DEFAULT_MAX_ACTIVE;
+    private volatile int maxIdle = DEFAULT_MAX_IDLE;
+    private volatile int maxTotal = DEFAULT_MAX_TOTAL;
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+    private volatile byte whenExhaustedAction = WHEN_EXHAUSTED_BLOCK;
+    private volatile long minEvictableIdleTimeMillis = DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+    private long timeBetweenEvictionRunsMillis;
+    private ScheduledFuture<?> evictionTask;
+
+    public ConcurrentConfigurableKeyedObjectPool()
+    {
+        setTimeBetweenEvictionRunsMillis(DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS);
+    }
+
+    @Override
+    public Object borrowObject(Object key) throws Exception, NoSuchElementException, IllegalStateException
+    {
+        long waitStart = 0;
+        try
+        {
+            while (true)
+            {
+                assertOpen();
+                KeyedPool pool = getPool(key);
+
+                PooledObject pooledObject = pool.takeIdle();
+                boolean created = false;
+                if (pooledObject == null)
+                {
+                    pooledObject = create(pool, key);
+                    created = pooledObject != null;
+                }
+
+                if (pooledObject == null)
+                {
+                    if (whenExhaustedAction == WHEN_EXHAUSTED_FAIL)
+                    {
+                        throw new NoSuchElementException("Pool exhausted");
+                    }
+                    if (waitStart == 0)
+                    {
+                        waitStart = System.nanoTime();
+                    }
+                    pool.await(waitStart);
+                    continue;
+                }
+
+                try
+                {
+                    factory.activateObject(key, pooledObject.object);
+                }
+                catch (Exception e)
+                {
+                    destroy(pooledObject);
+                    if (created)
+                    {
+                        throw e;
+                    }
+                    continue;
+                }
+                pool.setLastBorrowed(pooledObject);
+                return pooledObject.object;
+            }
+        }
+        finally
+        {
+            if (waitStart != 0)
+            {
+                recordWait(System.nanoTime() - waitStart);
+            }
+        }
+    }
+
+    @Override
+    public void returnObject(Object key, Object obj) throws Exception
+    {
+        PooledObject pooledObject = findPooledObject(key, obj);
+        if (pooledObject == null)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Returned object for key " + key + " does not belong to this pool, destroying it");
+            }
+            factory.destroyObject(key, obj);
+            return;
+        }
+        if (!pooledObject.state.compareAndSet(ACTIVE, RELEASING))
+        {
+            logger.warn("Object for key " + key + " was returned to the pool more than once");
+            return;
+        }
+
+        boolean valid = factory.validateObject(key, obj);
+        if (valid)
+        {
+            try
+            {
+                factory.passivateObject(key, obj);
+            }
+            catch (Exception e)
+            {
+                valid = false;
+            }
+        }
+
+        KeyedPool pool = pooledObject.pool;
+        if (!valid || closed || pool.retired || (maxIdle >= 0 && pool.numIdle.get() >= maxIdle))
+        {
+            destroy(pooledObject);
+            return;
+        }
+
+        pooledObject.lastReturned = System.currentTimeMillis();
+        pool.numIdle.incrementAndGet();
+        pooledObject.state.set(IDLE);
+        pool.numActive.decrementAndGet();
+        pool.enqueue(pooledObject);
+        if (pool.retired && pool.takeIdle(pooledObject))
+        {
+            // The key was cleared while the object was being returned
+            pool.idleObjects.removeFirstOccurrence(pooledObject);
+            destroy(pooledObject);
+            return;
+        }
+        signalWaiters(pool);
+    }
+
+    @Override
+    public void invalidateObject(Object key, Object obj) throws Exception
+    {
+        PooledObject pooledObject = findPooledObject(key, obj);
+        if (pooledObject != null && pooledObject.state.compareAndSet(ACTIVE, RELEASING))
+        {
+            destroy(pooledObject);
+        }
+        else
+        {
+            factory.destroyObject(key, obj);
+        }
+    }
+
+    @Override
+    public void addObject(Object key) throws Exception, IllegalStateException, UnsupportedOperationException
+    {
+        assertOpen();
+        KeyedPool pool = getPool(key);
+        Object obj = factory.makeObject(key);
+        factory.passivateObject(key, obj);
+
+        PooledObject pooledObject = new PooledObject(pool, key, obj);
+        pooledObject.lastReturned = System.currentTimeMillis();
+        pooledObjects.put(new IdentityKey(obj), pooledObject);
+        numTotal.incrementAndGet();
+        pool.numIdle.incrementAndGet();
+        pool.enqueue(pooledObject);
+        signalWaiters(pool);
+    }
+
+    @Override
+    public int getNumIdle(Object key) throws UnsupportedOperationException
+    {
+        KeyedPool pool = pools.get(key);
+        return pool == null ? 0 : pool.numIdle.get();
+    }
+
+    @Override
+    public int getNumActive(Object key) throws UnsupportedOperationException
+    {
+        KeyedPool pool = pools.get(key);
+        return pool == null ? 0 : pool.numActive.get();
+    }
+
+    @Override
+    public int getNumIdle() throws UnsupportedOperationException
+    {
+        int numIdle = 0;
+        for (KeyedPool pool : pools.values())
+        {
+            numIdle += pool.numIdle.get();
+        }
+        return numIdle;
+    }
+
+    @Override
+    public int getNumActive() throws UnsupportedOperationException
+    {
+        int numActive = 0;
+        for (KeyedPool pool : pools.values())
+        {
+            numActive += pool.numActive.get();
+        }
+        return numActive;
+    }
+
+    /**
+     * Destroys the idle instances of every key. Instances that are active when the
+     * pool is cleared are destroyed when they are returned.
+     */
+    @Override
+    public void clear()
+    {
+        for (Object key : new ArrayList<Object>(pools.keySet()))
+        {
+            clear(key);
+        }
+    }
+
+    @Override
+    public void clear(Object key)
+    {
+        KeyedPool pool = pools.remove(key);
+        if (pool != null)
+        {
+            pool.retired = true;
+            destroyIdle(pool, Long.MAX_VALUE);
+            signalWaiters(pool);
+        }
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        closed = true;
+        synchronized (this)
+        {
+            if (evictionTask != null)
+            {
+                evictionTask.cancel(false);
+                evictionTask = null;
+            }
+        }
+        clear();
+    }
+
+    @Override
+    public void setFactory(KeyedPoolableObjectFactory factory) throws IllegalStateException, UnsupportedOperationException
+    {
+        if (numTotal.get() > 0)
+        {
+            throw new IllegalStateException("Objects are already active");
+        }
+        this.factory = factory;
+    }
+
+    /**
+     * Destroys the instances that have been idle for longer than
+     * {@link #getMinEvictableIdleTimeMillis()} and drops the keys that are left without
+     * instances. Runs periodically in the background.
+     */
+    public void evict()
+    {
+        long idleSince = System.currentTimeMillis() - minEvictableIdleTimeMillis;
+        for (Map.Entry<Object, KeyedPool> entry : pools.entrySet())
+        {
+            KeyedPool pool = entry.getValue();
+            if (minEvictableIdleTimeMillis > 0)
+            {
+                destroyIdle(pool, idleSince);
+            }
+            if (pool.isUnused() && pools.remove(entry.getKey(), pool))
+            {
+                pool.retired = true;
+                // Objects returned while the pool was being removed either see it retired
+                // and get destroyed, or are already idle and get destroyed here
+                destroyIdle(pool, Long.MAX_VALUE);
+                signalWaiters(pool);
+            }
+        }
+    }
+
+    private KeyedPool getPool(Object key)
+    {
+        KeyedPool pool = pools.get(key);
+        if (pool == null)
+        {
+            KeyedPool newPool = new KeyedPool();
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null)
+            {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    private PooledObject findPooledObject(Object key, Object obj)
+    {
+        KeyedPool pool = pools.get(key);
+        if (pool != null)
+        {
+            PooledObject lastBorrowed = pool.getLastBorrowed();
+            if (lastBorrowed != null && lastBorrowed.object == obj)
+            {
+                return lastBorrowed;
+            }
+        }
+        return pooledObjects.get(new IdentityKey(obj));
+    }
+
+    /**
+     * Creates a new active instance for the given key, or returns null if creating it
+     * would exceed the limits of the pool and it is not configured to grow.
+     */
+    private PooledObject create(KeyedPool pool, Object key) throws Exception
+    {
+        boolean grow = whenExhaustedAction == WHEN_EXHAUSTED_GROW;
+        if (!pool.reserveActive(grow ? -1 : maxActive))
+        {
+            return null;
+        }
+        if (!grow && !reserveTotal())
+        {
+            pool.numActive.decrementAndGet();
+            return null;
+        }
+        if (grow)
+        {
+            numTotal.incrementAndGet();
+        }
+
+        Object obj;
+        try
+        {
+            obj = factory.makeObject(key);
+        }
+        catch (Exception e)
+        {
+            pool.numActive.decrementAndGet();
+            numTotal.decrementAndGet();
+            signalWaiters(pool);
+            throw e;
+        }
+
+        PooledObject pooledObject = new PooledObject(pool, key, obj);
+        pooledObject.state.set(ACTIVE);
+        pooledObjects.put(new IdentityKey(obj), pooledObject);
+        return pooledObject;
+    }
+
+    private boolean reserveTotal()
+    {
+        while (true)
+        {
+            int total = numTotal.get();
+            int max = maxTotal;
+            if (max < 0 || total < max)
+            {
+                if (numTotal.compareAndSet(total, total + 1))
+                {
+                    return true;
+                }
+            }
+            else if (!destroyOldestIdle())
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Makes room for a new instance when the pool reached its total limit by destroying
+     * the instance that has been idle for longer across all keys.
+     */
+    private boolean destroyOldestIdle()
+    {
+        PooledObject oldest = null;
+        for (KeyedPool pool : pools.values())
+        {
+            // The deque can hold objects that were taken again by their last borrower
+            for (Iterator<PooledObject> iterator = pool.idleObjects.descendingIterator(); iterator.hasNext();)
+            {
+                PooledObject candidate = iterator.next();
+                if (candidate.state.get() == IDLE)
+                {
+                    if (oldest == null || candidate.lastReturned < oldest.lastReturned)
+                    {
+                        oldest = candidate;
+                    }
+                    break;
+                }
+            }
+        }
+        if (oldest != null && oldest.pool.takeIdle(oldest))
+        {
+            oldest.pool.idleObjects.removeFirstOccurrence(oldest);
+            destroy(oldest);
+            return true;
+        }
+        return oldest != null;
+    }
+
+    /**
+     * Whether a new instance fits in the total limit, either because the limit was not
+     * reached or because an idle instance of any key can be destroyed to make room.
+     * Waiters check it so that an instance released for another key before they
+     * started waiting does not leave them blocked.
+     */
+    private boolean hasTotalCapacity()
+    {
+        int max = maxTotal;
+        if (max < 0 || numTotal.get() < max)
+        {
+            return true;
+        }
+        for (KeyedPool pool : pools.values())
+        {
+            if (pool.numIdle.get() > 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void destroyIdle(KeyedPool pool, long idleSince)
+    {
+        for (Iterator<PooledObject> iterator = pool.idleObjects.descendingIterator(); iterator.hasNext();)
+        {
+            PooledObject pooledObject = iterator.next();
+            if (pooledObject.lastReturned <= idleSince && pool.takeIdle(pooledObject))
+            {
+                pool.idleObjects.removeFirstOccurrence(pooledObject);
+                destroy(pooledObject);
+            }
+        }
+    }
+
+    /**
+     * Destroys an instance owned by the caller, either because it was borrowed or
+     * because it was taken from the idle instances.
+     */
+    private void destroy(PooledObject pooledObject)
+    {
+        pooledObject.state.set(DESTROYED);
+        pooledObjects.remove(new IdentityKey(pooledObject.object));
+        pooledObject.pool.numActive.decrementAndGet();
+        numTotal.decrementAndGet();
+        try
+        {
+            factory.destroyObject(pooledObject.key, pooledObject.object);
+        }
+        catch (Exception e)
+        {
+            logger.warn("Could not destroy pooled object for key " + pooledObject.key, e);
+        }
+        finally
+        {
+            signalWaiters(pooledObject.pool);
+        }
+    }
+
+    private void signalWaiters(KeyedPool pool)
+    {
+        if (numWaiters.get() == 0)
+        {
+            return;
+        }
+        // Waiters for other keys may be blocked on the total limit
+        pool.signal();
+        if (maxTotal >= 0)
+        {
+            for (KeyedPool other : pools.values())
+            {
+                other.signal();
+            }
+        }
+    }
+
+    private void recordWait(long waitNanos)
+    {
+        waitCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max;
+        do
+        {
+            max = maxWaitNanos.get();
+        }
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    private void assertOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Pool not open");
+        }
+    }
+
+    /**
+     * Returns the number of times a borrower had to wait for an instance because the
+     * pool was exhausted.
+     */
+    public long getWaitCount()
+    {
+        return waitCount.get();
+    }
+
+    /**
+     * Returns the time in milliseconds borrowers spent waiting for an instance because
+     * the pool was exhausted.
+     */
+    public long getTotalWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * Returns the longest time in milliseconds a borrower waited for an instance.
+     */
+    public long getMaxWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    @Override
+    public int getMaxActive()
+    {
+        return maxActive;
+    }
+
+    @Override
+    public void setMaxActive(int maxActive)
+    {
+        this.maxActive = maxActive;
+        signalAll();
+    }
+
+    @Override
+    public int getMaxTotal()
+    {
+        return maxTotal;
+    }
+
+    @Override
+    public void setMaxTotal(int maxTotal)
+    {
+        this.maxTotal = maxTotal;
+        signalAll();
+    }
+
+    @Override
+    public int getMaxIdle()
+    {
+        return maxIdle;
+    }
+
+    @Override
+    public void setMaxIdle(int maxIdle)
+    {
+        this.maxIdle = maxIdle;
+    }
+
+    @Override
+    public long getMaxWait()
+    {
+        return maxWait;
+    }
+
+    @Override
+    public void setMaxWait(long maxWait)
+    {
+        this.maxWait = maxWait;
+        signalAll();
+    }
+
+    @Override
+    public byte getWhenExhaustedAction()
+    {
+        return whenExhaustedAction;
+    }
+
+    @Override
+    public void setWhenExhaustedAction(byte whenExhaustedAction)
+    {
+        switch (whenExhaustedAction)
+        {
+            case WHEN_EXHAUSTED_BLOCK:
+            case WHEN_EXHAUSTED_FAIL:
+            case WHEN_EXHAUSTED_GROW:
+                this.whenExhaustedAction = whenExhaustedAction;
+                signalAll();
+                break;
+            default:
+                throw new IllegalArgumentException("whenExhaustedAction " + whenExhaustedAction
+                                                   + " not recognized.");
+        }
+    }
+
+    private void signalAll()
+    {
+        for (KeyedPool pool : pools.values())
+        {
+            pool.signal();
+        }
+    }
+
+    public long getMinEvictableIdleTimeMillis()
+    {
+        return minEvictableIdleTimeMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds an instance can stay idle before it is evicted. A
+     * value of zero or less disables the eviction of idle instances, although keys
+     * without instances are still dropped.
+     */
+    public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis)
+    {
+        this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+    }
+
+    public synchronized long getTimeBetweenEvictionRunsMillis()
+    {
+        return timeBetweenEvictionRunsMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds between runs of the background eviction. A value
+     * of zero or less disables it.
+     */
+    public synchronized void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis)
+    {
+        this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+        if (evictionTask != null)
+        {
+            evictionTask.cancel(false);
+            evictionTask = null;
+        }
+        if (timeBetweenEvictionRunsMillis > 0 && !closed)
+        {
+            Evictor evictor = new Evictor(this);
+            evictionTask = evictionScheduler.scheduleWithFixedDelay(evictor, timeBetweenEvictionRunsMillis,
+                timeBetweenEvictionRunsMillis, TimeUnit.MILLISECONDS);
+            evictor.task = evictionTask;
+        }
+    }
+
+    /**
+     * Instances of a single key.
+     */
+    private class KeyedPool
+    {
+
+        final ConcurrentLinkedDeque<PooledObject> idleObjects = new ConcurrentLinkedDeque<PooledObject>();
+        final AtomicInteger numIdle = new AtomicInteger();
+        final AtomicInteger numActive = new AtomicInteger();
+        final AtomicInteger numWaitersForKey = new AtomicInteger();
+        final ThreadLocal<WeakReference<PooledObject>> lastBorrowed = new ThreadLocal<WeakReference<PooledObject>>();
+        volatile boolean retired = false;
+
+        PooledObject takeIdle()
+        {
+            PooledObject pooledObject = getLastBorrowed();
+            if (pooledObject != null && takeIdle(pooledObject))
+            {
+                return pooledObject;
+            }
+            while ((pooledObject = idleObjects.pollFirst()) != null)
+            {
+                // Clearing the flag before taking the object lets a concurrent return
+                // enqueue it again if it was taken by its last borrower
+                pooledObject.enqueued.set(false);
+                if (takeIdle(pooledObject))
+                {
+                    return pooledObject;
+                }
+            }
+            return null;
+        }
+
+        boolean takeIdle(PooledObject pooledObject)
+        {
+            if (pooledObject.state.compareAndSet(IDLE, ACTIVE))
+            {
+                numIdle.decrementAndGet();
+                numActive.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        void enqueue(PooledObject pooledObject)
+        {
+            if (pooledObject.enqueued.compareAndSet(false, true))
+            {
+                idleObjects.offerFirst(pooledObject);
+            }
+        }
+
+        boolean reserveActive(int max)
+        {
+            while (true)
+            {
+                int active = numActive.get();
+                if (max >= 0 && active >= max)
+                {
+                    return false;
+                }
+                if (numActive.compareAndSet(active, active + 1))
+                {
+                    return true;
+                }
+            }
+        }
+
+        boolean isUnused()
+        {
+            return numActive.get() == 0 && numIdle.get() == 0 && numWaitersForKey.get() == 0;
+        }
+
+        PooledObject getLastBorrowed()
+        {
+            WeakReference<PooledObject> reference = lastBorrowed.get();
+            return reference == null ? null : reference.get();
+        }
+
+        void setLastBorrowed(PooledObject pooledObject)
+        {
+            if (getLastBorrowed() != pooledObject)
+            {
+                lastBorrowed.set(new WeakReference<PooledObject>(pooledObject));
+            }
+        }
+
+        /**
+         * Blocks until an instance may be available for this key or the maximum wait
+         * time since the borrower started waiting elapses.
+         */
+        void await(long waitStart) throws InterruptedException
+        {
+            numWaitersForKey.incrementAndGet();
+            numWaiters.incrementAndGet();
+            try
+            {
+                synchronized (this)
+                {
+                    // Checked after registering as waiter so that no return is missed
+                    if (!idleObjects.isEmpty() || retired || closed || canCreate())
+                    {
+                        return;
+                    }
+                    long wait = maxWait;
+                    if (wait <= 0)
+                    {
+                        wait();
+                        return;
+                    }
+                    long remaining = wait - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+                    if (remaining <= 0)
+                    {
+                        throw new NoSuchElementException("Timeout waiting for idle object");
+                    }
+                    wait(remaining);
+                }
+            }
+            finally
+            {
+                numWaiters.decrementAndGet();
+                numWaitersForKey.decrementAndGet();
+            }
+        }
+
+        boolean canCreate()
+        {
+            return whenExhaustedAction != WHEN_EXHAUSTED_BLOCK
+                   || ((maxActive < 0 || numActive.get() < maxActive) && hasTotalCapacity());
+        }
+
+        void signal()
+        {
+            if (numWaitersForKey.get() > 0)
+            {
+                synchronized (this)
+                {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class PooledObject
+    {
+
+        final KeyedPool pool;
+        final Object key;
+        final Object object;
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        final AtomicBoolean enqueued = new AtomicBoolean(false);
+        volatile long lastReturned;
+
+        PooledObject(KeyedPool pool, Object key, Object object)
+        {
+            this.pool = pool;
+            this.key = key;
+            this.object = object;
+        }
+    }
+
+    /**
+     * Looks up pooled instances by identity, as dispatchers and requesters do not define
+     * their equality.
+     */
+    private static class IdentityKey
+    {
+
+        private final Object object;
+
+        IdentityKey(Object object)
+        {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof IdentityKey && ((IdentityKey) other).object == object;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(object);
+        }
+    }
+
+    /**
+     * Only keeps a weak reference to the pool, so that pools which are never closed do
+     * not outlive their connector.
+     */
+    private static class Evictor implements Runnable
+    {
+
+        private final WeakReference<ConcurrentConfigurableKeyedObjectPool> poolReference;
+        private volatile ScheduledFuture<?> task;
+
+        Evictor(ConcurrentConfigurableKeyedObjectPool pool)
+        {
+            poolReference = new WeakReference<ConcurrentConfigurableKeyedObjectPool>(pool);
+        }
+
+        @Override
+        public void run()
+        {
+            ConcurrentConfigurableKeyedObjectPool pool = poolReference.get();
+            if (pool == null)
+            {
+                if (task != null)
+                {
+                    task.cancel(false);
+                }
+                return;
+            }
+            try
+            {
+                pool.evict();
+            }
+            catch (Exception e)
+            {
+                pool.logger.warn("Could not evict idle objects", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,680 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A case-insensitive {@link Map} backed by a hash array mapped trie whose nodes are
+ * shared between copies. {@link #clone()} takes constant time, and a write after it
+ * copies only the nodes in the path to the modified entry, instead of the whole map.
+ * <p/>
+ * Like {@link CaseInsensitiveHashMap}, String keys are compared ignoring case and
+ * keep the case they were first stored with. Other keys are compared with
+ * {@link Object#equals(Object)}.
+ * <p/>
+ * Iterators work on the entries the map had when they were created, so the map can
+ * be modified while iterating it. <strong>This implementation is not
+ * thread-safe.</strong>
+ */
+public class CaseInsensitiveHashTrieMap<K, V> extends AbstractMap<K, V> implements Serializable, Cloneable
+{
+
+    private static final long serialVersionUID = 2918343463519324372L;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Bitmap nodes needed to consume the 32 bits of a hash, plus a collision node
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private transient BitmapNode root;
+    private transient int size;
+
+    /**
+     * Identifies the nodes this map can modify in place. Nodes created with another
+     * owner may be shared, so they are copied before being modified.
+     */
+    private transient Object owner = new Object();
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    public CaseInsensitiveHashTrieMap()
+    {
+        super();
+    }
+
+    public CaseInsensitiveHashTrieMap(Map<? extends K, ? extends V> map)
+    {
+        super();
+        putAll(map);
+    }
+
+    private CaseInsensitiveHashTrieMap(BitmapNode root, int size)
+    {
+        super();
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Creates a copy of this map in constant time. Both maps share their entries until
+     * either of them is modified.
+     */
+    @Override
+    public CaseInsensitiveHashTrieMap<K, V> clone()
+    {
+        owner = new Object();
+        return new CaseInsensitiveHashTrieMap<K, V>(root, size);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return find(key) != null;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        Leaf<K, V> leaf = find(key);
+        return leaf == null ? null : leaf.getValue();
+    }
+
+    @Override
+    public V put(K key, V value)
+    {
+        Leaf<K, V> leaf = new Leaf<K, V>(hash(key), key, value);
+        Result<K, V> result = new Result<K, V>();
+        if (root == null)
+        {
+            root = new BitmapNode(owner, 1 << (leaf.hash & MASK), new Object[] {leaf});
+            size++;
+            return null;
+        }
+        root = root.put(owner, 0, leaf, result);
+        if (result.leaf == null)
+        {
+            size++;
+            return null;
+        }
+        return result.leaf.getValue();
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        if (root == null)
+        {
+            return null;
+        }
+        Result<K, V> result = new Result<K, V>();
+        root = root.remove(owner, 0, hash(key), key, result);
+        if (result.leaf == null)
+        {
+            return null;
+        }
+        size--;
+        return result.leaf.getValue();
+    }
+
+    @Override
+    public void clear()
+    {
+        root = null;
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<K, V> find(Object key)
+    {
+        int hash = hash(key);
+        Object node = root;
+        int shift = 0;
+        while (node != null)
+        {
+            if (node instanceof BitmapNode)
+            {
+                BitmapNode bitmapNode = (BitmapNode) node;
+                int bit = bit(hash, shift);
+                if ((bitmapNode.bitmap & bit) == 0)
+                {
+                    return null;
+                }
+                node = bitmapNode.slots[bitmapNode.index(bit)];
+                shift += BITS;
+            }
+            else if (node instanceof Leaf)
+            {
+                Leaf<K, V> leaf = (Leaf<K, V>) node;
+                return leaf.hash == hash && keysEqual(leaf.getKey(), key) ? leaf : null;
+            }
+            else
+            {
+                return (Leaf<K, V>) ((CollisionNode) node).find(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hashes String keys so that keys which are equal ignoring case get the same hash,
+     * without creating a lower case copy of them.
+     */
+    static int hash(Object key)
+    {
+        if (key == null)
+        {
+            return 0;
+        }
+        if (key instanceof String)
+        {
+            String string = (String) key;
+            int hash = 0;
+            for (int i = 0; i < string.length(); i++)
+            {
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(string.charAt(i)));
+            }
+            return hash;
+        }
+        return key.hashCode();
+    }
+
+    static boolean keysEqual(Object key1, Object key2)
+    {
+        if (key1 == key2)
+        {
+            return true;
+        }
+        if (key1 instanceof String && key2 instanceof String)
+        {
+            return ((String) key1).equalsIgnoreCase((String) key2);
+        }
+        return key1 != null && key1.equals(key2);
+    }
+
+    private static int bit(int hash, int shift)
+    {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Object[] insert(Object[] array, int index, Object element)
+    {
+        Object[] result = new Object[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = element;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Object[] delete(Object[] array, int index)
+    {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Creates the node holding two leaves with different hashes that fall in the same
+     * slot of the node at the previous level.
+     */
+    private static BitmapNode merge(Object owner, int shift, Leaf<?, ?> leaf1, Leaf<?, ?> leaf2)
+    {
+        int index1 = (leaf1.hash >>> shift) & MASK;
+        int index2 = (leaf2.hash >>> shift) & MASK;
+        if (index1 == index2)
+        {
+            return new BitmapNode(owner, 1 << index1, new Object[] {merge(owner, shift + BITS, leaf1, leaf2)});
+        }
+        Object[] slots = index1 < index2 ? new Object[] {leaf1, leaf2} : new Object[] {leaf2, leaf1};
+        return new BitmapNode(owner, (1 << index1) | (1 << index2), slots);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (Map.Entry<K, V> entry : entrySet())
+        {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        owner = new Object();
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++)
+        {
+            put((K) in.readObject(), (V) in.readObject());
+        }
+    }
+
+    /**
+     * Holds the leaf found when putting or removing an entry
+     */
+    private static final class Result<K, V>
+    {
+
+        Leaf<K, V> leaf;
+    }
+
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V>
+    {
+
+        private static final long serialVersionUID = -6013946420476432960L;
+
+        final int hash;
+
+        Leaf(int hash, K key, V value)
+        {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * An inner node of the trie. Uses 5 bits of the hash to select one out of 32
+     * slots, and only keeps the slots in use, each holding a leaf or another node.
+     */
+    private static final class BitmapNode
+    {
+
+        final Object owner;
+        int bitmap;
+        Object[] slots;
+
+        BitmapNode(Object owner, int bitmap, Object[] slots)
+        {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit)
+        {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        BitmapNode editable(Object owner)
+        {
+            return this.owner == owner ? this : new BitmapNode(owner, bitmap, slots.clone());
+        }
+
+        @SuppressWarnings("unchecked")
+        <K, V> BitmapNode put(Object owner, int shift, Leaf<K, V> leaf, Result<K, V> result)
+        {
+            int bit = bit(leaf.hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0)
+            {
+                Object[] newSlots = insert(slots, index, leaf);
+                if (this.owner == owner)
+                {
+                    bitmap |= bit;
+                    slots = newSlots;
+                    return this;
+                }
+                return new BitmapNode(owner, bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Leaf)
+            {
+                Leaf<K, V> existing = (Leaf<K, V>) slot;
+                if (existing.hash == leaf.hash && keysEqual(existing.getKey(), leaf.getKey()))
+                {
+                    result.leaf = existing;
+                    if (existing.getValue() == leaf.getValue())
+                    {
+                        return this;
+                    }
+                    // Keeps the case the key was first stored with
+                    newSlot = new Leaf<K, V>(existing.hash, existing.getKey(), leaf.getValue());
+                }
+                else if (existing.hash == leaf.hash)
+                {
+                    newSlot = new CollisionNode(owner, leaf.hash, new Object[] {existing, leaf});
+                }
+                else
+                {
+                    newSlot = merge(owner, shift + BITS, existing, leaf);
+                }
+            }
+            else if (slot instanceof BitmapNode)
+            {
+                newSlot = ((BitmapNode) slot).put(owner, shift + BITS, leaf, result);
+            }
+            else
+            {
+                newSlot = ((CollisionNode) slot).put(owner, leaf, result);
+            }
+
+            if (newSlot == slot)
+            {
+                return this;
+            }
+            BitmapNode node = editable(owner);
+            node.slots[index] = newSlot;
+            return node;
+        }
+
+        /**
+         * @return the node without the entry, or null if it would be left empty
+         */
+        @SuppressWarnings("unchecked")
+        <K, V> BitmapNode remove(Object owner, int shift, int hash, Object key, Result<K, V> result)
+        {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+            {
+                return this;
+            }
+
+            int index = index(bit);
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Leaf)
+            {
+                Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                if (leaf.hash != hash || !keysEqual(leaf.getKey(), key))
+                {
+                    return this;
+                }
+                result.leaf = leaf;
+                newSlot = null;
+            }
+            else if (slot instanceof BitmapNode)
+            {
+                BitmapNode child = ((BitmapNode) slot).remove(owner, shift + BITS, hash, key, result);
+                if (child != null && child.slots.length == 1 && child.slots[0] instanceof Leaf)
+                {
+                    // A single leaf does not need a node of its own
+                    newSlot = child.slots[0];
+                }
+                else
+                {
+                    newSlot = child;
+                }
+            }
+            else
+            {
+                newSlot = ((CollisionNode) slot).remove(owner, key, result);
+            }
+
+            if (newSlot == slot)
+            {
+                return this;
+            }
+            if (newSlot == null)
+            {
+                if (bitmap == bit)
+                {
+                    return null;
+                }
+                Object[] newSlots = delete(slots, index);
+                if (this.owner == owner)
+                {
+                    bitmap &= ~bit;
+                    slots = newSlots;
+                    return this;
+                }
+                return new BitmapNode(owner, bitmap & ~bit, newSlots);
+            }
+            BitmapNode node = editable(owner);
+            node.slots[index] = newSlot;
+            return node;
+        }
+    }
+
+    /**
+     * Holds the leaves whose keys are different but have the same hash
+     */
+    private static final class CollisionNode
+    {
+
+        final Object owner;
+        final int hash;
+        Object[] leaves;
+
+        CollisionNode(Object owner, int hash, Object[] leaves)
+        {
+            this.owner = owner;
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        int indexOf(Object key)
+        {
+            for (int i = 0; i < leaves.length; i++)
+            {
+                if (keysEqual(((Leaf<?, ?>) leaves[i]).getKey(), key))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object find(Object key)
+        {
+            int index = indexOf(key);
+            return index == -1 ? null : leaves[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        <K, V> CollisionNode put(Object owner, Leaf<K, V> leaf, Result<K, V> result)
+        {
+            int index = indexOf(leaf.getKey());
+            if (index == -1)
+            {
+                return new CollisionNode(owner, hash, insert(leaves, leaves.length, leaf));
+            }
+
+            Leaf<K, V> existing = (Leaf<K, V>) leaves[index];
+            result.leaf = existing;
+            if (existing.getValue() == leaf.getValue())
+            {
+                return this;
+            }
+            CollisionNode node = this.owner == owner ? this : new CollisionNode(owner, hash, leaves.clone());
+            node.leaves[index] = new Leaf<K, V>(hash, existing.getKey(), leaf.getValue());
+            return node;
+        }
+
+        /**
+         * @return the node without the entry, or the remaining leaf if only one is left
+         */
+        @SuppressWarnings("unchecked")
+        <K, V> Object remove(Object owner, Object key, Result<K, V> result)
+        {
+            int index = indexOf(key);
+            if (index == -1)
+            {
+                return this;
+            }
+            result.leaf = (Leaf<K, V>) leaves[index];
+            if (leaves.length == 2)
+            {
+                return leaves[1 - index];
+            }
+            return new CollisionNode(owner, hash, delete(leaves, index));
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>>
+    {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof Map.Entry))
+            {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Leaf<K, V> leaf = find(entry.getKey());
+            return leaf != null && (leaf.getValue() == null ? entry.getValue() == null : leaf.getValue().equals(entry.getValue()));
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            if (!contains(o))
+            {
+                return false;
+            }
+            CaseInsensitiveHashTrieMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear()
+        {
+            CaseInsensitiveHashTrieMap.this.clear();
+        }
+    }
+
+    /**
+     * Walks the trie as it was when the iterator was created. Taking ownership away
+     * from the map makes it copy any node it modifies afterwards instead of changing
+     * the nodes being walked.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>>
+    {
+
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+        private Leaf<K, V> next;
+        private Leaf<K, V> last;
+
+        EntryIterator()
+        {
+            owner = new Object();
+            if (root != null)
+            {
+                push(root.slots);
+            }
+            advance();
+        }
+
+        private void push(Object[] array)
+        {
+            depth++;
+            arrays[depth] = array;
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance()
+        {
+            next = null;
+            while (depth >= 0)
+            {
+                if (positions[depth] == arrays[depth].length)
+                {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                Object slot = arrays[depth][positions[depth]++];
+                if (slot instanceof Leaf)
+                {
+                    next = (Leaf<K, V>) slot;
+                    return;
+                }
+                else if (slot instanceof BitmapNode)
+                {
+                    push(((BitmapNode) slot).slots);
+                }
+                else
+                {
+                    push(((CollisionNode) slot).leaves);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next()
+        {
+            if (next == null)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last == null)
+            {
+                throw new IllegalStateException("Cannot remove element before first invoking next()");
+            }
+            CaseInsensitiveHashTrieMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+}
@@ -19,7 +19,9 @@ import java.util.Set;
 
 /**
  * Implementation of {@link Map} that provides copy on write semantics while providing the case-insensitivity
- * of {@link CaseInsensitiveHashMap}. <br>
+ * of {@link CaseInsensitiveHashMap}. Entries are kept in a {@link CaseInsensitiveHashTrieMap}, so a copy
+ * shares them with the original and the first write to either of them only copies the path to the
+ * modified entry. <br>
  * <b>Note:</b> In this {@link Map} implementation {@link #values()} and {@link #entrySet()} return
  * unmodifiable {@link Collection}'s.<br>
  * This implementation is not thread-safe.
@@ -31,43 +33,22 @@ public class CopyOnWriteCaseInsensitiveMap<K, V> implements Map<K, V>, Serializa
 
     private Map<K, V> core;
     private transient Map<K, V> view;
-    private transient boolean requiresCopy;
     private transient Set<K> keyset = new KeySet();
 
-    @SuppressWarnings("unchecked")
     public CopyOnWriteCaseInsensitiveMap()
     {
-        updateCore(new CaseInsensitiveHashMap());
+        updateCore(new CaseInsensitiveHashTrieMap<K, V>());
     }
 
     private CopyOnWriteCaseInsensitiveMap(CopyOnWriteCaseInsensitiveMap<K, V> that)
     {
-        updateCore(that.core);
-        this.requiresCopy = true;
+        updateCore(((CaseInsensitiveHashTrieMap<K, V>) that.core).clone());
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public CopyOnWriteCaseInsensitiveMap<K, V> clone()
     {
-        try
-        {
-            return new CopyOnWriteCaseInsensitiveMap(this);
-        }
-        finally
-        {
-            requiresCopy = true;
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private void copy()
-    {
-        if (requiresCopy)
-        {
-            updateCore(new CaseInsensitiveHashMap(core));
-            requiresCopy = false;
-        }
+        return new CopyOnWriteCaseInsensitiveMap<K, V>(this);
     }
 
     @Override
@@ -103,29 +84,25 @@ public class CopyOnWriteCaseInsensitiveMap<K, V> implements Map<K, V>, Serializa
     @Override
     public V put(K key, V value)
     {
-        copy();
         return core.put(key, value);
     }
 
     @Override
     public V remove(Object key)
     {
-        copy();
         return core.remove(key);
     }
 
     @Override
     public void putAll(Map<? extends K, ? extends V> t)
     {
-        copy();
         core.putAll(t);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void clear()
     {
-        updateCore(new CaseInsensitiveHashMap());
+        core.clear();
     }
 
     public Set<K> keySet()
@@ -232,11 +209,16 @@ public class CopyOnWriteCaseInsensitiveMap<K, V> implements Map<K, V>, Serializa
     }
 
     /**
-     * After deserialization we can just use unserialized original map directly.
+     * After deserialization we can just use unserialized original map directly, unless it was
+     * serialized when entries were kept in a {@link CaseInsensitiveHashMap}.
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
     {
         in.defaultReadObject();
+        if (!(core instanceof CaseInsensitiveHashTrieMap))
+        {
+            core = new CaseInsensitiveHashTrieMap<K, V>(core);
+        }
         this.view = Collections.unmodifiableMap(core);
         this.keyset = new KeySet();
     }
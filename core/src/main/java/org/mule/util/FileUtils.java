@@ -27,6 +27,10 @@ import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.channels.Channel;
 import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.StandardCopyOption;
 import java.util.Enumeration;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -624,7 +628,7 @@ public class FileUtils extends org.apache.commons.io.FileUtils
                         {
                             in = new FileInputStream(srcFile);
                             out = new FileOutputStream(destFile);
-                            out.getChannel().transferFrom(in.getChannel(), 0, srcFile.length());
+                            IOUtils.copyLarge(in.getChannel(), out.getChannel());
                             isRenamed = true;
                         }
                         catch (Exception e)
@@ -743,11 +747,14 @@ public class FileUtils extends org.apache.commons.io.FileUtils
     /** 
      * Try to move a file by renaming with backup attempt by copying/deleting via NIO.
      * Creates intermidiate directories as required.
+     * <p/>
+     * The rename is atomic when both files are on the same file system, other processes never
+     * see a partially written destination file in that case.
      */
     public static boolean moveFileWithCopyFallback(File sourceFile, File destinationFile)
     {
         // try fast file-system-level move/rename first
-        boolean success = sourceFile.renameTo(destinationFile);
+        boolean success = atomicRename(sourceFile, destinationFile);
 
         if (!success)
         {
@@ -764,10 +771,10 @@ public class FileUtils extends org.apache.commons.io.FileUtils
                 fos = new FileOutputStream(destinationFile);
                 FileChannel srcChannel = fis.getChannel();
                 FileChannel dstChannel = fos.getChannel();
-                dstChannel.transferFrom(srcChannel, 0, srcChannel.size());
+                long copied = IOUtils.copyLarge(srcChannel, dstChannel);
                 srcChannel.close();
                 dstChannel.close();
-                success = sourceFile.delete();
+                success = copied == sourceFile.length() && sourceFile.delete();
             }
             catch (IOException ioex)
             {
@@ -784,6 +791,30 @@ public class FileUtils extends org.apache.commons.io.FileUtils
         return success;
     }
 
+    private static boolean atomicRename(File sourceFile, File destinationFile)
+    {
+        try
+        {
+            Files.move(sourceFile.toPath(), destinationFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            // different file systems, the file has to be copied
+            return false;
+        }
+        catch (IOException e)
+        {
+            logger.debug("Failed to rename " + sourceFile + " to " + destinationFile, e);
+            return false;
+        }
+        catch (InvalidPathException e)
+        {
+            logger.debug("Failed to rename " + sourceFile + " to " + destinationFile, e);
+            return false;
+        }
+    }
+
     
     /**
      * Copy in file to out file
@@ -909,7 +940,7 @@ public class FileUtils extends org.apache.commons.io.FileUtils
             FileChannel output = new FileOutputStream(destFile).getChannel();
             try
             {
-                output.transferFrom(input, 0, input.size());
+                IOUtils.copyLarge(input, output);
             }
             finally
             {
@@ -17,6 +17,8 @@ import java.io.Reader;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 
@@ -300,6 +302,31 @@ public class IOUtils extends org.apache.commons.io.IOUtils
         return count;
     }
 
+    /**
+     * Copies the rest of a file, from the current position of the channel, using
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. When the target is a file or
+     * a socket channel the operating system moves the bytes without copying them to the Java heap.
+     * The position of the input channel is moved to the end of the copied data.
+     */
+    public static long copyLarge(FileChannel input, WritableByteChannel output) throws IOException
+    {
+        long position = input.position();
+        long size = input.size();
+        long count = 0;
+        // transferTo may copy less than asked for, large files take several calls
+        while (position + count < size)
+        {
+            long transferred = input.transferTo(position + count, size - position - count, output);
+            if (transferred <= 0)
+            {
+                break;
+            }
+            count += transferred;
+        }
+        input.position(position + count);
+        return count;
+    }
+
     /**
      * Re-implement copy method to allow buffer size to be configured. This won't impact all methods because
      * there is no polymorphism for static methods, but rather just direct use of these two methods.
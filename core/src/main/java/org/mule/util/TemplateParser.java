@@ -190,6 +190,33 @@ public final class TemplateParser
         return result;
     }
 
+    /**
+     * Splits a template into its literal text and the tokens found in it, so it can be
+     * resolved many times without matching the template pattern again.
+     *
+     * @param template the string containing the template place holders i.e. My name
+     *                 is ${name}
+     * @return the compiled template
+     */
+    public CompiledTemplate compile(String template)
+    {
+        List<String> literals = new ArrayList<String>();
+        List<String> tokens = new ArrayList<String>();
+
+        Matcher m = pattern.matcher(template);
+        int literalStart = 0;
+        while (m.find())
+        {
+            literals.add(template.substring(literalStart, m.start()));
+            tokens.add(template.substring(m.start() + pre, m.end() - post));
+            literalStart = m.end();
+        }
+        literals.add(template.substring(literalStart));
+
+        return new CompiledTemplate(template, literals.toArray(new String[literals.size()]),
+                                    tokens.toArray(new String[tokens.size()]));
+    }
+
     /**
      * Matches one or more templates against a Map of key value pairs. If a value for
      * a template is not found in the map the template is left as is in the return
@@ -290,6 +317,75 @@ public final class TemplateParser
         Object match(String token);
     }
 
+    /**
+     * A template split into literal text and tokens by {@link TemplateParser#compile(String)}.
+     * Instances are immutable and can be shared between threads.
+     */
+    public static final class CompiledTemplate
+    {
+        private final String template;
+        // there is always one more literal than tokens, literals may be empty
+        private final String[] literals;
+        private final String[] tokens;
+        private final int literalsLength;
+
+        CompiledTemplate(String template, String[] literals, String[] tokens)
+        {
+            this.template = template;
+            this.literals = literals;
+            this.tokens = tokens;
+
+            int length = 0;
+            for (String literal : literals)
+            {
+                length += literal.length();
+            }
+            this.literalsLength = length;
+        }
+
+        /**
+         * Resolves every token of the template with the callback. As with
+         * {@link TemplateParser#parse(TemplateCallback, String)}, tokens resolving to
+         * <code>null</code> are replaced by "null".
+         *
+         * @param callback a callback used to resolve the property name
+         * @return the resolved String
+         */
+        public String resolve(TemplateCallback callback)
+        {
+            if (tokens.length == 0)
+            {
+                return template;
+            }
+
+            StringBuilder result = new StringBuilder(literalsLength + 16 * tokens.length);
+            for (int i = 0; i < tokens.length; i++)
+            {
+                result.append(literals[i]);
+                Object value = callback.match(tokens[i]);
+                result.append(value == null ? NULL_AS_STRING : value.toString());
+            }
+            result.append(literals[tokens.length]);
+            return result.toString();
+        }
+
+        public boolean isContainsTemplate()
+        {
+            return tokens.length > 0;
+        }
+
+        public String getTemplate()
+        {
+            return template;
+        }
+
+        @Override
+        public String toString()
+        {
+            return template;
+        }
+    }
+
 
     public static class PatternInfo
     {
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.concurrent;
+
+import org.mule.api.config.ThreadingProfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link java.util.concurrent.ExecutorService} that starts a new thread for every
+ * task, meant to be used with a {@link VirtualThreadFactory}. Threads are not pooled;
+ * instead a {@link Semaphore} caps the number of tasks running at the same time.
+ * <p/>
+ * Tasks that can't get a permit are kept in a bounded buffer (if
+ * <code>maxBufferSize</code> is positive) and started as running tasks complete. When
+ * the buffer is full, or there is none, the task is handled according to the
+ * {@link ThreadingProfile} pool exhausted action, the same way a
+ * {@link java.util.concurrent.ThreadPoolExecutor} created by
+ * {@link org.mule.config.pool.DefaultThreadPoolFactory} would.
+ */
+public class VirtualThreadExecutorService extends AbstractExecutorService
+{
+
+    private final ThreadFactory threadFactory;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final BlockingQueue<Runnable> buffer;
+    private final int poolExhaustedAction;
+    private final long threadWaitTimeout;
+
+    private final Set<Thread> workers = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final Object terminationLock = new Object();
+    private volatile boolean shutdown;
+    private volatile boolean stopped;
+
+    /**
+     * @param threadFactory creates the thread running each task
+     * @param maxConcurrency maximum number of tasks running at the same time
+     * @param maxBufferSize maximum number of tasks waiting for a permit, 0 for none
+     * @param poolExhaustedAction one of the <code>ThreadingProfile.WHEN_EXHAUSTED_*</code>
+     *            actions
+     * @param threadWaitTimeout milliseconds to wait for room when the action is
+     *            {@link ThreadingProfile#WHEN_EXHAUSTED_WAIT}, negative to wait forever
+     */
+    public VirtualThreadExecutorService(ThreadFactory threadFactory,
+                                        int maxConcurrency,
+                                        int maxBufferSize,
+                                        int poolExhaustedAction,
+                                        long threadWaitTimeout)
+    {
+        this.threadFactory = threadFactory;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency);
+        this.buffer = maxBufferSize > 0 ? new LinkedBlockingQueue<Runnable>(maxBufferSize) : null;
+        this.poolExhaustedAction = poolExhaustedAction;
+        this.threadWaitTimeout = threadWaitTimeout < 0 ? Long.MAX_VALUE : threadWaitTimeout;
+    }
+
+    public void execute(Runnable task)
+    {
+        if (task == null)
+        {
+            throw new NullPointerException();
+        }
+
+        if (shutdown)
+        {
+            rejectAfterShutdown(task);
+        }
+        else if (permits.tryAcquire())
+        {
+            startIfNotShutdown(task);
+        }
+        else if (buffer != null && buffer.offer(task))
+        {
+            buffered(task);
+        }
+        else
+        {
+            exhausted(task);
+        }
+    }
+
+    private void exhausted(Runnable task)
+    {
+        switch (poolExhaustedAction)
+        {
+            case ThreadingProfile.WHEN_EXHAUSTED_DISCARD :
+                break;
+            case ThreadingProfile.WHEN_EXHAUSTED_DISCARD_OLDEST :
+                if (buffer != null)
+                {
+                    buffer.poll();
+                    execute(task);
+                }
+                break;
+            case ThreadingProfile.WHEN_EXHAUSTED_ABORT :
+                throw new RejectedExecutionException("Task " + task + " rejected, " + maxConcurrency + " tasks already running");
+            case ThreadingProfile.WHEN_EXHAUSTED_RUN :
+                task.run();
+                break;
+            default :
+                // WHEN_EXHAUSTED_WAIT
+                waitForRoom(task);
+                break;
+        }
+    }
+
+    private void waitForRoom(Runnable task)
+    {
+        try
+        {
+            if (buffer != null)
+            {
+                if (!buffer.offer(task, threadWaitTimeout, TimeUnit.MILLISECONDS))
+                {
+                    throw new RejectedExecutionException("Executor did not accept within " + threadWaitTimeout + " ms");
+                }
+                buffered(task);
+            }
+            else
+            {
+                if (!permits.tryAcquire(threadWaitTimeout, TimeUnit.MILLISECONDS))
+                {
+                    throw new RejectedExecutionException("Executor did not accept within " + threadWaitTimeout + " ms");
+                }
+                startIfNotShutdown(task);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    private void rejectAfterShutdown(Runnable task)
+    {
+        if (poolExhaustedAction == ThreadingProfile.WHEN_EXHAUSTED_ABORT
+            || poolExhaustedAction == ThreadingProfile.WHEN_EXHAUSTED_WAIT)
+        {
+            throw new RejectedExecutionException("Executor is already shut down");
+        }
+        // other policies silently discard tasks once shut down
+    }
+
+    /**
+     * Starts a task for which a permit was just acquired, unless the executor was shut
+     * down in the meantime.
+     */
+    private void startIfNotShutdown(Runnable task)
+    {
+        if (shutdown)
+        {
+            permits.release();
+            signalIfTerminated();
+            rejectAfterShutdown(task);
+        }
+        else
+        {
+            start(task);
+        }
+    }
+
+    /**
+     * A task was added to the buffer after failing to get a permit. Start it now if
+     * running tasks completed in the meantime.
+     */
+    private void buffered(Runnable task)
+    {
+        if (shutdown && buffer.remove(task))
+        {
+            signalIfTerminated();
+            rejectAfterShutdown(task);
+        }
+        else
+        {
+            drainBuffer();
+            signalIfTerminated();
+        }
+    }
+
+    /**
+     * Starts buffered tasks while there are permits available. Every thread releasing
+     * a permit or buffering a task calls this afterwards, so a buffered task can't be
+     * left behind without a running task to pick it up.
+     */
+    private void drainBuffer()
+    {
+        while (!stopped && !buffer.isEmpty() && permits.tryAcquire())
+        {
+            Runnable next = buffer.poll();
+            if (next != null)
+            {
+                start(next);
+            }
+            else
+            {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Starts a thread for the task, the caller must hold a permit which is released
+     * when the task completes.
+     */
+    private void start(Runnable task)
+    {
+        boolean started = false;
+        try
+        {
+            threadFactory.newThread(new Worker(task)).start();
+            started = true;
+        }
+        finally
+        {
+            if (!started)
+            {
+                completed();
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of a completed task, handing it over to the next buffered
+     * task if there is one.
+     */
+    private void completed()
+    {
+        if (buffer != null && !stopped)
+        {
+            Runnable next = buffer.poll();
+            if (next != null)
+            {
+                start(next);
+                return;
+            }
+        }
+
+        permits.release();
+        if (buffer != null)
+        {
+            drainBuffer();
+        }
+        signalIfTerminated();
+    }
+
+    private void signalIfTerminated()
+    {
+        if (isTerminated())
+        {
+            synchronized (terminationLock)
+            {
+                terminationLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks currently running
+     */
+    public int getActiveCount()
+    {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public void shutdown()
+    {
+        shutdown = true;
+        signalIfTerminated();
+    }
+
+    public List<Runnable> shutdownNow()
+    {
+        shutdown = true;
+        stopped = true;
+
+        List<Runnable> pending = new ArrayList<Runnable>();
+        if (buffer != null)
+        {
+            buffer.drainTo(pending);
+        }
+        for (Thread worker : workers)
+        {
+            worker.interrupt();
+        }
+        signalIfTerminated();
+        return pending;
+    }
+
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    public boolean isTerminated()
+    {
+        return shutdown && permits.availablePermits() == maxConcurrency && (buffer == null || buffer.isEmpty());
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock)
+        {
+            while (!isTerminated())
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    private class Worker implements Runnable
+    {
+
+        private final Runnable task;
+
+        public Worker(Runnable task)
+        {
+            this.task = task;
+        }
+
+        public void run()
+        {
+            Thread current = Thread.currentThread();
+            workers.add(current);
+            if (stopped)
+            {
+                current.interrupt();
+            }
+
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                workers.remove(current);
+                completed();
+            }
+        }
+    }
+}
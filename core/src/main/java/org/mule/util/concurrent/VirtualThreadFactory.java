@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.concurrent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link NamedThreadFactory} that creates virtual threads. Virtual threads are only
+ * available on Java 21 and later, so they are looked up reflectively; use
+ * {@link #isSupported()} before creating an instance.
+ */
+public class VirtualThreadFactory extends NamedThreadFactory
+{
+
+    private static final Method OF_VIRTUAL = findOfVirtual();
+    private static final Method FACTORY = findFactory();
+    private static final boolean SUPPORTED = checkSupported();
+
+    private final ThreadFactory delegate;
+
+    public VirtualThreadFactory(String name)
+    {
+        this(name, null);
+    }
+
+    public VirtualThreadFactory(String name, ClassLoader contextClassLoader)
+    {
+        super(name, contextClassLoader);
+
+        if (!isSupported())
+        {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this runtime");
+        }
+        delegate = createVirtualThreadFactory();
+    }
+
+    /**
+     * @return true if the running JVM is able to create virtual threads
+     */
+    public static boolean isSupported()
+    {
+        return SUPPORTED;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+        Thread t = delegate.newThread(runnable);
+        configureThread(t);
+        return t;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory()
+    {
+        try
+        {
+            return (ThreadFactory) FACTORY.invoke(OF_VIRTUAL.invoke(null));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new UnsupportedOperationException("Unable to create virtual threads", e);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new UnsupportedOperationException("Unable to create virtual threads", e.getCause());
+        }
+    }
+
+    private static boolean checkSupported()
+    {
+        if (OF_VIRTUAL == null || FACTORY == null)
+        {
+            return false;
+        }
+        try
+        {
+            // virtual threads were a preview feature before Java 21 and fail unless enabled
+            createVirtualThreadFactory();
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            return false;
+        }
+    }
+
+    private static Method findOfVirtual()
+    {
+        try
+        {
+            return Thread.class.getMethod("ofVirtual");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    private static Method findFactory()
+    {
+        try
+        {
+            // look the method up on the public interface, the builder implementation is not accessible
+            return Class.forName("java.lang.Thread$Builder").getMethod("factory");
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
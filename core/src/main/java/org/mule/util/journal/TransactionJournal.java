@@ -6,14 +6,19 @@
  */
 package org.mule.util.journal;
 
+import org.mule.api.config.MuleProperties;
 import org.mule.util.Preconditions;
 
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,15 +32,34 @@ import org.apache.commons.logging.LogFactory;
  * Keeps a memory cache of the log entries for performance reasons.
  * Once a transaction finishes the client of this class must manually remove the
  * entries related to such transaction to clear the cache.
+ *
+ * Entries logged concurrently by different transactions are written to the journal
+ * file as a group. Logging an entry returns once the group that contains it has been
+ * written, so a transaction is not acknowledged as committed before its commit entry
+ * is in the journal.
  */
 public class TransactionJournal<T, K extends JournalEntry<T>>
 {
 
     private static final int MAXIMUM_LOG_FILE_ENTRIES = 50000;
 
+    /**
+     * Milliseconds to wait for entries of other transactions before writing a group of
+     * entries. Zero by default, in which case entries are grouped only while a previous
+     * group is being written.
+     */
+    public static final String GROUP_COMMIT_MAX_DELAY_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "transaction.journal.groupCommitMaxDelay";
+
+    /**
+     * Whether every group of entries is forced to disk after being written to the journal
+     * file. False by default.
+     */
+    public static final String FORCE_WRITES_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX + "transaction.journal.forceWrites";
+
     private transient Log logger = LogFactory.getLog(getClass());
 
     private final TransactionCompletePredicate transactionCompletePredicate;
+    private final JournalEntrySerializer journalEntrySerializer;
 
     /**
      * Log file in which we are currently writing new entries.
@@ -60,9 +84,12 @@ public class TransactionJournal<T, K extends JournalEntry<T>>
         File logFile2 = new File(logFileDirectory, "tx2.log");
         logger.info(String.format("Using files for tx logs %s and %s", logFile1.getAbsolutePath(), logFile2.getAbsolutePath()));
 
-        this.currentLogFile = new TransactionJournalFile(logFile1, journalEntrySerializer);
-        this.notCurrentLogFile = new TransactionJournalFile(logFile2, journalEntrySerializer);
+        long groupCommitMaxDelay = Long.getLong(GROUP_COMMIT_MAX_DELAY_PROPERTY, 0);
+        boolean forceWrites = Boolean.getBoolean(FORCE_WRITES_PROPERTY);
+        this.currentLogFile = new TransactionJournalFile(logFile1, journalEntrySerializer, groupCommitMaxDelay, forceWrites);
+        this.notCurrentLogFile = new TransactionJournalFile(logFile2, journalEntrySerializer, groupCommitMaxDelay, forceWrites);
         this.transactionCompletePredicate = transactionCompletePredicate;
+        this.journalEntrySerializer = journalEntrySerializer;
     }
 
     /**
@@ -70,10 +97,51 @@ public class TransactionJournal<T, K extends JournalEntry<T>>
      *
      * @param journalEntry journal entry with the update operation details
      */
-    public synchronized void logUpdateOperation(JournalEntry<T> journalEntry)
+    public void logUpdateOperation(JournalEntry<T> journalEntry)
     {
-        TransactionJournalFile logFile = determineLogFile(journalEntry.getTxId());
-        logFile.logOperation(journalEntry);
+        logOperation(journalEntry);
+    }
+
+    /**
+     * Log several update operations of the same transaction, waiting once for all of them to
+     * be written instead of once per operation.
+     *
+     * @param journalEntries journal entries with the update operations details
+     */
+    public void logUpdateOperations(Collection<? extends JournalEntry<T>> journalEntries)
+    {
+        if (journalEntries.isEmpty())
+        {
+            return;
+        }
+        List<byte[]> serializedEntries = new ArrayList<byte[]>(journalEntries.size());
+        for (JournalEntry<T> journalEntry : journalEntries)
+        {
+            ByteArrayOutputStream serializedEntry = new ByteArrayOutputStream();
+            journalEntrySerializer.serialize(journalEntry, new DataOutputStream(serializedEntry));
+            serializedEntries.add(serializedEntry.toByteArray());
+        }
+
+        TransactionJournalFile logFile;
+        List<TransactionJournalFile.WriteGroup> writeGroups = new ArrayList<TransactionJournalFile.WriteGroup>(1);
+        synchronized (this)
+        {
+            logFile = determineLogFile(journalEntries.iterator().next().getTxId());
+            int i = 0;
+            for (JournalEntry<T> journalEntry : journalEntries)
+            {
+                TransactionJournalFile.WriteGroup writeGroup = logFile.append(journalEntry, serializedEntries.get(i++));
+                // the entries span several groups if another thread writes a group meanwhile
+                if (writeGroups.isEmpty() || writeGroups.get(writeGroups.size() - 1) != writeGroup)
+                {
+                    writeGroups.add(writeGroup);
+                }
+            }
+        }
+        for (TransactionJournalFile.WriteGroup writeGroup : writeGroups)
+        {
+            logFile.awaitWritten(writeGroup);
+        }
     }
 
     /**
@@ -83,16 +151,36 @@ public class TransactionJournal<T, K extends JournalEntry<T>>
      *
      * @param journalEntry journal entry with the checkpoint operation details
      */
-    public synchronized void logCheckpointOperation(JournalEntry<T> journalEntry)
+    public void logCheckpointOperation(JournalEntry<T> journalEntry)
     {
-        TransactionJournalFile logFile = determineLogFile(journalEntry.getTxId());
-        logFile.logOperation(journalEntry);
+        TransactionJournalFile logFile = logOperation(journalEntry);
         if (transactionCompletePredicate.isTransactionComplete(journalEntry))
         {
             logFile.clearEntriesForTransaction(journalEntry.getTxId());
         }
     }
 
+    /**
+     * Serializes the entry and appends it to the log file of its transaction while
+     * holding the lock of the journal, then waits for it to be written without holding
+     * it so that entries of other transactions can join the same write.
+     */
+    private TransactionJournalFile logOperation(JournalEntry<T> journalEntry)
+    {
+        ByteArrayOutputStream serializedEntry = new ByteArrayOutputStream();
+        journalEntrySerializer.serialize(journalEntry, new DataOutputStream(serializedEntry));
+
+        TransactionJournalFile logFile;
+        TransactionJournalFile.WriteGroup writeGroup;
+        synchronized (this)
+        {
+            logFile = determineLogFile(journalEntry.getTxId());
+            writeGroup = logFile.append(journalEntry, serializedEntry.toByteArray());
+        }
+        logFile.awaitWritten(writeGroup);
+        return logFile;
+    }
+
     /**
      * @param txId transaction identifier
      * @return all the transaction entries for a certain transaction identifier
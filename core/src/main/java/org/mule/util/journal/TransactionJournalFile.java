@@ -12,6 +12,7 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -20,17 +21,26 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
  * Manages a transaction journal file.
  *
+ * Entries logged concurrently are written to the file together. Each entry is
+ * serialized by the thread logging it and appended to the group of entries waiting
+ * to be written. The first thread that finds its group not written yet writes the
+ * whole group with a single write, optionally forcing it to disk, while the threads
+ * arriving meanwhile fill the next group. A thread only returns from
+ * {@link #logOperation(JournalEntry)} once its entry has been written.
+ *
  * @param <T> type of the transaction identifier
  * @param <K> type of the journal entry
  */
@@ -48,9 +58,19 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
     private final File journalFile;
     private final JournalEntrySerializer<T, K> journalEntrySerializer;
 
+    private final long groupCommitMaxDelay;
+    private final boolean forceWrites;
+
     private Multimap<T, K> entries = LinkedHashMultimap.create();
 
-    private DataOutputStream logFileOutputStream;
+    /**
+     * Held while writing a group of entries to the file. Must be acquired before the
+     * monitor of this journal file.
+     */
+    private final Object writeLock = new Object();
+    private WriteGroup currentGroup = new WriteGroup();
+
+    private FileOutputStream logFileOutputStream;
     private int journalOperations = 0;
 
     /**
@@ -58,9 +78,22 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
      * @param journalEntrySerializer serializer for {@link org.mule.util.journal.JournalEntry}
      */
     public TransactionJournalFile(File journalFile, JournalEntrySerializer journalEntrySerializer)
+    {
+        this(journalFile, journalEntrySerializer, 0, false);
+    }
+
+    /**
+     * @param journalFile journal file to use. Will be created if it doesn't exists. If exists then transaction entries will get loaded from it.
+     * @param journalEntrySerializer serializer for {@link org.mule.util.journal.JournalEntry}
+     * @param groupCommitMaxDelay milliseconds to wait for more entries before writing a group of entries
+     * @param forceWrites whether every group of entries is forced to disk once written
+     */
+    public TransactionJournalFile(File journalFile, JournalEntrySerializer journalEntrySerializer, long groupCommitMaxDelay, boolean forceWrites)
     {
         this.journalFile = journalFile;
         this.journalEntrySerializer = journalEntrySerializer;
+        this.groupCommitMaxDelay = groupCommitMaxDelay;
+        this.forceWrites = forceWrites;
         if (journalFile.exists())
         {
             loadAllEntries();
@@ -69,14 +102,115 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
     }
 
     /**
-     * Adds a journal entry for an operation done over a transactional resource
+     * Adds a journal entry for an operation done over a transactional resource and
+     * waits until it is written to the journal file.
+     *
+     * @param journalEntry operation details
+     */
+    public void logOperation(K journalEntry)
+    {
+        awaitWritten(append(journalEntry, serialize(journalEntry)));
+    }
+
+    /**
+     * @param journalEntry journal entry to serialize
+     * @return the journal entry as it is written to the journal file
+     */
+    private byte[] serialize(K journalEntry)
+    {
+        ByteArrayOutputStream serializedEntry = new ByteArrayOutputStream();
+        journalEntrySerializer.serialize(journalEntry, new DataOutputStream(serializedEntry));
+        return serializedEntry.toByteArray();
+    }
+
+    /**
+     * Adds a journal entry without waiting for it to be written to the journal file.
+     *
      * @param journalEntry operation details
+     * @param serializedEntry the journal entry as returned by {@link #serialize(JournalEntry)}
+     * @return the group in which the entry will be written, to be passed to {@link #awaitWritten(WriteGroup)}
      */
-    public synchronized void logOperation(K journalEntry)
+    synchronized WriteGroup append(K journalEntry, byte[] serializedEntry)
     {
         entries.put(journalEntry.getTxId(), journalEntry);
-        journalEntrySerializer.serialize(journalEntry, logFileOutputStream);
+        currentGroup.append(serializedEntry);
         journalOperations++;
+        return currentGroup;
+    }
+
+    /**
+     * Waits until a group of entries is written to the journal file, writing it
+     * if no other thread is doing so.
+     *
+     * @param group group returned when appending an entry
+     */
+    void awaitWritten(WriteGroup group)
+    {
+        synchronized (writeLock)
+        {
+            if (!group.written)
+            {
+                // The group of the caller is still the current one, since groups are
+                // only replaced while holding the write lock
+                delayGroupCommit();
+                writeCurrentGroup();
+            }
+        }
+        if (group.failure != null)
+        {
+            throw new MuleRuntimeException(group.failure);
+        }
+    }
+
+    private void delayGroupCommit()
+    {
+        if (groupCommitMaxDelay > 0)
+        {
+            try
+            {
+                Thread.sleep(groupCommitMaxDelay);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the write lock.
+     */
+    private void writeCurrentGroup()
+    {
+        WriteGroup group;
+        FileOutputStream outputStream;
+        synchronized (this)
+        {
+            group = currentGroup;
+            currentGroup = new WriteGroup();
+            outputStream = logFileOutputStream;
+        }
+        if (group.isEmpty())
+        {
+            group.written = true;
+            return;
+        }
+        try
+        {
+            group.writeTo(outputStream);
+            if (forceWrites)
+            {
+                outputStream.getChannel().force(false);
+            }
+        }
+        catch (IOException e)
+        {
+            group.failure = e;
+        }
+        finally
+        {
+            group.written = true;
+        }
     }
 
     /**
@@ -86,19 +220,31 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
      *
      * @param txId transaction identifier
      */
-    public synchronized void clearEntriesForTransaction(T txId)
+    public void clearEntriesForTransaction(T txId)
     {
-        Collection<K> entries = this.entries.removeAll(txId);
-        if (logger.isDebugEnabled())
+        boolean clearFile;
+        synchronized (this)
         {
-            logger.debug("Evicted from tx log file " + entries.size() + " entries from txid " + txId);
+            Collection<K> entries = this.entries.removeAll(txId);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Evicted from tx log file " + entries.size() + " entries from txid " + txId);
+            }
+            clearFile = this.entries.isEmpty() && journalOperations > MINIMUM_ENTRIES_TO_CLEAR_FILE;
         }
-        if (this.entries.isEmpty())
+        if (clearFile)
         {
-            if (journalOperations > MINIMUM_ENTRIES_TO_CLEAR_FILE)
+            synchronized (writeLock)
             {
-                clear();
-                journalOperations = 0;
+                synchronized (this)
+                {
+                    // Entries could have been logged since they were checked
+                    if (this.entries.isEmpty())
+                    {
+                        clear();
+                        journalOperations = 0;
+                    }
+                }
             }
         }
     }
@@ -108,7 +254,19 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
      *
      * Will not remove the transaction context.
      */
-    public synchronized void close()
+    public void close()
+    {
+        synchronized (writeLock)
+        {
+            writeCurrentGroup();
+            synchronized (this)
+            {
+                closeLogOutputStream();
+            }
+        }
+    }
+
+    private void closeLogOutputStream()
     {
         try
         {
@@ -154,12 +312,21 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
     /**
      * Remove all the entries from the transaction journal and cleans the transaction journal fle.
      */
-    public synchronized void clear()
+    public void clear()
     {
-        close();
-        entries.clear();
-        FileUtils.deleteQuietly(journalFile);
-        createLogOutputStream();
+        synchronized (writeLock)
+        {
+            synchronized (this)
+            {
+                closeLogOutputStream();
+                entries.clear();
+                // Entries not written yet belong to the transactions being removed
+                currentGroup.written = true;
+                currentGroup = new WriteGroup();
+                FileUtils.deleteQuietly(journalFile);
+                createLogOutputStream();
+            }
+        }
     }
 
     private void createLogOutputStream()
@@ -177,7 +344,7 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
         }
         try
         {
-            this.logFileOutputStream = new DataOutputStream(new FileOutputStream(journalFile, true));
+            this.logFileOutputStream = new FileOutputStream(journalFile, true);
         }
         catch (FileNotFoundException e)
         {
@@ -192,9 +359,13 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
             return;
         }
         DataInputStream dataInputStream = null;
+        long fileLength = journalFile.length();
+        long validLength = 0;
+        boolean incompleteEntry = false;
         try
         {
-            dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+            CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+            dataInputStream = new DataInputStream(countingInputStream);
             boolean logEntryCreationFailed = false;
             while (!logEntryCreationFailed)
             {
@@ -204,6 +375,7 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
                     if (journalEntry != null)
                     {
                         this.entries.put(journalEntry.getTxId(), journalEntry);
+                        validLength = countingInputStream.getByteCount();
                     }
                     else
                     {
@@ -214,6 +386,7 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
                 {
                     logger.debug("Expected exception since there are no more log entries",e);
                     logEntryCreationFailed = true;
+                    incompleteEntry = countingInputStream.getByteCount() >= fileLength;
                 }
                 catch(Exception e)
                 {
@@ -223,6 +396,8 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
                         logger.debug(e);
                     }
                     logEntryCreationFailed = true;
+                    // An entry that ends with the file was only partially written
+                    incompleteEntry = countingInputStream.getByteCount() >= fileLength;
                 }
             }
         }
@@ -244,12 +419,49 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
                 logger.error(e);
             }
         }
+        if (incompleteEntry && validLength < fileLength)
+        {
+            discardIncompleteEntry(validLength);
+        }
+    }
+
+    /**
+     * Truncates the entry left incomplete by a failure while writing it, so that the
+     * entries logged from now on can be read back.
+     */
+    private void discardIncompleteEntry(long validLength)
+    {
+        logger.warn("Discarding incomplete entry at the end of transaction journal " + journalFile.getAbsolutePath());
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(journalFile, "rw");
+            file.setLength(validLength);
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+        finally
+        {
+            if (file != null)
+            {
+                try
+                {
+                    file.close();
+                }
+                catch (IOException e)
+                {
+                    logger.error(e);
+                }
+            }
+        }
     }
 
     /**
      * @return the number different transaction identifier held by the journal.
      */
-    public int size()
+    public synchronized int size()
     {
         return entries.size();
     }
@@ -258,10 +470,36 @@ class TransactionJournalFile<T, K extends JournalEntry<T>>
      * @param txId transaction identifier
      * @return true if contains entries for that txId, false otherwise
      */
-    public boolean containsTx(T txId)
+    public synchronized boolean containsTx(T txId)
     {
         return this.entries.containsKey(txId);
     }
 
+    /**
+     * Entries waiting to be written together to the journal file.
+     */
+    static class WriteGroup
+    {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private volatile boolean written = false;
+        private volatile IOException failure;
+
+        void append(byte[] serializedEntry)
+        {
+            buffer.write(serializedEntry, 0, serializedEntry.length);
+        }
+
+        boolean isEmpty()
+        {
+            return buffer.size() == 0;
+        }
+
+        void writeTo(FileOutputStream outputStream) throws IOException
+        {
+            buffer.writeTo(outputStream);
+        }
+    }
+
 }
 
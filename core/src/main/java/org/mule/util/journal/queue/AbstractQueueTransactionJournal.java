@@ -15,7 +15,9 @@ import org.mule.util.queue.QueueStore;
 import com.google.common.collect.Multimap;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,6 +75,23 @@ public abstract class AbstractQueueTransactionJournal<T, K extends JournalEntry<
         logFile.logUpdateOperation(createUpdateJournalEntry(txId, AbstractQueueTxJournalEntry.Operation.REMOVE.getByteRepresentation(), queue.getName(), value));
     }
 
+    /**
+     * Logs the removal of several values from a queue with a single write to the journal.
+     */
+    public void logRemoves(T txId, QueueStore queue, Collection<Serializable> values)
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Logging " + values.size() + " queue remove operations for tx " + txId);
+        }
+        List<K> journalEntries = new ArrayList<K>(values.size());
+        for (Serializable value : values)
+        {
+            journalEntries.add(createUpdateJournalEntry(txId, AbstractQueueTxJournalEntry.Operation.REMOVE.getByteRepresentation(), queue.getName(), value));
+        }
+        logFile.logUpdateOperations(journalEntries);
+    }
+
     public void logCommit(T txId)
     {
         if (logger.isDebugEnabled())
@@ -6,8 +6,8 @@
  */
 package org.mule.util.lock;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -15,84 +15,72 @@ import java.util.concurrent.locks.Lock;
 /**
  * {@link LockGroup} implementation for holding references
  * to created locks inside a mule instance.
+ * <p/>
+ * Locks are kept in a concurrent map so that locking different ids doesn't contend on
+ * a shared monitor. Each entry counts the threads holding or waiting for its lock, and
+ * the last one to release it removes the entry. An entry whose count dropped to zero
+ * can't be acquired again, threads finding it create a new one instead.
  */
 public class InstanceLockGroup implements LockGroup
 {
-    private Map<String, LockEntry> locks;
-    private Object lockAccessMonitor = new Object();
-    private LockProvider lockProvider;
+    private final ConcurrentMap<String, LockEntry> locks;
+    private final LockProvider lockProvider;
 
     public InstanceLockGroup(LockProvider lockProvider)
     {
         this.lockProvider = lockProvider;
-        this.locks = new HashMap<String,LockEntry>();
+        this.locks = new ConcurrentHashMap<String, LockEntry>();
     }
 
     public void lock(String lockId)
     {
-        LockEntry lockEntry;
-        synchronized (lockAccessMonitor)
+        LockEntry lockEntry = acquireEntry(lockId);
+        boolean lockAcquired = false;
+        try
         {
-            if (locks.containsKey(lockId))
-            {
-                lockEntry = locks.get(lockId);
-            }
-            else
+            lockEntry.getLock().lock();
+            lockAcquired = true;
+        }
+        finally
+        {
+            if (!lockAcquired)
             {
-                lockEntry = new LockEntry(lockProvider.createLock(lockId));
-                locks.put(lockId,lockEntry);
+                releaseEntry(lockId, lockEntry);
             }
-            lockEntry.incrementLockCount();
-            lockAccessMonitor.notifyAll();
         }
-        lockEntry.getLock().lock();
     }
 
     public void unlock(String key)
     {
-        synchronized (lockAccessMonitor)
+        LockEntry lockEntry = locks.get(key);
+        if (lockEntry != null)
         {
-            LockEntry lockEntry = locks.get(key);
-            if (lockEntry != null)
+            try
             {
-                lockEntry.decrementLockCount();
-                if (!lockEntry.hasPendingLocks())
-                {
-                    locks.remove(key);
-                }
+                // unlock before releasing the entry, otherwise a new entry with a different
+                // lock could be created and acquired while this one is still held
                 lockEntry.getLock().unlock();
             }
-            lockAccessMonitor.notifyAll();
+            finally
+            {
+                releaseEntry(key, lockEntry);
+            }
         }
     }
 
     public boolean tryLock(String lockId, long timeout, TimeUnit timeUnit) throws InterruptedException
     {
-        LockEntry lockEntry;
-        synchronized (lockAccessMonitor)
+        LockEntry lockEntry = acquireEntry(lockId);
+        boolean lockAcquired = false;
+        try
         {
-            if (locks.containsKey(lockId))
-            {
-                lockEntry = locks.get(lockId);
-            }
-            else
-            {
-                lockEntry = new LockEntry(lockProvider.createLock(lockId));
-                locks.put(lockId,lockEntry);
-            }
-            lockEntry.incrementLockCount();
-            lockAccessMonitor.notifyAll();
+            lockAcquired = lockEntry.getLock().tryLock(timeout, timeUnit);
         }
-        boolean lockAcquired = lockEntry.getLock().tryLock(timeout, timeUnit);
-        if (!lockAcquired)
+        finally
         {
-            synchronized (lockAccessMonitor)
+            if (!lockAcquired)
             {
-                lockEntry.decrementLockCount();
-                if (!lockEntry.hasPendingLocks())
-                {
-                    locks.remove(lockId);
-                }
+                releaseEntry(lockId, lockEntry);
             }
         }
         return lockAcquired;
@@ -101,31 +89,17 @@ public class InstanceLockGroup implements LockGroup
     @Override
     public boolean tryLock(String lockId)
     {
-        LockEntry lockEntry;
-        synchronized (lockAccessMonitor)
+        LockEntry lockEntry = acquireEntry(lockId);
+        boolean lockAcquired = false;
+        try
         {
-            if (locks.containsKey(lockId))
-            {
-                lockEntry = locks.get(lockId);
-            }
-            else
-            {
-                lockEntry = new LockEntry(lockProvider.createLock(lockId));
-                locks.put(lockId,lockEntry);
-            }
-            lockEntry.incrementLockCount();
-            lockAccessMonitor.notifyAll();
+            lockAcquired = lockEntry.getLock().tryLock();
         }
-        boolean lockAcquired = lockEntry.getLock().tryLock();
-        if (!lockAcquired)
+        finally
         {
-            synchronized (lockAccessMonitor)
+            if (!lockAcquired)
             {
-                lockEntry.decrementLockCount();
-                if (!lockEntry.hasPendingLocks())
-                {
-                    locks.remove(lockId);
-                }
+                releaseEntry(lockId, lockEntry);
             }
         }
         return lockAcquired;
@@ -134,22 +108,68 @@ public class InstanceLockGroup implements LockGroup
     @Override
     public void lockInterruptibly(String lockId) throws InterruptedException
     {
-        LockEntry lockEntry;
-        synchronized (lockAccessMonitor)
+        LockEntry lockEntry = acquireEntry(lockId);
+        boolean lockAcquired = false;
+        try
+        {
+            lockEntry.getLock().lockInterruptibly();
+            lockAcquired = true;
+        }
+        finally
         {
-            if (locks.containsKey(lockId))
+            if (!lockAcquired)
             {
-                lockEntry = locks.get(lockId);
+                releaseEntry(lockId, lockEntry);
             }
-            else
+        }
+    }
+
+    /**
+     * Returns the entry for the lock id with its count incremented, creating it if there
+     * is none.
+     */
+    private LockEntry acquireEntry(String lockId)
+    {
+        LockEntry lockEntry = locks.get(lockId);
+        while (true)
+        {
+            if (lockEntry == null)
             {
-                lockEntry = new LockEntry(lockProvider.createLock(lockId));
-                locks.put(lockId,lockEntry);
+                // the lock created by a thread losing the race is just discarded
+                LockEntry newEntry = new LockEntry(lockProvider.createLock(lockId));
+                newEntry.incrementLockCount();
+                lockEntry = locks.putIfAbsent(lockId, newEntry);
+                if (lockEntry == null)
+                {
+                    return newEntry;
+                }
+            }
+
+            if (lockEntry.retain())
+            {
+                return lockEntry;
             }
-            lockEntry.incrementLockCount();
-            lockAccessMonitor.notifyAll();
+
+            // the entry is being removed by the thread that released it last
+            locks.remove(lockId, lockEntry);
+            lockEntry = locks.get(lockId);
+        }
+    }
+
+    private void releaseEntry(String lockId, LockEntry lockEntry)
+    {
+        if (lockEntry.release())
+        {
+            locks.remove(lockId, lockEntry);
         }
-        lockEntry.getLock().lockInterruptibly();
+    }
+
+    /**
+     * @return the number of locks currently held or waited for
+     */
+    int getLockCount()
+    {
+        return locks.size();
     }
 
     public static class LockEntry
@@ -181,14 +201,40 @@ public class InstanceLockGroup implements LockGroup
         {
             return lockCount.get() > 0;
         }
+
+        /**
+         * Increments the count unless it already dropped to zero.
+         *
+         * @return false if the entry was released by all its users and can't be used
+         */
+        boolean retain()
+        {
+            while (true)
+            {
+                int count = lockCount.get();
+                if (count <= 0)
+                {
+                    return false;
+                }
+                if (lockCount.compareAndSet(count, count + 1))
+                {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return true if this was the last user of the entry
+         */
+        boolean release()
+        {
+            return lockCount.decrementAndGet() == 0;
+        }
     }
 
     @Override
     public void dispose()
     {
-        synchronized (lockAccessMonitor)
-        {
-            locks.clear();
-        }
+        locks.clear();
     }
 }
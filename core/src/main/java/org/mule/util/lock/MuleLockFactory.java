@@ -17,11 +17,11 @@ import java.util.concurrent.locks.Lock;
 
 public class MuleLockFactory implements LockFactory, MuleContextAware, Initialisable, Disposable
 {
-    private LockGroup lockGroup;
+    private volatile LockGroup lockGroup;
     private LockProvider lockProvider;
     private MuleContext muleContext;
 
-    public synchronized Lock createLock(String lockId)
+    public Lock createLock(String lockId)
     {
         return new LockAdapter(lockId,lockGroup);
     }
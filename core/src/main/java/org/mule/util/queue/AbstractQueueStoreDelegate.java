@@ -7,7 +7,9 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Abstract queue delegate implementation that forces common queue behaviour
@@ -29,6 +31,7 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
             add(o);
             this.notifyAll();
         }
+        awaitPersisted();
     }
 
     @Override
@@ -60,8 +63,12 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
                 add(o);
             }
             this.notifyAll();
-            return true;
         }
+        if (o != null)
+        {
+            awaitPersisted();
+        }
+        return true;
     }
 
     @Override
@@ -70,16 +77,9 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
         checkInterrupted();
         synchronized (this)
         {
-            long l1 = timeout > 0L ? System.currentTimeMillis() : 0L;
-            long l2 = timeout;
-            while (isEmpty())
+            if (!waitUntilNotEmpty(timeout))
             {
-                if (l2 <= 0L)
-                {
-                    return null;
-                }
-                this.wait(l2);
-                l2 = timeout - (System.currentTimeMillis() - l1);
+                return null;
             }
 
             Serializable o = removeFirst();
@@ -88,6 +88,39 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
         }
     }
 
+    @Override
+    public final List<Serializable> poll(int maxItems, long timeout) throws InterruptedException
+    {
+        checkInterrupted();
+        synchronized (this)
+        {
+            if (!waitUntilNotEmpty(timeout))
+            {
+                return new ArrayList<Serializable>(0);
+            }
+
+            List<Serializable> items = removeFirst(maxItems);
+            this.notifyAll();
+            return items;
+        }
+    }
+
+    private boolean waitUntilNotEmpty(long timeout) throws InterruptedException
+    {
+        long l1 = timeout > 0L ? System.currentTimeMillis() : 0L;
+        long l2 = timeout;
+        while (isEmpty())
+        {
+            if (l2 <= 0L)
+            {
+                return false;
+            }
+            this.wait(l2);
+            l2 = timeout - (System.currentTimeMillis() - l1);
+        }
+        return true;
+    }
+
     @Override
     public final Serializable peek() throws InterruptedException
     {
@@ -105,6 +138,23 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
         }
     }
 
+    @Override
+    public final List<Serializable> peek(int maxItems) throws InterruptedException
+    {
+        checkInterrupted();
+        synchronized (this)
+        {
+            if (isEmpty())
+            {
+                return new ArrayList<Serializable>(0);
+            }
+            else
+            {
+                return getFirst(maxItems);
+            }
+        }
+    }
+
     @Override
     public final void untake(Serializable item) throws InterruptedException
     {
@@ -129,12 +179,23 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
     @Override
     public final boolean addAll(Collection<? extends Serializable> items)
     {
+        boolean result;
         synchronized (this)
         {
-            boolean result = doAddAll(items);
+            result = doAddAll(items);
             this.notifyAll();
-            return result;
         }
+        awaitPersisted();
+        return result;
+    }
+
+    /**
+     * Called once added items are visible in the queue, without holding its lock, so
+     * implementations can wait until they are persisted without blocking other producers
+     * or consumers. Does nothing by default.
+     */
+    protected void awaitPersisted()
+    {
     }
 
     private void checkInterrupted() throws InterruptedException
@@ -175,6 +236,41 @@ public abstract class AbstractQueueStoreDelegate implements QueueStoreDelegate
      */
     protected abstract Serializable removeFirst() throws InterruptedException;
 
+    /**
+     * reads up to maxItems elements from the front of the queue. Only reads the first
+     * element by default, delegates that can read several elements at once should
+     * override it.
+     *
+     * @return the first elements in the queue
+     * @throws InterruptedException
+     */
+    protected List<Serializable> getFirst(int maxItems) throws InterruptedException
+    {
+        List<Serializable> items = new ArrayList<Serializable>(1);
+        Serializable first = getFirst();
+        if (first != null)
+        {
+            items.add(first);
+        }
+        return items;
+    }
+
+    /**
+     * removes up to maxItems elements from the front of the queue
+     *
+     * @return the removed elements
+     * @throws InterruptedException
+     */
+    protected List<Serializable> removeFirst(int maxItems) throws InterruptedException
+    {
+        List<Serializable> items = new ArrayList<Serializable>(Math.min(maxItems, size()));
+        while (items.size() < maxItems && !isEmpty())
+        {
+            items.add(removeFirst());
+        }
+        return items;
+    }
+
     /**
      * Adds an item at the end of the queue
      *
@@ -7,6 +7,7 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Wrapper for QueueStore so the cache in {@link org.mule.util.queue.AbstractQueueManager} gets
@@ -54,6 +55,18 @@ class CacheAwareQueueStore implements QueueStore
         return queueStore.peek();
     }
 
+    @Override
+    public List<Serializable> poll(int maxItems, long timeout) throws InterruptedException
+    {
+        return queueStore.poll(maxItems, timeout);
+    }
+
+    @Override
+    public List<Serializable> peek(int maxItems) throws InterruptedException
+    {
+        return queueStore.peek(maxItems);
+    }
+
     @Override
     public void untake(Serializable item) throws InterruptedException
     {
@@ -9,8 +9,14 @@ package org.mule.util.queue;
 public class DefaultQueueConfiguration implements QueueConfiguration
 {
 
+    /**
+     * System property to make persistent queues use a {@link SegmentedLogQueueStoreDelegate} by default.
+     */
+    public static final String SEGMENTED_LOG_PROPERTY_KEY = "mule.queue.segmentedLog";
+
     private final boolean persistent;
     private final int capacity;
+    private final boolean segmentedLog;
 
     public DefaultQueueConfiguration()
     {
@@ -18,9 +24,21 @@ public class DefaultQueueConfiguration implements QueueConfiguration
     }
 
     public DefaultQueueConfiguration(int capacity, boolean isPersistent)
+    {
+        this(capacity, isPersistent, Boolean.getBoolean(SEGMENTED_LOG_PROPERTY_KEY));
+    }
+
+    /**
+     * @param capacity maximum number of elements in the queue
+     * @param isPersistent whether the queue content must be stored in disk
+     * @param segmentedLog whether a persistent queue stores its content in an append-only segmented log
+     *        instead of the default dual file storage
+     */
+    public DefaultQueueConfiguration(int capacity, boolean isPersistent, boolean segmentedLog)
     {
         this.capacity = capacity;
         this.persistent = isPersistent;
+        this.segmentedLog = segmentedLog;
     }
 
     @Override
@@ -35,11 +53,19 @@ public class DefaultQueueConfiguration implements QueueConfiguration
         return capacity;
     }
 
+    /**
+     * @return true if a persistent queue must store its content in an append-only segmented log
+     */
+    public boolean isSegmentedLog()
+    {
+        return segmentedLog;
+    }
+
     @Override
     public String toString()
     {
         return String.format("DefaultQueueConfiguration{" +
-               "persistent=%s, capacity=%s}", persistent, capacity);
+               "persistent=%s, capacity=%s, segmentedLog=%s}", persistent, capacity, segmentedLog);
     }
 
     @Override
@@ -53,6 +79,7 @@ public class DefaultQueueConfiguration implements QueueConfiguration
         {
             return false;
         }
-        return persistent == ((DefaultQueueConfiguration)obj).persistent && capacity == ((DefaultQueueConfiguration)obj).capacity;
+        return persistent == ((DefaultQueueConfiguration)obj).persistent && capacity == ((DefaultQueueConfiguration)obj).capacity
+               && segmentedLog == ((DefaultQueueConfiguration)obj).segmentedLog;
     }
 }
@@ -9,6 +9,7 @@ package org.mule.util.queue;
 import org.mule.api.MuleContext;
 
 import java.io.Serializable;
+import java.util.List;
 
 import org.apache.commons.lang.NotImplementedException;
 
@@ -48,7 +49,15 @@ public class DefaultQueueStore implements RecoverableQueueStore
         }
         if (this.config.isPersistent())
         {
-            delegate = new DualRandomAccessFileQueueStoreDelegate(this.name, muleContext.getConfiguration().getWorkingDirectory(), muleContext, this.config.getCapacity());
+            String workingDirectory = muleContext.getConfiguration().getWorkingDirectory();
+            if (isSegmentedLog(this.config) || SegmentedLogQueueStoreDelegate.exists(this.name, workingDirectory))
+            {
+                delegate = new SegmentedLogQueueStoreDelegate(this.name, workingDirectory, muleContext, this.config.getCapacity());
+            }
+            else
+            {
+                delegate = new DualRandomAccessFileQueueStoreDelegate(this.name, workingDirectory, muleContext, this.config.getCapacity());
+            }
         }
         else
         {
@@ -56,6 +65,11 @@ public class DefaultQueueStore implements RecoverableQueueStore
         }
     }
 
+    private boolean isSegmentedLog(QueueConfiguration config)
+    {
+        return config instanceof DefaultQueueConfiguration && ((DefaultQueueConfiguration) config).isSegmentedLog();
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -94,6 +108,16 @@ public class DefaultQueueStore implements RecoverableQueueStore
         return delegate.peek();
     }
 
+    public List<Serializable> poll(int maxItems, long timeout) throws InterruptedException
+    {
+        return delegate.poll(maxItems, timeout);
+    }
+
+    public List<Serializable> peek(int maxItems) throws InterruptedException
+    {
+        return delegate.peek(maxItems);
+    }
+
     public void untake(Serializable item) throws InterruptedException
     {
         delegate.untake(item);
@@ -7,8 +7,10 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * The default QueueStoreDelegate. This uses a LinkedList to store the members of the queue.
@@ -47,6 +49,12 @@ public class DefaultQueueStoreDelegate extends AbstractQueueStoreDelegate
         return list.getFirst();
     }
 
+    @Override
+    protected List<Serializable> getFirst(int maxItems)
+    {
+        return new ArrayList<Serializable>(list.subList(0, Math.min(maxItems, list.size())));
+    }
+
     @Override
     protected void addFirst(Serializable item)
     {
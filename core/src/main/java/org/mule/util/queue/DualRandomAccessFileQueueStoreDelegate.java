@@ -8,7 +8,6 @@ package org.mule.util.queue;
 
 import org.mule.api.MuleContext;
 import org.mule.util.Preconditions;
-import org.mule.util.SerializationUtils;
 
 import java.io.File;
 import java.io.Serializable;
@@ -93,7 +92,7 @@ public class DualRandomAccessFileQueueStoreDelegate extends AbstractQueueStoreDe
     protected void addFirst(Serializable item) throws InterruptedException
     {
         switchWriteFileIfFull();
-        byte[] serialiazedObject = SerializationUtils.serialize(item);
+        byte[] serialiazedObject = muleContext.getObjectSerializer().serialize(item);
         readFile.addFirst(serialiazedObject);
     }
 
@@ -101,7 +100,7 @@ public class DualRandomAccessFileQueueStoreDelegate extends AbstractQueueStoreDe
     protected void add(Serializable item)
     {
         switchWriteFileIfFull();
-        byte[] serialiazedObject = SerializationUtils.serialize(item);
+        byte[] serialiazedObject = muleContext.getObjectSerializer().serialize(item);
         writeFile.addLast(serialiazedObject);
     }
 
@@ -142,6 +141,66 @@ public class DualRandomAccessFileQueueStoreDelegate extends AbstractQueueStoreDe
         return deserialize(bytes);
     }
 
+    @Override
+    protected List<Serializable> getFirst(int maxItems) throws InterruptedException
+    {
+        List<Serializable> items = new ArrayList<Serializable>();
+        if (isEmpty())
+        {
+            return items;
+        }
+        Lock lock = filesLock.readLock();
+        lock.lock();
+        List<byte[]> data;
+        try
+        {
+            if (readFile.isEmpty())
+            {
+                readFile.clear();
+                switchReadFile();
+            }
+            // only the elements in the current read file, the queue may return less than asked for
+            data = readFile.getFirst(maxItems);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        for (byte[] bytes : data)
+        {
+            items.add(deserialize(bytes));
+        }
+        return items;
+    }
+
+    @Override
+    protected List<Serializable> removeFirst(int maxItems) throws InterruptedException
+    {
+        List<Serializable> items = new ArrayList<Serializable>();
+        while (items.size() < maxItems && !isEmpty())
+        {
+            Lock lock = filesLock.readLock();
+            lock.lock();
+            byte[] bytes;
+            try
+            {
+                if (readFile.isEmpty())
+                {
+                    readFile.clear();
+                    switchReadFile();
+                }
+                // removes and reads the element at once, instead of reading it first as removeFirst() does
+                bytes = readFile.removeFirst();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            items.add(deserialize(bytes));
+        }
+        return items;
+    }
+
     @Override
     public int size()
     {
@@ -238,7 +297,7 @@ public class DualRandomAccessFileQueueStoreDelegate extends AbstractQueueStoreDe
 
     private Serializable deserialize(byte[] valuesAsBytes)
     {
-        return (Serializable) SerializationUtils.deserialize(valuesAsBytes, muleContext);
+        return muleContext.getObjectSerializer().deserialize(valuesAsBytes);
     }
 
     public void remove(Serializable value)
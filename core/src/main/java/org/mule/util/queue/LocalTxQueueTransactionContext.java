@@ -11,6 +11,8 @@ import org.mule.util.xa.AbstractTransactionContext;
 import org.mule.util.xa.ResourceManagerException;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -132,6 +134,24 @@ public class LocalTxQueueTransactionContext extends AbstractTransactionContext i
         return null;
     }
 
+    @Override
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout) throws InterruptedException
+    {
+        final boolean lockAcquired = transactionContextAccessLock.tryLock(pollTimeout, TimeUnit.MILLISECONDS);
+        if (lockAcquired)
+        {
+            try
+            {
+                return delegate.poll(queue, maxItems, pollTimeout);
+            }
+            finally
+            {
+                transactionContextAccessLock.unlock();
+            }
+        }
+        return new ArrayList<Serializable>(0);
+    }
+
     @Override
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
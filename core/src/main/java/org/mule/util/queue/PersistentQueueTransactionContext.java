@@ -12,6 +12,7 @@ import org.mule.util.xa.ResourceManagerException;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * {@link LocalQueueTransactionContext} implementation for a persistent queue.
@@ -75,6 +76,22 @@ public class PersistentQueueTransactionContext implements LocalQueueTransactionC
         }
     }
 
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout)
+        throws InterruptedException
+    {
+        synchronized (queue)
+        {
+            List<Serializable> values = queue.peek(maxItems);
+            if (values.isEmpty())
+            {
+                return values;
+            }
+            // a single journal write covers the whole batch
+            this.transactionJournal.logRemoves(txId, queue, values);
+            return queue.poll(values.size(), pollTimeout);
+        }
+    }
+
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
         return queue.peek();
@@ -12,6 +12,7 @@ import org.mule.util.xa.ResourceManagerException;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.xa.Xid;
@@ -70,6 +71,22 @@ public class PersistentXaTransactionContext implements XaQueueTransactionContext
         }
     }
 
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout)
+        throws InterruptedException
+    {
+        synchronized (queue)
+        {
+            List<Serializable> values = queue.peek(maxItems);
+            if (values.isEmpty())
+            {
+                return values;
+            }
+            // a single journal write covers the whole batch
+            this.transactionJournal.logRemoves(xid, queue, values);
+            return queue.poll(values.size(), pollTimeout);
+        }
+    }
+
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
         return queue.peek();
@@ -12,6 +12,7 @@ import org.mule.api.NamedObject;
 import org.mule.api.store.ObjectStoreException;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Interface for mule queues used for SEDA and VM.
@@ -41,6 +42,15 @@ public interface Queue extends NamedObject
 
     Serializable poll(long timeout) throws InterruptedException;
 
+    /**
+     * Retrieves up to maxItems objects from this queue at once, waiting up to timeout
+     * milliseconds for the first one. When the queue is used in a transaction, all of them
+     * are removed as part of it.
+     *
+     * @return the retrieved objects, empty if none was available in time.
+     */
+    List<Serializable> poll(int maxItems, long timeout) throws InterruptedException;
+
     boolean offer(Serializable object, long timeout) throws InterruptedException, ObjectStoreException;
 
     /**
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.queue;
+
+import org.mule.api.MuleRuntimeException;
+import org.mule.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Memory mapped, append-only file that holds a portion of a {@link SegmentedLogQueueStoreDelegate} log.
+ * <p/>
+ * Each entry is stored as its length followed by its data. A length of zero, or the end of the segment,
+ * marks the end of the written data. Entries are never modified once written.
+ * <p/>
+ * Access to a segment must be synchronized by the owner, except for {@link #force()} which can be
+ * called concurrently with appends.
+ */
+class QueueLogSegment
+{
+
+    private static final int LENGTH_SIZE_IN_BYTES = Integer.SIZE / 8;
+
+    private final Log logger = LogFactory.getLog(this.getClass());
+    private final long id;
+    private final QueueFileProvider queueFileProvider;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int writePosition;
+    private volatile boolean dirty;
+
+    /**
+     * Opens a segment, creating it if it doesn't exist.
+     *
+     * @param queueFileProvider provider of the segment file
+     * @param id sequence number of the segment within the log
+     * @param minimumCapacity size of the segment if it doesn't exist yet
+     */
+    public QueueLogSegment(QueueFileProvider queueFileProvider, long id, int minimumCapacity)
+    {
+        this.queueFileProvider = queueFileProvider;
+        this.id = id;
+        try
+        {
+            long fileLength = queueFileProvider.getRandomAccessFile().length();
+            this.capacity = fileLength > 0 ? (int) fileLength : minimumCapacity;
+            if (fileLength == 0)
+            {
+                queueFileProvider.getRandomAccessFile().setLength(capacity);
+            }
+            this.buffer = queueFileProvider.getRandomAccessFile().getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+        this.writePosition = findEndOfData();
+    }
+
+    private int findEndOfData()
+    {
+        int position = 0;
+        while (hasEntryAt(position))
+        {
+            position = nextPosition(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return the sequence number of this segment within the log
+     */
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * Appends an entry at the end of the segment.
+     *
+     * @param data entry to append
+     * @return true if the entry was written, false if there is not enough room left in the segment
+     */
+    public boolean append(byte[] data)
+    {
+        if ((long) writePosition + LENGTH_SIZE_IN_BYTES + data.length > capacity)
+        {
+            return false;
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position(writePosition + LENGTH_SIZE_IN_BYTES);
+        target.put(data);
+        // length is written last so a partially written entry is never seen as valid data
+        buffer.putInt(writePosition, data.length);
+        writePosition += LENGTH_SIZE_IN_BYTES + data.length;
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * @param position offset within the segment
+     * @return true if there is an entry starting at the given position
+     */
+    public boolean hasEntryAt(int position)
+    {
+        return position + LENGTH_SIZE_IN_BYTES <= capacity && buffer.getInt(position) > 0;
+    }
+
+    /**
+     * @param position offset of an existing entry
+     * @return the offset of the entry that follows it
+     */
+    public int nextPosition(int position)
+    {
+        return position + LENGTH_SIZE_IN_BYTES + buffer.getInt(position);
+    }
+
+    /**
+     * @param position offset of an existing entry
+     * @return the entry data
+     */
+    public byte[] read(int position)
+    {
+        byte[] data = new byte[buffer.getInt(position)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + LENGTH_SIZE_IN_BYTES);
+        source.get(data);
+        return data;
+    }
+
+    /**
+     * @param position offset to start reading from
+     * @return all the entries starting at the given position
+     */
+    public List<byte[]> readAll(int position)
+    {
+        List<byte[]> entries = new LinkedList<byte[]>();
+        while (hasEntryAt(position))
+        {
+            entries.add(read(position));
+            position = nextPosition(position);
+        }
+        return entries;
+    }
+
+    /**
+     * @param position offset to start counting from
+     * @return the number of entries starting at the given position
+     */
+    public int countEntries(int position)
+    {
+        int count = 0;
+        while (hasEntryAt(position))
+        {
+            count++;
+            position = nextPosition(position);
+        }
+        return count;
+    }
+
+    /**
+     * Forces any change written to the segment since the last call to the storage device.
+     */
+    public void force()
+    {
+        if (dirty)
+        {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    /**
+     * Releases the segment file without removing its content.
+     */
+    public void close()
+    {
+        try
+        {
+            queueFileProvider.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn("failure closing queue segment file: " + e.getMessage());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+        }
+    }
+
+    /**
+     * Releases and removes the segment file.
+     */
+    public void delete()
+    {
+        close();
+        FileUtils.deleteQuietly(queueFileProvider.getFile());
+    }
+}
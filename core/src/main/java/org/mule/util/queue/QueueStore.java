@@ -7,6 +7,7 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.List;
 
 import org.apache.commons.lang.NotImplementedException;
 
@@ -27,6 +28,20 @@ public interface QueueStore
 
     Serializable peek() throws InterruptedException;
 
+    /**
+     * Removes up to maxItems elements from the front of the queue in a single operation, waiting
+     * up to timeout milliseconds for the first one.
+     *
+     * @return the removed elements in queue order, empty if the queue remained empty
+     */
+    List<Serializable> poll(int maxItems, long timeout) throws InterruptedException;
+
+    /**
+     * @return up to maxItems elements from the front of the queue, without removing them. May
+     *         return less elements than available.
+     */
+    List<Serializable> peek(int maxItems) throws InterruptedException;
+
     void untake(Serializable item) throws InterruptedException;
 
     int getSize();
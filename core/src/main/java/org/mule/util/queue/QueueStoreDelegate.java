@@ -9,6 +9,7 @@ package org.mule.util.queue;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * A DefaultQueueStore delegates the actual work of processing its queue to one of these.
@@ -36,6 +37,19 @@ public interface QueueStoreDelegate
      */
     Serializable peek() throws InterruptedException;
 
+    /**
+     * Poll the queue for up to maxItems members, waiting for the first one as
+     * {@link #poll(long)} does, and remove and return the ones available at once
+     *
+     * @return the removed members in queue order, empty if none was available in time
+     */
+    List<Serializable> poll(int maxItems, long timeout) throws InterruptedException;
+
+    /**
+     * return, but do not remove, up to maxItems members from the front of the queue
+     */
+    List<Serializable> peek(int maxItems) throws InterruptedException;
+
     /**
      * Restore a previously removed member to the front of the queue
      */
@@ -7,6 +7,7 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Contract for a transactional context for queue operations.
@@ -24,6 +25,15 @@ public interface QueueTransactionContext
     public Serializable poll(QueueStore queue, long pollTimeout)
             throws InterruptedException;
 
+    /**
+     * Removes up to maxItems elements from the queue as part of the transaction, in a
+     * single operation over the queue store.
+     *
+     * @return the removed elements, empty if none was available in time
+     */
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout)
+            throws InterruptedException;
+
     public Serializable peek(QueueStore queue) throws InterruptedException;
 
     public int size(QueueStore queue);
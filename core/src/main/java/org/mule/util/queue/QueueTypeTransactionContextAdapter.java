@@ -7,6 +7,7 @@
 package org.mule.util.queue;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Once a queue operations it's executed this operation creates the correct {@link QueueTransactionContext}
@@ -51,6 +52,13 @@ public class QueueTypeTransactionContextAdapter<T extends QueueTransactionContex
         return transactionContext.poll(queue, pollTimeout);
     }
 
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout)
+            throws InterruptedException
+    {
+        defineDelegate(queue);
+        return transactionContext.poll(queue, maxItems, pollTimeout);
+    }
+
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
         defineDelegate(queue);
@@ -100,6 +100,35 @@ class RandomAccessFileQueueStore
         return readFirstValue();
     }
 
+    /**
+     * Retrieves up to maxItems elements from the beginning of the queue without removing them.
+     *
+     * @param maxItems maximum number of elements to read.
+     * @return the first elements of the queue, in order.
+     */
+    public synchronized List<byte[]> getFirst(int maxItems)
+    {
+        List<byte[]> elements = new LinkedList<byte[]>();
+        try
+        {
+            for (Long filePointer : orderedKeys)
+            {
+                if (elements.size() >= maxItems)
+                {
+                    break;
+                }
+                queueFileProvider.getRandomAccessFile().seek(filePointer);
+                queueFileProvider.getRandomAccessFile().readByte(); //Always true since it's a key
+                elements.add(readDataInCurrentPosition());
+            }
+            return elements;
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+    }
+
     /**
      * Adds an element in the beginning of the queue.
      *
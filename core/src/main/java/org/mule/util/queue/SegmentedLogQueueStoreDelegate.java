@@ -0,0 +1,564 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.queue;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleRuntimeException;
+import org.mule.util.Preconditions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link TransactionalQueueStoreDelegate} implementation that stores the queue data in a log of
+ * append-only, memory mapped segment files.
+ * <p/>
+ * New entries are always appended at the end of the last segment and consuming an entry only moves
+ * the read offset kept in the control file, so queue data is never rewritten in place.
+ * <p/>
+ * Adding an entry only returns once the entry was forced to disk. Producers don't force the log on
+ * their own: while a producer forces the log, the ones adding entries meanwhile wait for it and the
+ * next force is done by one of them for all the entries written so far, so concurrent producers
+ * share a single sync. Consumed positions and segments that were completely consumed are written
+ * and deleted along with those syncs, so after a crash entries consumed since the last one are
+ * delivered again.
+ * <p/>
+ * Entries returned to the front of the queue with {@link #untake(Serializable)}, which only happens
+ * when a transaction is rolled back, are kept in a separate head file since they can't be appended to
+ * the log.
+ */
+public class SegmentedLogQueueStoreDelegate extends AbstractQueueStoreDelegate implements TransactionalQueueStoreDelegate
+{
+
+    public static final String SEGMENT_SIZE_PROPERTY_KEY = "mule.queue.segmentSize";
+    private static final int FOUR_MEGABYTES = 4 * 1024 * 1024;
+    private static final int SEGMENT_SIZE_IN_BYTES = Integer.getInteger(SEGMENT_SIZE_PROPERTY_KEY, FOUR_MEGABYTES);
+    private static final String QUEUE_STORE_DIRECTORY = "queuestore";
+    private static final String SEGMENT_SUFFIX = "-log-";
+    private static final String QUEUE_DATA_CONTROL_SUFFIX = "-log-crl";
+    private static final String QUEUE_HEAD_SUFFIX = "-log-head";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private static final int READ_SEGMENT_POSITION = 0;
+    private static final int READ_OFFSET_POSITION = 8;
+    private static final int WRITE_SEGMENT_POSITION = 12;
+    private static final int CONTROL_DATA_SIZE = 20;
+
+    protected final Log logger = LogFactory.getLog(this.getClass());
+    private final MuleContext muleContext;
+    private final String queueName;
+    private final File queuesDirectory;
+    private final int segmentSize;
+    private final QueueFileProvider controlFile;
+    private final MappedByteBuffer controlData;
+    private final File headFile;
+    private final LinkedList<Serializable> head = new LinkedList<Serializable>();
+    private final LinkedList<QueueLogSegment> segments = new LinkedList<QueueLogSegment>();
+    private final Queue<QueueLogSegment> unsyncedSegments = new ConcurrentLinkedQueue<QueueLogSegment>();
+    private final Queue<QueueLogSegment> consumedSegments = new ConcurrentLinkedQueue<QueueLogSegment>();
+    private final Object syncLock = new Object();
+    private volatile QueueLogSegment writeSegment;
+    private volatile boolean controlDataDirty;
+    private volatile long writeSequence;
+    private long syncedSequence;
+    private boolean syncInProgress;
+    private int readOffset;
+    private int logSize;
+
+    public SegmentedLogQueueStoreDelegate(String queueName, String workingDirectory, MuleContext muleContext, int capacity)
+    {
+        this(queueName, workingDirectory, muleContext, capacity, SEGMENT_SIZE_IN_BYTES);
+    }
+
+    SegmentedLogQueueStoreDelegate(String queueName, String workingDirectory, MuleContext muleContext, int capacity, int segmentSize)
+    {
+        super(capacity);
+        this.muleContext = muleContext;
+        this.queueName = queueName;
+        this.segmentSize = segmentSize;
+        queuesDirectory = getQueuesDirectory(workingDirectory);
+        if (!queuesDirectory.exists())
+        {
+            Preconditions.checkState(queuesDirectory.mkdirs(), "Could not create queue store directory " + queuesDirectory.getAbsolutePath());
+        }
+        controlFile = new QueueFileProvider(queuesDirectory, queueName + QUEUE_DATA_CONTROL_SUFFIX);
+        controlData = mapControlData(controlFile);
+        headFile = loadHead(new QueueFileProvider(queuesDirectory, queueName + QUEUE_HEAD_SUFFIX));
+
+        long readSegmentId = controlData.getLong(READ_SEGMENT_POSITION);
+        long writeSegmentId = controlData.getLong(WRITE_SEGMENT_POSITION);
+        readOffset = controlData.getInt(READ_OFFSET_POSITION);
+        for (long id = readSegmentId; id <= writeSegmentId; id++)
+        {
+            QueueLogSegment segment = openSegment(id, segmentSize);
+            logSize += segment.countEntries(id == readSegmentId ? readOffset : 0);
+            segments.addLast(segment);
+        }
+        writeSegment = segments.getLast();
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(String.format("Queue %s has %s messages in %s segments", queueName, size(), segments.size()));
+        }
+    }
+
+    private static File getQueuesDirectory(String workingDirectory)
+    {
+        return new File(workingDirectory + File.separator + QUEUE_STORE_DIRECTORY);
+    }
+
+    /**
+     * @return true if there is a segmented log for the given queue in the working directory
+     */
+    public static boolean exists(String queueName, String workingDirectory)
+    {
+        File queuesDirectory = getQueuesDirectory(workingDirectory);
+        String controlFileName = queueName + QUEUE_DATA_CONTROL_SUFFIX;
+        return new File(queuesDirectory, controlFileName).exists() || new File(queuesDirectory, QueueFileProvider.toHex(controlFileName)).exists();
+    }
+
+    private static MappedByteBuffer mapControlData(QueueFileProvider fileProvider)
+    {
+        try
+        {
+            return fileProvider.getRandomAccessFile().getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CONTROL_DATA_SIZE);
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+    }
+
+    private QueueLogSegment openSegment(long id, int minimumCapacity)
+    {
+        return new QueueLogSegment(new QueueFileProvider(queuesDirectory, queueName + SEGMENT_SUFFIX + id), id, minimumCapacity);
+    }
+
+    @Override
+    protected void add(Serializable item)
+    {
+        byte[] data = muleContext.getObjectSerializer().serialize(item);
+        if (!writeSegment.append(data))
+        {
+            unsyncedSegments.add(writeSegment);
+            QueueLogSegment segment = openSegment(writeSegment.getId() + 1, Math.max(segmentSize, data.length + QueueControlDataFile.INTEGER_SIZE_IN_BYTES));
+            segments.addLast(segment);
+            writeSegment = segment;
+            controlData.putLong(WRITE_SEGMENT_POSITION, segment.getId());
+            controlDataDirty = true;
+            writeSegment.append(data);
+        }
+        logSize++;
+        writeSequence++;
+    }
+
+    /**
+     * Waits until the entries added so far are on disk, forcing the log if no other producer is
+     * already doing it.
+     */
+    @Override
+    protected void awaitPersisted()
+    {
+        long sequence = writeSequence;
+        boolean interrupted = false;
+        try
+        {
+            synchronized (syncLock)
+            {
+                while (syncedSequence < sequence && syncInProgress)
+                {
+                    try
+                    {
+                        syncLock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+                if (syncedSequence >= sequence)
+                {
+                    return;
+                }
+                syncInProgress = true;
+            }
+
+            long syncingSequence = writeSequence;
+            boolean synced = false;
+            try
+            {
+                sync();
+                synced = true;
+            }
+            finally
+            {
+                synchronized (syncLock)
+                {
+                    if (synced)
+                    {
+                        syncedSequence = syncingSequence;
+                    }
+                    syncInProgress = false;
+                    syncLock.notifyAll();
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    protected void addFirst(Serializable item) throws InterruptedException
+    {
+        head.addFirst(item);
+        storeHead();
+    }
+
+    @Override
+    protected Serializable removeFirst() throws InterruptedException
+    {
+        if (!head.isEmpty())
+        {
+            Serializable item = head.removeFirst();
+            storeHead();
+            return item;
+        }
+        if (logSize == 0)
+        {
+            return null;
+        }
+        QueueLogSegment readSegment = moveToNextEntry();
+        byte[] data = readSegment.read(readOffset);
+        readOffset = readSegment.nextPosition(readOffset);
+        controlData.putInt(READ_OFFSET_POSITION, readOffset);
+        controlDataDirty = true;
+        logSize--;
+        return deserialize(data);
+    }
+
+    @Override
+    protected Serializable getFirst() throws InterruptedException
+    {
+        if (!head.isEmpty())
+        {
+            return head.getFirst();
+        }
+        if (logSize == 0)
+        {
+            return null;
+        }
+        return deserialize(moveToNextEntry().read(readOffset));
+    }
+
+    @Override
+    protected List<Serializable> getFirst(int maxItems) throws InterruptedException
+    {
+        List<Serializable> items = new ArrayList<Serializable>();
+        Iterator<Serializable> headItems = head.iterator();
+        while (items.size() < maxItems && headItems.hasNext())
+        {
+            items.add(headItems.next());
+        }
+
+        // walks the log from the read offset without moving it
+        Iterator<QueueLogSegment> logSegments = segments.iterator();
+        QueueLogSegment segment = logSegments.next();
+        int position = readOffset;
+        int remaining = logSize;
+        while (items.size() < maxItems && remaining > 0)
+        {
+            if (segment.hasEntryAt(position))
+            {
+                items.add(deserialize(segment.read(position)));
+                position = segment.nextPosition(position);
+                remaining--;
+            }
+            else if (logSegments.hasNext())
+            {
+                segment = logSegments.next();
+                position = 0;
+            }
+            else
+            {
+                break;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Skips segments that were already consumed, so the read offset points to the next entry.
+     */
+    private QueueLogSegment moveToNextEntry()
+    {
+        QueueLogSegment readSegment = segments.getFirst();
+        while (!readSegment.hasEntryAt(readOffset) && segments.size() > 1)
+        {
+            QueueLogSegment consumedSegment = segments.removeFirst();
+            readSegment = segments.getFirst();
+            readOffset = 0;
+            controlData.putLong(READ_SEGMENT_POSITION, readSegment.getId());
+            controlData.putInt(READ_OFFSET_POSITION, readOffset);
+            controlDataDirty = true;
+            // only deleted after the control data that no longer references it is forced
+            consumedSegments.add(consumedSegment);
+        }
+        return readSegment;
+    }
+
+    @Override
+    protected int size()
+    {
+        return logSize + head.size();
+    }
+
+    @Override
+    protected boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    protected boolean doAddAll(Collection<? extends Serializable> items)
+    {
+        for (Serializable item : items)
+        {
+            add(item);
+        }
+        return true;
+    }
+
+    @Override
+    protected synchronized void doClear()
+    {
+        long nextSegmentId = writeSegment.getId() + 1;
+        for (QueueLogSegment segment : segments)
+        {
+            unsyncedSegments.remove(segment);
+            segment.delete();
+        }
+        segments.clear();
+        writeSegment = openSegment(nextSegmentId, segmentSize);
+        segments.add(writeSegment);
+        readOffset = 0;
+        logSize = 0;
+        controlData.putLong(READ_SEGMENT_POSITION, nextSegmentId);
+        controlData.putInt(READ_OFFSET_POSITION, readOffset);
+        controlData.putLong(WRITE_SEGMENT_POSITION, nextSegmentId);
+        controlData.force();
+        head.clear();
+        storeHead();
+    }
+
+    /**
+     * @return all the elements in the queue, in order
+     */
+    public synchronized Collection<Serializable> allElements()
+    {
+        List<Serializable> elements = new LinkedList<Serializable>(head);
+        int position = readOffset;
+        for (QueueLogSegment segment : segments)
+        {
+            for (byte[] data : segment.readAll(position))
+            {
+                try
+                {
+                    elements.add(deserialize(data));
+                }
+                catch (Exception e)
+                {
+                    logger.warn("Failure trying to deserialize value " + e.getMessage());
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug(e);
+                    }
+                }
+            }
+            position = 0;
+        }
+        return elements;
+    }
+
+    /**
+     * Since entries can't be removed from the middle of the log, the remaining entries are compacted
+     * into a new segment. This is only used during recovery.
+     */
+    @Override
+    public synchronized void remove(Serializable value)
+    {
+        List<Serializable> elements = new ArrayList<Serializable>(allElements());
+        if (elements.remove(value))
+        {
+            doClear();
+            doAddAll(elements);
+            awaitPersisted();
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(Serializable value)
+    {
+        return allElements().contains(value);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        try
+        {
+            sync();
+        }
+        catch (Exception e)
+        {
+            logger.warn(String.format("Failure syncing queue %s on close: %s", queueName, e.getMessage()));
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+        }
+        for (QueueLogSegment segment : segments)
+        {
+            segment.force();
+            segment.close();
+        }
+        closeQuietly(controlFile);
+    }
+
+    @Override
+    public void dispose()
+    {
+        doClear();
+    }
+
+    /**
+     * Forces the pending writes to disk and deletes the consumed segments.
+     */
+    private void sync()
+    {
+        // read before the queued segments, so a segment that is replaced meanwhile is in the queue
+        QueueLogSegment currentSegment = writeSegment;
+        QueueLogSegment segment;
+        while ((segment = unsyncedSegments.poll()) != null)
+        {
+            segment.force();
+        }
+        currentSegment.force();
+        if (controlDataDirty)
+        {
+            controlDataDirty = false;
+            controlData.force();
+        }
+        while ((segment = consumedSegments.poll()) != null)
+        {
+            segment.delete();
+        }
+    }
+
+    /**
+     * Replaces the head file with a new one, so a crash while writing it never leaves a truncated
+     * or partially written head.
+     */
+    private void storeHead()
+    {
+        File temporary = new File(headFile.getParentFile(), headFile.getName() + TEMPORARY_FILE_EXTENSION);
+        try
+        {
+            FileOutputStream fileOutput = new FileOutputStream(temporary);
+            try
+            {
+                if (!head.isEmpty())
+                {
+                    fileOutput.write(muleContext.getObjectSerializer().serialize(head));
+                }
+                fileOutput.getFD().sync();
+            }
+            finally
+            {
+                fileOutput.close();
+            }
+            Files.move(temporary.toPath(), headFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads the entries returned to the front of the queue and releases the head file, which is
+     * replaced on every change.
+     *
+     * @return the head file
+     */
+    @SuppressWarnings("unchecked")
+    private File loadHead(QueueFileProvider fileProvider)
+    {
+        try
+        {
+            RandomAccessFile file = fileProvider.getRandomAccessFile();
+            if (file.length() > 0)
+            {
+                byte[] data = new byte[(int) file.length()];
+                file.seek(0);
+                file.readFully(data);
+                head.addAll((Collection<Serializable>) deserialize(data));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new MuleRuntimeException(e);
+        }
+        finally
+        {
+            closeQuietly(fileProvider);
+        }
+        return fileProvider.getFile();
+    }
+
+    private Serializable deserialize(byte[] data)
+    {
+        return muleContext.getObjectSerializer().deserialize(data);
+    }
+
+    private void closeQuietly(QueueFileProvider fileProvider)
+    {
+        try
+        {
+            fileProvider.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn("failure closing queue file: " + e.getMessage());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug(e);
+            }
+        }
+    }
+}
@@ -12,6 +12,8 @@ import org.mule.api.store.ObjectStoreException;
 import org.mule.util.store.DeserializationPostInitialisable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -116,6 +118,42 @@ public class TransactionAwareQueueStore implements Queue
         }
     }
 
+    @Override
+    public List<Serializable> poll(int maxItems, long timeout) throws InterruptedException
+    {
+        try
+        {
+            List<Serializable> items;
+            if (transactionContextProvider.isTransactional())
+            {
+                items = transactionContextProvider.getTransactionalContext().poll(queue, maxItems, timeout);
+            }
+            else
+            {
+                items = queue.poll(maxItems, timeout);
+            }
+            List<Serializable> processedItems = new ArrayList<Serializable>(items.size());
+            for (Serializable item : items)
+            {
+                Serializable processedItem = postProcessIfNeeded(item);
+                if (processedItem != null)
+                {
+                    processedItems.add(processedItem);
+                }
+            }
+            return processedItems;
+        }
+        catch (InterruptedException iex)
+        {
+            if (!muleContext.isStopping())
+            {
+                throw iex;
+            }
+            // if stopping, ignore
+            return new ArrayList<Serializable>(0);
+        }
+    }
+
     @Override
     public Serializable peek() throws InterruptedException
     {
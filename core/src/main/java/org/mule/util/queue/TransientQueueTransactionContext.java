@@ -96,6 +96,18 @@ public class TransientQueueTransactionContext implements LocalQueueTransactionCo
         return value;
     }
 
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout)
+            throws InterruptedException
+    {
+        List<Serializable> values = queue.poll(maxItems, pollTimeout);
+        if (!values.isEmpty())
+        {
+            initializeRemoved();
+            lookupRemovedQueue(queue).addAll(values);
+        }
+        return values;
+    }
+
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
         return queue.peek();
@@ -9,6 +9,7 @@ package org.mule.util.queue;
 import org.mule.util.xa.ResourceManagerException;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Adapter for {@link TransientQueueTransactionContext} to an {@link org.mule.util.queue.XaQueueTransactionContext}
@@ -47,6 +48,12 @@ public class TransientXaTransactionAdapter implements XaQueueTransactionContext
         return adaptedTransactionContext.poll(queue, pollTimeout);
     }
 
+    @Override
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout) throws InterruptedException
+    {
+        return adaptedTransactionContext.poll(queue, maxItems, pollTimeout);
+    }
+
     @Override
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
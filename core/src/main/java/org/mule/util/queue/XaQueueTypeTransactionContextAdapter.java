@@ -11,6 +11,7 @@ import org.mule.util.xa.AbstractXaTransactionContext;
 import org.mule.util.xa.ResourceManagerException;
 
 import java.io.Serializable;
+import java.util.List;
 
 import javax.transaction.xa.Xid;
 
@@ -96,6 +97,12 @@ public class XaQueueTypeTransactionContextAdapter extends AbstractXaTransactionC
         return delegate.poll(queue, pollTimeout);
     }
 
+    @Override
+    public List<Serializable> poll(QueueStore queue, int maxItems, long pollTimeout) throws InterruptedException
+    {
+        return delegate.poll(queue, maxItems, pollTimeout);
+    }
+
     @Override
     public Serializable peek(QueueStore queue) throws InterruptedException
     {
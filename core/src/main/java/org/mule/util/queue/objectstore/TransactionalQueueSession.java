@@ -15,6 +15,8 @@ import org.mule.util.queue.objectstore.xa.DefaultXASession;
 import org.mule.util.store.DeserializationPostInitialisable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -183,6 +185,20 @@ class TransactionalQueueSession extends DefaultXASession implements QueueSession
             }
         }
 
+        @Override
+        public List<Serializable> poll(int maxItems, long timeout) throws InterruptedException
+        {
+            // the object store based queues have no bulk operation
+            List<Serializable> items = new ArrayList<Serializable>();
+            Serializable item = poll(timeout);
+            while (item != null)
+            {
+                items.add(item);
+                item = items.size() < maxItems ? poll(0) : null;
+            }
+            return items;
+        }
+
         @Override
         public Serializable peek() throws InterruptedException
         {
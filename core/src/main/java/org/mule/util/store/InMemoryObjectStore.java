@@ -12,10 +12,13 @@ import org.mule.api.store.ObjectStoreException;
 import org.mule.config.i18n.CoreMessages;
 
 import java.io.Serializable;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <code>InMemoryObjectStore</code> implements an optionally bounded
@@ -23,14 +26,34 @@ import java.util.concurrent.TimeUnit;
  * is a <i>soft</i> limit and only enforced periodically by the expiry process; this
  * means that the store may temporarily exceed its maximum size between expiry runs, but
  * will eventually shrink to its configured size.
+ * <p/>
+ * Entries are kept in two indexes: an ordered map keyed by insertion timestamp that drives
+ * expiry, and a hash index from key to timestamp that gives constant time lookups. Reads
+ * don't lock, while writes for a given key are serialized on one of a fixed number of lock
+ * stripes so that unrelated keys don't contend with each other.
  */
 public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitoredObjectStore<T>
 {
+    private static final int LOCK_STRIPES = 32;
+
     protected ConcurrentSkipListMap<Long, StoredObject<T>> store;
 
+    /**
+     * Maps each stored key to its timestamp in {@link #store}.
+     */
+    private final ConcurrentMap<Serializable, Long> index;
+
+    private final Lock[] locks;
+
     public InMemoryObjectStore()
     {
         this.store = new ConcurrentSkipListMap<Long, StoredObject<T>>();
+        this.index = new ConcurrentHashMap<Serializable, Long>();
+        this.locks = new Lock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     @Override
@@ -47,10 +70,7 @@ public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitor
             throw new ObjectStoreException(CoreMessages.objectIsNull("id"));
         }
 
-        synchronized (store)
-        {
-            return store.values().contains(new StoredObject<T>(key, null));
-        }
+        return index.containsKey(key);
     }
 
     @Override
@@ -61,81 +81,111 @@ public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitor
             throw new ObjectStoreException(CoreMessages.objectIsNull("id"));
         }
 
-        // this block is unfortunately necessary to counter a possible race condition
-        // between multiple nonatomic calls to containsObject/storeObject
         StoredObject<T> obj = new StoredObject<T>(id, value);
-        synchronized (store)
+        Lock lock = lockFor(id);
+        lock.lock();
+        try
         {
-            if (store.values().contains(obj))
+            if (index.containsKey(id))
             {
                 throw new ObjectAlreadyExistsException();
             }
 
-            boolean written = false;
-            while (!written)
+            Long key;
+            do
             {
-                Long key = Long.valueOf(System.nanoTime());
-                written = (store.put(key, obj) == null);
+                key = Long.valueOf(System.nanoTime());
             }
+            while (store.putIfAbsent(key, obj) != null);
+
+            index.put(id, key);
+        }
+        finally
+        {
+            lock.unlock();
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public T retrieve(Serializable key) throws ObjectStoreException
     {
-        synchronized (store)
+        StoredObject<T> object = findObject(key);
+        if (object != null)
         {
-            Map.Entry<?, ?> entry = findEntry(key);
-            if (entry != null)
-            {
-                StoredObject<T> object = (StoredObject<T>) entry.getValue();
-                return object.getItem();
-            }
+            return object.getItem();
         }
 
         throw new ObjectDoesNotExistException(CoreMessages.objectNotFound(key));
     }
 
-    @SuppressWarnings("unchecked")
-    private Map.Entry<?, ?> findEntry(Serializable key)
+    private StoredObject<T> findObject(Serializable key)
     {
-        Iterator<?> entryIterator = store.entrySet().iterator();
-        while (entryIterator.hasNext())
+        if (key == null)
         {
-            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entryIterator.next();
+            return null;
+        }
 
-            StoredObject<T> object = (StoredObject<T>) entry.getValue();
-            if (object.getId().equals(key))
-            {
-                return entry;
-            }
+        Long timestamp = index.get(key);
+        if (timestamp == null)
+        {
+            return null;
         }
-        return null;
+
+        StoredObject<T> object = store.get(timestamp);
+        if (object == null || !object.getId().equals(key))
+        {
+            // the entry was expired or removed after we read the index
+            return null;
+        }
+        return object;
     }
 
     @Override
     public T remove(Serializable key) throws ObjectStoreException
     {
-        synchronized (store)
+        if (key != null)
         {
-            Map.Entry<?, ?> entry = findEntry(key);
-            if (entry != null)
+            Lock lock = lockFor(key);
+            lock.lock();
+            try
             {
-                StoredObject<T> removedObject = store.remove(entry.getKey());
-                return removedObject.getItem();
+                Long timestamp = index.remove(key);
+                if (timestamp != null)
+                {
+                    StoredObject<T> removedObject = store.remove(timestamp);
+                    if (removedObject != null)
+                    {
+                        return removedObject.getItem();
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlock();
             }
         }
 
         throw new ObjectDoesNotExistException(CoreMessages.objectNotFound(key));
     }
-    
+
     @Override
     public void clear() throws ObjectStoreException
     {
-        synchronized (store)
+        for (Lock lock : locks)
+        {
+            lock.lock();
+        }
+        try
         {
             store.clear();
+            index.clear();
+        }
+        finally
+        {
+            for (int i = locks.length - 1; i >= 0; i--)
+            {
+                locks[i].unlock();
+            }
         }
     }
 
@@ -153,17 +203,20 @@ public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitor
         {
             final long now = System.nanoTime();
             int expiredEntries = 0;
-            Map.Entry<?, ?> oldestEntry;
+            Map.Entry<Long, StoredObject<T>> oldestEntry;
 
             purge:
             while ((oldestEntry = store.firstEntry()) != null)
             {
-                Long oldestKey = (Long) oldestEntry.getKey();
+                Long oldestKey = oldestEntry.getKey();
                 long oldestKeyValue = oldestKey.longValue();
 
                 if (TimeUnit.NANOSECONDS.toMillis(now - oldestKeyValue) >= entryTTL)
                 {
-                    store.remove(oldestKey);
+                    if (store.remove(oldestKey) != null)
+                    {
+                        unindex(oldestKey, oldestEntry.getValue());
+                    }
                     expiredEntries++;
                 }
                 else
@@ -179,6 +232,32 @@ public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitor
         }
     }
 
+    /**
+     * Removes the key of an entry that was evicted from {@link #store}, unless it has been
+     * stored again in the meantime.
+     */
+    private void unindex(Long timestamp, StoredObject<T> evicted)
+    {
+        Serializable id = evicted.getId();
+        Lock lock = lockFor(id);
+        lock.lock();
+        try
+        {
+            index.remove(id, timestamp);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private Lock lockFor(Serializable key)
+    {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return locks[hash & (LOCK_STRIPES - 1)];
+    }
+
     private int trimToMaxSize(int currentSize)
     {
         if (maxEntries < 0)
@@ -189,9 +268,10 @@ public class InMemoryObjectStore<T extends Serializable> extends AbstractMonitor
         int excess = (currentSize - maxEntries);
         if (excess > 0)
         {
-            while (currentSize > maxEntries)
+            Map.Entry<Long, StoredObject<T>> evicted;
+            while (currentSize > maxEntries && (evicted = store.pollFirstEntry()) != null)
             {
-                store.pollFirstEntry();
+                unindex(evicted.getKey(), evicted.getValue());
                 currentSize--;
             }
 
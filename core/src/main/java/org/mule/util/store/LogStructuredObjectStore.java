@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.store;
+
+import org.mule.api.MuleContext;
+import org.mule.api.MuleRuntimeException;
+import org.mule.api.context.MuleContextAware;
+import org.mule.api.lifecycle.Disposable;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.api.store.PartitionableExpirableObjectStore;
+import org.mule.config.i18n.CoreMessages;
+import org.mule.util.FileUtils;
+import org.mule.util.UUID;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent object store that keeps every partition in a log of append-only segment
+ * files instead of a file per entry. The keys of a partition and the position of
+ * their values in the log are kept in memory, so opening a partition does not need to
+ * read its values, and entries expire in the order they were stored without listing
+ * any directory.
+ * <p/>
+ * A background task compacts partitions whose log is mostly taken by removed entries
+ * and checkpoints their index, so that a restart only replays the records appended
+ * since the last checkpoint.
+ */
+public class LogStructuredObjectStore<T extends Serializable> extends AbstractPartitionedObjectStore<T>
+    implements MuleContextAware, PartitionableExpirableObjectStore<T>, Disposable
+{
+
+    public static final String OBJECT_STORE_DIR = "log-objectstore";
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAINTENANCE_INTERVAL = 30000;
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    private MuleContext muleContext;
+    private File storeDirectory;
+    private final Map<String, LogStructuredObjectStorePartition<T>> partitionsByName = new ConcurrentHashMap<String, LogStructuredObjectStorePartition<T>>();
+    private final Map<String, File> partitionDirectories = new HashMap<String, File>();
+    private ScheduledThreadPoolExecutor scheduler;
+    private boolean initialized = false;
+
+    private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+    private long maintenanceInterval = DEFAULT_MAINTENANCE_INTERVAL;
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+
+    public LogStructuredObjectStore()
+    {
+        super();
+    }
+
+    public LogStructuredObjectStore(MuleContext context)
+    {
+        super();
+        muleContext = context;
+    }
+
+    /**
+     * Finds the partitions kept in the store directory. Partitions are only loaded
+     * when they are opened.
+     */
+    @Override
+    public synchronized void open() throws ObjectStoreException
+    {
+        if (!initialized)
+        {
+            initObjectStoreDirectory();
+            findPartitionDirectories();
+            if (maintenanceInterval > 0)
+            {
+                scheduler = new ScheduledThreadPoolExecutor(1);
+                scheduler.setThreadFactory(new DaemonThreadFactory("LogStructuredObjectStore-Maintenance",
+                    getClass().getClassLoader()));
+                scheduler.scheduleWithFixedDelay(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        maintain();
+                    }
+                }, maintenanceInterval, maintenanceInterval, TimeUnit.MILLISECONDS);
+            }
+            initialized = true;
+        }
+    }
+
+    @Override
+    public synchronized void open(String partitionName) throws ObjectStoreException
+    {
+        getPartition(partitionName);
+    }
+
+    @Override
+    public void close(String partitionName) throws ObjectStoreException
+    {
+    }
+
+    @Override
+    public boolean isPersistent()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean contains(Serializable key, String partitionName) throws ObjectStoreException
+    {
+        return getPartition(partitionName).contains(key);
+    }
+
+    @Override
+    public void store(Serializable key, T value, String partitionName) throws ObjectStoreException
+    {
+        getPartition(partitionName).store(key, value);
+    }
+
+    @Override
+    public T retrieve(Serializable key, String partitionName) throws ObjectStoreException
+    {
+        return getPartition(partitionName).retrieve(key);
+    }
+
+    @Override
+    public T remove(Serializable key, String partitionName) throws ObjectStoreException
+    {
+        return getPartition(partitionName).remove(key);
+    }
+
+    @Override
+    public List<Serializable> allKeys(String partitionName) throws ObjectStoreException
+    {
+        return getPartition(partitionName).allKeys();
+    }
+
+    @Override
+    public void clear(String partitionName) throws ObjectStoreException
+    {
+        getPartition(partitionName).clear();
+    }
+
+    @Override
+    public synchronized List<String> allPartitions() throws ObjectStoreException
+    {
+        open();
+        return new ArrayList<String>(partitionDirectories.keySet());
+    }
+
+    @Override
+    public void expire(int entryTTL, int maxEntries) throws ObjectStoreException
+    {
+        expire(entryTTL, maxEntries, DEFAULT_PARTITION);
+    }
+
+    @Override
+    public void expire(int entryTTL, int maxEntries, String partitionName) throws ObjectStoreException
+    {
+        getPartition(partitionName).expire(entryTTL, maxEntries);
+    }
+
+    @Override
+    public void disposePartition(String partitionName) throws ObjectStoreException
+    {
+        LogStructuredObjectStorePartition<T> partition;
+        synchronized (this)
+        {
+            partition = getPartition(partitionName);
+            partitionsByName.remove(partitionName);
+            partitionDirectories.remove(partitionName);
+        }
+        partition.close();
+        try
+        {
+            FileUtils.deleteDirectory(partition.getDirectory());
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(CoreMessages.createStaticMessage("Could not delete partition "
+                                                                            + partitionName), e);
+        }
+    }
+
+    /**
+     * Stops compacting and checkpointing in the background and closes the partitions,
+     * checkpointing those that changed.
+     */
+    @Override
+    public void dispose()
+    {
+        List<LogStructuredObjectStorePartition<T>> partitions;
+        synchronized (this)
+        {
+            if (scheduler != null)
+            {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+            partitions = new ArrayList<LogStructuredObjectStorePartition<T>>(partitionsByName.values());
+            partitionsByName.clear();
+            partitionDirectories.clear();
+            initialized = false;
+        }
+        for (LogStructuredObjectStorePartition<T> partition : partitions)
+        {
+            try
+            {
+                partition.close();
+            }
+            catch (ObjectStoreException e)
+            {
+                logger.warn("Could not close object store partition " + partition.getPartitionName(), e);
+            }
+        }
+    }
+
+    /**
+     * Compacts and checkpoints every open partition. Runs periodically in the
+     * background.
+     */
+    public void maintain()
+    {
+        List<LogStructuredObjectStorePartition<T>> partitions;
+        synchronized (this)
+        {
+            partitions = new ArrayList<LogStructuredObjectStorePartition<T>>(partitionsByName.values());
+        }
+        for (LogStructuredObjectStorePartition<T> partition : partitions)
+        {
+            try
+            {
+                partition.maintain(compactionRatio);
+            }
+            catch (Exception e)
+            {
+                logger.warn("Could not compact object store partition " + partition.getPartitionName(), e);
+            }
+        }
+    }
+
+    LogStructuredObjectStorePartition<T> getPartition(String partitionName) throws ObjectStoreException
+    {
+        LogStructuredObjectStorePartition<T> partition = partitionsByName.get(partitionName);
+        if (partition != null)
+        {
+            return partition;
+        }
+
+        synchronized (this)
+        {
+            partition = partitionsByName.get(partitionName);
+            if (partition != null)
+            {
+                return partition;
+            }
+            open();
+            File directory = partitionDirectories.get(partitionName);
+            if (directory == null)
+            {
+                // The partition could have been created by another store on the same directory
+                findPartitionDirectories();
+                directory = partitionDirectories.get(partitionName);
+            }
+            if (directory == null)
+            {
+                directory = new File(storeDirectory, UUID.getUUID());
+            }
+            partition = new LogStructuredObjectStorePartition<T>(muleContext, partitionName, directory,
+                maxSegmentSize);
+            partition.open();
+            partitionsByName.put(partitionName, partition);
+            partitionDirectories.put(partitionName, directory);
+            return partition;
+        }
+    }
+
+    private void initObjectStoreDirectory()
+    {
+        if (storeDirectory == null)
+        {
+            String workingDirectory = muleContext.getConfiguration().getWorkingDirectory();
+            storeDirectory = FileUtils.newFile(workingDirectory + File.separator + OBJECT_STORE_DIR);
+        }
+        if (!storeDirectory.exists() && !storeDirectory.mkdirs())
+        {
+            throw new MuleRuntimeException(CoreMessages.failedToCreate("object store directory "
+                                                                       + storeDirectory.getAbsolutePath()));
+        }
+    }
+
+    private void findPartitionDirectories()
+    {
+        File[] directories = storeDirectory.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                return file.isDirectory()
+                       && new File(file, LogStructuredObjectStorePartition.PARTITION_DESCRIPTOR_FILE).exists();
+            }
+        });
+        if (directories == null)
+        {
+            return;
+        }
+        for (File directory : directories)
+        {
+            try
+            {
+                partitionDirectories.put(LogStructuredObjectStorePartition.readPartitionName(directory), directory);
+            }
+            catch (Exception e)
+            {
+                logger.error("Could not restore partition under directory " + directory.getAbsolutePath());
+            }
+        }
+    }
+
+    @Override
+    public void setMuleContext(MuleContext context)
+    {
+        muleContext = context;
+    }
+
+    /**
+     * Size in bytes after which the segment being appended to is closed and a new one
+     * is started.
+     */
+    public void setMaxSegmentSize(long maxSegmentSize)
+    {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public long getMaxSegmentSize()
+    {
+        return maxSegmentSize;
+    }
+
+    /**
+     * Milliseconds between background compactions and checkpoints. A value of zero or
+     * less disables them, so partitions are only checkpointed when the store is
+     * disposed.
+     */
+    public void setMaintenanceInterval(long maintenanceInterval)
+    {
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    public long getMaintenanceInterval()
+    {
+        return maintenanceInterval;
+    }
+
+    /**
+     * Fraction of the log of a partition that has to be taken by removed entries for
+     * the partition to be compacted.
+     */
+    public void setCompactionRatio(double compactionRatio)
+    {
+        this.compactionRatio = compactionRatio;
+    }
+
+    public double getCompactionRatio()
+    {
+        return compactionRatio;
+    }
+}
@@ -0,0 +1,1077 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.store;
+
+import static org.mule.api.store.ObjectStoreManager.UNBOUNDED;
+
+import org.mule.api.MuleContext;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.api.store.ObjectStoreNotAvaliableException;
+import org.mule.config.i18n.CoreMessages;
+import org.mule.util.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A partition of a {@link LogStructuredObjectStore}. Entries are appended to segment
+ * files and an index in memory keeps, for every key, where its entry is in the log.
+ * Only the keys and their positions are kept in memory, values are read from the
+ * log when retrieved. Keys are written to the log with the object serializer of the
+ * Mule context, so they are restored with their original type.
+ * <p/>
+ * Every record carries a sequence number, so the log can be replayed in any order:
+ * for every key the record with the highest sequence number wins. This allows
+ * compaction to copy the live entries of old segments into new ones while the
+ * partition keeps being used. The index is checkpointed to disk so that a restart
+ * only replays the records appended after the last checkpoint.
+ */
+class LogStructuredObjectStorePartition<T extends Serializable>
+{
+
+    static final String SEGMENT_FILE_EXTENSION = ".log";
+    static final String CHECKPOINT_FILE = "index.checkpoint";
+    static final String PARTITION_DESCRIPTOR_FILE = "partition-descriptor";
+    private static final String COMPACTING_FILE_EXTENSION = ".compacting";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+    private static final String LOCK_FILE = "partition.lock";
+
+        private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int CHECKPOINT_VERSION = 2;
+
+    /**
+     * Body length and checksum of the body
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+    /**
+     * Sequence number, timestamp, record type and key length
+     */
+    private static final int BODY_HEADER_SIZE = 8 + 8 + 1 + 4;
+
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private final MuleContext muleContext;
+    private final File directory;
+    private final long maxSegmentSize;
+    private String partitionName;
+
+    /**
+     * Entries in the order they were stored, which is also the order in which they
+     * expire
+     */
+    private final LinkedHashMap<Serializable, IndexEntry> index = new LinkedHashMap<Serializable, IndexEntry>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    private final Object maintenanceLock = new Object();
+    private Segment activeSegment;
+    private int nextSegmentId = 1;
+    private long nextSequence = 1;
+    private long liveBytes;
+    private int generation;
+    private boolean dirty;
+    private boolean open;
+    private RandomAccessFile lockFile;
+    private FileLock lock;
+
+    LogStructuredObjectStorePartition(MuleContext muleContext, String partitionName, File directory, long maxSegmentSize)
+    {
+        this.muleContext = muleContext;
+        this.partitionName = partitionName;
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    static String readPartitionName(File directory) throws ObjectStoreNotAvaliableException
+    {
+        try
+        {
+            return FileUtils.readFileToString(new File(directory, PARTITION_DESCRIPTOR_FILE));
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreNotAvaliableException(e);
+        }
+    }
+
+    synchronized void open() throws ObjectStoreException
+    {
+        if (open)
+        {
+            return;
+        }
+
+        try
+        {
+            if (!directory.exists() && !directory.mkdirs())
+            {
+                throw new ObjectStoreException(CoreMessages.failedToCreate("object store directory "
+                                                                            + directory.getAbsolutePath()));
+            }
+            acquireLock();
+            writePartitionDescriptor();
+            load();
+            open = true;
+        }
+        catch (IOException e)
+        {
+            closeSegments();
+            releaseLock();
+            String message = String.format("Could not restore object store data from %1s", directory.getAbsolutePath());
+            throw new ObjectStoreException(CoreMessages.createStaticMessage(message), e);
+        }
+    }
+
+    private void acquireLock() throws IOException, ObjectStoreException
+    {
+        lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        try
+        {
+            lock = lockFile.getChannel().tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            lock = null;
+        }
+        if (lock == null)
+        {
+            lockFile.close();
+            lockFile = null;
+            String message = String.format("Object store partition %1s is in use by another object store",
+                partitionName);
+            throw new ObjectStoreNotAvaliableException(CoreMessages.createStaticMessage(message));
+        }
+    }
+
+    private void releaseLock()
+    {
+        try
+        {
+            if (lock != null)
+            {
+                lock.release();
+            }
+            if (lockFile != null)
+            {
+                lockFile.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Could not release the lock of object store partition " + partitionName, e);
+        }
+        lock = null;
+        lockFile = null;
+    }
+
+    private void writePartitionDescriptor() throws IOException
+    {
+        File descriptor = new File(directory, PARTITION_DESCRIPTOR_FILE);
+        if (descriptor.exists())
+        {
+            partitionName = FileUtils.readFileToString(descriptor);
+        }
+        else
+        {
+            FileUtils.writeStringToFile(descriptor, partitionName);
+        }
+    }
+
+    /**
+     * Writes a checkpoint if anything changed since the last one and closes the
+     * segment files.
+     */
+    void close() throws ObjectStoreException
+    {
+        synchronized (maintenanceLock)
+        {
+            synchronized (this)
+            {
+                if (!open)
+                {
+                    return;
+                }
+            }
+            checkpoint();
+            synchronized (this)
+            {
+                closeSegments();
+                releaseLock();
+                index.clear();
+                open = false;
+            }
+        }
+    }
+
+    synchronized boolean contains(Serializable key) throws ObjectStoreException
+    {
+        assureOpen();
+        return index.containsKey(key);
+    }
+
+    synchronized void store(Serializable key, T value) throws ObjectStoreException
+    {
+        assureOpen();
+        if (index.containsKey(key))
+        {
+            throw new ObjectAlreadyExistsException();
+        }
+
+        byte[] serializedValue;
+        try
+        {
+            serializedValue = muleContext.getObjectSerializer().serialize(value);
+        }
+        catch (Exception e)
+        {
+            throw new ObjectStoreException(e);
+        }
+        long sequence = nextSequence++;
+        IndexEntry entry = append(PUT, key, serializedValue, sequence, System.currentTimeMillis());
+        index.put(key, entry);
+        liveBytes += entry.length;
+    }
+
+    synchronized T retrieve(Serializable key) throws ObjectStoreException
+    {
+        assureOpen();
+        IndexEntry entry = index.get(key);
+        if (entry == null)
+        {
+            throw new ObjectDoesNotExistException(CoreMessages.createStaticMessage("Key does not exist: " + key));
+        }
+        return readValue(entry);
+    }
+
+    synchronized T remove(Serializable key) throws ObjectStoreException
+    {
+        T value = retrieve(key);
+        removeEntry(key);
+        return value;
+    }
+
+    synchronized List<Serializable> allKeys() throws ObjectStoreException
+    {
+        assureOpen();
+        return Collections.unmodifiableList(new ArrayList<Serializable>(index.keySet()));
+    }
+
+    synchronized void clear() throws ObjectStoreException
+    {
+        assureOpen();
+        try
+        {
+            closeSegments();
+            for (File file : listFiles(SEGMENT_FILE_EXTENSION))
+            {
+                FileUtils.forceDelete(file);
+            }
+            FileUtils.deleteQuietly(new File(directory, CHECKPOINT_FILE));
+            index.clear();
+            liveBytes = 0;
+            generation++;
+            activeSegment = createSegment(nextSegmentId++);
+            dirty = false;
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(CoreMessages.createStaticMessage("Could not clear ObjectStore"), e);
+        }
+    }
+
+    /**
+     * Removes the entries in excess of <code>maxEntries</code> and those stored more
+     * than <code>entryTTL</code> milliseconds ago. Since the index is kept in the order
+     * in which entries were stored, only the entries that expire are visited.
+     */
+    synchronized void expire(int entryTTL, int maxEntries) throws ObjectStoreException
+    {
+        assureOpen();
+
+        if (maxEntries != UNBOUNDED)
+        {
+            int excess = index.size() - maxEntries;
+            for (int i = 0; i < excess; i++)
+            {
+                removeEntry(index.keySet().iterator().next());
+            }
+        }
+
+        if (entryTTL == UNBOUNDED)
+        {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        while (!index.isEmpty())
+        {
+            IndexEntry oldest = index.values().iterator().next();
+            if (now - oldest.timestamp < entryTTL)
+            {
+                break;
+            }
+            removeEntry(oldest.key);
+        }
+    }
+
+    /**
+     * Compacts the log if at least <code>compactionRatio</code> of it is taken by
+     * removed entries, and checkpoints the index if it changed.
+     */
+    void maintain(double compactionRatio) throws ObjectStoreException
+    {
+        synchronized (maintenanceLock)
+        {
+            if (shouldCompact(compactionRatio))
+            {
+                compact();
+            }
+            checkpoint();
+        }
+    }
+
+    private synchronized boolean shouldCompact(double compactionRatio)
+    {
+        long logBytes = getLogBytes();
+        return open && logBytes > liveBytes && logBytes - liveBytes >= logBytes * compactionRatio;
+    }
+
+    /**
+     * Copies the live entries of every segment but a new, empty, active one into new
+     * segments and deletes the old ones. Removal records are not copied: the entries
+     * they removed are all in the segments being compacted. Entries are copied without
+     * holding the partition lock, so the partition can be used meanwhile.
+     */
+    void compact() throws ObjectStoreException
+    {
+        synchronized (maintenanceLock)
+        {
+            List<Segment> compacted;
+            List<IndexEntry> entries;
+            int compactedGeneration;
+            synchronized (this)
+            {
+                if (!open)
+                {
+                    return;
+                }
+                try
+                {
+                    rollSegment();
+                }
+                catch (IOException e)
+                {
+                    throw new ObjectStoreException(e);
+                }
+                compacted = new ArrayList<Segment>(segments.headMap(activeSegment.id).values());
+                entries = new ArrayList<IndexEntry>(index.values());
+                compactedGeneration = generation;
+            }
+
+            List<Segment> copies = new ArrayList<Segment>();
+            Map<Serializable, IndexEntry> moved = new HashMap<Serializable, IndexEntry>();
+            try
+            {
+                copyEntries(entries, compacted, copies, moved);
+            }
+            catch (IOException e)
+            {
+                for (Segment copy : copies)
+                {
+                    copy.delete();
+                }
+                throw new ObjectStoreException(CoreMessages.createStaticMessage("Could not compact object store partition " + partitionName), e);
+            }
+
+            synchronized (this)
+            {
+                if (!open || generation != compactedGeneration)
+                {
+                    // The partition was cleared or closed meanwhile
+                    for (Segment copy : copies)
+                    {
+                        copy.delete();
+                    }
+                    return;
+                }
+                for (Segment copy : copies)
+                {
+                    segments.put(copy.id, copy);
+                }
+                for (IndexEntry entry : moved.values())
+                {
+                    IndexEntry current = index.get(entry.key);
+                    if (current != null && current.sequence == entry.sequence)
+                    {
+                        index.put(entry.key, entry);
+                    }
+                }
+                for (Segment segment : compacted)
+                {
+                    segments.remove(segment.id);
+                    segment.delete();
+                }
+                dirty = true;
+            }
+        }
+    }
+
+    private void copyEntries(List<IndexEntry> entries, List<Segment> compacted, List<Segment> copies,
+                             Map<Serializable, IndexEntry> moved) throws IOException
+    {
+        Map<Integer, Segment> sources = new HashMap<Integer, Segment>();
+        for (Segment segment : compacted)
+        {
+            sources.put(segment.id, segment);
+        }
+
+        Segment copy = null;
+        File copyFile = null;
+        for (IndexEntry entry : entries)
+        {
+            Segment source = sources.get(entry.segment);
+            if (source == null)
+            {
+                continue;
+            }
+            if (copy != null && copy.size + entry.length > maxSegmentSize)
+            {
+                copies.add(sealCopy(copy, copyFile));
+                copy = null;
+            }
+            if (copy == null)
+            {
+                int id = newSegmentId();
+                copyFile = new File(directory, segmentFileName(id) + COMPACTING_FILE_EXTENSION);
+                copy = new Segment(id, copyFile);
+            }
+            ByteBuffer record = source.read(entry.offset, entry.length);
+            long offset = copy.append(record);
+            moved.put(entry.key, new IndexEntry(entry.key, copy.id, offset, entry.length, entry.sequence, entry.timestamp));
+        }
+        if (copy != null)
+        {
+            copies.add(sealCopy(copy, copyFile));
+        }
+    }
+
+    private Segment sealCopy(Segment copy, File copyFile) throws IOException
+    {
+        copy.sync();
+        copy.close();
+        File segmentFile = new File(directory, segmentFileName(copy.id));
+        Files.move(copyFile.toPath(), segmentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(copy.id, segmentFile);
+    }
+
+    private synchronized int newSegmentId()
+    {
+        return nextSegmentId++;
+    }
+
+    /**
+     * Writes the index to disk, together with the size of every segment, so that a
+     * restart only needs to replay the records appended after it.
+     */
+    void checkpoint() throws ObjectStoreException
+    {
+        synchronized (maintenanceLock)
+        {
+            List<IndexEntry> entries;
+            Map<Integer, Long> segmentSizes = new TreeMap<Integer, Long>();
+            long sequence;
+            synchronized (this)
+            {
+                if (!open || !dirty)
+                {
+                    return;
+                }
+                try
+                {
+                    for (Segment segment : segments.values())
+                    {
+                        segment.sync();
+                        segmentSizes.put(segment.id, segment.size);
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw new ObjectStoreException(e);
+                }
+                entries = new ArrayList<IndexEntry>(index.values());
+                sequence = nextSequence;
+                dirty = false;
+            }
+
+            try
+            {
+                writeCheckpoint(entries, segmentSizes, sequence);
+            }
+            catch (IOException e)
+            {
+                synchronized (this)
+                {
+                    dirty = true;
+                }
+                throw new ObjectStoreException(CoreMessages.createStaticMessage("Could not checkpoint object store partition " + partitionName), e);
+            }
+        }
+    }
+
+    private void writeCheckpoint(List<IndexEntry> entries, Map<Integer, Long> segmentSizes, long sequence)
+        throws IOException
+    {
+        File temporary = new File(directory, CHECKPOINT_FILE + TEMPORARY_FILE_EXTENSION);
+        FileOutputStream fileOutput = new FileOutputStream(temporary);
+        try
+        {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOutput), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(sequence);
+            out.writeInt(segmentSizes.size());
+            for (Map.Entry<Integer, Long> segmentSize : segmentSizes.entrySet())
+            {
+                out.writeInt(segmentSize.getKey());
+                out.writeLong(segmentSize.getValue());
+            }
+            out.writeInt(entries.size());
+            for (IndexEntry entry : entries)
+            {
+                byte[] key = serializeKey(entry.key);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(entry.segment);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+                out.writeLong(entry.sequence);
+                out.writeLong(entry.timestamp);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOutput.getFD().sync();
+        }
+        finally
+        {
+            fileOutput.close();
+        }
+        Files.move(temporary.toPath(), new File(directory, CHECKPOINT_FILE).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException
+    {
+        for (File leftover : listFiles(COMPACTING_FILE_EXTENSION))
+        {
+            FileUtils.deleteQuietly(leftover);
+        }
+
+        for (File file : listFiles(SEGMENT_FILE_EXTENSION))
+        {
+            String name = file.getName();
+            int id = Integer.parseInt(name.substring(0, name.length() - SEGMENT_FILE_EXTENSION.length()));
+            segments.put(id, new Segment(id, file));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+        }
+
+        Map<Serializable, IndexEntry> entries = new HashMap<Serializable, IndexEntry>();
+        Map<Integer, Long> replayFrom = new HashMap<Integer, Long>();
+        if (!readCheckpoint(entries, replayFrom))
+        {
+            entries.clear();
+            replayFrom.clear();
+        }
+
+        Map<Serializable, Long> removals = new HashMap<Serializable, Long>();
+        for (Segment segment : segments.values())
+        {
+            Long from = replayFrom.get(segment.id);
+            replay(segment, from == null ? 0 : from, entries, removals);
+        }
+
+        List<IndexEntry> sorted = new ArrayList<IndexEntry>(entries.values());
+        Collections.sort(sorted, new Comparator<IndexEntry>()
+        {
+            @Override
+            public int compare(IndexEntry e1, IndexEntry e2)
+            {
+                return e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1);
+            }
+        });
+        for (IndexEntry entry : sorted)
+        {
+            index.put(entry.key, entry);
+            liveBytes += entry.length;
+        }
+
+        if (segments.isEmpty())
+        {
+            activeSegment = createSegment(nextSegmentId++);
+        }
+        else
+        {
+            activeSegment = segments.lastEntry().getValue();
+        }
+    }
+
+    private boolean readCheckpoint(Map<Serializable, IndexEntry> entries, Map<Integer, Long> replayFrom)
+    {
+        File checkpoint = new File(directory, CHECKPOINT_FILE);
+        if (!checkpoint.exists())
+        {
+            return false;
+        }
+
+        try
+        {
+            FileInputStream fileInput = new FileInputStream(checkpoint);
+            try
+            {
+                CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileInput), new CRC32());
+                DataInputStream in = new DataInputStream(checked);
+                if (in.readInt() != CHECKPOINT_VERSION)
+                {
+                    return false;
+                }
+                nextSequence = Math.max(nextSequence, in.readLong());
+                int segmentCount = in.readInt();
+                for (int i = 0; i < segmentCount; i++)
+                {
+                    int id = in.readInt();
+                    long size = in.readLong();
+                    Segment segment = segments.get(id);
+                    if (segment == null || segment.size < size)
+                    {
+                        // Segments changed after the checkpoint was written
+                        return false;
+                    }
+                    replayFrom.put(id, size);
+                }
+                int entryCount = in.readInt();
+                for (int i = 0; i < entryCount; i++)
+                {
+                    byte[] key = new byte[in.readInt()];
+                    in.readFully(key);
+                    IndexEntry entry = new IndexEntry(deserializeKey(key), in.readInt(), in.readLong(),
+                        in.readInt(), in.readLong(), in.readLong());
+                    entries.put(entry.key, entry);
+                }
+                long checksum = checked.getChecksum().getValue();
+                return in.readLong() == checksum;
+            }
+            finally
+            {
+                fileInput.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Could not read the index checkpoint of object store partition " + partitionName
+                        + ", replaying the whole log", e);
+            return false;
+        }
+    }
+
+    private void replay(Segment segment, long from, Map<Serializable, IndexEntry> entries, Map<Serializable, Long> removals)
+        throws IOException
+    {
+        FileInputStream fileInput = new FileInputStream(segment.file);
+        try
+        {
+            fileInput.getChannel().position(from);
+            replay(segment, from, new DataInputStream(new BufferedInputStream(fileInput)), entries, removals);
+        }
+        finally
+        {
+            fileInput.close();
+        }
+    }
+
+    private void replay(Segment segment, long from, DataInputStream in, Map<Serializable, IndexEntry> entries,
+                        Map<Serializable, Long> removals) throws IOException
+    {
+        long offset = from;
+        CRC32 crc = new CRC32();
+        while (offset < segment.size)
+        {
+            int bodyLength;
+            byte[] body;
+            int checksum;
+            try
+            {
+                bodyLength = in.readInt();
+                checksum = in.readInt();
+                if (bodyLength < BODY_HEADER_SIZE || offset + RECORD_HEADER_SIZE + bodyLength > segment.size)
+                {
+                    truncate(segment, offset);
+                    return;
+                }
+                body = new byte[bodyLength];
+                in.readFully(body);
+            }
+            catch (EOFException e)
+            {
+                truncate(segment, offset);
+                return;
+            }
+            crc.reset();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != checksum)
+            {
+                truncate(segment, offset);
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            long sequence = buffer.getLong();
+            long timestamp = buffer.getLong();
+            byte type = buffer.get();
+            int keyLength = buffer.getInt();
+            Serializable key = deserializeKey(Arrays.copyOfRange(body, BODY_HEADER_SIZE, BODY_HEADER_SIZE + keyLength));
+            int length = RECORD_HEADER_SIZE + bodyLength;
+            nextSequence = Math.max(nextSequence, sequence + 1);
+
+            IndexEntry current = entries.get(key);
+            if (type == PUT)
+            {
+                Long removed = removals.get(key);
+                if ((removed == null || removed < sequence) && (current == null || current.sequence < sequence))
+                {
+                    entries.put(key, new IndexEntry(key, segment.id, offset, length, sequence, timestamp));
+                }
+            }
+            else
+            {
+                if (current != null && current.sequence < sequence)
+                {
+                    entries.remove(key);
+                }
+                Long removed = removals.get(key);
+                if (removed == null || removed < sequence)
+                {
+                    removals.put(key, sequence);
+                }
+            }
+            offset += length;
+        }
+    }
+
+    private void truncate(Segment segment, long offset) throws IOException
+    {
+        logger.warn(String.format("Discarding incomplete records at offset %1d of %2s", offset,
+            new File(directory, segmentFileName(segment.id)).getAbsolutePath()));
+        segment.truncate(offset);
+    }
+
+    private void removeEntry(Serializable key) throws ObjectStoreException
+    {
+        IndexEntry entry = index.remove(key);
+        if (entry == null)
+        {
+            throw new ObjectDoesNotExistException();
+        }
+        liveBytes -= entry.length;
+        append(REMOVE, key, new byte[0], nextSequence++, System.currentTimeMillis());
+    }
+
+    private IndexEntry append(byte type, Serializable key, byte[] value, long sequence, long timestamp)
+        throws ObjectStoreException
+    {
+        byte[] keyBytes;
+        try
+        {
+            keyBytes = serializeKey(key);
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(e);
+        }
+        int bodyLength = BODY_HEADER_SIZE + keyBytes.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0);
+        record.putLong(sequence);
+        record.putLong(timestamp);
+        record.put(type);
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        try
+        {
+            if (activeSegment.size > 0 && activeSegment.size + record.remaining() > maxSegmentSize)
+            {
+                rollSegment();
+            }
+            long offset = activeSegment.append(record);
+            dirty = true;
+            return new IndexEntry(key, activeSegment.id, offset, record.limit(), sequence, timestamp);
+        }
+        catch (IOException e)
+        {
+            throw new ObjectStoreException(e);
+        }
+    }
+
+    private void rollSegment() throws IOException
+    {
+        activeSegment.sync();
+        activeSegment = createSegment(nextSegmentId++);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readValue(IndexEntry entry) throws ObjectStoreException
+    {
+        try
+        {
+            ByteBuffer record = segments.get(entry.segment).read(entry.offset, entry.length);
+            int keyLength = record.getInt(RECORD_HEADER_SIZE + BODY_HEADER_SIZE - 4);
+            int valueOffset = RECORD_HEADER_SIZE + BODY_HEADER_SIZE + keyLength;
+            byte[] value = new byte[entry.length - valueOffset];
+            record.position(valueOffset);
+            record.get(value);
+
+            T storedValue = (T) muleContext.getObjectSerializer().deserialize(value);
+            if (storedValue instanceof DeserializationPostInitialisable)
+            {
+                DeserializationPostInitialisable.Implementation.init(storedValue, muleContext);
+            }
+            return storedValue;
+        }
+        catch (Exception e)
+        {
+            throw new ObjectStoreException(e);
+        }
+    }
+
+    private byte[] serializeKey(Serializable key) throws IOException
+    {
+        try
+        {
+            return muleContext.getObjectSerializer().serialize(key);
+        }
+        catch (SerializationException e)
+        {
+            throw new IOException("Could not serialize key " + key, e);
+        }
+    }
+
+    private Serializable deserializeKey(byte[] key) throws IOException
+    {
+        try
+        {
+            return muleContext.getObjectSerializer().deserialize(key);
+        }
+        catch (SerializationException e)
+        {
+            throw new IOException("Could not deserialize a key of object store partition " + partitionName, e);
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException
+    {
+        Segment segment = new Segment(id, new File(directory, segmentFileName(id)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void closeSegments()
+    {
+        for (Segment segment : segments.values())
+        {
+            segment.close();
+        }
+        segments.clear();
+        activeSegment = null;
+    }
+
+    private long getLogBytes()
+    {
+        long logBytes = 0;
+        for (Segment segment : segments.values())
+        {
+            logBytes += segment.size;
+        }
+        return logBytes;
+    }
+
+    private File[] listFiles(final String extension)
+    {
+        File[] files = directory.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(File file)
+            {
+                return !file.isDirectory() && file.getName().endsWith(extension);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    private static String segmentFileName(int id)
+    {
+        return String.format("%010d%s", id, SEGMENT_FILE_EXTENSION);
+    }
+
+    private void assureOpen() throws ObjectStoreException
+    {
+        if (!open)
+        {
+            throw new ObjectStoreNotAvaliableException(CoreMessages.createStaticMessage("Object store partition "
+                                                                                        + partitionName + " is closed"));
+        }
+    }
+
+    String getPartitionName()
+    {
+        return partitionName;
+    }
+
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    synchronized int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Position of the last record stored for a key
+     */
+    private static class IndexEntry
+    {
+
+        final Serializable key;
+        final int segment;
+        final long offset;
+        final int length;
+        final long sequence;
+        final long timestamp;
+
+        IndexEntry(Serializable key, int segment, long offset, int length, long sequence, long timestamp)
+        {
+            this.key = key;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * A segment file of the log. Segments are accessed through a
+     * {@link RandomAccessFile} rather than a file channel, which would be closed for
+     * good if a thread using the store got interrupted.
+     */
+    private class Segment
+    {
+
+        final int id;
+        final File file;
+        final RandomAccessFile content;
+        long size;
+
+        Segment(int id, File file) throws IOException
+        {
+            this.id = id;
+            this.file = file;
+            this.content = new RandomAccessFile(file, "rw");
+            this.size = content.length();
+        }
+
+        synchronized long append(ByteBuffer record) throws IOException
+        {
+            long offset = size;
+            content.seek(offset);
+            content.write(record.array(), record.position(), record.remaining());
+            size += record.remaining();
+            record.position(record.limit());
+            return offset;
+        }
+
+        synchronized ByteBuffer read(long offset, int length) throws IOException
+        {
+            byte[] record = new byte[length];
+            content.seek(offset);
+            content.readFully(record);
+            return ByteBuffer.wrap(record);
+        }
+
+        synchronized void truncate(long length) throws IOException
+        {
+            content.setLength(length);
+            size = length;
+        }
+
+        void sync() throws IOException
+        {
+            content.getFD().sync();
+        }
+
+        void close()
+        {
+            try
+            {
+                content.close();
+            }
+            catch (IOException e)
+            {
+                logger.warn("error closing file " + file.getAbsolutePath());
+            }
+        }
+
+        void delete()
+        {
+            close();
+            if (!file.delete())
+            {
+                logger.warn("Could not delete " + file.getAbsolutePath());
+            }
+        }
+    }
+}
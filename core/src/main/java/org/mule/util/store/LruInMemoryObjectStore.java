@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.store;
+
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.config.i18n.CoreMessages;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <code>LruInMemoryObjectStore</code> implements a bounded in-memory store that evicts
+ * the least recently used entry as soon as the maximum size is exceeded, which makes it
+ * suitable for caches. Unlike {@link InMemoryObjectStore} the bounded size is a <i>hard</i>
+ * limit.
+ * <p/>
+ * Entries older than the entry TTL are never returned, and are removed by the periodic
+ * expiry process.
+ */
+public class LruInMemoryObjectStore<T extends Serializable> extends AbstractMonitoredObjectStore<T>
+{
+
+    // @GuardedBy itself
+    private final LinkedHashMap<Serializable, StoredEntry<T>> entries;
+
+    public LruInMemoryObjectStore()
+    {
+        this.entries = new LinkedHashMap<Serializable, StoredEntry<T>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Serializable, StoredEntry<T>> eldest)
+            {
+                return maxEntries >= 0 && size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public boolean isPersistent()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Serializable key) throws ObjectStoreException
+    {
+        if (key == null)
+        {
+            throw new ObjectStoreException(CoreMessages.objectIsNull("id"));
+        }
+
+        synchronized (entries)
+        {
+            return getLiveEntry(key) != null;
+        }
+    }
+
+    @Override
+    public void store(Serializable key, T value) throws ObjectStoreException
+    {
+        if (key == null)
+        {
+            throw new ObjectStoreException(CoreMessages.objectIsNull("id"));
+        }
+
+        synchronized (entries)
+        {
+            if (getLiveEntry(key) != null)
+            {
+                throw new ObjectAlreadyExistsException();
+            }
+            entries.put(key, new StoredEntry<T>(value, System.nanoTime()));
+        }
+    }
+
+    @Override
+    public T retrieve(Serializable key) throws ObjectStoreException
+    {
+        synchronized (entries)
+        {
+            StoredEntry<T> entry = getLiveEntry(key);
+            if (entry != null)
+            {
+                return entry.value;
+            }
+        }
+
+        throw new ObjectDoesNotExistException(CoreMessages.objectNotFound(key));
+    }
+
+    @Override
+    public T remove(Serializable key) throws ObjectStoreException
+    {
+        synchronized (entries)
+        {
+            StoredEntry<T> entry = entries.remove(key);
+            if (entry != null)
+            {
+                return entry.value;
+            }
+        }
+
+        throw new ObjectDoesNotExistException(CoreMessages.objectNotFound(key));
+    }
+
+    @Override
+    public void clear() throws ObjectStoreException
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the entry for the key, unless it doesn't exist or it has already expired
+     */
+    private StoredEntry<T> getLiveEntry(Serializable key)
+    {
+        StoredEntry<T> entry = entries.get(key);
+        if (entry != null && isExpired(entry, System.nanoTime()))
+        {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean isExpired(StoredEntry<T> entry, long now)
+    {
+        return entryTTL > 0 && now - entry.created >= entryTTL * 1000000L;
+    }
+
+    @Override
+    public void expire()
+    {
+        if (entryTTL <= 0)
+        {
+            return;
+        }
+
+        int expiredEntries = 0;
+        long now = System.nanoTime();
+        synchronized (entries)
+        {
+            Iterator<StoredEntry<T>> iterator = entries.values().iterator();
+            while (iterator.hasNext())
+            {
+                if (isExpired(iterator.next(), now))
+                {
+                    iterator.remove();
+                    expiredEntries++;
+                }
+            }
+        }
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Expired " + expiredEntries + " old entries");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        synchronized (entries)
+        {
+            return getClass().getSimpleName() + " " + entries.keySet();
+        }
+    }
+
+    private static class StoredEntry<T>
+    {
+        private final T value;
+        private final long created;
+
+        private StoredEntry(T value, long created)
+        {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
@@ -6,6 +6,7 @@
  */
 package org.mule.util.store;
 
+import org.mule.api.config.MuleProperties;
 import org.mule.api.store.ObjectStore;
 import org.mule.api.store.QueueStore;
 
@@ -14,6 +15,13 @@ import java.io.Serializable;
 public class MuleDefaultObjectStoreFactory implements DefaultObjectStoreFactory
 {
 
+    /**
+     * When set to <code>true</code> the default persistent object stores keep their
+     * partitions in a {@link LogStructuredObjectStore} instead of a file per entry.
+     */
+    public static final String LOG_STRUCTURED_PERSISTENT_STORE_PROPERTY = MuleProperties.SYSTEM_PROPERTY_PREFIX
+                                                                         + "objectstore.persistent.logStructured";
+
     @Override
     public ObjectStore<Serializable> createDefaultInMemoryObjectStore()
     {
@@ -23,7 +31,7 @@ public class MuleDefaultObjectStoreFactory implements DefaultObjectStoreFactory
     @Override
     public ObjectStore<Serializable> createDefaultPersistentObjectStore()
     {
-        return new PartitionedPersistentObjectStore<Serializable>();
+        return createPersistentObjectStore();
     }
 
     @Override
@@ -41,7 +49,7 @@ public class MuleDefaultObjectStoreFactory implements DefaultObjectStoreFactory
     @Override
     public ObjectStore<Serializable> createDefaultUserObjectStore()
     {
-        return new PartitionedPersistentObjectStore<Serializable>();
+        return createPersistentObjectStore();
     }
 
     @Override
@@ -49,4 +57,13 @@ public class MuleDefaultObjectStoreFactory implements DefaultObjectStoreFactory
     {
         return new PartitionedInMemoryObjectStore<Serializable>();
     }
+
+    private ObjectStore<Serializable> createPersistentObjectStore()
+    {
+        if (Boolean.getBoolean(LOG_STRUCTURED_PERSISTENT_STORE_PROPERTY))
+        {
+            return new LogStructuredObjectStore<Serializable>();
+        }
+        return new PartitionedPersistentObjectStore<Serializable>();
+    }
 }
@@ -20,7 +20,6 @@ import org.mule.config.i18n.CoreMessages;
 import org.mule.config.i18n.Message;
 import org.mule.config.i18n.MessageFactory;
 import org.mule.util.FileUtils;
-import org.mule.util.SerializationUtils;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -349,7 +348,7 @@ public class PersistentObjectStorePartition<T extends Serializable>
         {
             out = new FileOutputStream(outputFile);
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
-            SerializationUtils.serialize(storeValue, objectOutputStream);
+            muleContext.getObjectSerializer().serialize(storeValue, objectOutputStream);
         }
         catch (Exception se)
         {
@@ -378,8 +377,7 @@ public class PersistentObjectStorePartition<T extends Serializable>
         try
         {
             objectInputStream = new ObjectInputStream(new FileInputStream(file));
-            StoreValue<T> storedValue = (StoreValue<T>) SerializationUtils.deserialize(objectInputStream,
-                muleContext);
+            StoreValue<T> storedValue = muleContext.getObjectSerializer().deserialize(objectInputStream);
             if (storedValue.getValue() instanceof DeserializationPostInitialisable)
             {
                 DeserializationPostInitialisable.Implementation.init(storedValue.getValue(), muleContext);
@@ -17,6 +17,7 @@ import org.mule.api.transport.SessionHandler;
 import org.mule.security.DefaultMuleAuthentication;
 import org.mule.security.DefaultSecurityContextFactory;
 import org.mule.security.MuleCredentials;
+import org.mule.serialization.JavaObjectSerializer;
 import org.mule.session.DefaultMuleSession;
 import org.mule.session.LegacySessionHandler;
 import org.mule.session.SerializeAndEncodeSessionHandler;
@@ -50,6 +51,9 @@ public class MuleSessionHandlerTestCase extends AbstractMuleTestCase
     {
         muleContext = Mockito.mock(MuleContext.class);
         Mockito.when(muleContext.getExecutionClassLoader()).thenReturn(Thread.currentThread().getContextClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(muleContext);
+        Mockito.when(muleContext.getObjectSerializer()).thenReturn(serializer);
     }
 
     @BeforeClass
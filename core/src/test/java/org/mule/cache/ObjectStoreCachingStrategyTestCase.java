@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.construct.Flow;
+import org.mule.tck.MuleTestUtils;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+import org.mule.util.concurrent.Latch;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectStoreCachingStrategyTestCase extends AbstractMuleContextTestCase
+{
+
+    private ObjectStoreCachingStrategy cachingStrategy;
+    private CountingMessageProcessor messageProcessor;
+    private Flow flow;
+
+    @Before
+    public void setUpCachingStrategy() throws Exception
+    {
+        flow = MuleTestUtils.getTestFlow(muleContext);
+        messageProcessor = new CountingMessageProcessor();
+        cachingStrategy = new ObjectStoreCachingStrategy();
+        cachingStrategy.setMuleContext(muleContext);
+    }
+
+    @After
+    public void disposeCachingStrategy()
+    {
+        cachingStrategy.dispose();
+    }
+
+    @Test
+    public void cachesResponses() throws Exception
+    {
+        cachingStrategy.initialise();
+
+        assertEquals("response-1", process("request"));
+        assertEquals("response-1", process("request"));
+        assertEquals("response-2", process("other request"));
+        assertEquals(2, messageProcessor.invocations.get());
+        assertEquals(1, flow.getStatistics().getCacheHits());
+        assertEquals(2, flow.getStatistics().getCacheMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResponse() throws Exception
+    {
+        cachingStrategy.setMaxEntries(2);
+        cachingStrategy.initialise();
+
+        process("first");
+        process("second");
+        process("first");
+        process("third");
+
+        assertEquals("response-1", process("first"));
+        assertEquals("response-4", process("second"));
+    }
+
+    @Test
+    public void expiresResponses() throws Exception
+    {
+        cachingStrategy.setEntryTTL(100);
+        cachingStrategy.initialise();
+
+        assertEquals("response-1", process("request"));
+        Thread.sleep(200);
+        assertEquals("response-2", process("request"));
+    }
+
+    @Test
+    public void invalidatesResponses() throws Exception
+    {
+        cachingStrategy.setKeyGenerationExpression("#[payload]");
+        cachingStrategy.initialise();
+
+        process("first");
+        process("second");
+        cachingStrategy.invalidate("first");
+        cachingStrategy.invalidate("unknown");
+
+        assertEquals("response-3", process("first"));
+        assertEquals("response-2", process("second"));
+
+        cachingStrategy.invalidate();
+
+        assertEquals("response-4", process("second"));
+    }
+
+    @Test
+    public void doesNotCacheConsumableRequests() throws Exception
+    {
+        cachingStrategy.initialise();
+
+        process(new ByteArrayInputStream("request".getBytes()));
+        process(new ByteArrayInputStream("request".getBytes()));
+
+        assertEquals(2, messageProcessor.invocations.get());
+        assertEquals(0, flow.getStatistics().getCacheHits());
+    }
+
+    @Test
+    public void cachesConsumableResponses() throws Exception
+    {
+        cachingStrategy.initialise();
+        MessageProcessor streamingMessageProcessor = new MessageProcessor()
+        {
+            @Override
+            public MuleEvent process(MuleEvent event) throws MuleException
+            {
+                return new DefaultMuleEvent(new DefaultMuleMessage(new ByteArrayInputStream("streamed".getBytes()), muleContext), event);
+            }
+        };
+
+        MuleEvent first = cachingStrategy.process(getTestEvent("request", flow), streamingMessageProcessor);
+        MuleEvent second = cachingStrategy.process(getTestEvent("request", flow), streamingMessageProcessor);
+
+        assertEquals("streamed", first.getMessage().getPayloadAsString());
+        assertEquals("streamed", second.getMessage().getPayloadAsString());
+    }
+
+    @Test
+    public void processesConcurrentRequestsForTheSameKeyOnce() throws Exception
+    {
+        cachingStrategy.initialise();
+        final Latch blockResponse = new Latch();
+        final MessageProcessor blockingMessageProcessor = new MessageProcessor()
+        {
+            @Override
+            public MuleEvent process(MuleEvent event) throws MuleException
+            {
+                try
+                {
+                    blockResponse.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return messageProcessor.process(event);
+            }
+        };
+
+        final int requests = 8;
+        final CountDownLatch responses = new CountDownLatch(requests);
+        final AtomicInteger cachedResponses = new AtomicInteger();
+        for (int i = 0; i < requests; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        MuleEvent response = cachingStrategy.process(getTestEvent("request", flow), blockingMessageProcessor);
+                        if ("response-1".equals(response.getMessage().getPayload()))
+                        {
+                            cachedResponses.incrementAndGet();
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        // Missing response is verified below
+                    }
+                    finally
+                    {
+                        responses.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        Thread.sleep(200);
+        blockResponse.release();
+
+        assertTrue(responses.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(requests, cachedResponses.get());
+        assertEquals(1, messageProcessor.invocations.get());
+    }
+
+    @Test
+    public void processesRequestWhenResponseForTheSameKeyTimesOut() throws Exception
+    {
+        cachingStrategy.initialise();
+        final Latch blockResponse = new Latch();
+        final Latch processing = new Latch();
+        final MessageProcessor blockingMessageProcessor = new MessageProcessor()
+        {
+            @Override
+            public MuleEvent process(MuleEvent event) throws MuleException
+            {
+                processing.release();
+                try
+                {
+                    blockResponse.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return messageProcessor.process(event);
+            }
+        };
+
+        Thread blockedRequest = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    cachingStrategy.process(getTestEvent("request", flow), blockingMessageProcessor);
+                }
+                catch (Exception e)
+                {
+                    // Not verified
+                }
+            }
+        });
+        blockedRequest.start();
+        try
+        {
+            assertTrue(processing.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            MuleEvent request = getTestEvent("request", flow);
+            request.setTimeout(100);
+            MuleEvent response = cachingStrategy.process(request, messageProcessor);
+
+            assertEquals("response-1", response.getMessage().getPayload());
+            assertEquals(2, flow.getStatistics().getCacheMisses());
+        }
+        finally
+        {
+            blockResponse.release();
+            blockedRequest.join(RECEIVE_TIMEOUT);
+        }
+    }
+
+    private Object process(Object payload) throws Exception
+    {
+        return cachingStrategy.process(getTestEvent(payload, flow), messageProcessor).getMessage().getPayload();
+    }
+
+    private static class CountingMessageProcessor implements MessageProcessor
+    {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @Override
+        public MuleEvent process(MuleEvent event) throws MuleException
+        {
+            String response = "response-" + invocations.incrementAndGet();
+            return new DefaultMuleEvent(new DefaultMuleMessage(response, event.getMuleContext()), event);
+        }
+    }
+}
@@ -12,8 +12,12 @@ import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertThat;
 
 import org.mule.api.config.ThreadingProfile;
+import org.mule.config.ChainedThreadingProfile;
 import org.mule.tck.junit4.AbstractMuleContextTestCase;
+import org.mule.util.concurrent.VirtualThreadExecutorService;
+import org.mule.util.concurrent.VirtualThreadFactory;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -58,4 +62,28 @@ public class DefaultThreadPoolFactoryTestCase extends AbstractMuleContextTestCas
         ScheduledThreadPoolExecutor scheduledPool = (ScheduledThreadPoolExecutor) executorService;
         assertThat(scheduledPool.getRejectedExecutionHandler(), is((RejectedExecutionHandler) expectedRejectedExecutionHandler));
     }
+
+    @Test
+    public void virtualThreadPool() throws Exception
+    {
+        ThreadingProfile threadingProfile = new ChainedThreadingProfile(muleContext.getDefaultThreadingProfile());
+        threadingProfile.setVirtualThreads(true);
+        ExecutorService executorService = threadingProfile.createPool("sapo pepe");
+        try
+        {
+            if (VirtualThreadFactory.isSupported())
+            {
+                assertThat(executorService, instanceOf(VirtualThreadExecutorService.class));
+                assertThat(((VirtualThreadExecutorService) executorService).getMaxConcurrency(), is(threadingProfile.getMaxThreadsActive()));
+            }
+            else
+            {
+                assertThat(executorService, instanceOf(ThreadPoolExecutor.class));
+            }
+        }
+        finally
+        {
+            executorService.shutdown();
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.context.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.MuleContext;
+import org.mule.api.config.MuleConfiguration;
+import org.mule.api.context.WorkManager;
+import org.mule.api.context.notification.ServerNotification;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+@SmallTest
+public class NotificationDispatchingTestCase extends AbstractMuleTestCase
+{
+
+    private static final int NOTIFICATIONS = 100;
+    private static final long TIMEOUT = 5000;
+
+    private ServerNotificationManager manager;
+    private WorkManager workManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        MuleConfiguration configuration = mock(MuleConfiguration.class);
+        when(configuration.getDefaultQueueTimeout()).thenReturn(50);
+        MuleContext muleContext = mock(MuleContext.class);
+        when(muleContext.getConfiguration()).thenReturn(configuration);
+
+        manager = new ServerNotificationManager();
+        manager.setMuleContext(muleContext);
+        manager.addInterfaceToType(OrderListener.class, Event1.class);
+
+        workManager = mock(WorkManager.class);
+        doAnswer(new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                new Thread((Work) invocation.getArguments()[0]).start();
+                return null;
+            }
+        }).when(workManager).scheduleWork(any(Work.class), anyLong(), any(ExecutionContext.class), any(WorkListener.class));
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.dispose();
+    }
+
+    @Test
+    public void deliversNotificationsInOrderToListenersOfEveryPartition() throws Exception
+    {
+        manager.setPartitions(4);
+        List<OrderListener> listeners = new ArrayList<OrderListener>();
+        for (int i = 0; i < 8; i++)
+        {
+            OrderListener listener = new OrderListener(NOTIFICATIONS);
+            listeners.add(listener);
+            manager.addListener(listener);
+        }
+        manager.start(workManager, null);
+
+        for (int i = 0; i < NOTIFICATIONS; i++)
+        {
+            manager.fireNotification(new Event1(String.valueOf(i)));
+        }
+
+        for (OrderListener listener : listeners)
+        {
+            assertTrue(listener.received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertTrue(listener.inOrder);
+            assertEquals(NOTIFICATIONS, manager.getListenerStatistics().get(listener).getDeliveredNotifications());
+        }
+        assertEquals(0, manager.getDroppedNotifications());
+    }
+
+    @Test
+    public void dropsOldestNotificationsWhenBufferIsFull() throws Exception
+    {
+        manager.setBufferSize(2);
+        manager.setOverflowPolicy(NotificationOverflowPolicy.DROP_OLDEST);
+        manager.addListener(new OrderListener(NOTIFICATIONS));
+
+        for (int i = 0; i < 5; i++)
+        {
+            manager.fireNotification(new Event1(String.valueOf(i)));
+        }
+
+        assertEquals(2, manager.getPendingNotifications());
+        assertEquals(3, manager.getDroppedNotifications());
+        assertEquals("3", manager.getEventQueue().poll().getResourceIdentifier());
+        assertEquals("4", manager.getEventQueue().poll().getResourceIdentifier());
+    }
+
+    @Test
+    public void samplesNotificationsWhenBufferIsFull() throws Exception
+    {
+        manager.setBufferSize(2);
+        manager.setOverflowPolicy(NotificationOverflowPolicy.SAMPLE);
+        manager.setSampleRate(2);
+        manager.addListener(new OrderListener(NOTIFICATIONS));
+
+        for (int i = 0; i < 6; i++)
+        {
+            manager.fireNotification(new Event1(String.valueOf(i)));
+        }
+
+        // 2 and 4 are discarded, 3 and 5 replace 0 and 1
+        assertEquals(2, manager.getPendingNotifications());
+        assertEquals(4, manager.getDroppedNotifications());
+        assertEquals("3", manager.getEventQueue().poll().getResourceIdentifier());
+        assertEquals("5", manager.getEventQueue().poll().getResourceIdentifier());
+    }
+
+    @Test
+    public void blocksWhenBufferIsFull() throws Exception
+    {
+        manager.setBufferSize(1);
+        manager.setOverflowPolicy(NotificationOverflowPolicy.BLOCK);
+        final CountDownLatch release = new CountDownLatch(1);
+        OrderListener listener = new OrderListener(3)
+        {
+            @Override
+            public void onNotification(ServerNotification notification)
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNotification(notification);
+            }
+        };
+        manager.addListener(listener);
+        manager.start(workManager, null);
+
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < 3; i++)
+                {
+                    manager.fireNotification(new Event1(String.valueOf(i)));
+                }
+            }
+        };
+        producer.start();
+
+        producer.join(500);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(TIMEOUT);
+        assertFalse(producer.isAlive());
+        assertTrue(listener.received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(listener.inOrder);
+        assertEquals(0, manager.getDroppedNotifications());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotChangePartitionsOnceStarted() throws Exception
+    {
+        manager.start(workManager, null);
+        manager.setPartitions(2);
+    }
+
+    static class OrderListener extends AbstractListener<ServerNotification>
+    {
+
+        final CountDownLatch received;
+        volatile boolean inOrder = true;
+        private int next = 0;
+
+        OrderListener(int expected)
+        {
+            received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onNotification(ServerNotification notification)
+        {
+            super.onNotification(notification);
+            if (Integer.parseInt(notification.getResourceIdentifier()) != next++)
+            {
+                inOrder = false;
+            }
+            received.countDown();
+        }
+    }
+}
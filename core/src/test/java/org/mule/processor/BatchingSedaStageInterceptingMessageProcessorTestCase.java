@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.MessageExchangePattern;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.config.ThreadingProfile;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.config.ChainedThreadingProfile;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BatchingSedaStageInterceptingMessageProcessorTestCase extends
+    SedaStageInterceptingMessageProcessorTestCase
+{
+
+    @Test
+    public void processesQueuedEventsInConsumerThreads() throws Exception
+    {
+        final int events = 100;
+        final CountDownLatch processed = new CountDownLatch(events);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        ThreadingProfile threadingProfile = new ChainedThreadingProfile(
+            muleContext.getDefaultThreadingProfile());
+        threadingProfile.setMaxThreadsActive(1);
+        threadingProfile.setMuleContext(muleContext);
+
+        BatchingSedaStageInterceptingMessageProcessor batchingProcessor = new BatchingSedaStageInterceptingMessageProcessor(
+            "processesQueuedEventsInConsumerThreads", "processesQueuedEventsInConsumerThreads", queueProfile,
+            queueTimeout, threadingProfile, queueStatistics, muleContext, 10, 5);
+        batchingProcessor.setListener(new MessageProcessor()
+        {
+            @Override
+            public MuleEvent process(MuleEvent event) throws MuleException
+            {
+                threads.add(Thread.currentThread());
+                processed.countDown();
+                return event;
+            }
+        });
+        batchingProcessor.initialise();
+        batchingProcessor.start();
+        try
+        {
+            for (int i = 0; i < events; i++)
+            {
+                batchingProcessor.process(getTestEvent(TEST_MESSAGE, getTestInboundEndpoint(MessageExchangePattern.ONE_WAY)));
+            }
+
+            assertTrue(processed.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertThat(threads.size(), is(1));
+            assertThat(threads.contains(Thread.currentThread()), is(false));
+            TestQueueStatistics statistics = (TestQueueStatistics) queueStatistics;
+            assertThat(statistics.incCount, is(events));
+            assertThat(statistics.decCount, is(events));
+        }
+        finally
+        {
+            batchingProcessor.stop();
+            batchingProcessor.dispose();
+        }
+    }
+
+    @Test
+    public void usesOneConsumerPerThread() throws Exception
+    {
+        ThreadingProfile threadingProfile = new ChainedThreadingProfile(
+            muleContext.getDefaultThreadingProfile());
+        threadingProfile.setMaxThreadsActive(4);
+        threadingProfile.setMuleContext(muleContext);
+
+        BatchingSedaStageInterceptingMessageProcessor batchingProcessor = new BatchingSedaStageInterceptingMessageProcessor(
+            "usesOneConsumerPerThread", "usesOneConsumerPerThread", queueProfile, queueTimeout,
+            threadingProfile, queueStatistics, muleContext);
+
+        assertThat(batchingProcessor.getConsumers(), is(4));
+        assertThat(batchingProcessor.getBatchSize(), is(not(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBatches() throws Exception
+    {
+        new BatchingSedaStageInterceptingMessageProcessor("rejectsEmptyBatches", "rejectsEmptyBatches",
+            queueProfile, queueTimeout, muleContext.getDefaultThreadingProfile(), queueStatistics,
+            muleContext, 0, 0);
+    }
+
+    @Override
+    protected AsyncInterceptingMessageProcessor createAsyncInterceptingMessageProcessor(MessageProcessor listener)
+        throws Exception
+    {
+        BatchingSedaStageInterceptingMessageProcessor mp = new BatchingSedaStageInterceptingMessageProcessor(
+            "name", "name", queueProfile, queueTimeout, muleContext.getDefaultThreadingProfile(),
+            queueStatistics, muleContext);
+        mp.setMuleContext(muleContext);
+        mp.setListener(listener);
+        return mp;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleMessage;
+import org.mule.api.context.MuleContextBuilder;
+import org.mule.api.serialization.ObjectSerializer;
+import org.mule.config.DefaultMuleConfiguration;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+import org.mule.util.UUID;
+import org.mule.util.queue.objectstore.QueueKey;
+import org.mule.util.store.QueuePersistenceObjectStore;
+
+import java.io.Serializable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactMuleEventSerializationTestCase extends AbstractMuleContextTestCase
+{
+
+    @Rule
+    public TemporaryFolder workingDirectory = new TemporaryFolder();
+
+    @Override
+    protected void configureMuleContext(MuleContextBuilder contextBuilder)
+    {
+        super.configureMuleContext(contextBuilder);
+        DefaultMuleConfiguration configuration = new DefaultMuleConfiguration();
+        configuration.setWorkingDirectory(workingDirectory.getRoot().getAbsolutePath());
+        configuration.setDefaultObjectSerializer(DefaultMuleConfiguration.COMPACT_OBJECT_SERIALIZER);
+        contextBuilder.setMuleConfiguration(configuration);
+    }
+
+    @Test
+    public void persistsEventsInCompactFormat() throws Exception
+    {
+        MuleEvent event = getTestEvent(TEST_MESSAGE);
+        event.setFlowVariable("count", 3);
+        event.setTimeout(5000);
+        event.getMessage().setOutboundProperty("foo", "bar");
+        event.getSession().setProperty("user", "mule");
+
+        ObjectSerializer serializer = muleContext.getObjectSerializer();
+        assertThat(serializer, instanceOf(CompactObjectSerializer.class));
+        byte[] bytes = serializer.serialize(event);
+        assertThat((int) bytes[CompactObjectSerializer.HEADER_LENGTH], is(CompactObjectSerializer.TYPE_BUILT_IN));
+
+        QueuePersistenceObjectStore<Serializable> store = new QueuePersistenceObjectStore<Serializable>(muleContext);
+        store.open();
+        QueueKey key = new QueueKey("theQueue", UUID.getUUID());
+        store.store(key, event);
+        MuleEvent persisted = (MuleEvent) store.retrieve(key);
+
+        assertThat(persisted.getId(), equalTo(event.getId()));
+        assertThat(persisted.getMuleContext(), sameInstance(muleContext));
+        assertThat(persisted.getFlowConstruct(), sameInstance(event.getFlowConstruct()));
+        assertThat(persisted.getExchangePattern(), equalTo(event.getExchangePattern()));
+        assertThat(persisted.getTimeout(), equalTo(5000));
+        assertThat(persisted.getSession().getId(), equalTo(event.getSession().getId()));
+        assertThat((String) persisted.getSession().getProperty("user"), equalTo("mule"));
+        assertThat((Integer) persisted.getFlowVariable("count"), equalTo(3));
+
+        MuleMessage message = persisted.getMessage();
+        assertThat(message.getUniqueId(), equalTo(event.getMessage().getUniqueId()));
+        assertThat((String) message.getPayload(), equalTo(TEST_MESSAGE));
+        assertThat((String) message.getOutboundProperty("foo"), equalTo("bar"));
+        assertThat((Integer) message.getInvocationProperty("count"), equalTo(3));
+        assertThat((String) message.getSessionProperty("user"), equalTo("mule"));
+    }
+
+    @Test
+    public void keepsFlowVariablesOfMessagesWithoutEvent() throws Exception
+    {
+        MuleMessage message = new DefaultMuleMessage(TEST_MESSAGE, muleContext);
+        message.setInvocationProperty("count", 3);
+        message.setOutboundProperty("foo", "bar");
+
+        ObjectSerializer serializer = muleContext.getObjectSerializer();
+        byte[] bytes = serializer.serialize(message);
+        assertThat((int) bytes[CompactObjectSerializer.HEADER_LENGTH], is(CompactObjectSerializer.TYPE_BUILT_IN));
+
+        MuleMessage deserialized = serializer.deserialize(bytes);
+        assertThat(deserialized.getMuleContext(), notNullValue());
+        assertThat((String) deserialized.getPayload(), equalTo(TEST_MESSAGE));
+        assertThat((Integer) deserialized.getInvocationProperty("count"), equalTo(3));
+        assertThat((String) deserialized.getOutboundProperty("foo"), equalTo("bar"));
+    }
+}
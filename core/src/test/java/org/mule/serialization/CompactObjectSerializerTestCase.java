@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.serialization;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.MuleContext;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+import org.mule.util.store.DeserializationPostInitialisable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.SerializationException;
+import org.junit.Before;
+import org.junit.Test;
+
+@SmallTest
+public class CompactObjectSerializerTestCase extends AbstractMuleTestCase
+{
+
+    private CompactObjectSerializer serializer;
+
+    @Before
+    public void setUp()
+    {
+        MuleContext muleContext = mock(MuleContext.class);
+        when(muleContext.getExecutionClassLoader()).thenReturn(getClass().getClassLoader());
+        serializer = new CompactObjectSerializer();
+        serializer.setMuleContext(muleContext);
+    }
+
+    @Test
+    public void keepsValuesOfBuiltInTypes() throws Exception
+    {
+        assertRoundTrip(null);
+        assertRoundTrip("value");
+        assertRoundTrip("v\u00e1l\u00fce \u4e2d");
+        assertRoundTrip(-42);
+        assertRoundTrip(Long.MIN_VALUE);
+        assertRoundTrip(1.5d);
+        assertRoundTrip(2.5f);
+        assertRoundTrip(true);
+        assertRoundTrip((short) -3);
+        assertRoundTrip((byte) 7);
+        assertRoundTrip('c');
+        assertRoundTrip(new Date(1000));
+        assertRoundTrip(new BigDecimal("-12.345"));
+        assertRoundTrip(new BigInteger("123456789012345678901234567890"));
+        assertArrayEquals(new byte[] {1, 2, 3}, serializer.<byte[]>deserialize(serializer.serialize(new byte[] {1, 2, 3})));
+    }
+
+    @Test
+    public void keepsCollections() throws Exception
+    {
+        List<Object> list = new ArrayList<Object>();
+        list.add("element");
+        list.add(null);
+        list.add(new LinkedList<Object>(list));
+
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put("list", list);
+        map.put(1, new HashSet<Object>(list));
+        map.put(2L, new LinkedHashSet<Object>(list));
+
+        assertRoundTrip(map);
+    }
+
+    @Test
+    public void serializesOtherTypesWithJavaSerialization() throws Exception
+    {
+        Map<String, Integer> sorted = new TreeMap<String, Integer>();
+        sorted.put("key", 1);
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("sorted", sorted);
+
+        assertRoundTrip(map);
+    }
+
+    @Test
+    public void writesRegisteredTypesWithTheirSerializer() throws Exception
+    {
+        serializer.register(1, Point.class, new PointSerializer());
+
+        Point point = serializer.deserialize(serializer.serialize(new Point(3, "label")));
+
+        assertThat(point.x, is(3));
+        assertThat(point.label, is("label"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotRegisterSameIdTwice() throws Exception
+    {
+        serializer.register(1, Point.class, new PointSerializer());
+        serializer.register(1, String.class, null);
+    }
+
+    @Test
+    public void keepsCyclicReferences() throws Exception
+    {
+        List<Object> list = new ArrayList<Object>();
+        list.add(list);
+
+        List<Object> deserialized = serializer.deserialize(serializer.serialize(list));
+
+        assertThat(deserialized.get(0), sameInstance((Object) deserialized));
+    }
+
+    @Test
+    public void readsJavaSerializedObjects() throws Exception
+    {
+        byte[] javaSerialized = new JavaObjectSerializer().serialize("value");
+
+        assertThat(serializer.<String>deserialize(javaSerialized), is("value"));
+    }
+
+    @Test
+    public void writesAndReadsStreams() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize("value", out);
+
+        assertThat(serializer.<String>deserialize(new ByteArrayInputStream(out.toByteArray())), is("value"));
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws Exception
+    {
+        Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < 10; i++)
+        {
+            map.put("key" + i, "value" + i);
+            map.put("number" + i, i);
+        }
+
+        assertTrue(serializer.serialize(map).length * 3 < new JavaObjectSerializer().serialize(map).length);
+    }
+
+    @Test
+    public void failsWithNonSerializableObjects() throws Exception
+    {
+        try
+        {
+            serializer.serialize(new Object());
+            fail("Serialized an object that is not Serializable");
+        }
+        catch (SerializationException e)
+        {
+            // expected
+        }
+
+        // The buffer of the failed serialization is reused
+        assertRoundTrip("value");
+    }
+
+    @Test(expected = SerializationException.class)
+    public void failsWithUnknownData() throws Exception
+    {
+        serializer.deserialize(new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void initialisesDeserializationPostInitialisableObjects() throws Exception
+    {
+        Object deserialized = serializer.deserialize(serializer.serialize(new DeserializableValue()));
+
+        assertThat(deserialized, instanceOf(DeserializableValue.class));
+        assertThat(((DeserializableValue) deserialized).initialised, is(true));
+    }
+
+    private void assertRoundTrip(Object value)
+    {
+        Object deserialized = serializer.deserialize(serializer.serialize(value));
+        if (value == null)
+        {
+            assertThat(deserialized, nullValue());
+        }
+        else
+        {
+            assertThat(deserialized, equalTo(value));
+            assertThat(deserialized.getClass(), equalTo((Object) value.getClass()));
+        }
+    }
+
+    private static class Point
+    {
+
+        private final int x;
+        private final String label;
+
+        Point(int x, String label)
+        {
+            this.x = x;
+            this.label = label;
+        }
+    }
+
+    private static class PointSerializer implements TypeSerializer<Point>
+    {
+
+        @Override
+        public void write(Point value, ObjectOutput out) throws IOException
+        {
+            out.writeInt(value.x);
+            out.writeObject(value.label);
+        }
+
+        @Override
+        public Point read(ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            return new Point(in.readInt(), (String) in.readObject());
+        }
+    }
+
+    private static class DeserializableValue implements DeserializationPostInitialisable, Serializable
+    {
+
+        private static final long serialVersionUID = 4937581946023432937L;
+
+        private transient boolean initialised;
+
+        @SuppressWarnings("unused")
+        private void initAfterDeserialisation(MuleContext muleContext)
+        {
+            initialised = true;
+        }
+    }
+}
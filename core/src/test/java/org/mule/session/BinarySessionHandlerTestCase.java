@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleMessage;
+import org.mule.api.MuleSession;
+import org.mule.api.config.MuleProperties;
+import org.mule.api.transport.SessionHandler;
+import org.mule.serialization.JavaObjectSerializer;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.util.Base64;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class BinarySessionHandlerTestCase extends AbstractMuleTestCase
+{
+
+    private MuleContext muleContext;
+    private BinarySessionHandler handler;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        muleContext = Mockito.mock(MuleContext.class);
+        Mockito.when(muleContext.getExecutionClassLoader()).thenReturn(Thread.currentThread().getContextClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(muleContext);
+        Mockito.when(muleContext.getObjectSerializer()).thenReturn(serializer);
+        handler = new BinarySessionHandler();
+    }
+
+    @Test
+    public void keepsSessionValues() throws Exception
+    {
+        MuleSession session = new DefaultMuleSession();
+        session.setValid(false);
+        session.setProperty("string", "value");
+        session.setProperty("sameString", "value");
+        session.setProperty("integer", -42);
+        session.setProperty("long", Long.MAX_VALUE);
+        session.setProperty("double", 1.5d);
+        session.setProperty("boolean", true);
+        session.setProperty("date", new Date(1000));
+        session.setProperty("decimal", new BigDecimal("12.345"));
+        session.setProperty("bytes", new byte[] {1, 2, 3});
+        List<String> list = new ArrayList<String>();
+        list.add("element");
+        session.setProperty("list", (Object) list);
+
+        MuleSession received = sendAndReceive(handler, session);
+
+        assertEquals(session.getId(), received.getId());
+        assertFalse(received.isValid());
+        assertEquals("value", received.getProperty("string"));
+        assertEquals("value", received.getProperty("sameString"));
+        assertEquals(-42, received.<Object>getProperty("integer"));
+        assertEquals(Long.MAX_VALUE, received.<Object>getProperty("long"));
+        assertEquals(1.5d, received.<Object>getProperty("double"));
+        assertEquals(Boolean.TRUE, received.<Object>getProperty("boolean"));
+        assertEquals(new Date(1000), received.getProperty("date"));
+        assertEquals(new BigDecimal("12.345"), received.getProperty("decimal"));
+        assertArrayEquals(new byte[] {1, 2, 3}, received.<byte[]>getProperty("bytes"));
+        assertEquals(list, received.getProperty("list"));
+    }
+
+    @Test
+    public void dropsNonSerializableValues() throws Exception
+    {
+        MuleSession session = new DefaultMuleSession();
+        session.setProperty("serializable", "value");
+        session.setProperty("nonSerializable", new Object());
+
+        MuleSession received = sendAndReceive(handler, session);
+
+        assertEquals("value", received.getProperty("serializable"));
+        assertNull(received.getProperty("nonSerializable"));
+    }
+
+    @Test
+    public void compressesBigSessions() throws Exception
+    {
+        MuleSession session = new DefaultMuleSession();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+        {
+            value.append("repeated ");
+        }
+        session.setProperty("big", value.toString());
+
+        DefaultMuleMessage message = new DefaultMuleMessage("Test Message", muleContext);
+        handler.storeSessionInfoToMessage(session, message);
+        String header = message.getOutboundProperty(MuleProperties.MULE_SESSION_PROPERTY);
+
+        assertTrue(Base64.decode(header).length < value.length() / 10);
+        assertEquals(value.toString(), receive(handler, message).getProperty("big"));
+    }
+
+    @Test
+    public void readsSessionsStoredBySerializeAndEncodeSessionHandler() throws Exception
+    {
+        MuleSession session = new DefaultMuleSession();
+        session.setProperty("key", "value");
+
+        DefaultMuleMessage message = new DefaultMuleMessage("Test Message", muleContext);
+        new SerializeAndEncodeSessionHandler().storeSessionInfoToMessage(session, message);
+
+        MuleSession received = receive(handler, message);
+
+        assertEquals(session.getId(), received.getId());
+        assertEquals("value", received.getProperty("key"));
+    }
+
+    @Test
+    public void createsSmallerHeaderThanSerializeAndEncodeSessionHandler() throws Exception
+    {
+        MuleSession session = new DefaultMuleSession();
+        for (int i = 0; i < 10; i++)
+        {
+            session.setProperty("key" + i, "value" + i);
+            session.setProperty("number" + i, i);
+        }
+
+        MuleMessage binaryMessage = new DefaultMuleMessage("Test Message", muleContext);
+        handler.storeSessionInfoToMessage(session, binaryMessage);
+        MuleMessage serializedMessage = new DefaultMuleMessage("Test Message", muleContext);
+        new SerializeAndEncodeSessionHandler().storeSessionInfoToMessage(session, serializedMessage);
+
+        String binaryHeader = binaryMessage.getOutboundProperty(MuleProperties.MULE_SESSION_PROPERTY);
+        String serializedHeader = serializedMessage.getOutboundProperty(MuleProperties.MULE_SESSION_PROPERTY);
+        assertTrue(binaryHeader.length() * 2 < serializedHeader.length());
+    }
+
+    private MuleSession sendAndReceive(SessionHandler handler, MuleSession session) throws Exception
+    {
+        DefaultMuleMessage message = new DefaultMuleMessage("Test Message", muleContext);
+        handler.storeSessionInfoToMessage(session, message);
+        return receive(handler, message);
+    }
+
+    private MuleSession receive(SessionHandler handler, DefaultMuleMessage message) throws Exception
+    {
+        // store save session to outbound, move it to the inbound
+        // for retrieve to decode
+        Object header = message.removeProperty(MuleProperties.MULE_SESSION_PROPERTY);
+        message.setInboundProperty(MuleProperties.MULE_SESSION_PROPERTY, header);
+        return handler.retrieveSessionInfoFromMessage(message);
+    }
+}
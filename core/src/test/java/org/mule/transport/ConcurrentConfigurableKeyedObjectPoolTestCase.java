@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SmallTest
+public class ConcurrentConfigurableKeyedObjectPoolTestCase extends AbstractMuleTestCase
+{
+
+    private static final String KEY = "key";
+    private static final String OTHER_KEY = "otherKey";
+
+    private final TestObjectFactory factory = new TestObjectFactory();
+    private ConcurrentConfigurableKeyedObjectPool pool;
+
+    @Before
+    public void setUp()
+    {
+        pool = new ConcurrentConfigurableKeyedObjectPool();
+        pool.setFactory(factory);
+        pool.setMaxActive(1);
+        pool.setMaxIdle(1);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        pool.close();
+    }
+
+    @Test
+    public void reusesReturnedObject() throws Exception
+    {
+        Object first = pool.borrowObject(KEY);
+        assertEquals(1, pool.getNumActive(KEY));
+        pool.returnObject(KEY, first);
+        assertEquals(0, pool.getNumActive(KEY));
+        assertEquals(1, pool.getNumIdle(KEY));
+
+        assertSame(first, pool.borrowObject(KEY));
+        assertEquals(1, factory.created.get());
+        assertEquals(1, factory.passivated.get());
+        assertEquals(2, factory.activated.get());
+    }
+
+    @Test
+    public void keepsObjectsOfEachKeyApart() throws Exception
+    {
+        Object object = pool.borrowObject(KEY);
+        Object otherObject = pool.borrowObject(OTHER_KEY);
+
+        assertNotSame(object, otherObject);
+        assertEquals(1, pool.getNumActive(KEY));
+        assertEquals(1, pool.getNumActive(OTHER_KEY));
+        assertEquals(2, pool.getNumActive());
+    }
+
+    @Test
+    public void failsWhenExhausted() throws Exception
+    {
+        pool.setWhenExhaustedAction(ConfigurableKeyedObjectPool.WHEN_EXHAUSTED_FAIL);
+        pool.borrowObject(KEY);
+        try
+        {
+            pool.borrowObject(KEY);
+            fail("Pool should be exhausted");
+        }
+        catch (NoSuchElementException e)
+        {
+            assertEquals(1, pool.getNumActive(KEY));
+        }
+    }
+
+    @Test
+    public void growsWhenExhausted() throws Exception
+    {
+        pool.setWhenExhaustedAction(ConfigurableKeyedObjectPool.WHEN_EXHAUSTED_GROW);
+        Object first = pool.borrowObject(KEY);
+        Object second = pool.borrowObject(KEY);
+
+        assertEquals(2, pool.getNumActive(KEY));
+        pool.returnObject(KEY, first);
+        pool.returnObject(KEY, second);
+        assertEquals(1, pool.getNumIdle(KEY));
+        assertEquals(1, factory.destroyed.get());
+    }
+
+    @Test
+    public void blocksUntilObjectIsReturned() throws Exception
+    {
+        final Object object = pool.borrowObject(KEY);
+        final AtomicReference<Object> borrowed = new AtomicReference<Object>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    borrowed.set(pool.borrowObject(KEY));
+                }
+                catch (Exception e)
+                {
+                    // borrowed stays null
+                }
+                done.countDown();
+            }
+        }).start();
+
+        Thread.sleep(50);
+        pool.returnObject(KEY, object);
+        assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertSame(object, borrowed.get());
+        assertEquals(1, pool.getWaitCount());
+        assertTrue(pool.getMaxWaitTime() > 0);
+    }
+
+    @Test
+    public void blocksUntilMaxWait() throws Exception
+    {
+        pool.setMaxWait(50);
+        pool.borrowObject(KEY);
+        long start = System.currentTimeMillis();
+        try
+        {
+            pool.borrowObject(KEY);
+            fail("Borrowing should time out");
+        }
+        catch (NoSuchElementException e)
+        {
+            assertTrue(System.currentTimeMillis() - start >= 50);
+            assertEquals(1, pool.getWaitCount());
+            assertTrue(pool.getTotalWaitTime() >= 50);
+        }
+    }
+
+    @Test
+    public void destroysInvalidObjectsOnReturn() throws Exception
+    {
+        Object object = pool.borrowObject(KEY);
+        factory.valid = false;
+        pool.returnObject(KEY, object);
+
+        assertEquals(0, pool.getNumIdle(KEY));
+        assertEquals(1, factory.destroyed.get());
+        assertNotSame(object, pool.borrowObject(KEY));
+    }
+
+    @Test
+    public void evictsIdleObjects() throws Exception
+    {
+        pool.setMaxActive(2);
+        pool.setMaxIdle(2);
+        pool.setMinEvictableIdleTimeMillis(50);
+        Object first = pool.borrowObject(KEY);
+        Object second = pool.borrowObject(KEY);
+        pool.returnObject(KEY, first);
+        Thread.sleep(100);
+        pool.returnObject(KEY, second);
+
+        pool.evict();
+        assertEquals(1, pool.getNumIdle(KEY));
+        assertEquals(1, factory.destroyed.get());
+
+        Thread.sleep(100);
+        pool.evict();
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(2, factory.destroyed.get());
+    }
+
+    @Test
+    public void clearDestroysObjectsWhenReturned() throws Exception
+    {
+        pool.setMaxActive(2);
+        Object idle = pool.borrowObject(KEY);
+        Object active = pool.borrowObject(KEY);
+        pool.returnObject(KEY, idle);
+
+        pool.clear();
+        assertEquals(1, factory.destroyed.get());
+        pool.returnObject(KEY, active);
+        assertEquals(2, factory.destroyed.get());
+        assertEquals(0, pool.getNumIdle() + pool.getNumActive());
+    }
+
+    @Test
+    public void destroysIdleObjectsOfOtherKeysWhenTotalIsReached() throws Exception
+    {
+        pool.setMaxTotal(1);
+        pool.setWhenExhaustedAction(ConfigurableKeyedObjectPool.WHEN_EXHAUSTED_FAIL);
+        pool.returnObject(OTHER_KEY, pool.borrowObject(OTHER_KEY));
+
+        pool.borrowObject(KEY);
+        assertEquals(0, pool.getNumIdle(OTHER_KEY));
+        assertEquals(1, factory.destroyed.get());
+    }
+
+    @Test
+    public void wakesUpWaitersOfOtherKeysWhenTotalIsReached() throws Exception
+    {
+        pool.setMaxTotal(1);
+        final Object otherObject = pool.borrowObject(OTHER_KEY);
+        final AtomicReference<Object> borrowed = new AtomicReference<Object>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    borrowed.set(pool.borrowObject(KEY));
+                }
+                catch (Exception e)
+                {
+                    // borrowed stays null
+                }
+                done.countDown();
+            }
+        }).start();
+
+        Thread.sleep(50);
+        pool.returnObject(OTHER_KEY, otherObject);
+        assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotNull(borrowed.get());
+        assertNotSame(otherObject, borrowed.get());
+        assertEquals(1, factory.destroyed.get());
+    }
+
+    @Test
+    public void returnsObjectReturnedConcurrentlyOnlyOnce() throws Exception
+    {
+        for (int i = 0; i < 200; i++)
+        {
+            final Object object = pool.borrowObject(KEY);
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(2);
+            for (int j = 0; j < 2; j++)
+            {
+                new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                            pool.returnObject(KEY, object);
+                        }
+                        catch (Exception e)
+                        {
+                            // the counters below fail the test
+                        }
+                        done.countDown();
+                    }
+                }).start();
+            }
+            start.countDown();
+            assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            assertEquals(1, pool.getNumIdle(KEY));
+            assertEquals(0, pool.getNumActive(KEY));
+            assertEquals(0, factory.destroyed.get());
+        }
+    }
+
+    @Test
+    public void supportsConcurrentBorrowers() throws Exception
+    {
+        final int threads = 8;
+        final int iterations = 2000;
+        pool.setMaxActive(3);
+        pool.setMaxIdle(3);
+        final AtomicInteger inUse = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < iterations; j++)
+                        {
+                            String key = j % 2 == 0 ? KEY : OTHER_KEY;
+                            Object object = pool.borrowObject(key);
+                            if (inUse.incrementAndGet() > 6)
+                            {
+                                failures.incrementAndGet();
+                            }
+                            inUse.decrementAndGet();
+                            pool.returnObject(key, object);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failures.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(RECEIVE_TIMEOUT * 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, failures.get());
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumIdle(KEY) <= 3);
+        assertEquals(factory.created.get() - factory.destroyed.get(), pool.getNumIdle());
+    }
+
+    private static class TestObjectFactory extends BaseKeyedPoolableObjectFactory
+    {
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger destroyed = new AtomicInteger();
+        private final AtomicInteger activated = new AtomicInteger();
+        private final AtomicInteger passivated = new AtomicInteger();
+        private volatile boolean valid = true;
+
+        @Override
+        public Object makeObject(Object key) throws Exception
+        {
+            created.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public void destroyObject(Object key, Object obj) throws Exception
+        {
+            destroyed.incrementAndGet();
+        }
+
+        @Override
+        public boolean validateObject(Object key, Object obj)
+        {
+            return valid;
+        }
+
+        @Override
+        public void activateObject(Object key, Object obj) throws Exception
+        {
+            activated.incrementAndGet();
+        }
+
+        @Override
+        public void passivateObject(Object key, Object obj) throws Exception
+        {
+            passivated.incrementAndGet();
+        }
+    }
+}
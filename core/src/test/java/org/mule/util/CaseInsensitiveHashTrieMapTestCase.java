@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+@SmallTest
+public class CaseInsensitiveHashTrieMapTestCase extends AbstractMuleTestCase
+{
+
+    private static final int ENTRIES = 2000;
+
+    @Test
+    public void keysAreCaseInsensitive() throws Exception
+    {
+        Map<String, Object> map = new CaseInsensitiveHashTrieMap<String, Object>();
+        map.put("Content-Type", "text/plain");
+
+        assertEquals("text/plain", map.get("content-type"));
+        assertEquals("text/plain", map.get("CONTENT-TYPE"));
+        assertEquals("text/plain", map.put("CONTENT-type", "text/xml"));
+        assertEquals(1, map.size());
+        assertEquals("Content-Type", map.keySet().iterator().next());
+        assertEquals("text/xml", map.remove("content-TYPE"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void behavesLikeAMapWithLowerCaseKeys() throws Exception
+    {
+        CaseInsensitiveHashTrieMap<String, Integer> map = new CaseInsensitiveHashTrieMap<String, Integer>();
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        Random random = new Random(0);
+
+        for (int i = 0; i < ENTRIES * 10; i++)
+        {
+            String key = randomCase("key" + random.nextInt(ENTRIES), random);
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(key.toLowerCase()), map.remove(key));
+            }
+            else
+            {
+                assertEquals(expected.put(key.toLowerCase(), i), map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<String, Integer> entry : map.entrySet())
+        {
+            assertEquals(expected.get(entry.getKey().toLowerCase()), entry.getValue());
+        }
+    }
+
+    @Test
+    public void copiesDoNotSeeEachOtherChanges() throws Exception
+    {
+        CaseInsensitiveHashTrieMap<String, Integer> original = createMap(ENTRIES);
+        CaseInsensitiveHashTrieMap<String, Integer> copy = original.clone();
+
+        for (int i = 0; i < ENTRIES; i += 2)
+        {
+            original.remove("key" + i);
+            copy.put("KEY" + i, -i);
+        }
+        copy.put("new", 0);
+
+        assertEquals(ENTRIES / 2, original.size());
+        assertEquals(ENTRIES + 1, copy.size());
+        for (int i = 0; i < ENTRIES; i++)
+        {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), original.get("key" + i));
+            assertEquals(Integer.valueOf(i % 2 == 0 ? -i : i), copy.get("key" + i));
+        }
+        assertFalse(original.containsKey("new"));
+    }
+
+    @Test
+    public void supportsKeysWithTheSameHash() throws Exception
+    {
+        // "Aa" and "BB" have the same hash code
+        Map<String, Object> map = new CaseInsensitiveHashTrieMap<String, Object>();
+        map.put("Aa", 1);
+        map.put("BB", 2);
+        Map<String, Object> copy = ((CaseInsensitiveHashTrieMap<String, Object>) map).clone();
+        map.put("aA", 3);
+
+        assertEquals(2, map.size());
+        assertEquals(3, map.get("AA"));
+        assertEquals(2, map.get("bb"));
+        assertEquals(1, copy.get("aa"));
+
+        assertEquals(2, map.remove("BB"));
+        assertEquals(3, map.get("aa"));
+        assertNull(map.get("bb"));
+        assertEquals(2, copy.get("BB"));
+    }
+
+    @Test
+    public void canBeModifiedWhileIterating() throws Exception
+    {
+        CaseInsensitiveHashTrieMap<String, Integer> map = createMap(ENTRIES);
+
+        int visited = 0;
+        for (Iterator<String> iterator = map.keySet().iterator(); iterator.hasNext();)
+        {
+            String key = iterator.next();
+            iterator.remove();
+            map.put(key + "-new", 0);
+            visited++;
+        }
+
+        assertEquals(ENTRIES, visited);
+        assertEquals(ENTRIES, map.size());
+        assertTrue(map.containsKey("key0-NEW"));
+        assertFalse(map.containsKey("key0"));
+    }
+
+    @Test
+    public void supportsNullKeysAndValues() throws Exception
+    {
+        Map<String, Object> map = new CaseInsensitiveHashTrieMap<String, Object>();
+        map.put(null, "value");
+        map.put("key", null);
+
+        assertEquals("value", map.get(null));
+        assertTrue(map.containsKey("KEY"));
+        assertNull(map.get("key"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void serialize() throws Exception
+    {
+        CaseInsensitiveHashTrieMap<String, Integer> map = createMap(ENTRIES);
+
+        Map<String, Integer> deserialized = (Map<String, Integer>) SerializationUtils.deserialize(SerializationUtils.serialize(map));
+
+        assertEquals(map, deserialized);
+        assertEquals(Integer.valueOf(1), deserialized.get("KEY1"));
+        deserialized.put("new", 0);
+        assertEquals(ENTRIES + 1, deserialized.size());
+    }
+
+    @Test
+    public void equalsOtherMaps() throws Exception
+    {
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int i = 0; i < ENTRIES; i++)
+        {
+            expected.put("key" + i, i);
+        }
+
+        CaseInsensitiveHashTrieMap<String, Integer> map = createMap(ENTRIES);
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    private CaseInsensitiveHashTrieMap<String, Integer> createMap(int entries)
+    {
+        CaseInsensitiveHashTrieMap<String, Integer> map = new CaseInsensitiveHashTrieMap<String, Integer>();
+        for (int i = 0; i < entries; i++)
+        {
+            map.put("key" + i, i);
+        }
+        return map;
+    }
+
+    private String randomCase(String key, Random random)
+    {
+        StringBuilder builder = new StringBuilder(key.length());
+        for (char c : key.toCharArray())
+        {
+            builder.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return builder.toString();
+    }
+}
@@ -7,6 +7,7 @@
 package org.mule.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -376,6 +377,20 @@ public class FileUtilsTestCase extends AbstractMuleTestCase
         }
     }
 
+    @Test
+    public void testMoveFileWithCopyFallback() throws Exception
+    {
+        File source = createTestFile("move");
+        FileUtils.writeStringToFile(source, "moved content");
+        File destination = new File(createTestDir("moveTo"), "moved.txt");
+
+        assertTrue(FileUtils.moveFileWithCopyFallback(source, destination));
+
+        assertFalse(source.exists());
+        assertEquals("moved content", FileUtils.readFileToString(destination));
+        FileUtils.deleteTree(destination.getParentFile());
+    }
+
     private File createTestFile(String filePath) throws IOException
     {
         return File.createTempFile(filePath, ".junit");
@@ -6,6 +6,8 @@
  */
 package org.mule.util;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
@@ -20,9 +22,13 @@ import org.mule.tck.junit4.AbstractMuleTestCase;
 import org.mule.tck.size.SmallTest;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLClassLoader;
+import java.util.Arrays;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -53,6 +59,63 @@ public class IOUtilsTestCase extends AbstractMuleTestCase
         verify(out, times(2)).write(any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
     }
 
+    @Test
+    public void copyLargeFileChannel() throws Exception
+    {
+        File source = createLargeFile(16 * 1024 * 1024);
+        File destination = File.createTempFile("copyLarge", ".junit");
+        destination.deleteOnExit();
+
+        FileInputStream in = new FileInputStream(source);
+        FileOutputStream out = new FileOutputStream(destination);
+        try
+        {
+            // the bytes already read from the stream are not copied
+            byte[] head = new byte[1024];
+            assertEquals(head.length, in.read(head));
+
+            long copied = IOUtils.copyLarge(in.getChannel(), out.getChannel());
+
+            assertEquals(source.length() - head.length, copied);
+            assertEquals(-1, in.read());
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+
+        byte[] sourceContent = FileUtils.readFileToByteArray(source);
+        assertArrayEquals(Arrays.copyOfRange(sourceContent, 1024, sourceContent.length),
+                          FileUtils.readFileToByteArray(destination));
+    }
+
+    private File createLargeFile(int size) throws Exception
+    {
+        File file = File.createTempFile("large", ".junit");
+        file.deleteOnExit();
+        byte[] block = new byte[64 * 1024];
+        for (int i = 0; i < block.length; i++)
+        {
+            block[i] = (byte) i;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            for (int written = 0; written < size; written += block.length)
+            {
+                // a different first byte on each block, so misplaced blocks are noticed
+                block[0] = (byte) (written / block.length);
+                out.write(block);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
     @Test
     @SuppressWarnings({"rawtypes", "unchecked"})
     public void increaseBufferSizeViaSystemProperty() throws Exception
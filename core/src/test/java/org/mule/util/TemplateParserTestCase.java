@@ -308,6 +308,46 @@ public class TemplateParserTestCase extends AbstractMuleTestCase
         assertTrue(tp.isValid("#[foo:blah = '#[foo]']"));
     }
 
+    @Test
+    public void muleParserCompiledTemplateResolvesLikeParse()
+    {
+        TemplateParser tp = TemplateParser.createMuleStyleParser();
+        TemplateParser.TemplateCallback callback = new TemplateParser.TemplateCallback()
+        {
+            public Object match(String token)
+            {
+                return token.startsWith("null") ? null : "<" + token + ">";
+            }
+        };
+
+        String[] templates = {"", "no expressions", "#[a]", "#[a]#[b]", "start #[a] middle #[b] end",
+            "#[a] and #[a] again", "#[header:[foo]] $ \\ #[null]", "#[one[#[two[3]]]] [x]"};
+        for (String template : templates)
+        {
+            TemplateParser.CompiledTemplate compiled = tp.compile(template);
+            assertEquals(template, tp.parse(callback, template), compiled.resolve(callback));
+            assertEquals(tp.isContainsTemplate(template), compiled.isContainsTemplate());
+        }
+    }
+
+    @Test
+    public void muleParserCompiledTemplateIsResolvedEveryTime()
+    {
+        TemplateParser tp = TemplateParser.createMuleStyleParser();
+        TemplateParser.CompiledTemplate compiled = tp.compile("count: #[count]");
+        final int[] count = {0};
+        TemplateParser.TemplateCallback callback = new TemplateParser.TemplateCallback()
+        {
+            public Object match(String token)
+            {
+                return ++count[0];
+            }
+        };
+
+        assertEquals("count: 1", compiled.resolve(callback));
+        assertEquals("count: 2", compiled.resolve(callback));
+    }
+
     private Map<String, Object> buildMap()
     {
         Map<String, Object> props = new HashMap<String, Object>();
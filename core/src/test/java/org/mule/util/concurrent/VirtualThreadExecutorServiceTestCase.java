@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.mule.api.config.ThreadingProfile;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+@SmallTest
+public class VirtualThreadExecutorServiceTestCase extends AbstractMuleTestCase
+{
+
+    private static final String NAME = "test";
+
+    private final Latch release = new Latch();
+    private VirtualThreadExecutorService executor;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        release.countDown();
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor.awaitTermination(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void limitsConcurrentTasks() throws Exception
+    {
+        final int tasks = 200;
+        executor = createExecutor(4, 0, ThreadingProfile.WHEN_EXHAUSTED_WAIT);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++)
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    int current = running.incrementAndGet();
+                    while (current > maxRunning.get())
+                    {
+                        maxRunning.compareAndSet(maxRunning.get(), current);
+                    }
+                    Thread.yield();
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void runsBufferedTasksWhenRunningOnesComplete() throws Exception
+    {
+        executor = createExecutor(1, 2, ThreadingProfile.WHEN_EXHAUSTED_ABORT);
+        final CountDownLatch done = new CountDownLatch(3);
+        Runnable task = new BlockingTask(done);
+
+        executor.execute(task);
+        executor.execute(task);
+        executor.execute(task);
+        assertEquals(1, executor.getActiveCount());
+
+        try
+        {
+            executor.execute(task);
+            fail("Buffer should be full");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // expected
+        }
+
+        release.countDown();
+        assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void runsInCallerThreadWhenExhausted() throws Exception
+    {
+        executor = createExecutor(1, 0, ThreadingProfile.WHEN_EXHAUSTED_RUN);
+        executor.execute(new BlockingTask(new CountDownLatch(1)));
+
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                runner.set(Thread.currentThread());
+            }
+        });
+
+        assertSame(Thread.currentThread(), runner.get());
+    }
+
+    @Test
+    public void waitsForPermitWhenExhausted() throws Exception
+    {
+        executor = createExecutor(1, 0, ThreadingProfile.WHEN_EXHAUSTED_WAIT, 50);
+        executor.execute(new BlockingTask(new CountDownLatch(1)));
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            executor.execute(new BlockingTask(new CountDownLatch(1)));
+            fail("Waiting for a permit should time out");
+        }
+        catch (RejectedExecutionException e)
+        {
+            assertTrue(System.currentTimeMillis() - start >= 50);
+        }
+    }
+
+    @Test
+    public void discardsOldestBufferedTask() throws Exception
+    {
+        executor = createExecutor(1, 1, ThreadingProfile.WHEN_EXHAUSTED_DISCARD_OLDEST);
+        final CountDownLatch discarded = new CountDownLatch(1);
+        final CountDownLatch kept = new CountDownLatch(1);
+
+        executor.execute(new BlockingTask(new CountDownLatch(1)));
+        executor.execute(new BlockingTask(discarded));
+        executor.execute(new BlockingTask(kept));
+
+        release.countDown();
+        assertTrue(kept.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, discarded.getCount());
+    }
+
+    @Test
+    public void completesBufferedTasksOnShutdown() throws Exception
+    {
+        executor = createExecutor(1, 1, ThreadingProfile.WHEN_EXHAUSTED_ABORT);
+        CountDownLatch done = new CountDownLatch(2);
+        executor.execute(new BlockingTask(done));
+        executor.execute(new BlockingTask(done));
+
+        executor.shutdown();
+        assertTrue(executor.isShutdown());
+        assertFalse(executor.awaitTermination(50, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(executor.awaitTermination(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(0, done.getCount());
+
+        try
+        {
+            executor.execute(new BlockingTask(done));
+            fail("Executor is shut down");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void interruptsRunningTasksOnShutdownNow() throws Exception
+    {
+        executor = createExecutor(1, 1, ThreadingProfile.WHEN_EXHAUSTED_ABORT);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted.countDown();
+                }
+            }
+        });
+        Runnable pending = new BlockingTask(new CountDownLatch(1));
+        executor.execute(pending);
+
+        List<Runnable> outstanding = executor.shutdownNow();
+        assertEquals(1, outstanding.size());
+        assertSame(pending, outstanding.get(0));
+        assertTrue(interrupted.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(executor.awaitTermination(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void runsTasksOnNamedVirtualThreads() throws Exception
+    {
+        assumeTrue(VirtualThreadFactory.isSupported());
+
+        executor = new VirtualThreadExecutorService(new VirtualThreadFactory(NAME), 1, 0, ThreadingProfile.WHEN_EXHAUSTED_WAIT, -1);
+        final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                runner.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(NAME + ".01", runner.get().getName());
+        assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(runner.get()));
+    }
+
+    private VirtualThreadExecutorService createExecutor(int maxConcurrency, int maxBufferSize, int exhaustedAction)
+    {
+        return createExecutor(maxConcurrency, maxBufferSize, exhaustedAction, -1);
+    }
+
+    private VirtualThreadExecutorService createExecutor(int maxConcurrency, int maxBufferSize, int exhaustedAction, long waitTimeout)
+    {
+        // platform threads behave the same, this keeps the tests running on any runtime
+        return new VirtualThreadExecutorService(new NamedThreadFactory(NAME), maxConcurrency, maxBufferSize, exhaustedAction, waitTimeout);
+    }
+
+    private class BlockingTask implements Runnable
+    {
+
+        private final CountDownLatch done;
+
+        public BlockingTask(CountDownLatch done)
+        {
+            this.done = done;
+        }
+
+        public void run()
+        {
+            try
+            {
+                release.await();
+                done.countDown();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -20,7 +20,12 @@ import org.mule.util.queue.QueueStore;
 
 import com.google.common.collect.Multimap;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.core.IsNot;
 import org.junit.Before;
@@ -172,6 +177,89 @@ public class LocalTxQueueTransactionJournalTestCase extends AbstractMuleContextT
         assertThat(logEntriesForTx.size(), is(2));
     }
 
+    @Test
+    public void logConcurrentTransactionsAndRetrieve() throws Exception
+    {
+        final int numberOfThreads = 8;
+        final int transactionsPerThread = 50;
+        final LocalTxQueueTransactionJournal transactionJournal = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        final AtomicInteger nextTxId = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(numberOfThreads);
+        for (int i = 0; i < numberOfThreads; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < transactionsPerThread; j++)
+                        {
+                            int txId = nextTxId.incrementAndGet();
+                            transactionJournal.logAdd(txId, mockQueueInfo, "data");
+                            transactionJournal.logRemove(txId, mockQueueInfo, "data");
+                            // Leaves every other transaction pending
+                            if (txId % 2 == 0)
+                            {
+                                transactionJournal.logCommit(txId);
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failures.incrementAndGet();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertThat(done.await(RECEIVE_TIMEOUT * 10, TimeUnit.MILLISECONDS), is(true));
+        assertThat(failures.get(), is(0));
+        transactionJournal.close();
+
+        LocalTxQueueTransactionJournal reloadedJournal = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        Multimap<Integer, LocalQueueTxJournalEntry> allEntries = reloadedJournal.getAllLogEntries();
+        assertThat(allEntries.keySet().size(), is(numberOfThreads * transactionsPerThread));
+        for (int txId = 1; txId <= numberOfThreads * transactionsPerThread; txId++)
+        {
+            assertThat(allEntries.get(txId).size(), is(txId % 2 == 0 ? 3 : 2));
+        }
+    }
+
+    @Test
+    public void logAfterIncompleteEntryAndRetrieve() throws Exception
+    {
+        LocalTxQueueTransactionJournal transactionJournal = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        transactionJournal.logAdd(TX_ID, mockQueueInfo, SOME_VALUE);
+        transactionJournal.logAdd(TX_ID + 1, mockQueueInfo, SOME_VALUE);
+        transactionJournal.close();
+
+        RandomAccessFile journalFile = new RandomAccessFile(new File(temporaryFolder.getRoot(), "tx1.log"), "rw");
+        try
+        {
+            journalFile.setLength(journalFile.length() - 3);
+        }
+        finally
+        {
+            journalFile.close();
+        }
+
+        transactionJournal = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        transactionJournal.logAdd(TX_ID + 2, mockQueueInfo, SOME_VALUE);
+        transactionJournal.close();
+        transactionJournal = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        Multimap<Integer, LocalQueueTxJournalEntry> allEntries = transactionJournal.getAllLogEntries();
+        assertThat(allEntries.size(), is(2));
+        assertThat(allEntries.containsKey(TX_ID), is(true));
+        assertThat(allEntries.containsKey(TX_ID + 1), is(false));
+        assertThat(allEntries.containsKey(TX_ID + 2), is(true));
+    }
+
     private void addTransactionJournalEntry(LocalTxQueueTransactionJournal transactionJournal)
     {
         transactionJournal.logAdd(1, mockQueueInfo, "data");
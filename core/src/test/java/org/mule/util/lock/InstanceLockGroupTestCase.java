@@ -9,6 +9,7 @@ package org.mule.util.lock;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import org.mule.api.store.ObjectAlreadyExistsException;
 import org.mule.api.store.ObjectStore;
 import org.mule.api.store.ObjectStoreException;
@@ -22,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 
 import org.junit.Ignore;
@@ -69,6 +71,127 @@ public class InstanceLockGroupTestCase extends AbstractMuleTestCase
         lockUnlockThenDestroy(5);
     }
 
+    @Test
+    public void releasesEntryWhenUnlocked() throws Exception
+    {
+        instanceLockGroup.lock(sharedKeyA);
+        instanceLockGroup.lock(sharedKeyA);
+        assertThat(instanceLockGroup.tryLock(sharedKeyB), is(true));
+        assertThat(instanceLockGroup.getLockCount(), is(2));
+
+        instanceLockGroup.unlock(sharedKeyA);
+        instanceLockGroup.unlock(sharedKeyB);
+        assertThat(instanceLockGroup.getLockCount(), is(1));
+        instanceLockGroup.unlock(sharedKeyA);
+        assertThat(instanceLockGroup.getLockCount(), is(0));
+    }
+
+    @Test
+    public void releasesEntryWhenLockIsNotAcquired() throws Exception
+    {
+        instanceLockGroup.lock(sharedKeyA);
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    instanceLockGroup.tryLock(sharedKeyA, 10, TimeUnit.MILLISECONDS);
+                    instanceLockGroup.tryLock(sharedKeyA);
+                    Thread.currentThread().interrupt();
+                    instanceLockGroup.lockInterruptibly(sharedKeyA);
+                    fail("Lock should not be acquired by an interrupted thread");
+                }
+                catch (InterruptedException e)
+                {
+                    // expected
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        instanceLockGroup.unlock(sharedKeyA);
+        assertThat(instanceLockGroup.getLockCount(), is(0));
+    }
+
+    @Test
+    public void locksEachKeyExclusively() throws Exception
+    {
+        final int keys = 4;
+        final AtomicInteger[] holders = new AtomicInteger[keys];
+        final int[] counters = new int[keys];
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < keys; i++)
+        {
+            holders[i] = new AtomicInteger();
+        }
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 16; i++)
+        {
+            final int thread = i;
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        threadStartLatch.await();
+                        for (int j = 0; j < ITERATIONS_PER_THREAD * 10; j++)
+                        {
+                            int key = (thread + j) % keys;
+                            String lockId = "key" + key;
+                            if (j % 2 == 0)
+                            {
+                                instanceLockGroup.lock(lockId);
+                            }
+                            else
+                            {
+                                while (!instanceLockGroup.tryLock(lockId, 100, TimeUnit.MILLISECONDS));
+                            }
+                            try
+                            {
+                                if (holders[key].incrementAndGet() != 1)
+                                {
+                                    failures.incrementAndGet();
+                                }
+                                counters[key]++;
+                                holders[key].decrementAndGet();
+                            }
+                            finally
+                            {
+                                instanceLockGroup.unlock(lockId);
+                            }
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        threadStartLatch.release();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertThat(failures.get(), is(0));
+        for (int i = 0; i < keys; i++)
+        {
+            assertThat(counters[i], is(threads.size() * ITERATIONS_PER_THREAD * 10 / keys));
+        }
+        assertThat(instanceLockGroup.getLockCount(), is(0));
+    }
+
     private void lockUnlockThenDestroy(int lockTimes)
     {
         mockLockProvider = Mockito.mock(LockProvider.class, Answers.RETURNS_DEEP_STUBS.get());
@@ -17,6 +17,7 @@ import org.mule.tck.junit4.AbstractMuleContextTestCase;
 import org.mule.util.concurrent.Latch;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -500,6 +501,93 @@ public abstract class AbstractTransactionQueueManagerTestCase extends AbstractMu
         }
     }
 
+    @Test
+    public void testBatchPollCommit() throws Exception
+    {
+        AbstractQueueManager mgr = createQueueManager();
+
+        try
+        {
+            mgr.start();
+
+            QueueSession s = mgr.getQueueSession();
+            Queue q = s.getQueue("queue1");
+            q.put("String1");
+            q.put("String2");
+            q.put("String3");
+
+            s.begin();
+            List<Serializable> items = q.poll(2, THREAD_EXECUTION_TIMEOUT);
+            assertEquals("Batch size", 2, items.size());
+            assertEquals("Queue content", "String1", items.get(0));
+            assertEquals("Queue content", "String2", items.get(1));
+            assertEquals("Queue size", 1, q.size());
+            s.commit();
+
+            assertEquals("Queue size", 1, q.size());
+            assertEquals("Queue content", "String3", q.take());
+        }
+        finally
+        {
+            mgr.stop();
+            mgr.dispose();
+        }
+    }
+
+    @Test
+    public void testBatchPollRollback() throws Exception
+    {
+        AbstractQueueManager mgr = createQueueManager();
+
+        try
+        {
+            mgr.start();
+
+            QueueSession s = mgr.getQueueSession();
+            Queue q = s.getQueue("queue1");
+            q.put("String1");
+            q.put("String2");
+
+            s.begin();
+            List<Serializable> items = q.poll(5, THREAD_EXECUTION_TIMEOUT);
+            assertEquals("Batch size", 2, items.size());
+            assertEquals("Queue size", 0, q.size());
+            s.rollback();
+
+            assertEquals("Queue size", 2, q.size());
+            assertEquals("Queue content", "String1", q.take());
+            assertEquals("Queue content", "String2", q.take());
+        }
+        finally
+        {
+            mgr.stop();
+            mgr.dispose();
+        }
+    }
+
+    @Test
+    public void testBatchPollTimesOutOnEmptyQueue() throws Exception
+    {
+        AbstractQueueManager mgr = createQueueManager();
+
+        try
+        {
+            mgr.start();
+
+            QueueSession s = mgr.getQueueSession();
+            Queue q = s.getQueue("queue1");
+
+            s.begin();
+            assertTrue(q.poll(5, 10).isEmpty());
+            s.commit();
+        }
+        finally
+        {
+            mgr.stop();
+            mgr.dispose();
+        }
+    }
+
     @Test
     public void testPutTake_RespectsOrderOnPersistence() throws Exception
     {
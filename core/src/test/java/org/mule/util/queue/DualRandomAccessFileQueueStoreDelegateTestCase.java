@@ -11,6 +11,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.when;
 
 import org.mule.api.MuleContext;
+import org.mule.serialization.JavaObjectSerializer;
 import org.mule.tck.MuleTestUtils;
 import org.mule.tck.junit4.AbstractMuleTestCase;
 import org.mule.tck.size.SmallTest;
@@ -141,6 +142,9 @@ public class DualRandomAccessFileQueueStoreDelegateTestCase extends AbstractMule
     {
         final MuleContext mockMuleContext = Mockito.mock(MuleContext.class);
         when(mockMuleContext.getExecutionClassLoader()).thenReturn(getClass().getClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(mockMuleContext);
+        when(mockMuleContext.getObjectSerializer()).thenReturn(serializer);
         return new DualRandomAccessFileQueueStoreDelegate("test-queue", workingDirectory.getRoot().getAbsolutePath(), mockMuleContext, 0);
     }
 
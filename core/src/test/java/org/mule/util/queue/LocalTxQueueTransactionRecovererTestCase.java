@@ -20,6 +20,8 @@ import org.mule.util.journal.queue.LocalTxQueueTransactionJournal;
 import org.mule.util.journal.queue.LocalTxQueueTransactionRecoverer;
 import org.mule.util.xa.ResourceManagerException;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -89,6 +91,40 @@ public class LocalTxQueueTransactionRecovererTestCase extends AbstractMuleContex
         assertThat(muleEvent, IsNull.nullValue());
     }
 
+    @Test
+    public void pollInConcurrentTransactionsAndFailWhileWritingCommitThenRecover() throws Exception
+    {
+        ((DefaultMuleConfiguration) muleContext.getConfiguration()).setWorkingDirectory(temporaryFolder.getRoot().getAbsolutePath());
+        LocalTxQueueTransactionJournal txLog = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        inQueue = new DefaultQueueStore(QUEUE_NAME, muleContext, new DefaultQueueConfiguration(0, true));
+        PersistentQueueTransactionContext firstTransactionContext = new PersistentQueueTransactionContext(txLog, createQueueProvider(inQueue));
+        PersistentQueueTransactionContext secondTransactionContext = new PersistentQueueTransactionContext(txLog, createQueueProvider(inQueue));
+        inQueue.offer(getTestEvent(MESSAGE_CONTENT), 0, 10);
+        inQueue.offer(getTestEvent(MESSAGE_CONTENT), 0, 10);
+        assertThat(firstTransactionContext.poll(inQueue, 10), notNullValue());
+        assertThat(secondTransactionContext.poll(inQueue, 10), notNullValue());
+        secondTransactionContext.doCommit();
+        txLog.close();
+
+        // The commit entry of the second transaction was not completely written
+        RandomAccessFile journalFile = new RandomAccessFile(new File(temporaryFolder.getRoot(), "tx1.log"), "rw");
+        try
+        {
+            journalFile.setLength(journalFile.length() - 1);
+        }
+        finally
+        {
+            journalFile.close();
+        }
+
+        txLog = new LocalTxQueueTransactionJournal(temporaryFolder.getRoot().getAbsolutePath(), muleContext);
+        LocalTxQueueTransactionRecoverer queueTransactionRecoverer = new LocalTxQueueTransactionRecoverer(txLog, createQueueProvider(inQueue));
+        queueTransactionRecoverer.recover();
+        assertThat(inQueue.poll(10), notNullValue());
+        assertThat(inQueue.poll(10), notNullValue());
+        assertThat(inQueue.poll(10), IsNull.nullValue());
+    }
+
     private QueueProvider createQueueProvider(final DefaultQueueStore queue)
     {
         return new QueueProvider()
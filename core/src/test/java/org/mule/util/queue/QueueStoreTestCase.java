@@ -15,10 +15,12 @@ import static org.mule.util.queue.QueueConfiguration.MAXIMUM_CAPACITY;
 import org.mule.api.MuleContext;
 import org.mule.api.MuleEvent;
 import org.mule.api.store.ObjectStoreException;
+import org.mule.serialization.JavaObjectSerializer;
 import org.mule.tck.junit4.AbstractMuleContextTestCase;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.hamcrest.core.Is;
 import org.junit.Rule;
@@ -144,6 +146,61 @@ public abstract class QueueStoreTestCase extends AbstractMuleContextTestCase
         }
     }
 
+    @Test
+    public void pollBatchReturnsAvailableElementsInOrder() throws Exception
+    {
+        QueueStore queue = createQueue();
+        for (int i = 0; i < NUMBER_OF_ITEMS; i++)
+        {
+            queue.putNow(String.valueOf(i));
+        }
+        List<Serializable> firstBatch = queue.poll(NUMBER_OF_ITEMS - 2, SHORT_POLL_TIMEOUT);
+        assertThat(firstBatch.size(), is(NUMBER_OF_ITEMS - 2));
+        for (int i = 0; i < firstBatch.size(); i++)
+        {
+            assertThat((String) firstBatch.get(i), is(String.valueOf(i)));
+        }
+        List<Serializable> secondBatch = queue.poll(NUMBER_OF_ITEMS, SHORT_POLL_TIMEOUT);
+        assertThat(secondBatch.size(), is(2));
+        assertThat((String) secondBatch.get(1), is(String.valueOf(NUMBER_OF_ITEMS - 1)));
+        assertThat(queue.getSize(), is(0));
+    }
+
+    @Test
+    public void pollBatchReturnsEmptyAfterTimeout() throws Exception
+    {
+        QueueStore queue = createQueue();
+        long initialTime = System.currentTimeMillis();
+        assertThat(queue.poll(NUMBER_OF_ITEMS, LONG_POLL_TIMEOUT).isEmpty(), is(true));
+        assertThat(System.currentTimeMillis() - initialTime >= LONG_POLL_TIMEOUT, is(true));
+    }
+
+    @Test
+    public void pollBatchIncludesUntakenElements() throws Exception
+    {
+        QueueStore queue = createQueue();
+        queue.putNow(VALUE);
+        queue.untake(ANOTHER_VALUE);
+        List<Serializable> batch = queue.poll(NUMBER_OF_ITEMS, SHORT_POLL_TIMEOUT);
+        assertThat(batch.size(), is(2));
+        assertThat((String) batch.get(0), is(ANOTHER_VALUE));
+        assertThat((String) batch.get(1), is(VALUE));
+    }
+
+    @Test
+    public void peekBatchDoesNotRemoveElements() throws Exception
+    {
+        QueueStore queue = createQueue();
+        queue.putNow(VALUE);
+        queue.putNow(ANOTHER_VALUE);
+        List<Serializable> batch = queue.peek(NUMBER_OF_ITEMS);
+        assertThat(batch.size(), is(2));
+        assertThat((String) batch.get(0), is(VALUE));
+        assertThat((String) batch.get(1), is(ANOTHER_VALUE));
+        assertThat(queue.getSize(), is(2));
+        assertThat((String) queue.poll(SHORT_POLL_TIMEOUT), is(VALUE));
+    }
+
     protected QueueStore createQueue()
     {
         return createQueueWithCapacity(MAXIMUM_CAPACITY);
@@ -154,6 +211,9 @@ public abstract class QueueStoreTestCase extends AbstractMuleContextTestCase
         MuleContext mockMuleContext = mock(MuleContext.class, Answers.RETURNS_DEEP_STUBS.get());
         when(mockMuleContext.getConfiguration().getWorkingDirectory()).thenReturn(temporaryFolder.getRoot().getAbsolutePath());
         when(mockMuleContext.getExecutionClassLoader()).thenReturn(muleContext.getExecutionClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(mockMuleContext);
+        when(mockMuleContext.getObjectSerializer()).thenReturn(serializer);
         QueueStore queue = createQueueInfoDelegate(capacity, mockMuleContext);
         return queue;
     }
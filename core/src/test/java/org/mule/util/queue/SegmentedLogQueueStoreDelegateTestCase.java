@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.queue;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.MuleContext;
+import org.mule.serialization.JavaObjectSerializer;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+@SmallTest
+public class SegmentedLogQueueStoreDelegateTestCase extends AbstractMuleTestCase
+{
+
+    private static final int SEGMENT_SIZE = 256;
+    private static final int NUMBER_OF_MESSAGES = 50;
+
+    @Rule
+    public TemporaryFolder workingDirectory = new TemporaryFolder();
+
+    @Test
+    public void readMessagesInOrderAcrossSegments() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+        {
+            queueStore.putNow(createTestDataForIndex(i));
+        }
+        assertThat(queueStore.getSize(), is(NUMBER_OF_MESSAGES));
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+        {
+            assertThat((String) queueStore.poll(0), is(createTestDataForIndex(i)));
+        }
+        assertThat(queueStore.getSize(), is(0));
+        queueStore.close();
+    }
+
+    @Test
+    public void keepsReadPositionAfterRestart() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+        {
+            queueStore.putNow(createTestDataForIndex(i));
+        }
+        int consumedMessages = NUMBER_OF_MESSAGES / 2;
+        for (int i = 0; i < consumedMessages; i++)
+        {
+            queueStore.poll(0);
+        }
+        queueStore.close();
+
+        queueStore = createTestQueueStore();
+        assertThat(queueStore.getSize(), is(NUMBER_OF_MESSAGES - consumedMessages));
+        assertThat((String) queueStore.peek(), is(createTestDataForIndex(consumedMessages)));
+        queueStore.close();
+    }
+
+    @Test
+    public void keepsUntakenMessagesAfterRestart() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        queueStore.putNow(createTestDataForIndex(1));
+        queueStore.untake(createTestDataForIndex(0));
+        queueStore.close();
+
+        queueStore = createTestQueueStore();
+        assertThat(queueStore.getSize(), is(2));
+        assertThat((String) queueStore.poll(0), is(createTestDataForIndex(0)));
+        assertThat((String) queueStore.poll(0), is(createTestDataForIndex(1)));
+        queueStore.close();
+    }
+
+    @Test
+    public void deletesConsumedSegments() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+        {
+            queueStore.putNow(createTestDataForIndex(i));
+        }
+        File firstSegment = new File(new File(workingDirectory.getRoot(), "queuestore"), "test-queue-log-0");
+        assertThat(firstSegment.exists(), is(true));
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+        {
+            queueStore.poll(0);
+        }
+        queueStore.close();
+        assertThat(firstSegment.exists(), is(false));
+    }
+
+    @Test
+    public void storesEntriesBiggerThanSegment() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < SEGMENT_SIZE; i++)
+        {
+            builder.append(i);
+        }
+        String bigValue = builder.toString();
+        queueStore.putNow(createTestDataForIndex(0));
+        queueStore.putNow(bigValue);
+        assertThat((String) queueStore.poll(0), is(createTestDataForIndex(0)));
+        assertThat((String) queueStore.poll(0), is(bigValue));
+        queueStore.close();
+    }
+
+    @Test
+    public void concurrentProducersShareSyncs() throws Exception
+    {
+        final SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        final int numberOfProducers = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numberOfProducers);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int producer = 0; producer < numberOfProducers; producer++)
+        {
+            final int firstIndex = producer * NUMBER_OF_MESSAGES;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = firstIndex; i < firstIndex + NUMBER_OF_MESSAGES; i++)
+                        {
+                            queueStore.putNow(createTestDataForIndex(i));
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failures.add(e);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(failures.isEmpty(), is(true));
+        queueStore.close();
+
+        SegmentedLogQueueStoreDelegate reopenedQueueStore = createTestQueueStore();
+        assertThat(reopenedQueueStore.getSize(), is(numberOfProducers * NUMBER_OF_MESSAGES));
+        reopenedQueueStore.close();
+    }
+
+    @Test
+    public void replacesHeadFile() throws Exception
+    {
+        SegmentedLogQueueStoreDelegate queueStore = createTestQueueStore();
+        queueStore.untake(createTestDataForIndex(1));
+        queueStore.untake(createTestDataForIndex(0));
+        assertThat((String) queueStore.poll(0), is(createTestDataForIndex(0)));
+        queueStore.close();
+
+        File queueStoreDirectory = new File(workingDirectory.getRoot(), "queuestore");
+        assertThat(new File(queueStoreDirectory, "test-queue-log-head").exists(), is(true));
+        assertThat(new File(queueStoreDirectory, "test-queue-log-head.tmp").exists(), is(false));
+
+        queueStore = createTestQueueStore();
+        assertThat(queueStore.getSize(), is(1));
+        assertThat((String) queueStore.poll(0), is(createTestDataForIndex(1)));
+        queueStore.close();
+    }
+
+    private String createTestDataForIndex(int index)
+    {
+        return "some value " + index;
+    }
+
+    private SegmentedLogQueueStoreDelegate createTestQueueStore()
+    {
+        final MuleContext mockMuleContext = Mockito.mock(MuleContext.class);
+        when(mockMuleContext.getExecutionClassLoader()).thenReturn(getClass().getClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(mockMuleContext);
+        when(mockMuleContext.getObjectSerializer()).thenReturn(serializer);
+        return new SegmentedLogQueueStoreDelegate("test-queue", workingDirectory.getRoot().getAbsolutePath(), mockMuleContext, 0, SEGMENT_SIZE);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.queue;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.mule.api.MuleContext;
+
+import org.junit.Test;
+
+public class SegmentedLogQueueStoreTestCase extends QueueStoreTestCase
+{
+
+    @Override
+    protected QueueStore createQueueInfoDelegate(int capacity, MuleContext muleContext)
+    {
+        return new DefaultQueueStore("testQueue", muleContext, new DefaultQueueConfiguration(capacity, true, true));
+    }
+
+    @Test
+    public void containsAndRemove() throws Exception
+    {
+        final DefaultQueueStore queue = (DefaultQueueStore) createQueue();
+        queue.offer(VALUE, 0, 10);
+        queue.offer(ANOTHER_VALUE, 0, 10);
+        assertThat(queue.contains(ANOTHER_VALUE), is(true));
+        queue.remove(VALUE);
+        assertThat(queue.contains(VALUE), is(false));
+        assertThat(queue.getSize(), is(1));
+        assertThat((String) queue.poll(10), is(ANOTHER_VALUE));
+    }
+}
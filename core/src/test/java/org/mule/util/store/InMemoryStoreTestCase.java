@@ -7,6 +7,8 @@
 package org.mule.util.store;
 
 import org.mule.api.lifecycle.InitialisationException;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
 import org.mule.tck.junit4.AbstractMuleTestCase;
 
 import java.util.concurrent.CountDownLatch;
@@ -134,6 +136,64 @@ public class InMemoryStoreTestCase extends AbstractMuleTestCase
         assertObjectsExpired("3", "4", "5", "6");
     }
 
+    @Test(expected = ObjectAlreadyExistsException.class)
+    public void testStoreDuplicateKey() throws Exception
+    {
+        createUnboundedObjectStore();
+
+        storeObjects("1");
+        store.store("1", "other");
+    }
+
+    @Test
+    public void testStoreAgainAfterRemove() throws Exception
+    {
+        createUnboundedObjectStore();
+
+        store.store("key", "first");
+        assertEquals("first", store.remove("key"));
+        assertObjectsExpired("key");
+
+        store.store("key", "second");
+        assertEquals("second", store.retrieve("key"));
+    }
+
+    @Test
+    public void testStoreAgainAfterExpiry() throws Exception
+    {
+        createBoundedObjectStore(1);
+
+        storeObjects("1", "2");
+        store.expire();
+        assertObjectsExpired("1");
+
+        store.store("1", "again");
+        assertEquals("again", store.retrieve("1"));
+    }
+
+    @Test(expected = ObjectDoesNotExistException.class)
+    public void testRetrieveExpired() throws Exception
+    {
+        createBoundedObjectStore(1);
+
+        storeObjects("1", "2");
+        store.expire();
+        store.retrieve("1");
+    }
+
+    @Test
+    public void testClear() throws Exception
+    {
+        createUnboundedObjectStore();
+
+        storeObjects("1", "2", "3");
+        store.clear();
+        assertObjectsExpired("1", "2", "3");
+
+        storeObjects("1");
+        assertObjectsInStore("1");
+    }
+
     private void storeObjects(String... objects) throws Exception
     {
         for (String entry : objects)
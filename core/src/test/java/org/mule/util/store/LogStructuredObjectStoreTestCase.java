@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.store;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mule.api.store.ObjectStoreManager.UNBOUNDED;
+
+import org.mule.api.MuleContext;
+import org.mule.api.store.ObjectAlreadyExistsException;
+import org.mule.api.store.ObjectDoesNotExistException;
+import org.mule.api.store.ObjectStoreException;
+import org.mule.serialization.JavaObjectSerializer;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+import org.mule.util.store.PartitionedPersistentObjectStoreTestCase.DeserializableValue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Answers;
+import org.mockito.Mockito;
+
+@SmallTest
+public class LogStructuredObjectStoreTestCase extends AbstractMuleTestCase
+{
+
+    private static final String PARTITION = "partition";
+
+    @Rule
+    public TemporaryFolder workingDirectory = new TemporaryFolder();
+
+    private MuleContext muleContext = Mockito.mock(MuleContext.class, Answers.RETURNS_DEEP_STUBS.get());
+    private LogStructuredObjectStore<Serializable> os;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        when(muleContext.getConfiguration().getWorkingDirectory()).thenReturn(workingDirectory.getRoot().getAbsolutePath());
+        when(muleContext.getExecutionClassLoader()).thenReturn(Thread.currentThread().getContextClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(muleContext);
+        when(muleContext.getObjectSerializer()).thenReturn(serializer);
+        os = createStore();
+    }
+
+    @After
+    public void tearDown()
+    {
+        os.dispose();
+    }
+
+    @Test
+    public void storesRetrievesAndRemovesEntries() throws Exception
+    {
+        os.store("key", "value", PARTITION);
+        os.store("key", "default");
+
+        assertThat(os.contains("key", PARTITION), is(true));
+        assertThat((String) os.retrieve("key", PARTITION), is("value"));
+        assertThat((String) os.retrieve("key"), is("default"));
+
+        assertThat((String) os.remove("key", PARTITION), is("value"));
+        assertThat(os.contains("key", PARTITION), is(false));
+        assertThat(os.allKeys(PARTITION).size(), is(0));
+        assertThat(os.contains("key"), is(true));
+    }
+
+    @Test(expected = ObjectAlreadyExistsException.class)
+    public void storeSameKeyThrowsException() throws Exception
+    {
+        os.store("key", "value", PARTITION);
+        os.store("key", "value", PARTITION);
+    }
+
+    @Test(expected = ObjectDoesNotExistException.class)
+    public void retrieveRemovedKeyThrowsException() throws Exception
+    {
+        os.store("key", "value", PARTITION);
+        os.remove("key", PARTITION);
+        os.retrieve("key", PARTITION);
+    }
+
+    @Test
+    public void keepsTheTypeOfKeys() throws Exception
+    {
+        os.store(1, "integer", PARTITION);
+        os.store("1", "string", PARTITION);
+        assertKeysOfDifferentTypes();
+
+        restart(false);
+        assertKeysOfDifferentTypes();
+
+        os.maintain();
+        restart(true);
+        assertKeysOfDifferentTypes();
+    }
+
+    private void assertKeysOfDifferentTypes() throws ObjectStoreException
+    {
+        assertThat((String) os.retrieve(1, PARTITION), is("integer"));
+        assertThat((String) os.retrieve("1", PARTITION), is("string"));
+        List<Serializable> keys = os.allKeys(PARTITION);
+        assertThat(keys.size(), is(2));
+        assertThat(keys.contains(1), is(true));
+        assertThat(keys.contains("1"), is(true));
+    }
+
+    @Test
+    public void restoresEntriesByReplayingTheLog() throws Exception
+    {
+        storeEntries(100);
+        os.remove("key10", PARTITION);
+
+        restart(false);
+        assertRestored(100);
+    }
+
+    @Test
+    public void restoresEntriesFromCheckpoint() throws Exception
+    {
+        storeEntries(50);
+        os.maintain();
+        File checkpoint = new File(getPartition().getDirectory(), LogStructuredObjectStorePartition.CHECKPOINT_FILE);
+        File previousCheckpoint = workingDirectory.newFile("previous.checkpoint");
+        FileUtils.copyFile(checkpoint, previousCheckpoint);
+        storeEntries(50, 100);
+        os.remove("key10", PARTITION);
+
+        // Replays the records appended after the first checkpoint
+        os.dispose();
+        FileUtils.copyFile(previousCheckpoint, checkpoint);
+        os = createStore();
+        assertRestored(100);
+    }
+
+    @Test
+    public void discardsIncompleteRecords() throws Exception
+    {
+        storeEntries(10);
+        File directory = getPartition().getDirectory();
+        os.dispose();
+        new File(directory, LogStructuredObjectStorePartition.CHECKPOINT_FILE).delete();
+
+        File segment = directory.listFiles(new SegmentFilter())[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try
+        {
+            file.setLength(file.length() - 1);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        os = createStore();
+        assertThat(os.allKeys(PARTITION).size(), is(9));
+        assertThat(os.contains("key9", PARTITION), is(false));
+        os.store("key9", "value9", PARTITION);
+        assertThat((String) os.retrieve("key9", PARTITION), is("value9"));
+    }
+
+    @Test
+    public void expiresOldestEntriesFirst() throws Exception
+    {
+        storeEntries(10);
+
+        os.expire(UNBOUNDED, 4, PARTITION);
+        assertThat(os.allKeys(PARTITION).size(), is(4));
+        assertThat(os.contains("key5", PARTITION), is(false));
+        assertThat(os.contains("key6", PARTITION), is(true));
+
+        Thread.sleep(200);
+        os.store("recent", "value", PARTITION);
+        os.expire(100, UNBOUNDED, PARTITION);
+        assertThat(os.allKeys(PARTITION).size(), is(1));
+        assertThat(os.contains("recent", PARTITION), is(true));
+    }
+
+    @Test
+    public void compactionReclaimsRemovedEntries() throws Exception
+    {
+        os.setMaxSegmentSize(1024);
+        storeEntries(100);
+        for (int i = 0; i < 90; i++)
+        {
+            os.remove("key" + i, PARTITION);
+        }
+        int segments = getPartition().getSegmentCount();
+
+        os.maintain();
+
+        assertThat(getPartition().getSegmentCount() < segments, is(true));
+        for (int i = 90; i < 100; i++)
+        {
+            assertThat((String) os.retrieve("key" + i, PARTITION), is("value" + i));
+        }
+
+        restart(false);
+        assertThat(os.allKeys(PARTITION).size(), is(10));
+        assertThat(os.contains("key0", PARTITION), is(false));
+        assertThat((String) os.retrieve("key95", PARTITION), is("value95"));
+    }
+
+    @Test
+    public void clearRemovesEntriesFromTheLog() throws Exception
+    {
+        storeEntries(10);
+        os.clear(PARTITION);
+        os.store("key", "value", PARTITION);
+
+        restart(true);
+        assertThat(os.allKeys(PARTITION).size(), is(1));
+        assertThat((String) os.retrieve("key", PARTITION), is("value"));
+    }
+
+    @Test
+    public void disposePartitionDeletesItsDirectory() throws Exception
+    {
+        storeEntries(10);
+        File directory = getPartition().getDirectory();
+
+        os.disposePartition(PARTITION);
+
+        assertThat(directory.exists(), is(false));
+        assertThat(os.allPartitions().contains(PARTITION), is(false));
+    }
+
+    @Test(expected = ObjectStoreException.class)
+    public void partitionCannotBeOpenedByTwoStores() throws Exception
+    {
+        os.open(PARTITION);
+        LogStructuredObjectStore<Serializable> other = createStore();
+        try
+        {
+            other.open(PARTITION);
+        }
+        finally
+        {
+            other.dispose();
+        }
+    }
+
+    @Test
+    public void muleContextAwareValueGetsDeserialized() throws Exception
+    {
+        os.store("key", new DeserializableValue(muleContext));
+        DeserializableValue value = (DeserializableValue) os.retrieve("key");
+        assertNotNull(value.getMuleContext());
+    }
+
+    private LogStructuredObjectStore<Serializable> createStore() throws ObjectStoreException
+    {
+        LogStructuredObjectStore<Serializable> store = new LogStructuredObjectStore<Serializable>(muleContext);
+        store.setMaintenanceInterval(0);
+        store.open();
+        return store;
+    }
+
+    private LogStructuredObjectStorePartition<Serializable> getPartition() throws ObjectStoreException
+    {
+        return os.getPartition(PARTITION);
+    }
+
+    private void restart(boolean keepCheckpoint) throws ObjectStoreException
+    {
+        File directory = getPartition().getDirectory();
+        os.dispose();
+        if (!keepCheckpoint)
+        {
+            new File(directory, LogStructuredObjectStorePartition.CHECKPOINT_FILE).delete();
+        }
+        os = createStore();
+    }
+
+    private void storeEntries(int count) throws ObjectStoreException
+    {
+        storeEntries(0, count);
+    }
+
+    private void storeEntries(int from, int to) throws ObjectStoreException
+    {
+        for (int i = from; i < to; i++)
+        {
+            os.store("key" + i, "value" + i, PARTITION);
+        }
+    }
+
+    private void assertRestored(int count) throws ObjectStoreException
+    {
+        assertThat(os.allKeys(PARTITION).size(), is(count - 1));
+        assertThat(os.contains("key10", PARTITION), is(false));
+        assertThat((String) os.retrieve("key0", PARTITION), is("value0"));
+        assertThat((String) os.retrieve("key" + (count - 1), PARTITION), is("value" + (count - 1)));
+        assertThat(os.allKeys(PARTITION).get(0), is((Serializable) "key0"));
+    }
+
+    private static class SegmentFilter implements FileFilter
+    {
+
+        @Override
+        public boolean accept(File file)
+        {
+            return file.getName().endsWith(LogStructuredObjectStorePartition.SEGMENT_FILE_EXTENSION);
+        }
+    }
+}
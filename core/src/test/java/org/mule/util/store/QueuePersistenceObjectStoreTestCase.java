@@ -26,6 +26,7 @@ import org.mule.api.construct.FlowConstruct;
 import org.mule.api.store.ListableObjectStore;
 import org.mule.api.store.ObjectStoreException;
 import org.mule.config.i18n.CoreMessages;
+import org.mule.serialization.JavaObjectSerializer;
 import org.mule.util.FileUtils;
 import org.mule.util.SerializationUtils;
 import org.mule.util.UUID;
@@ -69,6 +70,9 @@ public class QueuePersistenceObjectStoreTestCase extends AbstractObjectStoreCont
         when(mockMuleContext.getConfiguration()).thenReturn(mockConfig);
         when(mockMuleContext.getExecutionClassLoader()).thenReturn(getClass().getClassLoader());
         when(mockMuleContext.getExecutionClassLoader()).thenReturn(getClass().getClassLoader());
+        JavaObjectSerializer serializer = new JavaObjectSerializer();
+        serializer.setMuleContext(mockMuleContext);
+        when(mockMuleContext.getObjectSerializer()).thenReturn(serializer);
     }
 
     @Override
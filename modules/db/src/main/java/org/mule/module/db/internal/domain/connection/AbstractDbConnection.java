@@ -64,4 +64,12 @@ public abstract class AbstractDbConnection implements DbConnection
     {
         connectionReleaseListener.release(this);
     }
+
+    /**
+     * @return the connection wrapped by this instance
+     */
+    public Connection getDelegate()
+    {
+        return delegate;
+    }
 }
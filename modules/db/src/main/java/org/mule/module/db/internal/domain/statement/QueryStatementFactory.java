@@ -9,13 +9,22 @@ package org.mule.module.db.internal.domain.statement;
 
 import org.mule.module.db.internal.domain.autogeneratedkey.AutoGeneratedKeyStrategy;
 import org.mule.module.db.internal.domain.autogeneratedkey.NoAutoGeneratedKeyStrategy;
+import org.mule.module.db.internal.domain.connection.AbstractDbConnection;
 import org.mule.module.db.internal.domain.connection.DbConnection;
 import org.mule.module.db.internal.domain.query.QueryTemplate;
 import org.mule.module.db.internal.domain.query.QueryType;
+import org.mule.module.db.internal.domain.statement.StatementCache.StatementKey;
+import org.mule.module.db.internal.domain.transaction.TransactionalAction;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Creates {@link Statement} based on the type and parameters of a given query:
@@ -23,10 +32,24 @@ import java.sql.Statement;
  * _CallableStatement for stored p rocedure queries
  * _PreparedStatement for queries with input parameters
  * _Standard Statement otherwise
+ *
+ * Prepared and callable statements are cached while a connection is bound to a
+ * transaction, so executing the same query again inside the transaction does not
+ * prepare it again.
+ * <p/>
+ * Statements of connections that are released after each operation, which is the
+ * case of operations outside a transaction, are not cached here: the pooled
+ * connections of older JDBC pools can't be traced back to their physical connection,
+ * so the cache would be lost on each checkout. Those statements are only cached when
+ * the data source is pooled, by the pool itself, up to the preparedStatementCacheSize
+ * of the pooling profile. Without pooling each operation opens a new connection and
+ * its statements are always prepared again.
  */
 public class QueryStatementFactory implements ConfigurableStatementFactory
 {
 
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 10;
+
     private int maxRows;
 
     /**
@@ -35,6 +58,11 @@ public class QueryStatementFactory implements ConfigurableStatementFactory
      */
     private Integer fetchSize;
 
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<Connection, StatementCache>();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
     @Override
     public Statement create(DbConnection connection, QueryTemplate queryTemplate) throws SQLException
     {
@@ -48,7 +76,7 @@ public class QueryStatementFactory implements ConfigurableStatementFactory
 
         if (queryTemplate.getType().equals(QueryType.STORE_PROCEDURE_CALL))
         {
-            result = connection.prepareCall(queryTemplate.getSqlText(), ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            result = prepareStatement(connection, queryTemplate, new StatementKey(queryTemplate.getSqlText(), ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY), null);
         }
         else
         {
@@ -56,7 +84,7 @@ public class QueryStatementFactory implements ConfigurableStatementFactory
 
             if (hasInputParams)
             {
-                result = autoGeneratedKeyStrategy.prepareStatement(connection, queryTemplate);
+                result = prepareStatement(connection, queryTemplate, new StatementKey(queryTemplate.getSqlText(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), autoGeneratedKeyStrategy);
             }
             else
             {
@@ -77,6 +105,121 @@ public class QueryStatementFactory implements ConfigurableStatementFactory
         return result;
     }
 
+    /**
+     * Prepares a statement reusing an idle one from the connection's cache when possible.
+     * Statements returning auto generated keys are never cached.
+     *
+     * @param autoGeneratedKeyStrategy strategy used to prepare the statement or null to prepare a call
+     */
+    private PreparedStatement prepareStatement(DbConnection connection, QueryTemplate queryTemplate, StatementKey key, AutoGeneratedKeyStrategy autoGeneratedKeyStrategy) throws SQLException
+    {
+        if (statementCacheSize <= 0 || (autoGeneratedKeyStrategy != null && autoGeneratedKeyStrategy.returnsAutoGeneratedKeys()))
+        {
+            return doPrepareStatement(connection, queryTemplate, autoGeneratedKeyStrategy);
+        }
+
+        StatementCache statementCache = getStatementCache(connection);
+        if (statementCache == null)
+        {
+            return doPrepareStatement(connection, queryTemplate, autoGeneratedKeyStrategy);
+        }
+
+        PreparedStatement statement = statementCache.checkOut(key);
+
+        if (statement == null)
+        {
+            statementCacheMisses.incrementAndGet();
+            statement = doPrepareStatement(connection, queryTemplate, autoGeneratedKeyStrategy);
+        }
+        else
+        {
+            statementCacheHits.incrementAndGet();
+        }
+
+        return statementCache.wrap(key, statement);
+    }
+
+    private PreparedStatement doPrepareStatement(DbConnection connection, QueryTemplate queryTemplate, AutoGeneratedKeyStrategy autoGeneratedKeyStrategy) throws SQLException
+    {
+        if (autoGeneratedKeyStrategy == null)
+        {
+            return connection.prepareCall(queryTemplate.getSqlText(), ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        }
+        else
+        {
+            return autoGeneratedKeyStrategy.prepareStatement(connection, queryTemplate);
+        }
+    }
+
+    /**
+     * Statements are cached for the connection bound to the transaction, as it is
+     * wrapped by a different {@link DbConnection} on each operation. The cache of a
+     * connection is discarded once the connection is closed.
+     *
+     * @return the statement cache of the connection or null if the connection is not
+     *         bound to a transaction
+     */
+    private StatementCache getStatementCache(DbConnection connection) throws SQLException
+    {
+        if (connection.getTransactionalAction() == TransactionalAction.NOT_SUPPORTED || connection.getAutoCommit())
+        {
+            return null;
+        }
+
+        Connection physicalConnection = getPhysicalConnection(connection);
+
+        synchronized (statementCaches)
+        {
+            StatementCache statementCache = statementCaches.get(physicalConnection);
+
+            if (statementCache == null)
+            {
+                removeClosedConnections();
+                statementCache = new StatementCache(statementCacheSize);
+                statementCaches.put(physicalConnection, statementCache);
+            }
+
+            return statementCache;
+        }
+    }
+
+    /**
+     * Uses the wrapped connection instead of {@link Connection#unwrap(Class)}, as the
+     * connections of pools written for older JDBC versions do not implement it.
+     */
+    private Connection getPhysicalConnection(DbConnection connection)
+    {
+        if (connection instanceof AbstractDbConnection)
+        {
+            return ((AbstractDbConnection) connection).getDelegate();
+        }
+
+        return connection;
+    }
+
+    private void removeClosedConnections()
+    {
+        for (Iterator<Map.Entry<Connection, StatementCache>> it = statementCaches.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<Connection, StatementCache> entry = it.next();
+            boolean closed;
+            try
+            {
+                closed = entry.getKey().isClosed();
+            }
+            catch (SQLException e)
+            {
+                closed = true;
+            }
+
+            if (closed)
+            {
+                entry.getValue().close();
+                it.remove();
+            }
+        }
+    }
+
     @Override
     public void setMaxRows(int max)
     {
@@ -88,4 +231,32 @@ public class QueryStatementFactory implements ConfigurableStatementFactory
     {
         this.fetchSize = size;
     }
+
+    /**
+     * Sets the maximum number of idle statements cached for each transaction bound connection
+     *
+     * @param statementCacheSize maximum number of statements; zero disables the cache
+     */
+    public void setStatementCacheSize(int statementCacheSize)
+    {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public long getStatementCacheHits()
+    {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses()
+    {
+        return statementCacheMisses.get();
+    }
+
+    int getCachedConnectionCount()
+    {
+        synchronized (statementCaches)
+        {
+            return statementCaches.size();
+        }
+    }
 }
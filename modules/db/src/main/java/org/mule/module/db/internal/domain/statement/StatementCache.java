@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.db.internal.domain.statement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the idle prepared statements of a connection, so later executions of the
+ * same query reuse them instead of preparing them again.
+ * <p/>
+ * A statement is removed from the cache while it is being used and goes back to it
+ * when it is closed. When the cache is full, the least recently used statement is
+ * closed.
+ */
+class StatementCache
+{
+
+    private static final Log logger = LogFactory.getLog(StatementCache.class);
+
+    private final Map<StatementKey, PreparedStatement> idleStatements;
+
+    StatementCache(final int maxSize)
+    {
+        idleStatements = new LinkedHashMap<StatementKey, PreparedStatement>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest)
+            {
+                if (size() > maxSize)
+                {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Takes an idle statement out of the cache
+     *
+     * @param key identifies the statement
+     * @return a statement that is still open or null if there is none
+     */
+    synchronized PreparedStatement checkOut(StatementKey key)
+    {
+        PreparedStatement statement = idleStatements.remove(key);
+
+        try
+        {
+            if (statement != null && isClosed(statement))
+            {
+                statement = null;
+            }
+        }
+        catch (SQLException e)
+        {
+            closeQuietly(statement);
+            statement = null;
+        }
+
+        return statement;
+    }
+
+    /**
+     * Returns a statement to the cache
+     *
+     * @param key identifies the statement
+     * @param statement statement to return
+     * @return true if the statement was cached, false if there was already an idle
+     *         statement for the same key
+     */
+    synchronized boolean checkIn(StatementKey key, PreparedStatement statement)
+    {
+        if (idleStatements.containsKey(key))
+        {
+            return false;
+        }
+
+        idleStatements.put(key, statement);
+        return true;
+    }
+
+    /**
+     * Closes all the idle statements
+     */
+    synchronized void close()
+    {
+        for (PreparedStatement statement : idleStatements.values())
+        {
+            closeQuietly(statement);
+        }
+        idleStatements.clear();
+    }
+
+    /**
+     * Wraps a statement, so closing it returns it to this cache instead
+     *
+     * @param key identifies the statement
+     * @param statement statement to wrap
+     * @return a statement implementing the same JDBC interface than the given one
+     */
+    PreparedStatement wrap(StatementKey key, PreparedStatement statement)
+    {
+        Class<?> statementInterface = statement instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {statementInterface}, new CachedStatementHandler(key, statement));
+    }
+
+    /**
+     * Checks if a statement is closed, including statements of drivers and pools written
+     * for JDBC 3, which do not implement {@link PreparedStatement#isClosed()}.
+     */
+    private static boolean isClosed(PreparedStatement statement) throws SQLException
+    {
+        try
+        {
+            return statement.isClosed();
+        }
+        catch (AbstractMethodError e)
+        {
+            // Closed statements fail on any other operation
+            try
+            {
+                statement.getWarnings();
+                return false;
+            }
+            catch (SQLException closedException)
+            {
+                return true;
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement)
+    {
+        try
+        {
+            statement.close();
+        }
+        catch (SQLException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Error closing statement. Ignored", e);
+            }
+        }
+    }
+
+    private class CachedStatementHandler implements InvocationHandler
+    {
+
+        private final StatementKey key;
+        private final PreparedStatement statement;
+        private boolean closed;
+
+        public CachedStatementHandler(StatementKey key, PreparedStatement statement)
+        {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String methodName = method.getName();
+
+            if ("close".equals(methodName) && method.getParameterTypes().length == 0)
+            {
+                close();
+                return null;
+            }
+            else if ("isClosed".equals(methodName))
+            {
+                return closed || isClosed(statement);
+            }
+            else if (closed)
+            {
+                throw new SQLException("Statement is closed");
+            }
+
+            try
+            {
+                return method.invoke(statement, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+
+        private void close() throws SQLException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+
+            boolean cached = false;
+            try
+            {
+                if (!isClosed(statement))
+                {
+                    statement.clearParameters();
+                    statement.clearWarnings();
+                    cached = checkIn(key, statement);
+                }
+            }
+            catch (SQLException e)
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Unable to return statement to the cache", e);
+                }
+            }
+
+            if (!cached)
+            {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Identifies a cached statement by its SQL text and result set options
+     */
+    static class StatementKey
+    {
+
+        private final String sqlText;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+
+        StatementKey(String sqlText, int resultSetType, int resultSetConcurrency)
+        {
+            this.sqlText = sqlText;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof StatementKey))
+            {
+                return false;
+            }
+
+            StatementKey that = (StatementKey) o;
+            return resultSetType == that.resultSetType && resultSetConcurrency == that.resultSetConcurrency && sqlText.equals(that.sqlText);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = sqlText.hashCode();
+            result = 31 * result + resultSetType;
+            result = 31 * result + resultSetConcurrency;
+            return result;
+        }
+    }
+}
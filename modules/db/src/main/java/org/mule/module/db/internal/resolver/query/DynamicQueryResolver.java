@@ -16,22 +16,46 @@ import org.mule.module.db.internal.domain.query.QueryTemplate;
 import org.mule.module.db.internal.parser.QueryTemplateParser;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Resolves a dynamic query evaluating expressions using a given event
+ * <p/>
+ * The most recently used query templates are cached by their resolved SQL text,
+ * so queries that resolve to the same SQL text are parsed only once.
  */
 public class DynamicQueryResolver implements QueryResolver
 {
 
+    public static final int DEFAULT_QUERY_TEMPLATE_CACHE_SIZE = 100;
+
     private final Query query;
     private final QueryTemplateParser queryTemplateParser;
     private final ExpressionManager expressionManager;
+    private final Map<String, QueryTemplate> queryTemplates;
+    private final AtomicLong queryTemplateCacheHits = new AtomicLong();
+    private final AtomicLong queryTemplateCacheMisses = new AtomicLong();
 
     public DynamicQueryResolver(Query query, QueryTemplateParser queryTemplateParser, ExpressionManager expressionManager)
+    {
+        this(query, queryTemplateParser, expressionManager, DEFAULT_QUERY_TEMPLATE_CACHE_SIZE);
+    }
+
+    public DynamicQueryResolver(Query query, QueryTemplateParser queryTemplateParser, ExpressionManager expressionManager, final int queryTemplateCacheSize)
     {
         this.query = query;
         this.queryTemplateParser = queryTemplateParser;
         this.expressionManager = expressionManager;
+        this.queryTemplates = new LinkedHashMap<String, QueryTemplate>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryTemplate> eldest)
+            {
+                return size() > queryTemplateCacheSize;
+            }
+        };
     }
 
     @Override
@@ -41,7 +65,7 @@ public class DynamicQueryResolver implements QueryResolver
         {
             QueryTemplate queryTemplate = query.getQueryTemplate();
             String resolvedSqlText = expressionManager.parse(queryTemplate.getSqlText(), muleEvent);
-            queryTemplate = queryTemplateParser.parse(resolvedSqlText);
+            queryTemplate = getQueryTemplate(resolvedSqlText);
 
             return new Query(queryTemplate, Collections.<QueryParamValue>emptyList());
         }
@@ -50,4 +74,40 @@ public class DynamicQueryResolver implements QueryResolver
             throw new QueryResolutionException("Error parsing query", e);
         }
     }
+
+    private QueryTemplate getQueryTemplate(String sqlText)
+    {
+        QueryTemplate queryTemplate;
+        synchronized (queryTemplates)
+        {
+            queryTemplate = queryTemplates.get(sqlText);
+        }
+
+        if (queryTemplate == null)
+        {
+            queryTemplateCacheMisses.incrementAndGet();
+            queryTemplate = queryTemplateParser.parse(sqlText);
+
+            synchronized (queryTemplates)
+            {
+                queryTemplates.put(sqlText, queryTemplate);
+            }
+        }
+        else
+        {
+            queryTemplateCacheHits.incrementAndGet();
+        }
+
+        return queryTemplate;
+    }
+
+    public long getQueryTemplateCacheHits()
+    {
+        return queryTemplateCacheHits.get();
+    }
+
+    public long getQueryTemplateCacheMisses()
+    {
+        return queryTemplateCacheMisses.get();
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.db.internal.domain.statement;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.mule.module.db.internal.domain.autogeneratedkey.DefaultAutoGeneratedKeyStrategy;
+import org.mule.module.db.internal.domain.connection.DbConnection;
+import org.mule.module.db.internal.domain.connection.DefaultDbConnection;
+import org.mule.module.db.internal.domain.param.DefaultInputQueryParam;
+import org.mule.module.db.internal.domain.param.QueryParam;
+import org.mule.module.db.internal.domain.query.QueryTemplate;
+import org.mule.module.db.internal.domain.query.QueryType;
+import org.mule.module.db.internal.domain.transaction.TransactionalAction;
+import org.mule.module.db.internal.domain.type.UnknownDbType;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.mchange.v2.c3p0.DataSources;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Uses a c3p0 pooled data source, as the connections and statements of its pool only
+ * implement JDBC 3
+ */
+public class QueryStatementFactoryTestCase extends AbstractMuleTestCase
+{
+
+    private static final String DB_URL = "jdbc:derby:memory:statementCacheDb;create=true";
+    private static final String SELECT_SQL = "select NAME from PLANET where ID = ?";
+    private static final String INSERT_SQL = "insert into PLANET(ID, NAME) values (?, ?)";
+
+    private final QueryStatementFactory statementFactory = new QueryStatementFactory();
+    private DataSource dataSource;
+    private QueryTemplate selectTemplate;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("maxPoolSize", 1);
+        config.put("maxStatements", 0);
+        config.put("maxStatementsPerConnection", 0);
+        dataSource = DataSources.pooledDataSource(DataSources.unpooledDataSource(DB_URL), config);
+
+        Connection connection = dataSource.getConnection();
+        try
+        {
+            Statement statement = connection.createStatement();
+            statement.execute("create table PLANET(ID integer not null primary key, NAME varchar(32))");
+            statement.execute("insert into PLANET(ID, NAME) values (1, 'Venus')");
+            statement.close();
+        }
+        finally
+        {
+            connection.close();
+        }
+
+        QueryParam param = new DefaultInputQueryParam(1, UnknownDbType.getInstance(), null);
+        selectTemplate = new QueryTemplate(SELECT_SQL, QueryType.SELECT, Collections.singletonList(param));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        Connection connection = dataSource.getConnection();
+        try
+        {
+            Statement statement = connection.createStatement();
+            statement.execute("drop table PLANET");
+            statement.close();
+        }
+        finally
+        {
+            connection.close();
+        }
+        DataSources.destroy(dataSource);
+    }
+
+    @Test
+    public void reusesStatementsWithinTransaction() throws Exception
+    {
+        Connection connection = getTransactionConnection();
+        try
+        {
+            assertThat(selectName(wrap(connection, TransactionalAction.JOIN_IF_POSSIBLE)), equalTo("Venus"));
+            assertThat(selectName(wrap(connection, TransactionalAction.ALWAYS_JOIN)), equalTo("Venus"));
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(1L));
+            assertThat(statementFactory.getStatementCacheHits(), equalTo(1L));
+        }
+        finally
+        {
+            connection.commit();
+            connection.close();
+        }
+    }
+
+    @Test
+    public void doesNotCacheStatementsOutsideTransaction() throws Exception
+    {
+        Connection connection = dataSource.getConnection();
+        try
+        {
+            assertThat(selectName(wrap(connection, TransactionalAction.JOIN_IF_POSSIBLE)), equalTo("Venus"));
+            assertThat(selectName(wrap(connection, TransactionalAction.JOIN_IF_POSSIBLE)), equalTo("Venus"));
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(0L));
+            assertThat(statementFactory.getCachedConnectionCount(), equalTo(0));
+        }
+        finally
+        {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void leavesStatementCachingToThePoolOutsideTransaction() throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put("maxPoolSize", 1);
+        config.put("maxStatements", 0);
+        config.put("maxStatementsPerConnection", 5);
+        DataSource statementCachingDataSource = DataSources.pooledDataSource(DataSources.unpooledDataSource(DB_URL), config);
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                // each operation checks out the pooled connection and releases it, as in a non transactional flow
+                Connection connection = statementCachingDataSource.getConnection();
+                try
+                {
+                    DbConnection dbConnection = wrap(connection, TransactionalAction.JOIN_IF_POSSIBLE);
+                    PreparedStatement statement = (PreparedStatement) statementFactory.create(dbConnection, selectTemplate);
+                    statement.setInt(1, 1);
+                    ResultSet resultSet = statement.executeQuery();
+                    assertTrue(resultSet.next());
+                    assertThat(resultSet.getString(1), equalTo("Venus"));
+                    resultSet.close();
+                    statement.close();
+                }
+                finally
+                {
+                    connection.close();
+                }
+            }
+
+            assertThat(statementFactory.getStatementCacheHits(), equalTo(0L));
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(0L));
+            assertThat(statementFactory.getCachedConnectionCount(), equalTo(0));
+        }
+        finally
+        {
+            DataSources.destroy(statementCachingDataSource);
+        }
+    }
+
+    @Test
+    public void doesNotCacheStatementsOfNotSupportedConnections() throws Exception
+    {
+        Connection connection = getTransactionConnection();
+        try
+        {
+            assertThat(selectName(wrap(connection, TransactionalAction.NOT_SUPPORTED)), equalTo("Venus"));
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(0L));
+            assertThat(statementFactory.getCachedConnectionCount(), equalTo(0));
+        }
+        finally
+        {
+            connection.commit();
+            connection.close();
+        }
+    }
+
+    @Test
+    public void discardsCacheOfClosedConnections() throws Exception
+    {
+        Connection connection = getTransactionConnection();
+        selectName(wrap(connection, TransactionalAction.ALWAYS_JOIN));
+        connection.commit();
+        connection.close();
+
+        // the pool has a single connection, so this is the same physical connection
+        connection = getTransactionConnection();
+        try
+        {
+            assertThat(selectName(wrap(connection, TransactionalAction.ALWAYS_JOIN)), equalTo("Venus"));
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(2L));
+            assertThat(statementFactory.getStatementCacheHits(), equalTo(0L));
+            assertThat(statementFactory.getCachedConnectionCount(), equalTo(1));
+        }
+        finally
+        {
+            connection.commit();
+            connection.close();
+        }
+    }
+
+    @Test
+    public void closesStatementsWhenCacheIsDisabled() throws Exception
+    {
+        statementFactory.setStatementCacheSize(0);
+        Connection connection = getTransactionConnection();
+        try
+        {
+            Statement statement = statementFactory.create(wrap(connection, TransactionalAction.ALWAYS_JOIN), selectTemplate);
+            statement.close();
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(0L));
+            assertThat(statementFactory.getCachedConnectionCount(), equalTo(0));
+        }
+        finally
+        {
+            connection.commit();
+            connection.close();
+        }
+    }
+
+    @Test
+    public void doesNotCacheStatementsReturningAutoGeneratedKeys() throws Exception
+    {
+        QueryParam idParam = new DefaultInputQueryParam(1, UnknownDbType.getInstance(), null);
+        QueryParam nameParam = new DefaultInputQueryParam(2, UnknownDbType.getInstance(), null);
+        QueryTemplate insertTemplate = new QueryTemplate(INSERT_SQL, QueryType.INSERT, Arrays.asList(idParam, nameParam));
+
+        Connection connection = getTransactionConnection();
+        try
+        {
+            PreparedStatement statement = (PreparedStatement) statementFactory.create(wrap(connection, TransactionalAction.ALWAYS_JOIN), insertTemplate, new DefaultAutoGeneratedKeyStrategy());
+            statement.setInt(1, 2);
+            statement.setString(2, "Mars");
+            statement.executeUpdate();
+            statement.close();
+
+            assertThat(statementFactory.getStatementCacheMisses(), equalTo(0L));
+        }
+        finally
+        {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    /**
+     * Simulates the connection bound to a transaction, which has auto commit disabled
+     */
+    private Connection getTransactionConnection() throws SQLException
+    {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    private DbConnection wrap(Connection connection, TransactionalAction transactionalAction)
+    {
+        return new DefaultDbConnection(connection, transactionalAction, null, null);
+    }
+
+    private String selectName(DbConnection connection) throws SQLException
+    {
+        PreparedStatement statement = (PreparedStatement) statementFactory.create(connection, selectTemplate);
+        try
+        {
+            statement.setInt(1, 1);
+            ResultSet resultSet = statement.executeQuery();
+            try
+            {
+                assertTrue(resultSet.next());
+                return resultSet.getString(1);
+            }
+            finally
+            {
+                resultSet.close();
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+}
@@ -7,9 +7,12 @@
 
 package org.mule.module.db.internal.resolver.query;
 
+import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mule.api.expression.ExpressionManager;
 import org.mule.api.expression.ExpressionRuntimeException;
@@ -46,6 +49,28 @@ public class DynamicQueryResolverTestCase extends AbstractQueryResolverTestCase
         assertThat(expectedQueryTemplate, sameInstance(resolvedQuery.getQueryTemplate()));
     }
 
+    @Test
+    public void cachesParsedQueryTemplates() throws Exception
+    {
+        ExpressionManager expressionManager = mock(ExpressionManager.class);
+        String staticSqlText = STATIC_SQL_TEXT;
+        when(expressionManager.parse(DYNAMIC_SQL_TEXT, muleEvent)).thenReturn(staticSqlText);
+
+        QueryTemplate expectedQueryTemplate = createQueryTemplate(staticSqlText);
+        QueryTemplateParser queryTemplateParser = mock(QueryTemplateParser.class);
+        when(queryTemplateParser.parse(staticSqlText)).thenReturn(expectedQueryTemplate);
+
+        DynamicQueryResolver queryResolver = new DynamicQueryResolver(query, queryTemplateParser, expressionManager);
+
+        queryResolver.resolve(null, muleEvent);
+        Query resolvedQuery = queryResolver.resolve(null, muleEvent);
+
+        assertThat(expectedQueryTemplate, sameInstance(resolvedQuery.getQueryTemplate()));
+        verify(queryTemplateParser, times(1)).parse(staticSqlText);
+        assertThat(queryResolver.getQueryTemplateCacheHits(), equalTo(1L));
+        assertThat(queryResolver.getQueryTemplateCacheMisses(), equalTo(1L));
+    }
+
     @Test(expected = QueryResolutionException.class)
     public void throwsErrorOnParsingError() throws Exception
     {
@@ -131,6 +131,16 @@ public class FlowConstructService implements FlowConstructServiceMBean, MBeanReg
         return statistics.getFatalErrors();
     }
 
+    public long getCacheHits()
+    {
+        return statistics.getCacheHits();
+    }
+
+    public long getCacheMisses()
+    {
+        return statistics.getCacheMisses();
+    }
+
     public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception
     {
         this.server = server;
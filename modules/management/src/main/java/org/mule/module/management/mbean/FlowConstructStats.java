@@ -91,6 +91,16 @@ public class FlowConstructStats implements FlowConstructStatsMBean, MBeanRegistr
         return statistics.getFatalErrors();
     }
 
+    public long getCacheHits()
+    {
+        return statistics.getCacheHits();
+    }
+
+    public long getCacheMisses()
+    {
+        return statistics.getCacheMisses();
+    }
+
     public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception
     {
         this.server = server;
@@ -34,4 +34,8 @@ public interface FlowConstructStatsMBean
     long getFatalErrors();
 
     long getExecutionErrors();
+
+    long getCacheHits();
+
+    long getCacheMisses();
 }
@@ -68,6 +68,7 @@ public class MuleConfigurationConfigurator implements MuleContextAware, SmartFac
             defaultConfig.setFlowEndingWithOneWayEndpointReturnsNull(config.isFlowEndingWithOneWayEndpointReturnsNull());
             defaultConfig.setDefaultExceptionStrategyName(config.getDefaultExceptionStrategyName());
             defaultConfig.setEnricherPropagatesSessionVariableChanges(config.isEnricherPropagatesSessionVariableChanges());
+            defaultConfig.setDefaultObjectSerializer(config.getDefaultObjectSerializer());
             defaultConfig.setExtensions(config.getExtensions());
             validateDefaultExceptionStrategy();
             return configuration;
@@ -152,6 +153,11 @@ public class MuleConfigurationConfigurator implements MuleContextAware, SmartFac
         config.setEnricherPropagatesSessionVariableChanges(enricherPropagatesSessionVariableChanges);
     }
 
+    public void setDefaultObjectSerializer(String defaultObjectSerializer)
+    {
+        config.setDefaultObjectSerializer(defaultObjectSerializer);
+    }
+
     public void setExtensions(List<Object> extensions)
     {
         config.setExtensions(extensions);
@@ -23,12 +23,18 @@ public class ScatterGatherRouterFactoryBean implements FactoryBean<ScatterGather
     private List<MessageProcessor> messageProcessors;
     private AggregationStrategy aggregationStrategy;
     private ThreadingProfile threadingProfile;
+    private int maxConcurrentRoutes = 0;
+    private int quorum = 0;
+    private boolean useCallerThread = false;
 
     @Override
     public ScatterGatherRouter getObject() throws Exception
     {
         ScatterGatherRouter sg = new ScatterGatherRouter();
         sg.setTimeout(timeout);
+        sg.setMaxConcurrentRoutes(maxConcurrentRoutes);
+        sg.setQuorum(quorum);
+        sg.setUseCallerThread(useCallerThread);
 
         for (MessageProcessor mp : this.messageProcessors)
         {
@@ -84,4 +90,19 @@ public class ScatterGatherRouterFactoryBean implements FactoryBean<ScatterGather
     {
         this.threadingProfile = threadingProfile;
     }
+
+    public void setMaxConcurrentRoutes(int maxConcurrentRoutes)
+    {
+        this.maxConcurrentRoutes = maxConcurrentRoutes;
+    }
+
+    public void setQuorum(int quorum)
+    {
+        this.quorum = quorum;
+    }
+
+    public void setUseCallerThread(boolean useCallerThread)
+    {
+        this.useCallerThread = useCallerThread;
+    }
 }
@@ -10,6 +10,8 @@ import org.mule.api.config.MuleProperties;
 import org.mule.api.config.ThreadingProfile;
 import org.mule.api.processor.LoggerMessageProcessor;
 import org.mule.api.source.MessageSource;
+import org.mule.cache.CachingMessageProcessor;
+import org.mule.cache.ObjectStoreCachingStrategy;
 import org.mule.component.DefaultInterfaceBinding;
 import org.mule.component.DefaultJavaComponent;
 import org.mule.component.PooledJavaComponent;
@@ -88,6 +90,7 @@ import org.mule.processor.IdempotentRedeliveryPolicy;
 import org.mule.processor.InvokerMessageProcessor;
 import org.mule.processor.NullMessageProcessor;
 import org.mule.processor.strategy.AsynchronousProcessingStrategy;
+import org.mule.processor.strategy.BatchingQueuedAsynchronousProcessingStrategy;
 import org.mule.processor.strategy.QueuedAsynchronousProcessingStrategy;
 import org.mule.processor.strategy.QueuedThreadPerProcessorProcessingStrategy;
 import org.mule.processor.strategy.ThreadPerProcessorProcessingStrategy;
@@ -186,6 +189,7 @@ import org.mule.transformer.simple.SetPayloadTransformer;
 import org.mule.transformer.simple.StringAppendTransformer;
 import org.mule.transport.polling.schedule.FixedFrequencySchedulerFactory;
 import org.mule.util.store.InMemoryObjectStore;
+import org.mule.util.store.LruInMemoryObjectStore;
 import org.mule.util.store.ManagedObjectStore;
 import org.mule.util.store.TextFileObjectStore;
 
@@ -420,6 +424,9 @@ public class MuleNamespaceHandler extends AbstractMuleNamespaceHandler
         registerMuleBeanDefinitionParser("queued-asynchronous-processing-strategy",
             new OrphanDefinitionParser(QueuedAsynchronousProcessingStrategy.class, false)).addMapping(
             "poolExhaustedAction", ThreadingProfile.POOL_EXHAUSTED_ACTIONS).addIgnored("name");
+        registerMuleBeanDefinitionParser("batching-queued-asynchronous-processing-strategy",
+            new OrphanDefinitionParser(BatchingQueuedAsynchronousProcessingStrategy.class, false)).addMapping(
+            "poolExhaustedAction", ThreadingProfile.POOL_EXHAUSTED_ACTIONS).addIgnored("name");
         registerMuleBeanDefinitionParser("thread-per-processor-processing-strategy",
             new OrphanDefinitionParser(ThreadPerProcessorProcessingStrategy.class, false)).addMapping(
             "poolExhaustedAction", ThreadingProfile.POOL_EXHAUSTED_ACTIONS).addIgnored("name");
@@ -453,8 +460,12 @@ public class MuleNamespaceHandler extends AbstractMuleNamespaceHandler
         // Life-cycle Adapters Factories
         registerBeanDefinitionParser("custom-lifecycle-adapter-factory", new ChildDefinitionParser("lifecycleAdapterFactory"));
 
+        // Caching
+        registerMuleBeanDefinitionParser("object-store-caching-strategy", new MuleOrphanDefinitionParser(ObjectStoreCachingStrategy.class, true)).registerPreProcessor(new CheckExclusiveAttributes(new String[][]{new String[]{"keyGenerator-ref"}, new String[]{"keyGenerationExpression"}}));
+
         //Stores
         registerBeanDefinitionParser("in-memory-store", new ChildDefinitionParser("store", InMemoryObjectStore.class));
+        registerBeanDefinitionParser("lru-in-memory-store", new ChildDefinitionParser("store", LruInMemoryObjectStore.class));
         registerBeanDefinitionParser("simple-text-file-store", new ChildDefinitionParser("store", TextFileObjectStore.class));
         registerBeanDefinitionParser("custom-object-store",new ChildDefinitionParser("store", null));
         registerBeanDefinitionParser("spring-object-store",(BeanDefinitionParser)new ParentDefinitionParser().addAlias("ref", "store"));
@@ -514,6 +525,7 @@ public class MuleNamespaceHandler extends AbstractMuleNamespaceHandler
         registerBeanDefinitionParser("message-chunk-splitter", new SplitterDefinitionParser(MessageChunkSplitter.class));
         registerBeanDefinitionParser("custom-splitter", new SplitterDefinitionParser());
         registerMuleBeanDefinitionParser("foreach", new ChildDefinitionParser("messageProcessor", Foreach.class)).addAlias("collection", "collectionExpression");
+        registerBeanDefinitionParser("cache", new ChildDefinitionParser("messageProcessor", CachingMessageProcessor.class));
 
         // Routing: Routing Message Processors
 
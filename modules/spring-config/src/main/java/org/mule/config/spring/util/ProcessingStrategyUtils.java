@@ -8,6 +8,7 @@ package org.mule.config.spring.util;
 
 import org.mule.construct.flow.DefaultFlowProcessingStrategy;
 import org.mule.processor.strategy.AsynchronousProcessingStrategy;
+import org.mule.processor.strategy.BatchingQueuedAsynchronousProcessingStrategy;
 import org.mule.processor.strategy.QueuedAsynchronousProcessingStrategy;
 import org.mule.processor.strategy.QueuedThreadPerProcessorProcessingStrategy;
 import org.mule.processor.strategy.SynchronousProcessingStrategy;
@@ -26,6 +27,7 @@ public class ProcessingStrategyUtils
     public static String SYNC_PROCESSING_STRATEGY = "synchronous";
     public static String ASYNC_PROCESSING_STRATEGY = "asynchronous";
     public static String QUEUED_ASYNC_PROCESSING_STRATEGY = "queued-asynchronous";
+    public static String BATCHING_QUEUED_ASYNC_PROCESSING_STRATEGY = "batching-queued-asynchronous";
     public static String THREAD_PER_PROCESSOR_PROCESSING_STRATEGY = "thread-per-processor";
     public static String QUEUED_THREAD_PER_PROCESSOR_PROCESSING_STRATEGY = "queued-thread-per-processor";
 
@@ -51,6 +53,11 @@ public class ProcessingStrategyUtils
             builder.addPropertyValue(PROCESSING_STRATEGY_ATTRIBUTE_NAME,
                 new QueuedAsynchronousProcessingStrategy());
         }
+        else if (BATCHING_QUEUED_ASYNC_PROCESSING_STRATEGY.equals(processingStrategy))
+        {
+            builder.addPropertyValue(PROCESSING_STRATEGY_ATTRIBUTE_NAME,
+                new BatchingQueuedAsynchronousProcessingStrategy());
+        }
         else if (THREAD_PER_PROCESSOR_PROCESSING_STRATEGY.equals(processingStrategy))
         {
             builder.addPropertyValue(PROCESSING_STRATEGY_ATTRIBUTE_NAME,
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+import org.mule.MessageExchangePattern;
+import org.mule.api.MuleContext;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleMessage;
+import org.mule.construct.Flow;
+import org.mule.context.DefaultMuleContextFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base class for benchmarks that need a started {@link MuleContext}. Subclasses must be
+ * annotated with {@link org.openjdk.jmh.annotations.State} and prepare their own state
+ * in {@link #setUpBenchmark()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public abstract class AbstractMuleBenchmark
+{
+
+    protected MuleContext muleContext;
+    protected Flow flow;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        muleContext = new DefaultMuleContextFactory().createMuleContext();
+        muleContext.start();
+
+        flow = new Flow("benchmark", muleContext);
+        muleContext.getRegistry().registerFlowConstruct(flow);
+
+        setUpBenchmark();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        tearDownBenchmark();
+        muleContext.dispose();
+    }
+
+    protected abstract void setUpBenchmark() throws Exception;
+
+    protected void tearDownBenchmark() throws Exception
+    {
+        // Nothing to release by default
+    }
+
+    protected MuleMessage createMessage(int properties)
+    {
+        MuleMessage message = new DefaultMuleMessage("benchmark payload", muleContext);
+        for (int i = 0; i < properties; i++)
+        {
+            message.setOutboundProperty("property" + i, "value" + i);
+        }
+        return message;
+    }
+
+    protected MuleEvent createEvent(MuleMessage message)
+    {
+        return new DefaultMuleEvent(message, MessageExchangePattern.REQUEST_RESPONSE, flow);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares their scores with a baseline, reporting the ones
+ * that got slower than the configured threshold.
+ * <p/>
+ * Configured with the following system properties:
+ * <ul>
+ * <li>benchmark.include: regular expression selecting the benchmarks to run</li>
+ * <li>benchmark.baseline: CSV file with the baseline scores</li>
+ * <li>benchmark.regressionThreshold: relative slow down reported as a regression, 0.1 by default</li>
+ * <li>benchmark.updateBaseline: writes the new scores as the baseline instead of comparing them</li>
+ * <li>benchmark.failOnRegression: exits with an error when there are regressions</li>
+ * </ul>
+ * All the benchmarks use {@link org.openjdk.jmh.annotations.Mode#AverageTime}, so a
+ * higher score is a slower benchmark.
+ */
+public class BenchmarkRunner
+{
+
+    private static final String CSV_HEADER = "benchmark,score,error,unit";
+
+    public static void main(String[] args) throws Exception
+    {
+        String include = System.getProperty("benchmark.include", ".*");
+        File baselineFile = new File(System.getProperty("benchmark.baseline", "baseline/benchmark-baseline.csv"));
+        double threshold = Double.parseDouble(System.getProperty("benchmark.regressionThreshold", "0.1"));
+        boolean updateBaseline = Boolean.getBoolean("benchmark.updateBaseline");
+        boolean failOnRegression = Boolean.getBoolean("benchmark.failOnRegression");
+
+        Map<String, Score> scores = runBenchmarks(include);
+
+        if (updateBaseline)
+        {
+            Map<String, Score> baseline = baselineFile.exists() ? readScores(baselineFile) : new TreeMap<String, Score>();
+            baseline.putAll(scores);
+            writeScores(baselineFile, baseline);
+            System.out.println("Baseline updated: " + baselineFile.getAbsolutePath());
+            return;
+        }
+
+        if (!baselineFile.exists())
+        {
+            System.out.println("No baseline found at " + baselineFile.getAbsolutePath() + ", run with -Dbenchmark.updateBaseline=true to record it");
+            return;
+        }
+
+        List<String> regressions = compare(readScores(baselineFile), scores, threshold);
+        if (!regressions.isEmpty() && failOnRegression)
+        {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> runBenchmarks(String include) throws RunnerException
+    {
+        Options options = new OptionsBuilder().include(include).build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Score> scores = new TreeMap<String, Score>();
+        for (RunResult result : results)
+        {
+            String name = result.getParams().getBenchmark();
+            for (String param : result.getParams().getParamsKeys())
+            {
+                name += ":" + param + "=" + result.getParams().getParam(param);
+            }
+            scores.put(name, new Score(result.getPrimaryResult().getScore(), result.getPrimaryResult().getScoreError(), result.getPrimaryResult().getScoreUnit()));
+        }
+        return scores;
+    }
+
+    private static List<String> compare(Map<String, Score> baseline, Map<String, Score> scores, double threshold)
+    {
+        List<String> regressions = new ArrayList<String>();
+
+        System.out.println();
+        System.out.println(String.format("%-90s %15s %15s %10s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Score> entry : scores.entrySet())
+        {
+            Score current = entry.getValue();
+            Score previous = baseline.get(entry.getKey());
+            if (previous == null || !previous.unit.equals(current.unit))
+            {
+                System.out.println(String.format("%-90s %15s %15.3f %10s", entry.getKey(), "-", current.score, "new"));
+                continue;
+            }
+
+            double change = (current.score - previous.score) / previous.score;
+            // Differences within the error margin of both measurements are not regressions
+            boolean regression = change > threshold && current.score - current.error > previous.score + previous.error;
+            System.out.println(String.format("%-90s %15.3f %15.3f %+9.1f%%%s", entry.getKey(), previous.score, current.score, change * 100, regression ? " REGRESSION" : ""));
+            if (regression)
+            {
+                regressions.add(entry.getKey());
+            }
+        }
+
+        if (!regressions.isEmpty())
+        {
+            System.out.println();
+            System.out.println(regressions.size() + " benchmark(s) slower than the baseline by more than " + (threshold * 100) + "%: " + regressions);
+        }
+        return regressions;
+    }
+
+    private static Map<String, Score> readScores(File file) throws IOException
+    {
+        Map<String, Score> scores = new TreeMap<String, Score>();
+        BufferedReader reader = new BufferedReader(createReader(file));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#") || line.equals(CSV_HEADER))
+                {
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+                scores.put(fields[0], new Score(Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), fields[3]));
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return scores;
+    }
+
+    private static void writeScores(File file, Map<String, Score> scores) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs())
+        {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        PrintWriter writer = new PrintWriter(createWriter(file));
+        try
+        {
+            writer.println(CSV_HEADER);
+            for (Map.Entry<String, Score> entry : scores.entrySet())
+            {
+                Score score = entry.getValue();
+                writer.println(entry.getKey() + "," + score.score + "," + score.error + "," + score.unit);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static Reader createReader(File file) throws IOException
+    {
+        return new InputStreamReader(new FileInputStream(file), "UTF-8");
+    }
+
+    private static Writer createWriter(File file) throws IOException
+    {
+        return new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    }
+
+    private static class Score
+    {
+
+        private final double score;
+        private final double error;
+        private final String unit;
+
+        Score(double score, double error, String unit)
+        {
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+    }
+}
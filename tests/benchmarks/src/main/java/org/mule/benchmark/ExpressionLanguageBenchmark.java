@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.MuleEvent;
+import org.mule.el.mvel.MVELExpressionLanguage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures expression evaluation through {@link MVELExpressionLanguage}
+ */
+@State(Scope.Thread)
+public class ExpressionLanguageBenchmark extends AbstractMuleBenchmark
+{
+
+    private MVELExpressionLanguage expressionLanguage;
+    private MuleEvent event;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        expressionLanguage = (MVELExpressionLanguage) muleContext.getExpressionLanguage();
+        event = createEvent(createMessage(10));
+        event.setFlowVariable("count", 10);
+    }
+
+    @Benchmark
+    public Object payload()
+    {
+        return expressionLanguage.evaluate("payload", event);
+    }
+
+    @Benchmark
+    public Object outboundProperty()
+    {
+        return expressionLanguage.evaluate("message.outboundProperties['property5']", event);
+    }
+
+    @Benchmark
+    public Object flowVariableArithmetic()
+    {
+        return expressionLanguage.evaluate("flowVars.count * 2 + 1", event);
+    }
+
+    @Benchmark
+    public Object stringOperation()
+    {
+        return expressionLanguage.evaluate("payload.toUpperCase().substring(0, 9)", event);
+    }
+}
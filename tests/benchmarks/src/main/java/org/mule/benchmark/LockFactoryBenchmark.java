@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.util.lock.LockFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures creating, locking and unlocking locks of the context's {@link LockFactory}
+ * from several threads, either with a different lock id per thread or with all of them
+ * sharing the same one.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class LockFactoryBenchmark extends AbstractMuleBenchmark
+{
+
+    private static final String SHARED_LOCK_ID = "shared";
+
+    private LockFactory lockFactory;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        lockFactory = muleContext.getLockFactory();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLockId
+    {
+
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private final String lockId = "thread" + threads.incrementAndGet();
+    }
+
+    @Benchmark
+    public Lock lockPerThread(ThreadLockId threadLockId)
+    {
+        return lockAndUnlock(threadLockId.lockId);
+    }
+
+    @Benchmark
+    public Lock sharedLock()
+    {
+        return lockAndUnlock(SHARED_LOCK_ID);
+    }
+
+    private Lock lockAndUnlock(String lockId)
+    {
+        Lock lock = lockFactory.createLock(lockId);
+        lock.lock();
+        try
+        {
+            return lock;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
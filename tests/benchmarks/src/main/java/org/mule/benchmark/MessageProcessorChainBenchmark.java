@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.api.processor.MessageProcessorChain;
+import org.mule.processor.chain.AbstractMessageProcessorChain;
+import org.mule.processor.chain.DefaultMessageProcessorChainBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class MessageProcessorChainBenchmark extends AbstractMuleBenchmark
+{
+
+    @Param({"1", "10"})
+    public int processors;
+
+    private MessageProcessorChain chain;
+    private MuleEvent event;
+
+    @Override
+    protected void setUpBenchmark() throws Exception
+    {
+        List<MessageProcessor> chainProcessors = new ArrayList<MessageProcessor>(processors);
+        for (int i = 0; i < processors; i++)
+        {
+            chainProcessors.add(new PassThroughMessageProcessor());
+        }
+
+        chain = new DefaultMessageProcessorChainBuilder(flow).chain(chainProcessors).build();
+        if (chain instanceof AbstractMessageProcessorChain)
+        {
+            AbstractMessageProcessorChain lifecycleChain = (AbstractMessageProcessorChain) chain;
+            lifecycleChain.setMuleContext(muleContext);
+            lifecycleChain.setFlowConstruct(flow);
+            lifecycleChain.initialise();
+            lifecycleChain.start();
+        }
+
+        event = createEvent(createMessage(10));
+    }
+
+    @Benchmark
+    public MuleEvent process() throws MuleException
+    {
+        return chain.process(event);
+    }
+
+    private static class PassThroughMessageProcessor implements MessageProcessor
+    {
+
+        @Override
+        public MuleEvent process(MuleEvent event) throws MuleException
+        {
+            return event;
+        }
+    }
+}
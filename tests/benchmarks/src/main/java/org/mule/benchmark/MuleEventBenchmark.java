@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class MuleEventBenchmark extends AbstractMuleBenchmark
+{
+
+    private MuleMessage message;
+    private MuleEvent event;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        message = createMessage(10);
+        event = createEvent(message);
+        for (int i = 0; i < 10; i++)
+        {
+            event.setFlowVariable("variable" + i, "value" + i);
+        }
+    }
+
+    @Benchmark
+    public MuleEvent create()
+    {
+        return createEvent(message);
+    }
+
+    @Benchmark
+    public MuleEvent copy()
+    {
+        return DefaultMuleEvent.copy(event);
+    }
+
+    @Benchmark
+    public Object newThreadCopy()
+    {
+        return ((DefaultMuleEvent) event).newThreadCopy();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+public class MuleMessageBenchmark extends AbstractMuleBenchmark
+{
+
+    private MuleMessage message;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        message = createMessage(20);
+    }
+
+    @Benchmark
+    public MuleMessage copy()
+    {
+        return new DefaultMuleMessage(message);
+    }
+
+    @Benchmark
+    public Object getOutboundProperty()
+    {
+        return message.getOutboundProperty("property10");
+    }
+
+    @Benchmark
+    public MuleMessage setOutboundProperty()
+    {
+        message.setOutboundProperty("property10", "updated");
+        return message;
+    }
+
+    @Benchmark
+    public Object getPayloadAsString() throws Exception
+    {
+        return message.getPayloadAsString();
+    }
+}
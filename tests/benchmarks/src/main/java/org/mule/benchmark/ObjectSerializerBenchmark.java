@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.serialization.ObjectSerializer;
+import org.mule.serialization.CompactObjectSerializer;
+import org.mule.serialization.JavaObjectSerializer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures serializing a map of common values and reading it back with each of the
+ * {@link ObjectSerializer} implementations.
+ */
+@State(Scope.Benchmark)
+public class ObjectSerializerBenchmark extends AbstractMuleBenchmark
+{
+
+    @Param({"java", "compact"})
+    public String serializerType;
+
+    private ObjectSerializer serializer;
+    private Map<String, Object> value;
+
+    @Override
+    protected void setUpBenchmark() throws Exception
+    {
+        if ("compact".equals(serializerType))
+        {
+            CompactObjectSerializer compactSerializer = new CompactObjectSerializer();
+            compactSerializer.setMuleContext(muleContext);
+            serializer = compactSerializer;
+        }
+        else
+        {
+            JavaObjectSerializer javaSerializer = new JavaObjectSerializer();
+            javaSerializer.setMuleContext(muleContext);
+            serializer = javaSerializer;
+        }
+
+        value = new HashMap<String, Object>();
+        List<Object> list = new ArrayList<Object>();
+        for (int i = 0; i < 10; i++)
+        {
+            value.put("string" + i, "value of property " + i);
+            value.put("number" + i, (long) i);
+            list.add(i);
+        }
+        value.put("date", new Date());
+        value.put("list", list);
+    }
+
+    @Benchmark
+    public byte[] serialize()
+    {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object serializeAndDeserialize()
+    {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+}
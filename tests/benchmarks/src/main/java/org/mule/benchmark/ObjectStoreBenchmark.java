@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.store.ObjectStoreException;
+import org.mule.util.store.InMemoryObjectStore;
+import org.mule.util.store.SimpleMemoryObjectStore;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the in memory object stores. Each invocation stores a new key, retrieves it
+ * and removes it, so the store size remains stable.
+ */
+@State(Scope.Benchmark)
+public class ObjectStoreBenchmark extends AbstractMuleBenchmark
+{
+
+    private static final int PREPOPULATED_ENTRIES = 1000;
+
+    private InMemoryObjectStore<String> inMemoryObjectStore;
+    private SimpleMemoryObjectStore<String> simpleMemoryObjectStore;
+    private final AtomicInteger nextKey = new AtomicInteger();
+
+    @Override
+    protected void setUpBenchmark() throws Exception
+    {
+        inMemoryObjectStore = new InMemoryObjectStore<String>();
+        inMemoryObjectStore.setMuleContext(muleContext);
+        inMemoryObjectStore.setMaxEntries(PREPOPULATED_ENTRIES * 10);
+        inMemoryObjectStore.initialise();
+
+        simpleMemoryObjectStore = new SimpleMemoryObjectStore<String>();
+
+        for (int i = 0; i < PREPOPULATED_ENTRIES; i++)
+        {
+            inMemoryObjectStore.store("prepopulated" + i, "value" + i);
+            simpleMemoryObjectStore.store("prepopulated" + i, "value" + i);
+        }
+    }
+
+    @Override
+    protected void tearDownBenchmark()
+    {
+        inMemoryObjectStore.dispose();
+    }
+
+    @Benchmark
+    public String inMemoryObjectStore() throws ObjectStoreException
+    {
+        String key = "key" + nextKey.incrementAndGet();
+        inMemoryObjectStore.store(key, "value");
+        inMemoryObjectStore.retrieve(key);
+        return inMemoryObjectStore.remove(key);
+    }
+
+    @Benchmark
+    public String simpleMemoryObjectStore() throws ObjectStoreException
+    {
+        String key = "key" + nextKey.incrementAndGet();
+        simpleMemoryObjectStore.store(key, "value");
+        simpleMemoryObjectStore.retrieve(key);
+        return simpleMemoryObjectStore.remove(key);
+    }
+}
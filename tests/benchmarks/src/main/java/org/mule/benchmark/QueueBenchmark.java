@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.util.queue.Queue;
+
+import java.io.Serializable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures offering and polling an element on a queue of the context's queue manager
+ */
+@State(Scope.Thread)
+public class QueueBenchmark extends AbstractMuleBenchmark
+{
+
+    private Queue queue;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        queue = muleContext.getQueueManager().getQueueSession().getQueue("benchmark-" + Thread.currentThread().getId());
+    }
+
+    @Override
+    protected void tearDownBenchmark() throws Exception
+    {
+        queue.clear();
+    }
+
+    @Benchmark
+    public Serializable offerAndPoll() throws Exception
+    {
+        queue.offer("element", 0);
+        return queue.poll(0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.MuleEvent;
+import org.mule.api.expression.ExpressionManager;
+import org.mule.util.TemplateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing of templates with embedded expressions through
+ * {@link ExpressionManager#parse(String, MuleEvent)}, which compiles each template once,
+ * against matching the template pattern on every call with {@link TemplateParser}.
+ */
+@State(Scope.Thread)
+public class TemplateParseBenchmark extends AbstractMuleBenchmark
+{
+
+    private static final String LITERAL = "No expressions in this message, just text to be logged";
+    private static final String TEMPLATE = "http://#[message.outboundProperties['property1']]:#[flowVars.port]/orders/#[flowVars.id]?q=#[payload]";
+
+    private ExpressionManager expressionManager;
+    private TemplateParser parser;
+    private MuleEvent event;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        expressionManager = muleContext.getExpressionManager();
+        parser = TemplateParser.createMuleStyleParser();
+        event = createEvent(createMessage(10));
+        event.setFlowVariable("port", 8081);
+        event.setFlowVariable("id", "12345");
+    }
+
+    @Benchmark
+    public String literal()
+    {
+        return expressionManager.parse(LITERAL, event);
+    }
+
+    @Benchmark
+    public String template()
+    {
+        return expressionManager.parse(TEMPLATE, event);
+    }
+
+    @Benchmark
+    public String templateMatchedOnEveryCall()
+    {
+        return parser.parse(new TemplateParser.TemplateCallback()
+        {
+            public Object match(String token)
+            {
+                return expressionManager.evaluate(token, event);
+            }
+        }, TEMPLATE);
+    }
+
+    @Benchmark
+    public Object expressionsOnly()
+    {
+        // baseline: evaluating the expressions of the template without building the result
+        expressionManager.evaluate("message.outboundProperties['property1']", event);
+        expressionManager.evaluate("flowVars.port", event);
+        expressionManager.evaluate("flowVars.id", event);
+        return expressionManager.evaluate("payload", event);
+    }
+}
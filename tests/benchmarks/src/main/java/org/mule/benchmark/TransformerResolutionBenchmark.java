@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.benchmark;
+
+import org.mule.api.transformer.DataType;
+import org.mule.api.transformer.Transformer;
+import org.mule.api.transformer.TransformerException;
+import org.mule.transformer.types.DataTypeFactory;
+
+import java.io.InputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the transformer lookups done by {@link org.mule.registry.MuleRegistryHelper},
+ * which happen every time a message payload is converted to another type
+ */
+@State(Scope.Benchmark)
+public class TransformerResolutionBenchmark extends AbstractMuleBenchmark
+{
+
+    private DataType<String> stringType;
+    private DataType<byte[]> bytesType;
+    private DataType<InputStream> inputStreamType;
+
+    @Override
+    protected void setUpBenchmark()
+    {
+        stringType = DataTypeFactory.create(String.class);
+        bytesType = DataTypeFactory.create(byte[].class);
+        inputStreamType = DataTypeFactory.create(InputStream.class);
+    }
+
+    @Benchmark
+    public Transformer stringToBytes() throws TransformerException
+    {
+        return muleContext.getRegistry().lookupTransformer(stringType, bytesType);
+    }
+
+    @Benchmark
+    public Transformer inputStreamToString() throws TransformerException
+    {
+        return muleContext.getRegistry().lookupTransformer(inputStreamType, stringType);
+    }
+}
@@ -16,6 +16,7 @@ import org.mule.api.ExceptionPayload;
 import org.mule.api.MessagingException;
 import org.mule.api.MuleEvent;
 import org.mule.api.MuleException;
+import org.mule.api.processor.MessageProcessor;
 import org.mule.api.routing.AggregationContext;
 import org.mule.api.routing.ResponseTimeoutException;
 import org.mule.api.transport.DispatchException;
@@ -27,8 +28,13 @@ import org.mule.tck.junit4.FunctionalTestCase;
 import java.io.ByteArrayInputStream;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Before;
 import org.junit.Test;
 
 public class ScatterGatherRouterTestCase extends FunctionalTestCase
@@ -40,6 +46,12 @@ public class ScatterGatherRouterTestCase extends FunctionalTestCase
         return "scatter-gather-test.xml";
     }
 
+    @Before
+    public void resetRouteTracker()
+    {
+        RouteTracker.reset();
+    }
+
     @Test
     public void minimalConfiguration() throws Exception
     {
@@ -118,6 +130,42 @@ public class ScatterGatherRouterTestCase extends FunctionalTestCase
         FlowAssert.verify("customThreadingProfile");
     }
 
+    @Test
+    public void quorum() throws Exception
+    {
+        Date start = new Date();
+        this.testFlow("quorum", getTestEvent(""));
+        Date end = new Date();
+
+        long waitTime = end.getTime() - start.getTime();
+        assertTrue(String.format("took %d ms", waitTime), waitTime < 10000);
+    }
+
+    @Test
+    public void boundedConcurrency() throws Exception
+    {
+        this.testFlow("boundedConcurrency", getTestEvent(""));
+    }
+
+    @Test
+    public void callerThreadProcessesRoutes() throws Exception
+    {
+        this.runFlow("callerThread", "");
+
+        assertEquals(2, RouteTracker.processedRoutes.get());
+        assertTrue(RouteTracker.threadNames.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void callerThreadRespectsMaxConcurrentRoutes() throws Exception
+    {
+        this.runFlow("callerThreadBoundedConcurrency", "");
+
+        assertEquals(4, RouteTracker.processedRoutes.get());
+        assertTrue(String.format("%d routes processed at the same time", RouteTracker.maxActiveRoutes.get()),
+            RouteTracker.maxActiveRoutes.get() <= 2);
+    }
+
     @Test
     public void requestResponseInboundEndpoint() throws Exception
     {
@@ -209,6 +257,49 @@ public class ScatterGatherRouterTestCase extends FunctionalTestCase
         }
     }
 
+    public static class RouteTracker implements MessageProcessor
+    {
+
+        private static final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        private static final AtomicInteger activeRoutes = new AtomicInteger();
+        private static final AtomicInteger maxActiveRoutes = new AtomicInteger();
+        private static final AtomicInteger processedRoutes = new AtomicInteger();
+
+        private static void reset()
+        {
+            threadNames.clear();
+            activeRoutes.set(0);
+            maxActiveRoutes.set(0);
+            processedRoutes.set(0);
+        }
+
+        @Override
+        public MuleEvent process(MuleEvent event) throws MuleException
+        {
+            threadNames.add(Thread.currentThread().getName());
+            int active = activeRoutes.incrementAndGet();
+            int max = maxActiveRoutes.get();
+            while (active > max && !maxActiveRoutes.compareAndSet(max, active))
+            {
+                max = maxActiveRoutes.get();
+            }
+            try
+            {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                activeRoutes.decrementAndGet();
+                processedRoutes.incrementAndGet();
+            }
+            return event;
+        }
+    }
+
     public static class FailingAggregationStrategy implements AggregationStrategy
     {
 
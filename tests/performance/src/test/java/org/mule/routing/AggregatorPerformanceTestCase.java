@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.routing;
+
+import org.mule.DefaultMuleEvent;
+import org.mule.DefaultMuleMessage;
+import org.mule.MessageExchangePattern;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.MuleMessage;
+import org.mule.api.endpoint.InboundEndpoint;
+import org.mule.api.processor.MessageProcessor;
+import org.mule.api.service.Service;
+import org.mule.tck.MuleTestUtils;
+import org.mule.tck.SensingNullMessageProcessor;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+import org.mule.tck.testmodels.fruit.Apple;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Processes complete correlation groups from several threads at the same time, so the throughput
+ * of the aggregators can be compared as the number of threads grows.
+ */
+public class AggregatorPerformanceTestCase extends AbstractMuleContextTestCase
+{
+
+    private static final int GROUP_SIZE = 3;
+    private static final int GROUPS_PER_INVOCATION = 100;
+
+    @Rule
+    public ContiPerfRule rule = new ContiPerfRule();
+
+    private final AtomicLong groupSequence = new AtomicLong();
+    private Service service;
+    private InboundEndpoint endpoint;
+    private SimpleCollectionAggregator collectionAggregator;
+    private Resequencer resequencer;
+
+    public AggregatorPerformanceTestCase()
+    {
+        setStartContext(true);
+    }
+
+    @Override
+    public int getTestTimeoutSecs()
+    {
+        return 120;
+    }
+
+    @Before
+    public void before() throws Exception
+    {
+        service = getTestService("test", Apple.class);
+        endpoint = MuleTestUtils.getTestInboundEndpoint(MessageExchangePattern.ONE_WAY, muleContext);
+
+        collectionAggregator = new SimpleCollectionAggregator();
+        collectionAggregator.setListener(new SensingNullMessageProcessor());
+        collectionAggregator.setMuleContext(muleContext);
+        collectionAggregator.setFlowConstruct(service);
+        collectionAggregator.initialise();
+
+        resequencer = new Resequencer();
+        resequencer.setListener(new SensingNullMessageProcessor());
+        resequencer.setMuleContext(muleContext);
+        resequencer.setFlowConstruct(service);
+        resequencer.initialise();
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 1, warmUp = 5000)
+    public void collectionAggregatorSingleThread() throws Exception
+    {
+        processGroups(collectionAggregator);
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 4, warmUp = 5000)
+    public void collectionAggregatorFourThreads() throws Exception
+    {
+        processGroups(collectionAggregator);
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 16, warmUp = 5000)
+    public void collectionAggregatorSixteenThreads() throws Exception
+    {
+        processGroups(collectionAggregator);
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 1, warmUp = 5000)
+    public void resequencerSingleThread() throws Exception
+    {
+        processGroups(resequencer);
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 4, warmUp = 5000)
+    public void resequencerFourThreads() throws Exception
+    {
+        processGroups(resequencer);
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 16, warmUp = 5000)
+    public void resequencerSixteenThreads() throws Exception
+    {
+        processGroups(resequencer);
+    }
+
+    private void processGroups(MessageProcessor aggregator) throws MuleException
+    {
+        for (int i = 0; i < GROUPS_PER_INVOCATION; i++)
+        {
+            String groupId = "group-" + groupSequence.incrementAndGet();
+            for (int j = GROUP_SIZE; j > 0; j--)
+            {
+                MuleMessage message = new DefaultMuleMessage("event " + j, muleContext);
+                message.setCorrelationId(groupId);
+                message.setCorrelationGroupSize(GROUP_SIZE);
+                message.setCorrelationSequence(j);
+                MuleEvent event = new DefaultMuleEvent(message, endpoint, service);
+                aggregator.process(event);
+            }
+        }
+    }
+}
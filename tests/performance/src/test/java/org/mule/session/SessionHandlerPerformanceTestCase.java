@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.session;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.api.MuleSession;
+import org.mule.api.config.MuleProperties;
+import org.mule.api.transport.SessionHandler;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+
+import java.util.Date;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Compares the cost of storing a session in a message and reading it back with the
+ * different session handlers
+ */
+public class SessionHandlerPerformanceTestCase extends AbstractMuleContextTestCase
+{
+
+    @Rule
+    public ContiPerfRule rule = new ContiPerfRule();
+
+    @Override
+    public int getTestTimeoutSecs()
+    {
+        return 120;
+    }
+
+    @Test
+    @PerfTest(duration = 30000, threads = 1, warmUp = 5000)
+    public void serializeAndEncode() throws Exception
+    {
+        roundTrip(new SerializeAndEncodeSessionHandler());
+    }
+
+    @Test
+    @PerfTest(duration = 30000, threads = 1, warmUp = 5000)
+    public void serializeOnly() throws Exception
+    {
+        roundTrip(new SerializeOnlySessionHandler());
+    }
+
+    @Test
+    @PerfTest(duration = 30000, threads = 1, warmUp = 5000)
+    public void binary() throws Exception
+    {
+        roundTrip(new BinarySessionHandler());
+    }
+
+    private void roundTrip(SessionHandler handler) throws Exception
+    {
+        MuleSession session = createSession();
+        for (int i = 0; i < 1000; i++)
+        {
+            DefaultMuleMessage message = new DefaultMuleMessage("data", muleContext);
+            handler.storeSessionInfoToMessage(session, message);
+            message.setInboundProperty(MuleProperties.MULE_SESSION_PROPERTY, message.removeProperty(MuleProperties.MULE_SESSION_PROPERTY));
+            handler.retrieveSessionInfoFromMessage(message);
+        }
+    }
+
+    private MuleSession createSession()
+    {
+        MuleSession session = new DefaultMuleSession();
+        for (int i = 0; i < 20; i++)
+        {
+            session.setProperty("stringVar" + i, "value of session variable " + i);
+            session.setProperty("numberVar" + i, (long) i);
+        }
+        session.setProperty("timestamp", new Date());
+        return session;
+    }
+}
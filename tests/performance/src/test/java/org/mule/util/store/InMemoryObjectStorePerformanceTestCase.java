@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.util.store;
+
+import org.mule.api.store.ObjectStoreException;
+import org.mule.tck.junit4.AbstractMuleTestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Measures key lookups and store/remove cycles on a large {@link InMemoryObjectStore}, which is
+ * the typical usage of idempotent filters and correlation stores.
+ */
+public class InMemoryObjectStorePerformanceTestCase extends AbstractMuleTestCase
+{
+    private static final int STORE_SIZE = 100000;
+
+    @Rule
+    public ContiPerfRule rule = new ContiPerfRule();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private InMemoryObjectStore<String> store;
+
+    @Override
+    public int getTestTimeoutSecs()
+    {
+        return 120;
+    }
+
+    @Before
+    public void before() throws Exception
+    {
+        store = new InMemoryObjectStore<String>();
+        store.setMaxEntries(-1);
+        store.setExpirationInterval(Integer.MAX_VALUE);
+        store.initialise();
+
+        for (int i = 0; i < STORE_SIZE; i++)
+        {
+            store.store("key" + i, "value" + i);
+        }
+    }
+
+    @After
+    public void after()
+    {
+        store.dispose();
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 1, warmUp = 5000)
+    public void containsSingleThread() throws ObjectStoreException
+    {
+        lookup();
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 20, warmUp = 5000)
+    public void containsTwentyThreads() throws ObjectStoreException
+    {
+        lookup();
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 1, warmUp = 5000)
+    public void storeAndRemoveSingleThread() throws ObjectStoreException
+    {
+        storeAndRemove();
+    }
+
+    @Test
+    @PerfTest(duration = 15000, threads = 20, warmUp = 5000)
+    public void storeAndRemoveTwentyThreads() throws ObjectStoreException
+    {
+        storeAndRemove();
+    }
+
+    private void lookup() throws ObjectStoreException
+    {
+        for (int i = 0; i < 1000; i++)
+        {
+            String key = "key" + (sequence.incrementAndGet() % STORE_SIZE);
+            if (store.contains(key))
+            {
+                store.retrieve(key);
+            }
+        }
+    }
+
+    private void storeAndRemove() throws ObjectStoreException
+    {
+        for (int i = 0; i < 1000; i++)
+        {
+            String key = "new" + sequence.incrementAndGet();
+            store.store(key, key);
+            store.remove(key);
+        }
+    }
+}
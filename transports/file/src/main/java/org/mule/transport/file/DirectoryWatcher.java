@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.file;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps an index of the files waiting to be processed in a directory, updated from the events
+ * of a {@link WatchService} instead of listing the directory on every poll.
+ * <p/>
+ * The directory is fully scanned when the watcher starts, when the watch service reports that
+ * events were lost and every <code>reconciliationInterval</code> milliseconds, so files missed
+ * by the watch service are picked up eventually. Files stay in the index until they are
+ * deleted or moved out of the directory, so a file that can't be processed yet (for instance
+ * because it is not old enough or still being written) is returned again on the next poll.
+ * <p/>
+ * Only the thread polling the directory should use a watcher.
+ */
+public class DirectoryWatcher
+{
+
+    protected final transient Log logger = LogFactory.getLog(getClass());
+
+    private final File directory;
+    private final boolean recursive;
+    private final FilenameFilter filter;
+    private final long reconciliationInterval;
+
+    private WatchService watchService;
+    private final Map<WatchKey, File> watchedDirectories = new HashMap<WatchKey, File>();
+    private final Set<File> pendingFiles = new LinkedHashSet<File>();
+    private boolean scanRequired = true;
+    private long lastScan = 0;
+
+    /**
+     * @param filter accepts the files to index, null to index all of them
+     * @param reconciliationInterval milliseconds between full scans of the directory, 0 to
+     *            only scan it when the watch service loses events
+     */
+    public DirectoryWatcher(File directory, boolean recursive, FilenameFilter filter, long reconciliationInterval)
+    {
+        this.directory = directory;
+        this.recursive = recursive;
+        this.filter = filter;
+        this.reconciliationInterval = reconciliationInterval;
+    }
+
+    public synchronized void start() throws IOException
+    {
+        watchService = directory.toPath().getFileSystem().newWatchService();
+        scanRequired = true;
+    }
+
+    public synchronized void stop()
+    {
+        if (watchService == null)
+        {
+            return;
+        }
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            logger.debug("Failed to close watch service of " + directory, e);
+        }
+        watchService = null;
+        watchedDirectories.clear();
+        pendingFiles.clear();
+    }
+
+    /**
+     * Applies the changes reported since the last call and returns the files waiting to be
+     * processed, in the order they were found.
+     */
+    public synchronized List<File> getFiles() throws IOException
+    {
+        if (watchService == null)
+        {
+            return new ArrayList<File>();
+        }
+        try
+        {
+            processEvents();
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            return new ArrayList<File>();
+        }
+
+        if (scanRequired || (reconciliationInterval > 0 && System.currentTimeMillis() - lastScan >= reconciliationInterval))
+        {
+            scan();
+        }
+        return new ArrayList<File>(pendingFiles);
+    }
+
+    /**
+     * Removes a file from the index, used when the file is found to be gone before the watch
+     * service reports it.
+     */
+    public synchronized void forget(File file)
+    {
+        pendingFiles.remove(file);
+    }
+
+    synchronized int getPendingCount()
+    {
+        return pendingFiles.size();
+    }
+
+    private void processEvents()
+    {
+        WatchKey key;
+        while ((key = watchService.poll()) != null)
+        {
+            File watchedDirectory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == OVERFLOW)
+                {
+                    scanRequired = true;
+                }
+                else if (watchedDirectory != null)
+                {
+                    File file = new File(watchedDirectory, ((Path) event.context()).toString());
+                    if (event.kind() == ENTRY_CREATE)
+                    {
+                        fileCreated(watchedDirectory, file);
+                    }
+                    else if (event.kind() == ENTRY_DELETE)
+                    {
+                        pendingFiles.remove(file);
+                    }
+                }
+            }
+            if (!key.reset())
+            {
+                // the directory is gone or can't be watched anymore
+                watchedDirectories.remove(key);
+                scanRequired = true;
+            }
+        }
+    }
+
+    private void fileCreated(File parent, File file)
+    {
+        if (file.isDirectory())
+        {
+            if (recursive)
+            {
+                // files may have been created before the directory is registered
+                try
+                {
+                    scanDirectory(file, pendingFiles);
+                }
+                catch (IOException e)
+                {
+                    logger.warn("Failed to watch directory " + file + ", it will be retried on the next scan", e);
+                    scanRequired = true;
+                }
+            }
+        }
+        else if (accept(parent, file))
+        {
+            pendingFiles.add(file);
+        }
+    }
+
+    private void scan() throws IOException
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Scanning directory " + directory);
+        }
+        // the flag is cleared first so events lost during the scan cause a new one
+        scanRequired = false;
+        Set<File> files = new LinkedHashSet<File>();
+        scanDirectory(directory, files);
+        pendingFiles.retainAll(files);
+        pendingFiles.addAll(files);
+        lastScan = System.currentTimeMillis();
+    }
+
+    private void scanDirectory(File currentDirectory, Set<File> discoveredFiles) throws IOException
+    {
+        // registered before listing, so no file created meanwhile goes unnoticed. Registering a
+        // directory again returns the key it already has.
+        WatchKey key = currentDirectory.toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+        watchedDirectories.put(key, currentDirectory);
+
+        File[] files = currentDirectory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        for (File file : files)
+        {
+            if (file.isDirectory())
+            {
+                if (recursive)
+                {
+                    scanDirectory(file, discoveredFiles);
+                }
+            }
+            else if (accept(currentDirectory, file))
+            {
+                discoveredFiles.add(file);
+            }
+        }
+    }
+
+    private boolean accept(File parent, File file)
+    {
+        return filter == null || filter.accept(parent, file.getName());
+    }
+}
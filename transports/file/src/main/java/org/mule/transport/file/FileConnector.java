@@ -74,6 +74,8 @@ public class FileConnector extends AbstractConnector
 
     public static final long DEFAULT_POLLING_FREQUENCY = 1000;
 
+    public static final long DEFAULT_WATCH_RECONCILIATION_INTERVAL = 60000;
+
     /**
      * Time in milliseconds to poll. On each poll the poll() method is called
      */
@@ -111,6 +113,22 @@ public class FileConnector extends AbstractConnector
 
     private boolean recursive = false;
 
+    /**
+     * Whether receivers keep track of new files with a watch service instead of listing the
+     * directory on every poll
+     */
+    private boolean watchDirectory = false;
+
+    /**
+     * Time in milliseconds between full scans of a watched directory
+     */
+    private long watchReconciliationInterval = DEFAULT_WATCH_RECONCILIATION_INTERVAL;
+
+    /**
+     * Maximum number of files processed on each poll, 0 for no limit
+     */
+    private int maxFilesPerPoll = 0;
+
     public FileConnector(MuleContext context)
     {
         super(context);
@@ -628,4 +646,34 @@ public class FileConnector extends AbstractConnector
     {
         this.recursive = recursive;
     }
+
+    public boolean isWatchDirectory()
+    {
+        return watchDirectory;
+    }
+
+    public void setWatchDirectory(boolean watchDirectory)
+    {
+        this.watchDirectory = watchDirectory;
+    }
+
+    public long getWatchReconciliationInterval()
+    {
+        return watchReconciliationInterval;
+    }
+
+    public void setWatchReconciliationInterval(long watchReconciliationInterval)
+    {
+        this.watchReconciliationInterval = watchReconciliationInterval;
+    }
+
+    public int getMaxFilesPerPoll()
+    {
+        return maxFilesPerPoll;
+    }
+
+    public void setMaxFilesPerPoll(int maxFilesPerPoll)
+    {
+        this.maxFilesPerPoll = maxFilesPerPoll;
+    }
 }
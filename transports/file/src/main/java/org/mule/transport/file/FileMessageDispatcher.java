@@ -23,6 +23,7 @@ import org.mule.util.StringUtils;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.InputStream;
@@ -74,6 +75,25 @@ public class FileMessageDispatcher extends AbstractMessageDispatcher
             {
                 ((OutputHandler) data).write(event, fos);
             }
+            else if (data instanceof FileInputStream)
+            {
+                // the content goes from file to file without being copied to the heap
+                FileInputStream is = (FileInputStream) data;
+                IOUtils.copyLarge(is.getChannel(), fos.getChannel());
+                is.close();
+            }
+            else if (data instanceof File && ((File) data).isFile())
+            {
+                FileInputStream is = new FileInputStream((File) data);
+                try
+                {
+                    IOUtils.copyLarge(is.getChannel(), fos.getChannel());
+                }
+                finally
+                {
+                    is.close();
+                }
+            }
             else
             {
                 InputStream is = event.transformMessage(DataTypeFactory.create(InputStream.class));
@@ -45,6 +45,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 
@@ -77,6 +78,7 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
     private LockFactory lockFactory;
     private boolean poolOnPrimaryInstanceOnly;
     private ObjectStore<String> filesBeingProcessingObjectStore;
+    private volatile DirectoryWatcher directoryWatcher = null;
 
     public FileMessageReceiver(Connector connector,
                                FlowConstruct flowConstruct,
@@ -159,6 +161,20 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
             {
                 logger.debug("Listening on endpointUri: " + readDirectory.getAbsolutePath());
             }
+
+            if (fileConnector.isWatchDirectory())
+            {
+                DirectoryWatcher watcher = new DirectoryWatcher(readDirectory, fileConnector.isRecursive(), new FilenameFilter()
+                {
+                    @Override
+                    public boolean accept(File dir, String name)
+                    {
+                        return acceptFile(dir, new File(dir, name));
+                    }
+                }, fileConnector.getWatchReconciliationInterval());
+                watcher.start();
+                directoryWatcher = watcher;
+            }
         }
 
         if (moveDir != null)
@@ -174,7 +190,12 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
     @Override
     protected void doDisconnect() throws Exception
     {
-        // template method
+        DirectoryWatcher watcher = directoryWatcher;
+        if (watcher != null)
+        {
+            directoryWatcher = null;
+            watcher.stop();
+        }
     }
 
     @Override
@@ -188,16 +209,14 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
     {
         try
         {
+            DirectoryWatcher watcher = directoryWatcher;
             List<File> files = this.listFiles();
             if (logger.isDebugEnabled())
             {
                 logger.debug("Files: " + files.toString());
             }
-            Comparator<File> comparator = getComparator();
-            if (comparator != null)
-            {
-                Collections.sort(files, comparator);
-            }
+            // the rest is picked up by the next polls
+            files = selectFiles(files, getComparator(), fileConnector.getMaxFilesPerPoll());
             for (File file : files)
             {
                 if (getLifecycleState().isStopping())
@@ -241,6 +260,10 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
                         }
                     }
                 }
+                else if (watcher != null)
+                {
+                    watcher.forget(file);
+                }
             }
         }
         catch (Exception e)
@@ -249,6 +272,45 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
         }
     }
 
+    /**
+     * Selects the files to process in a poll, in the order of the comparator if there is one.
+     * When there are more than maxFiles, the first ones are picked with a bounded heap, so a
+     * large directory is not sorted on every poll.
+     *
+     * @param maxFiles the maximum number of files to select, 0 or less for no limit
+     */
+    static List<File> selectFiles(List<File> files, Comparator<File> comparator, int maxFiles)
+    {
+        boolean limited = maxFiles > 0 && files.size() > maxFiles;
+        if (comparator == null)
+        {
+            return limited ? files.subList(0, maxFiles) : files;
+        }
+        if (!limited)
+        {
+            Collections.sort(files, comparator);
+            return files;
+        }
+
+        // the last of the files selected so far is on top of the heap
+        PriorityQueue<File> selected = new PriorityQueue<File>(maxFiles, Collections.reverseOrder(comparator));
+        for (File file : files)
+        {
+            if (selected.size() < maxFiles)
+            {
+                selected.add(file);
+            }
+            else if (comparator.compare(file, selected.peek()) < 0)
+            {
+                selected.poll();
+                selected.add(file);
+            }
+        }
+        List<File> result = new ArrayList<File>(selected);
+        Collections.sort(result, comparator);
+        return result;
+    }
+
     @Override
     protected boolean pollOnPrimaryInstanceOnly()
     {
@@ -666,7 +728,8 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
     }
 
     /**
-     * Get a list of files to be processed.
+     * Get a list of files to be processed. When the connector watches the directory the files
+     * come from the index kept by the {@link DirectoryWatcher} instead of listing the directory.
      *
      * @return an array of files to be processed.
      * @throws org.mule.api.MuleException which will wrap any other exceptions or
@@ -676,6 +739,11 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
     {
         try
         {
+            DirectoryWatcher watcher = directoryWatcher;
+            if (watcher != null)
+            {
+                return watcher.getFiles();
+            }
             List<File> files = new ArrayList<File>();
             this.basicListFiles(readDirectory, files);
             return (files.isEmpty() ? NO_FILES : files);
@@ -705,27 +773,29 @@ public class FileMessageReceiver extends AbstractPollingMessageReceiver
                     basicListFiles(file, discoveredFiles);
                 }
             }
-            else
+            else if (acceptFile(currentDirectory, file))
             {
-                boolean addFile = true;
-
-                if (fileFilter != null)
-                {
-                    addFile = fileFilter.accept(file);
-                }
-                else if (filenameFilter != null)
-                {
-                    addFile = filenameFilter.accept(currentDirectory, file.getName());
-                }
-
-                if (addFile)
-                {
-                    discoveredFiles.add(file);
-                }
+                discoveredFiles.add(file);
             }
         }
     }
 
+    /**
+     * Applies the filter of the endpoint, if any, to a file found in a directory.
+     */
+    protected boolean acceptFile(File currentDirectory, File file)
+    {
+        if (fileFilter != null)
+        {
+            return fileFilter.accept(file);
+        }
+        else if (filenameFilter != null)
+        {
+            return filenameFilter.accept(currentDirectory, file.getName());
+        }
+        return true;
+    }
+
     /**
      * Exception tolerant roll back method
      *
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.probe.PollingProber;
+import org.mule.tck.probe.Probe;
+import org.mule.tck.probe.Prober;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryWatcherTestCase extends AbstractMuleTestCase
+{
+
+    // some platforms only have a polling watch service, which takes a few seconds to notice changes
+    private static final int WATCH_TIMEOUT = 15000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DirectoryWatcher watcher;
+
+    @After
+    public void stopWatcher()
+    {
+        if (watcher != null)
+        {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    public void scansExistingFilesOnStart() throws Exception
+    {
+        File existing = temporaryFolder.newFile("existing.txt");
+        watcher = startWatcher(false, null);
+
+        assertEquals(1, watcher.getFiles().size());
+        assertTrue(watcher.getFiles().contains(existing));
+    }
+
+    @Test
+    public void indexesCreatedFiles() throws Exception
+    {
+        watcher = startWatcher(false, null);
+        assertTrue(watcher.getFiles().isEmpty());
+
+        File created = temporaryFolder.newFile("created.txt");
+
+        assertEventuallyPending(created);
+    }
+
+    @Test
+    public void removesDeletedFiles() throws Exception
+    {
+        final File file = temporaryFolder.newFile("deleted.txt");
+        watcher = startWatcher(false, null);
+        assertTrue(watcher.getFiles().contains(file));
+
+        assertTrue(file.delete());
+
+        new PollingProber(WATCH_TIMEOUT, 100).check(new Probe()
+        {
+            @Override
+            public boolean isSatisfied()
+            {
+                return getFiles().isEmpty();
+            }
+
+            @Override
+            public String describeFailure()
+            {
+                return "Deleted file is still pending";
+            }
+        });
+    }
+
+    @Test
+    public void keepsFilesUntilTheyAreGone() throws Exception
+    {
+        File file = temporaryFolder.newFile("kept.txt");
+        watcher = startWatcher(false, null);
+
+        assertTrue(watcher.getFiles().contains(file));
+        assertTrue(watcher.getFiles().contains(file));
+
+        watcher.forget(file);
+        assertFalse(watcher.getFiles().contains(file));
+    }
+
+    @Test
+    public void appliesFilter() throws Exception
+    {
+        temporaryFolder.newFile("ignored.tmp");
+        File accepted = temporaryFolder.newFile("accepted.txt");
+        watcher = startWatcher(false, new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith(".txt");
+            }
+        });
+
+        assertEquals(1, watcher.getFiles().size());
+        assertTrue(watcher.getFiles().contains(accepted));
+    }
+
+    @Test
+    public void ignoresSubdirectoriesIfNotRecursive() throws Exception
+    {
+        File subdirectory = temporaryFolder.newFolder("sub");
+        assertTrue(new File(subdirectory, "nested.txt").createNewFile());
+        watcher = startWatcher(false, null);
+
+        assertTrue(watcher.getFiles().isEmpty());
+    }
+
+    @Test
+    public void watchesNewSubdirectoriesIfRecursive() throws Exception
+    {
+        watcher = startWatcher(true, null);
+        assertTrue(watcher.getFiles().isEmpty());
+
+        File subdirectory = temporaryFolder.newFolder("sub");
+        File nested = new File(subdirectory, "nested.txt");
+        assertTrue(nested.createNewFile());
+
+        assertEventuallyPending(nested);
+    }
+
+    @Test
+    public void returnsNoFilesOnceStopped() throws Exception
+    {
+        temporaryFolder.newFile("existing.txt");
+        watcher = startWatcher(false, null);
+
+        watcher.stop();
+
+        assertTrue(watcher.getFiles().isEmpty());
+    }
+
+    private DirectoryWatcher startWatcher(boolean recursive, FilenameFilter filter) throws IOException
+    {
+        DirectoryWatcher directoryWatcher = new DirectoryWatcher(temporaryFolder.getRoot(), recursive, filter, 0);
+        directoryWatcher.start();
+        return directoryWatcher;
+    }
+
+    private void assertEventuallyPending(final File file)
+    {
+        Prober prober = new PollingProber(WATCH_TIMEOUT, 100);
+        prober.check(new Probe()
+        {
+            @Override
+            public boolean isSatisfied()
+            {
+                return getFiles().contains(file);
+            }
+
+            @Override
+            public String describeFailure()
+            {
+                return "File " + file + " was not indexed";
+            }
+        });
+    }
+
+    private List<File> getFiles()
+    {
+        try
+        {
+            return watcher.getFiles();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -64,6 +64,9 @@ public class FileNamespaceHandlerTestCase extends AbstractServiceAndFlowTestCase
         assertEquals(true, c.isSerialiseObjects());
         assertEquals(false, c.isStreaming());
         assertTrue(c.isRecursive());
+        assertTrue(c.isWatchDirectory());
+        assertEquals(30000, c.getWatchReconciliationInterval());
+        assertEquals(50, c.getMaxFilesPerPoll());
 
         // Not implemented yet, see MULE-2671
         // assertNull(c.getComparator());
@@ -88,6 +91,9 @@ public class FileNamespaceHandlerTestCase extends AbstractServiceAndFlowTestCase
         assertTrue(c.isConnected());
         assertTrue(c.isStarted());
         assertFalse(c.isRecursive());
+        assertFalse(c.isWatchDirectory());
+        assertEquals(FileConnector.DEFAULT_WATCH_RECONCILIATION_INTERVAL, c.getWatchReconciliationInterval());
+        assertEquals(0, c.getMaxFilesPerPoll());
     }
 
     @Test
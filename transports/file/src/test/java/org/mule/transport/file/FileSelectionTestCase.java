@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.file;
+
+import static org.junit.Assert.assertEquals;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.size.SmallTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SmallTest
+public class FileSelectionTestCase extends AbstractMuleTestCase
+{
+
+    private static final Comparator<File> BY_NAME = new Comparator<File>()
+    {
+        @Override
+        public int compare(File first, File second)
+        {
+            return first.getName().compareTo(second.getName());
+        }
+    };
+
+    @Test
+    public void selectsFirstFilesInOrder()
+    {
+        List<File> files = files("d", "b", "e", "a", "c");
+
+        assertEquals(files("a", "b"), FileMessageReceiver.selectFiles(files, BY_NAME, 2));
+    }
+
+    @Test
+    public void sortsAllFilesWithoutLimit()
+    {
+        List<File> files = files("c", "a", "b");
+
+        assertEquals(files("a", "b", "c"), FileMessageReceiver.selectFiles(files, BY_NAME, 0));
+        assertEquals(files("a", "b", "c"), FileMessageReceiver.selectFiles(files("c", "a", "b"), BY_NAME, 3));
+    }
+
+    @Test
+    public void keepsListingOrderWithoutComparator()
+    {
+        List<File> files = files("c", "a", "b");
+
+        assertEquals(files("c", "a"), FileMessageReceiver.selectFiles(files, null, 2));
+    }
+
+    @Test
+    public void selectsSameFilesAsSorting()
+    {
+        List<File> files = new ArrayList<File>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++)
+        {
+            files.add(new File("file" + random.nextInt(100000)));
+        }
+        List<File> sorted = new ArrayList<File>(files);
+        Collections.sort(sorted, BY_NAME);
+
+        assertEquals(sorted.subList(0, 10), FileMessageReceiver.selectFiles(files, BY_NAME, 10));
+    }
+
+    private static List<File> files(String... names)
+    {
+        List<File> files = new ArrayList<File>();
+        for (String name : names)
+        {
+            files.add(new File(name));
+        }
+        return files;
+    }
+}
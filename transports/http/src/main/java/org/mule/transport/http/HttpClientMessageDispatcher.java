@@ -157,7 +157,7 @@ public class HttpClientMessageDispatcher extends AbstractMessageDispatcher
 
     }
 
-    private void processMuleSession(MuleEvent event, HttpMethod httpMethod)
+    protected void processMuleSession(MuleEvent event, HttpMethod httpMethod)
     {
         String muleSession = event.getMessage().getOutboundProperty(MuleProperties.MULE_SESSION_PROPERTY);
 
@@ -334,7 +334,15 @@ public class HttpClientMessageDispatcher extends AbstractMessageDispatcher
         {
             throw new HttpResponseException(method.getStatusText(), method.getStatusCode());
         }
-        OutboundEndpoint out = new EndpointURIEndpointBuilder(locationHeader.getValue(),
+        return redirect(locationHeader.getValue(), event);
+    }
+
+    /**
+     * Sends the event to the location a response redirected to.
+     */
+    protected MuleMessage redirect(String location, MuleEvent event) throws MuleException
+    {
+        OutboundEndpoint out = new EndpointURIEndpointBuilder(location,
             getEndpoint().getMuleContext()).buildOutboundEndpoint();
         MuleEvent result = out.process(event);
         if (result != null && !VoidMuleEvent.getInstance().equals(result))
@@ -372,6 +380,14 @@ public class HttpClientMessageDispatcher extends AbstractMessageDispatcher
      * @return if an exception should be thrown
      */
     protected boolean returnException(MuleEvent event, HttpMethod httpMethod)
+    {
+        return returnException(event, httpMethod.getStatusCode());
+    }
+
+    /**
+     * @see #returnException(MuleEvent, HttpMethod)
+     */
+    protected boolean returnException(MuleEvent event, int statusCode)
     {
         String disableCheck = event.getMessage().getInvocationProperty(HttpConnector.HTTP_DISABLE_STATUS_CODE_EXCEPTION_CHECK);
         if (disableCheck == null)
@@ -389,7 +405,12 @@ public class HttpClientMessageDispatcher extends AbstractMessageDispatcher
             throwException = !BooleanUtils.toBoolean(disableCheck);
         }
 
-        return httpMethod.getStatusCode() >= ERROR_STATUS_CODE_RANGE_START && throwException;
+        return statusCode >= ERROR_STATUS_CODE_RANGE_START && throwException;
+    }
+
+    protected HttpClient getClient()
+    {
+        return client;
     }
 
     protected HostConfiguration getHostConfig(URI uri) throws Exception
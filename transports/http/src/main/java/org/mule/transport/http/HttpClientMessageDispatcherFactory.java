@@ -10,15 +10,22 @@ import org.mule.api.MuleException;
 import org.mule.api.endpoint.OutboundEndpoint;
 import org.mule.api.transport.MessageDispatcher;
 import org.mule.transport.AbstractMessageDispatcherFactory;
+import org.mule.util.StringUtils;
 
 /**
- * Creates a HttpClientMessageDispatcher to make client requests
+ * Creates a HttpClientMessageDispatcher to make client requests, or a
+ * NioHttpClientMessageDispatcher when the connector has nioDispatcher enabled and no proxy
  */
 public class HttpClientMessageDispatcherFactory extends AbstractMessageDispatcherFactory
 {
     /** {@inheritDoc} */
     public MessageDispatcher create(OutboundEndpoint endpoint) throws MuleException
     {
+        HttpConnector connector = (HttpConnector) endpoint.getConnector();
+        if (connector.isNioDispatcher() && StringUtils.isBlank(connector.getProxyHostname()))
+        {
+            return new NioHttpClientMessageDispatcher(endpoint);
+        }
         return new HttpClientMessageDispatcher(endpoint);
     }
 }
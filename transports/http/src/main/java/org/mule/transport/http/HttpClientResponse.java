@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.InputStream;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.StatusLine;
+
+/**
+ * A response received for a request that was not executed through commons-httpclient, as
+ * done by the {@link NioHttpClientMessageDispatcher}. The {@link HttpMuleMessageFactory}
+ * creates messages from it the same way it does from an executed
+ * {@link org.apache.commons.httpclient.HttpMethod}, using the body stream as payload.
+ */
+public class HttpClientResponse
+{
+
+    private final String method;
+    private final String uri;
+    private final StatusLine statusLine;
+    private final Header[] headers;
+    private final InputStream body;
+
+    public HttpClientResponse(String method, String uri, StatusLine statusLine, Header[] headers, InputStream body)
+    {
+        this.method = method;
+        this.uri = uri;
+        this.statusLine = statusLine;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * @return the method of the request this is the response for
+     */
+    public String getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * @return the URI of the request this is the response for
+     */
+    public String getUri()
+    {
+        return uri;
+    }
+
+    public StatusLine getStatusLine()
+    {
+        return statusLine;
+    }
+
+    public int getStatusCode()
+    {
+        return statusLine.getStatusCode();
+    }
+
+    public String getStatusText()
+    {
+        return statusLine.getReasonPhrase();
+    }
+
+    public Header[] getHeaders()
+    {
+        return headers;
+    }
+
+    /**
+     * @return the first header with the given name, ignoring case, or null if there is none
+     */
+    public Header getFirstHeader(String name)
+    {
+        for (Header header : headers)
+        {
+            if (header.getName().equalsIgnoreCase(name))
+            {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the response body, which is streamed while it is being received, or null if the
+     *         response has no body
+     */
+    public InputStream getBody()
+    {
+        return body;
+    }
+
+    @Override
+    public String toString()
+    {
+        return method + " " + uri + " " + statusLine;
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Watches HTTP connections that are waiting for a request without holding a thread for each one.
+ * <p/>
+ * Each connection is read in non blocking mode until the whole request line and headers have been
+ * received. The connection is then switched back to blocking mode and handed over to a
+ * {@link NioHttpRequestDispatcherWork}, which reads the rest of the request and processes it as a
+ * regular {@link HttpServerConnection}. Connections that stay idle longer than the connector
+ * keep alive timeout are closed.
+ */
+class HttpConnectionSelector implements Runnable
+{
+
+    private static final Log logger = LogFactory.getLog(HttpConnectionSelector.class);
+
+    private static final int SELECT_TIMEOUT = 1000;
+    private static final int INITIAL_HEAD_BUFFER_SIZE = 2048;
+    private static final int MAX_HEAD_BUFFER_SIZE = 64 * 1024;
+
+    private final HttpConnector httpConnector;
+    private final Executor requestHandOffExecutor;
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<SocketChannel>();
+    private volatile boolean running = true;
+    private long lastIdleCheck = System.currentTimeMillis();
+
+    HttpConnectionSelector(HttpConnector httpConnector, Executor requestHandOffExecutor) throws IOException
+    {
+        this.httpConnector = httpConnector;
+        this.requestHandOffExecutor = requestHandOffExecutor;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Starts watching a connection until it receives a request. Can be called from any thread.
+     */
+    void register(SocketChannel channel)
+    {
+        if (!running)
+        {
+            closeQuietly(channel);
+            return;
+        }
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (running)
+            {
+                selector.select(SELECT_TIMEOUT);
+                registerPendingChannels();
+
+                List<SelectionKey> completedKeys = readSelectedKeys();
+                if (!completedKeys.isEmpty())
+                {
+                    dispatch(completedKeys);
+                }
+
+                closeIdleConnections();
+            }
+        }
+        catch (ClosedSelectorException e)
+        {
+            // Selector was closed while stopping
+        }
+        catch (Exception e)
+        {
+            httpConnector.getMuleContext().getExceptionListener().handleException(e);
+        }
+        finally
+        {
+            running = false;
+            closeAll();
+        }
+    }
+
+    private void registerPendingChannels()
+    {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null)
+        {
+            try
+            {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new RequestHead());
+            }
+            catch (IOException e)
+            {
+                logger.debug("Closing HTTP connection that could not be registered: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * @return the keys of the connections that have received a whole request head
+     */
+    private List<SelectionKey> readSelectedKeys()
+    {
+        List<SelectionKey> completedKeys = new ArrayList<SelectionKey>();
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext())
+        {
+            SelectionKey key = selectedKeys.next();
+            selectedKeys.remove();
+            if (!key.isValid())
+            {
+                continue;
+            }
+
+            SocketChannel channel = (SocketChannel) key.channel();
+            RequestHead head = (RequestHead) key.attachment();
+            try
+            {
+                if (head.read(channel))
+                {
+                    key.cancel();
+                    completedKeys.add(key);
+                }
+            }
+            catch (IOException e)
+            {
+                logger.debug("Closing HTTP connection after read failure: " + e.getMessage());
+                key.cancel();
+                closeQuietly(channel);
+            }
+        }
+        return completedKeys;
+    }
+
+    private void dispatch(List<SelectionKey> completedKeys) throws IOException
+    {
+        // Cancelled keys are only deregistered on the next selection, the channels can't
+        // be switched back to blocking mode until then
+        selector.selectNow();
+
+        for (SelectionKey key : completedKeys)
+        {
+            SocketChannel channel = (SocketChannel) key.channel();
+            RequestHead head = (RequestHead) key.attachment();
+            try
+            {
+                channel.configureBlocking(true);
+                requestHandOffExecutor.execute(new NioHttpRequestDispatcherWork(httpConnector, channel, head.getData(), this));
+            }
+            catch (IOException e)
+            {
+                logger.debug("Closing HTTP connection that could not be dispatched: " + e.getMessage());
+                closeQuietly(channel);
+            }
+            catch (RejectedExecutionException e)
+            {
+                logger.warn("Closing HTTP connection since the request could not be dispatched: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void closeIdleConnections()
+    {
+        long keepAliveTimeout = httpConnector.getKeepAliveTimeout();
+        if (keepAliveTimeout <= 0)
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < SELECT_TIMEOUT)
+        {
+            return;
+        }
+        lastIdleCheck = now;
+
+        for (SelectionKey key : selector.keys())
+        {
+            RequestHead head = (RequestHead) key.attachment();
+            if (key.isValid() && now - head.lastActivity > keepAliveTimeout)
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Closing idle HTTP connection: " + key.channel());
+                }
+                key.cancel();
+                closeQuietly((SocketChannel) key.channel());
+            }
+        }
+    }
+
+    /**
+     * Stops watching connections, closing the ones that have not received a request.
+     */
+    void stop()
+    {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll()
+    {
+        try
+        {
+            for (SelectionKey key : selector.keys())
+            {
+                closeQuietly((SocketChannel) key.channel());
+            }
+            selector.close();
+        }
+        catch (Exception e)
+        {
+            logger.debug("(Ignored) Error closing HTTP connection selector: " + e.getMessage());
+        }
+
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null)
+        {
+            closeQuietly(channel);
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("(Ignored) Error closing the socket: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accumulates the data of a request until its request line and headers are complete.
+     */
+    private static class RequestHead
+    {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_HEAD_BUFFER_SIZE);
+        private int scanPosition = 0;
+        private boolean started = false;
+        private long lastActivity = System.currentTimeMillis();
+
+        /**
+         * @return true if the request head is complete, or if it is too big to keep reading it
+         *         without blocking
+         * @throws IOException if the connection fails or is closed by the client
+         */
+        boolean read(SocketChannel channel) throws IOException
+        {
+            if (!buffer.hasRemaining())
+            {
+                ByteBuffer largerBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                largerBuffer.put(buffer);
+                buffer = largerBuffer;
+            }
+
+            int read = channel.read(buffer);
+            if (read < 0)
+            {
+                throw new IOException("Connection closed by client");
+            }
+            lastActivity = System.currentTimeMillis();
+            return isComplete() || (!buffer.hasRemaining() && buffer.capacity() >= MAX_HEAD_BUFFER_SIZE);
+        }
+
+        private boolean isComplete()
+        {
+            byte[] data = buffer.array();
+            int end = buffer.position();
+            for (; scanPosition < end; scanPosition++)
+            {
+                byte current = data[scanPosition];
+                if (!started)
+                {
+                    // Empty lines before the request line are ignored
+                    started = current != '\r' && current != '\n';
+                }
+                else if (current == '\n' && endsWithEmptyLine(data, scanPosition))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean endsWithEmptyLine(byte[] data, int position)
+        {
+            int previous = position - 1;
+            if (previous >= 0 && data[previous] == '\r')
+            {
+                previous--;
+            }
+            return previous >= 0 && data[previous] == '\n';
+        }
+
+        byte[] getData()
+        {
+            byte[] data = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, data, 0, data.length);
+            return data;
+        }
+    }
+}
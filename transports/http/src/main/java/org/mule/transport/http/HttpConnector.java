@@ -26,8 +26,11 @@ import org.mule.transport.MessageDispatcherUtils;
 import org.mule.transport.http.i18n.HttpMessages;
 import org.mule.transport.http.ntlm.NTLMScheme;
 import org.mule.transport.tcp.TcpConnector;
+import org.mule.transport.tcp.TcpServerSocketFactory;
 import org.mule.util.MapUtils;
 import org.mule.util.StringUtils;
+import org.mule.util.concurrent.DaemonThreadFactory;
+import org.mule.util.concurrent.ThreadNameHelper;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -35,6 +38,7 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.URI;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -213,6 +217,18 @@ public class HttpConnector extends TcpConnector
     
     private boolean singleDispatcherPerEndpoint = false;
 
+    private boolean nioReceiver = false;
+
+    private int nioSelectorThreads = 1;
+
+    private boolean nioDispatcher = false;
+
+    private int nioMaxConnectionsPerHost = INT_VALUE_NOT_SET;
+
+    private int nioPipelineDepth = 1;
+
+    private NioHttpClient nioHttpClient;
+
     public HttpConnector(MuleContext context)
     {
         super(context);
@@ -289,6 +305,7 @@ public class HttpConnector extends TcpConnector
     @Override
     protected void doDispose()
     {
+        stopNioHttpClient();
         if (!disableCleanupThread)
         {
             connectionCleaner.shutdown();
@@ -309,6 +326,7 @@ public class HttpConnector extends TcpConnector
     @Override
     protected void doStop() throws MuleException
     {
+        stopNioHttpClient();
         this.connectionManager.dispose();
         this.connectionManager = null;
     }
@@ -452,6 +470,110 @@ public class HttpConnector extends TcpConnector
         this.enableCookies = enableCookies;
     }
 
+    /**
+     * @return true if inbound connections are watched by selector threads while waiting for a
+     *         request, instead of holding a receiver thread for their whole lifetime
+     */
+    public boolean isNioReceiver()
+    {
+        return nioReceiver;
+    }
+
+    public void setNioReceiver(boolean nioReceiver)
+    {
+        this.nioReceiver = nioReceiver;
+    }
+
+    public int getNioSelectorThreads()
+    {
+        return nioSelectorThreads;
+    }
+
+    public void setNioSelectorThreads(int nioSelectorThreads)
+    {
+        if (nioSelectorThreads < 1)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("nioSelectorThreads", nioSelectorThreads).toString());
+        }
+        this.nioSelectorThreads = nioSelectorThreads;
+    }
+
+    /**
+     * @return true if outbound requests are executed over non blocking connections by a
+     *         {@link NioHttpClientMessageDispatcher}
+     */
+    public boolean isNioDispatcher()
+    {
+        return nioDispatcher;
+    }
+
+    public void setNioDispatcher(boolean nioDispatcher)
+    {
+        this.nioDispatcher = nioDispatcher;
+    }
+
+    public int getNioMaxConnectionsPerHost()
+    {
+        return nioMaxConnectionsPerHost;
+    }
+
+    public void setNioMaxConnectionsPerHost(int nioMaxConnectionsPerHost)
+    {
+        if (nioMaxConnectionsPerHost < 1)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("nioMaxConnectionsPerHost", nioMaxConnectionsPerHost).toString());
+        }
+        this.nioMaxConnectionsPerHost = nioMaxConnectionsPerHost;
+    }
+
+    public int getNioPipelineDepth()
+    {
+        return nioPipelineDepth;
+    }
+
+    public void setNioPipelineDepth(int nioPipelineDepth)
+    {
+        if (nioPipelineDepth < 1)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("nioPipelineDepth", nioPipelineDepth).toString());
+        }
+        this.nioPipelineDepth = nioPipelineDepth;
+    }
+
+    /**
+     * @return the client used by {@link NioHttpClientMessageDispatcher}s, created the first
+     *         time it is needed and closed when the connector is stopped
+     */
+    synchronized NioHttpClient getNioHttpClient() throws IOException
+    {
+        if (nioHttpClient == null)
+        {
+            String threadNamePrefix = ThreadNameHelper.getPrefix(muleContext) + "http.client.selector." + getName();
+            NioHttpClient client = new NioHttpClient(new DaemonThreadFactory(threadNamePrefix, getClass().getClassLoader()), nioSelectorThreads);
+            client.setMaxConnectionsPerHost(nioMaxConnectionsPerHost != INT_VALUE_NOT_SET ? nioMaxConnectionsPerHost : dispatchers.getMaxTotal());
+            client.setPipelineDepth(nioPipelineDepth);
+            client.setConnectionTimeout(getConnectionTimeout() != INT_VALUE_NOT_SET ? getConnectionTimeout() : DEFAULT_CONNECTION_TIMEOUT);
+            client.setIdleTimeout(getKeepAliveTimeout());
+            client.setSendBufferSize(getSendBufferSize());
+            client.setReceiveBufferSize(getReceiveBufferSize());
+            client.setLinger(getSocketSoLinger());
+            client.setTcpNoDelay(isSendTcpNoDelay());
+            nioHttpClient = client;
+        }
+        return nioHttpClient;
+    }
+
+    private synchronized void stopNioHttpClient()
+    {
+        if (nioHttpClient != null)
+        {
+            nioHttpClient.stop();
+            nioHttpClient = null;
+        }
+    }
 
     public HttpConnectionManager getClientConnectionManager()
     {
@@ -675,6 +797,19 @@ public class HttpConnector extends TcpConnector
         return super.getServerSocket(uri);
     }
 
+    /**
+     * Creates the server socket used by the NIO receiver. The socket is bound using the same rules
+     * as {@link #getServerSocket(URI)} and can be accepted from both through the channel and through
+     * {@link ServerSocketChannel#socket()}.
+     */
+    protected ServerSocketChannel getServerSocketChannel(URI uri) throws IOException
+    {
+        TcpServerSocketFactory socketFactory = getServerSocketFactory() instanceof TcpServerSocketFactory
+                                               ? (TcpServerSocketFactory) getServerSocketFactory()
+                                               : new TcpServerSocketFactory();
+        return socketFactory.createServerSocketChannel(uri, getReceiveBacklog(), isReuseAddress());
+    }
+
     /**
      * @deprecated Use keepAlive property in the outbound endpoint.
      */
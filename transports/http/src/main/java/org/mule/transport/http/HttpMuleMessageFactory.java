@@ -64,7 +64,7 @@ public class HttpMuleMessageFactory extends AbstractMuleMessageFactory
     @Override
     protected Class<?>[] getSupportedTransportMessageTypes()
     {
-        return new Class[]{HttpRequest.class, HttpMethod.class};
+        return new Class[]{HttpRequest.class, HttpMethod.class, HttpClientResponse.class};
     }
 
     @Override
@@ -78,6 +78,10 @@ public class HttpMuleMessageFactory extends AbstractMuleMessageFactory
         {
             return extractPayloadFromHttpMethod((HttpMethod) transportMessage);
         }
+        else if (transportMessage instanceof HttpClientResponse)
+        {
+            return extractPayloadFromHttpClientResponse((HttpClientResponse) transportMessage);
+        }
         else
         {
             // This should never happen because of the supported type checking
@@ -123,6 +127,19 @@ public class HttpMuleMessageFactory extends AbstractMuleMessageFactory
         }
     }
 
+    protected Object extractPayloadFromHttpClientResponse(HttpClientResponse response)
+    {
+        InputStream body = response.getBody();
+        if (body != null)
+        {
+            return body;
+        }
+        else
+        {
+            return StringUtils.EMPTY;
+        }
+    }
+
     @Override
     protected void addProperties(DefaultMuleMessage message, Object transportMessage) throws Exception
     {
@@ -152,6 +169,15 @@ public class HttpMuleMessageFactory extends AbstractMuleMessageFactory
             statusCode = String.valueOf(httpMethod.getStatusCode());
             headers = convertHeadersToMap(httpMethod.getResponseHeaders(), uri);
         }
+        else if (transportMessage instanceof HttpClientResponse)
+        {
+            HttpClientResponse response = (HttpClientResponse) transportMessage;
+            method = response.getMethod();
+            httpVersion = HttpVersion.parse(response.getStatusLine().getHttpVersion());
+            uri = response.getUri();
+            statusCode = String.valueOf(response.getStatusCode());
+            headers = convertHeadersToMap(response.getHeaders(), uri);
+        }
         else
         {
             // This should never happen because of the supported type checking in our superclass
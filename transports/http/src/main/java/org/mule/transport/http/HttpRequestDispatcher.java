@@ -108,9 +108,7 @@ class HttpRequestDispatcher implements Work
 
                             if (socket != null)
                             {
-                                final Runnable httpRequestDispatcherWork = new HttpRequestDispatcherWork(httpConnector, socket);
-                                // Process each connection in a different thread so we can continue accepting connection right away.
-                                requestHandOffExecutor.execute(httpRequestDispatcherWork);
+                                processConnection(socket);
                             }
                         }
 
@@ -130,6 +128,16 @@ class HttpRequestDispatcher implements Work
         }
     }
 
+    /**
+     * Hands over an accepted connection so we can continue accepting connections right away.
+     */
+    protected void processConnection(Socket socket)
+    {
+        // Process each connection in a different thread
+        final Runnable httpRequestDispatcherWork = new HttpRequestDispatcherWork(httpConnector, socket);
+        requestHandOffExecutor.execute(httpRequestDispatcherWork);
+    }
+
     @Override
     public void release()
     {
@@ -10,6 +10,7 @@ import org.mule.api.transport.NoReceiverForEndpointException;
 import org.mule.transport.http.i18n.HttpMessages;
 import org.mule.util.monitor.Expirable;
 
+import java.io.IOException;
 import java.net.Socket;
 import java.util.concurrent.TimeUnit;
 
@@ -49,7 +50,7 @@ public class HttpRequestDispatcherWork implements Runnable, Expirable
         {
             long keepAliveTimeout = httpConnector.getKeepAliveTimeout();
             String encoding = httpConnector.getMuleContext().getConfiguration().getDefaultEncoding();
-            httpServerConnection = new HttpServerConnection(socket, encoding, httpConnector);
+            httpServerConnection = createHttpServerConnection(socket, encoding);
             do
             {
                 try
@@ -84,7 +85,12 @@ public class HttpRequestDispatcherWork implements Runnable, Expirable
                     httpServerConnection.reset();
                 }
             }
-            while (httpServerConnection.isKeepAlive());
+            while (httpServerConnection.isKeepAlive() && hasPendingRequest(httpServerConnection));
+
+            if (httpServerConnection.isKeepAlive() && releaseIdleConnection(httpServerConnection))
+            {
+                httpServerConnection = null;
+            }
         }
         catch (HttpMessageReceiver.EmptyRequestException e)
         {
@@ -109,6 +115,37 @@ public class HttpRequestDispatcherWork implements Runnable, Expirable
         }
     }
 
+    protected HttpConnector getHttpConnector()
+    {
+        return httpConnector;
+    }
+
+    protected HttpServerConnection createHttpServerConnection(Socket socket, String encoding) throws IOException
+    {
+        return new HttpServerConnection(socket, encoding, httpConnector);
+    }
+
+    /**
+     * Invoked after processing a request on a keep-alive connection.
+     *
+     * @return true if the next request must be read by this work, false if the connection must be
+     *         handed over to {@link #releaseIdleConnection(HttpServerConnection)}
+     */
+    protected boolean hasPendingRequest(HttpServerConnection connection) throws IOException
+    {
+        return true;
+    }
+
+    /**
+     * Hands over a keep-alive connection that has no pending request.
+     *
+     * @return true if the connection was taken over and must not be closed by this work
+     */
+    protected boolean releaseIdleConnection(HttpServerConnection connection)
+    {
+        return false;
+    }
+
     @Override
     public void expired()
     {
@@ -13,10 +13,12 @@ import org.mule.util.SystemUtils;
 import org.mule.util.concurrent.Latch;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -61,6 +63,16 @@ public class HttpServerConnection implements HandshakeCompletedListener
     private RequestLine requestLine;
 
     public HttpServerConnection(final Socket socket, String encoding, HttpConnector connector) throws IOException
+    {
+        this(socket, null, encoding, connector);
+    }
+
+    /**
+     * Creates a connection for a socket from which some data has already been read.
+     *
+     * @param readAhead data already read from the socket, that is read again before the socket input
+     */
+    HttpServerConnection(final Socket socket, byte[] readAhead, String encoding, HttpConnector connector) throws IOException
     {
         super();
 
@@ -90,7 +102,12 @@ public class HttpServerConnection implements HandshakeCompletedListener
             socket.setSoTimeout(connector.getServerSoTimeout());
         }
 
-        this.in = new BufferedInputStream(socket.getInputStream());
+        InputStream socketInputStream = socket.getInputStream();
+        if (readAhead != null && readAhead.length > 0)
+        {
+            socketInputStream = new SequenceInputStream(new ByteArrayInputStream(readAhead), socketInputStream);
+        }
+        this.in = new BufferedInputStream(socketInputStream);
         this.out = new DataOutputStream(socket.getOutputStream());
         this.encoding = encoding;
     }
@@ -184,6 +201,14 @@ public class HttpServerConnection implements HandshakeCompletedListener
         return this.in;
     }
 
+    /**
+     * @return true if there is data that has already been read from the socket but not consumed yet
+     */
+    boolean hasBufferedInput() throws IOException
+    {
+        return this.in.available() > 0;
+    }
+
     public OutputStream getOutputStream()
     {
         return this.out;
@@ -63,6 +63,42 @@ public class HttpsConnector extends HttpConnector implements TlsDirectKeyStore,
         return serverSocket;
     }
 
+    /**
+     * SSL connections are always served by blocking receivers.
+     */
+    @Override
+    public boolean isNioReceiver()
+    {
+        return false;
+    }
+
+    @Override
+    public void setNioReceiver(boolean nioReceiver)
+    {
+        if (nioReceiver)
+        {
+            logger.warn("nioReceiver is not supported by the HTTPS connector, requests will be received using blocking sockets");
+        }
+    }
+
+    /**
+     * SSL connections are always opened by blocking dispatchers.
+     */
+    @Override
+    public boolean isNioDispatcher()
+    {
+        return false;
+    }
+
+    @Override
+    public void setNioDispatcher(boolean nioDispatcher)
+    {
+        if (nioDispatcher)
+        {
+            logger.warn("nioDispatcher is not supported by the HTTPS connector, requests will be sent using blocking sockets");
+        }
+    }
+
     @Override
     protected void doInitialise() throws InitialisationException
     {
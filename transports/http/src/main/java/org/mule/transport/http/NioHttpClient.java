@@ -0,0 +1,753 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An HTTP/1.1 client that executes requests over non blocking connections watched by a small set
+ * of selector threads, so no thread is held while a request waits for a connection or for its
+ * response.
+ * <p/>
+ * Connections are pooled per host, up to {@link #setMaxConnectionsPerHost(int)}. Requests that
+ * find no free connection are queued until one is available or, when the pipeline depth is greater
+ * than one, idempotent requests are pipelined on a connection that only has idempotent requests in
+ * flight. If a connection fails before the response to a request starts, the request is sent again
+ * once if it is idempotent, was not completely sent, or the connection had been reused, the same
+ * way commons-httpclient recovers from stale connections.
+ * <p/>
+ * Used by the {@link NioHttpClientMessageDispatcher}.
+ */
+class NioHttpClient
+{
+
+    private static final Log logger = LogFactory.getLog(NioHttpClient.class);
+
+    static final int SELECT_TIMEOUT = 1000;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<String, HostPool>();
+    private volatile boolean running = true;
+
+    private volatile int maxConnectionsPerHost = 20;
+    private volatile int pipelineDepth = 1;
+    private volatile int connectionTimeout = HttpConnector.DEFAULT_CONNECTION_TIMEOUT;
+    private volatile int idleTimeout = 0;
+    private volatile int sendBufferSize = 0;
+    private volatile int receiveBufferSize = 0;
+    private volatile int linger = -1;
+    private volatile boolean tcpNoDelay = false;
+
+    NioHttpClient(ThreadFactory threadFactory, int selectorThreads) throws IOException
+    {
+        loops = new SelectorLoop[selectorThreads];
+        try
+        {
+            for (int i = 0; i < loops.length; i++)
+            {
+                loops[i] = new SelectorLoop(i == 0);
+                threadFactory.newThread(loops[i]).start();
+            }
+        }
+        catch (IOException e)
+        {
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a request without waiting for its response.
+     */
+    void execute(NioHttpClientExchange exchange)
+    {
+        String key = exchange.getHost() + ":" + exchange.getPort();
+        HostPool pool = pools.get(key);
+        if (pool == null)
+        {
+            HostPool newPool = new HostPool(exchange.getHost(), exchange.getPort());
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null)
+            {
+                pool = newPool;
+            }
+        }
+        pool.submit(exchange);
+    }
+
+    /**
+     * Closes all the connections, failing the requests that did not complete.
+     */
+    void stop()
+    {
+        running = false;
+        for (SelectorLoop loop : loops)
+        {
+            if (loop != null)
+            {
+                loop.stop();
+            }
+        }
+        for (HostPool pool : pools.values())
+        {
+            pool.failPending(new IOException("HTTP client was stopped"));
+        }
+    }
+
+    void configureSocket(Socket socket) throws SocketException
+    {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0)
+        {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0)
+        {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        if (linger >= 0)
+        {
+            socket.setSoLinger(true, linger);
+        }
+    }
+
+    private SelectorLoop nextLoop()
+    {
+        return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    private void failExpired(long now)
+    {
+        for (HostPool pool : pools.values())
+        {
+            pool.failExpired(now);
+        }
+    }
+
+    int getMaxConnectionsPerHost()
+    {
+        return maxConnectionsPerHost;
+    }
+
+    void setMaxConnectionsPerHost(int maxConnectionsPerHost)
+    {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    int getPipelineDepth()
+    {
+        return pipelineDepth;
+    }
+
+    /**
+     * @param pipelineDepth maximum number of requests in flight on the same connection, 1 to
+     *            disable pipelining
+     */
+    void setPipelineDepth(int pipelineDepth)
+    {
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    int getConnectionTimeout()
+    {
+        return connectionTimeout;
+    }
+
+    void setConnectionTimeout(int connectionTimeout)
+    {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * @param idleTimeout milliseconds after which idle connections are closed, 0 or less to keep
+     *            them until the server closes them
+     */
+    void setIdleTimeout(int idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+    }
+
+    void setSendBufferSize(int sendBufferSize)
+    {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    void setReceiveBufferSize(int receiveBufferSize)
+    {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    void setLinger(int linger)
+    {
+        this.linger = linger;
+    }
+
+    void setTcpNoDelay(boolean tcpNoDelay)
+    {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * The connections to a host and the requests waiting for one of them.
+     */
+    class HostPool
+    {
+
+        private final String host;
+        private final int port;
+        private final LinkedList<NioHttpClientConnection> idle = new LinkedList<NioHttpClientConnection>();
+        private final List<NioHttpClientConnection> connections = new ArrayList<NioHttpClientConnection>();
+        private final LinkedList<NioHttpClientExchange> pending = new LinkedList<NioHttpClientExchange>();
+
+        HostPool(String host, int port)
+        {
+            this.host = host;
+            this.port = port;
+        }
+
+        void submit(NioHttpClientExchange exchange)
+        {
+            NioHttpClientConnection connection;
+            boolean created = false;
+            synchronized (this)
+            {
+                if (!running)
+                {
+                    connection = null;
+                }
+                else
+                {
+                    // most recently used connections first, the others are more likely to be stale
+                    connection = idle.pollFirst();
+                    if (connection == null && connections.size() < maxConnectionsPerHost)
+                    {
+                        connection = createConnection();
+                        created = true;
+                    }
+                    if (connection == null && pipelineDepth > 1 && exchange.isIdempotent() && !exchange.isCloseConnection())
+                    {
+                        connection = findPipelinedConnection();
+                    }
+                    if (connection == null)
+                    {
+                        pending.add(exchange);
+                        return;
+                    }
+                    connection.assign(exchange);
+                }
+            }
+
+            if (connection == null)
+            {
+                exchange.failed(new IOException("HTTP client was stopped"));
+            }
+            else if (created)
+            {
+                connection.connect(host, port);
+            }
+            else
+            {
+                connection.requestWrite();
+            }
+        }
+
+        private NioHttpClientConnection createConnection()
+        {
+            NioHttpClientConnection connection = new NioHttpClientConnection(NioHttpClient.this, this, nextLoop());
+            connections.add(connection);
+            return connection;
+        }
+
+        private NioHttpClientConnection findPipelinedConnection()
+        {
+            NioHttpClientConnection selected = null;
+            for (NioHttpClientConnection connection : connections)
+            {
+                if (connection.canPipeline(pipelineDepth)
+                    && (selected == null || connection.getInFlightCount() < selected.getInFlightCount()))
+                {
+                    selected = connection;
+                }
+            }
+            return selected;
+        }
+
+        /**
+         * @param expired collects the pending requests that timed out
+         * @return the next pending request that can still be executed
+         */
+        private NioHttpClientExchange pollPending(long now, List<NioHttpClientExchange> expired)
+        {
+            while (!pending.isEmpty())
+            {
+                NioHttpClientExchange exchange = pending.removeFirst();
+                if (exchange.isExpired(now))
+                {
+                    expired.add(exchange);
+                }
+                else if (!exchange.isDone())
+                {
+                    return exchange;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Pipelines the pending requests that can be sent behind the ones in flight.
+         *
+         * @param expired collects the pending requests that timed out
+         * @return true if a request was assigned to the connection
+         */
+        private boolean pipelinePending(NioHttpClientConnection connection, long now, List<NioHttpClientExchange> expired)
+        {
+            boolean assigned = false;
+            while (running && pipelineDepth > 1 && !pending.isEmpty() && connection.canPipeline(pipelineDepth))
+            {
+                NioHttpClientExchange exchange = pending.getFirst();
+                if (exchange.isExpired(now))
+                {
+                    expired.add(pending.removeFirst());
+                }
+                else if (exchange.isDone())
+                {
+                    pending.removeFirst();
+                }
+                else if (exchange.isIdempotent() && !exchange.isCloseConnection())
+                {
+                    connection.assign(pending.removeFirst());
+                    assigned = true;
+                }
+                else
+                {
+                    break;
+                }
+            }
+            return assigned;
+        }
+
+        /**
+         * Called by the selector thread once a connection is established, the requests queued
+         * while connecting get pipelined behind the first one.
+         */
+        void connected(NioHttpClientConnection connection)
+        {
+            List<NioHttpClientExchange> expired = new ArrayList<NioHttpClientExchange>();
+            synchronized (this)
+            {
+                if (!connection.isClosed())
+                {
+                    pipelinePending(connection, System.currentTimeMillis(), expired);
+                }
+            }
+            failExpired(expired);
+        }
+
+        /**
+         * Called by the selector thread once a response was completely received.
+         */
+        void responseCompleted(NioHttpClientConnection connection, NioHttpClientExchange exchange)
+        {
+            List<NioHttpClientExchange> expired = new ArrayList<NioHttpClientExchange>();
+            List<NioHttpClientExchange> unanswered = null;
+            boolean assigned = false;
+            synchronized (this)
+            {
+                if (connection.isClosed())
+                {
+                    return;
+                }
+
+                connection.removeInFlight(exchange);
+                if (!connection.isKeepAlive() || !running)
+                {
+                    unanswered = close(connection);
+                }
+                else if (connection.getInFlightCount() == 0)
+                {
+                    long now = System.currentTimeMillis();
+                    NioHttpClientExchange next = pollPending(now, expired);
+                    if (next != null)
+                    {
+                        connection.assign(next);
+                        pipelinePending(connection, now, expired);
+                        assigned = true;
+                    }
+                    else
+                    {
+                        connection.setIdleSince(System.currentTimeMillis());
+                        idle.addFirst(connection);
+                    }
+                }
+            }
+
+            failExpired(expired);
+            if (assigned)
+            {
+                connection.requestWrite();
+            }
+            else if (unanswered != null)
+            {
+                connection.closeChannel();
+                // the server closed the connection without processing the pipelined requests
+                for (NioHttpClientExchange pipelined : unanswered)
+                {
+                    submit(pipelined);
+                }
+                connectPending();
+            }
+        }
+
+        /**
+         * Closes a failed connection, sending again the requests in flight that can be retried and
+         * failing the others.
+         */
+        void connectionFailed(NioHttpClientConnection connection, IOException e, boolean retry)
+        {
+            List<NioHttpClientExchange> retried = new ArrayList<NioHttpClientExchange>();
+            List<NioHttpClientExchange> failed = new ArrayList<NioHttpClientExchange>();
+            synchronized (this)
+            {
+                if (connection.isClosed())
+                {
+                    return;
+                }
+
+                for (NioHttpClientExchange exchange : close(connection))
+                {
+                    if (exchange.isDone())
+                    {
+                        continue;
+                    }
+                    if (retry && running && !exchange.isResponseReceived() && !exchange.isRetried()
+                        && (exchange.isIdempotent() || !exchange.isRequestSent() || connection.isReused()))
+                    {
+                        exchange.retried();
+                        retried.add(exchange);
+                    }
+                    else
+                    {
+                        failed.add(exchange);
+                    }
+                }
+            }
+
+            connection.closeChannel();
+            for (NioHttpClientExchange exchange : failed)
+            {
+                exchange.failed(e);
+            }
+            for (NioHttpClientExchange exchange : retried)
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Retrying " + exchange + " after connection failure: " + e.getMessage());
+                }
+                submit(exchange);
+            }
+            connectPending();
+        }
+
+        private List<NioHttpClientExchange> close(NioHttpClientConnection connection)
+        {
+            connection.setClosed();
+            connections.remove(connection);
+            idle.remove(connection);
+            return connection.removeInFlight();
+        }
+
+        /**
+         * Opens connections for the pending requests while there is room for them.
+         */
+        private void connectPending()
+        {
+            List<NioHttpClientExchange> expired = new ArrayList<NioHttpClientExchange>();
+            while (true)
+            {
+                NioHttpClientConnection connection;
+                synchronized (this)
+                {
+                    if (!running || pending.isEmpty() || connections.size() >= maxConnectionsPerHost)
+                    {
+                        break;
+                    }
+                    NioHttpClientExchange next = pollPending(System.currentTimeMillis(), expired);
+                    if (next == null)
+                    {
+                        break;
+                    }
+                    connection = createConnection();
+                    connection.assign(next);
+                }
+                connection.connect(host, port);
+            }
+            failExpired(expired);
+        }
+
+        /**
+         * Closes a connection that was idle longer than the idle timeout.
+         */
+        void closeIfIdle(NioHttpClientConnection connection, long now)
+        {
+            synchronized (this)
+            {
+                if (idleTimeout <= 0 || connection.isClosed() || !idle.contains(connection)
+                    || now - connection.getIdleSince() <= idleTimeout)
+                {
+                    return;
+                }
+                close(connection);
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Closing idle HTTP connection to " + this);
+            }
+            connection.closeChannel();
+        }
+
+        void failExpired(long now)
+        {
+            List<NioHttpClientExchange> expired = new ArrayList<NioHttpClientExchange>();
+            synchronized (this)
+            {
+                Iterator<NioHttpClientExchange> iterator = pending.iterator();
+                while (iterator.hasNext())
+                {
+                    NioHttpClientExchange exchange = iterator.next();
+                    if (exchange.isExpired(now))
+                    {
+                        iterator.remove();
+                        expired.add(exchange);
+                    }
+                }
+            }
+            failExpired(expired);
+        }
+
+        private void failExpired(List<NioHttpClientExchange> expired)
+        {
+            for (NioHttpClientExchange exchange : expired)
+            {
+                exchange.failed(exchange.createTimeoutException());
+            }
+        }
+
+        void failPending(IOException e)
+        {
+            List<NioHttpClientExchange> failed;
+            synchronized (this)
+            {
+                failed = new ArrayList<NioHttpClientExchange>(pending);
+                pending.clear();
+            }
+            for (NioHttpClientExchange exchange : failed)
+            {
+                exchange.failed(e);
+            }
+        }
+
+        /**
+         * @return the number of open connections, for testing
+         */
+        synchronized int getConnectionCount()
+        {
+            return connections.size();
+        }
+
+        @Override
+        public String toString()
+        {
+            return host + ":" + port;
+        }
+    }
+
+    /**
+     * Runs the selector of a set of connections.
+     */
+    class SelectorLoop implements Runnable
+    {
+
+        private final Selector selector;
+        private final boolean checksPendingRequests;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private volatile boolean running = true;
+        private long lastTimeoutCheck = System.currentTimeMillis();
+
+        SelectorLoop(boolean checksPendingRequests) throws IOException
+        {
+            this.checksPendingRequests = checksPendingRequests;
+            this.selector = Selector.open();
+        }
+
+        Selector getSelector()
+        {
+            return selector;
+        }
+
+        /**
+         * @return a buffer to read from connections, shared by all the connections of the
+         *         selector
+         */
+        ByteBuffer getReadBuffer()
+        {
+            return readBuffer;
+        }
+
+        /**
+         * Runs a task in the selector thread. Can be called from any thread.
+         */
+        void execute(Runnable task)
+        {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (running)
+                {
+                    selector.select(SELECT_TIMEOUT);
+                    runTasks();
+                    handleSelectedKeys();
+                    checkTimeouts();
+                }
+            }
+            catch (ClosedSelectorException e)
+            {
+                // Selector was closed while stopping
+            }
+            catch (Exception e)
+            {
+                logger.error("HTTP client selector failed", e);
+            }
+            finally
+            {
+                running = false;
+                closeAll();
+            }
+        }
+
+        private void runTasks()
+        {
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException e)
+                {
+                    logger.warn("Error running HTTP client selector task", e);
+                }
+            }
+        }
+
+        private void handleSelectedKeys()
+        {
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext())
+            {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                if (key.isValid())
+                {
+                    NioHttpClientConnection connection = (NioHttpClientConnection) key.attachment();
+                    try
+                    {
+                        connection.handle(key);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.warn("Unexpected error handling " + connection, e);
+                        closeConnection(connection, e);
+                    }
+                }
+            }
+        }
+
+        private void checkTimeouts()
+        {
+            long now = System.currentTimeMillis();
+            if (now - lastTimeoutCheck < SELECT_TIMEOUT)
+            {
+                return;
+            }
+            lastTimeoutCheck = now;
+
+            for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys()))
+            {
+                if (key.isValid())
+                {
+                    ((NioHttpClientConnection) key.attachment()).checkTimeouts(now);
+                }
+            }
+            if (checksPendingRequests)
+            {
+                failExpired(now);
+            }
+        }
+
+        void stop()
+        {
+            running = false;
+            selector.wakeup();
+        }
+
+        private void closeAll()
+        {
+            runTasks();
+            try
+            {
+                for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys()))
+                {
+                    closeConnection((NioHttpClientConnection) key.attachment(), null);
+                }
+                selector.close();
+            }
+            catch (Exception e)
+            {
+                logger.debug("(Ignored) Error closing HTTP client selector: " + e.getMessage());
+            }
+        }
+
+        private void closeConnection(NioHttpClientConnection connection, Exception cause)
+        {
+            IOException e = new IOException(cause == null ? "HTTP client was stopped" : "HTTP client error: " + cause);
+            if (cause != null)
+            {
+                e.initCause(cause);
+            }
+            connection.getPool().connectionFailed(connection, e, false);
+        }
+    }
+}
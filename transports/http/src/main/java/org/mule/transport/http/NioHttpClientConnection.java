@@ -0,0 +1,763 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.NoHttpResponseException;
+import org.apache.commons.httpclient.StatusLine;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A connection of a {@link NioHttpClient} to a host. Requests assigned to the connection are
+ * written in order and their responses are parsed as they arrive, all from the thread of the
+ * selector the connection is registered with.
+ * <p/>
+ * The connection has more than one request in flight only when requests are pipelined. Responses
+ * are matched to requests in the order the requests were written.
+ */
+class NioHttpClientConnection
+{
+
+    private static final Log logger = LogFactory.getLog(NioHttpClientConnection.class);
+
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    private static final int STATUS_LINE = 0;
+    private static final int HEADERS = 1;
+    private static final int FIXED_BODY = 2;
+    private static final int CHUNK_SIZE = 3;
+    private static final int CHUNK_DATA = 4;
+    private static final int CHUNK_END = 5;
+    private static final int TRAILERS = 6;
+    private static final int BODY_UNTIL_CLOSE = 7;
+
+    private final NioHttpClient client;
+    private final NioHttpClient.HostPool pool;
+    private final NioHttpClient.SelectorLoop loop;
+
+    private final Queue<NioHttpClientExchange> inFlight = new ConcurrentLinkedQueue<NioHttpClientExchange>();
+    private final Queue<NioHttpClientExchange> toWrite = new ConcurrentLinkedQueue<NioHttpClientExchange>();
+
+    private volatile SocketChannel channel;
+    private SelectionKey key;
+    private volatile boolean connected = false;
+    private long connectDeadline;
+    private volatile boolean keepAlive = true;
+    private boolean reused = false;
+    private boolean paused = false;
+    private ByteBuffer writeBuffer;
+    private NioHttpClientExchange writing;
+
+    // guarded by the pool lock
+    private boolean closed = false;
+    private long idleSince;
+
+    // response parsing state, only used by the selector thread
+    private int state = STATUS_LINE;
+    private final StringBuilder line = new StringBuilder();
+    private int headSize;
+    private NioHttpClientExchange current;
+    private StatusLine statusLine;
+    private List<Header> headers;
+    private long remaining;
+    private NioHttpResponseInputStream body;
+
+    NioHttpClientConnection(NioHttpClient client, NioHttpClient.HostPool pool, NioHttpClient.SelectorLoop loop)
+    {
+        this.client = client;
+        this.pool = pool;
+        this.loop = loop;
+    }
+
+    /**
+     * Starts connecting to the host without waiting for the connection to be established.
+     */
+    void connect(String host, int port)
+    {
+        try
+        {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            if (address.isUnresolved())
+            {
+                throw new UnknownHostException(host);
+            }
+
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            client.configureSocket(channel.socket());
+            connectDeadline = client.getConnectionTimeout() > 0
+                              ? System.currentTimeMillis() + client.getConnectionTimeout()
+                              : Long.MAX_VALUE;
+            connected = channel.connect(address);
+
+            loop.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    register();
+                }
+            });
+        }
+        catch (UnresolvedAddressException e)
+        {
+            pool.connectionFailed(this, new UnknownHostException(host), false);
+        }
+        catch (IOException e)
+        {
+            pool.connectionFailed(this, e, false);
+        }
+    }
+
+    private void register()
+    {
+        try
+        {
+            key = channel.register(loop.getSelector(), 0, this);
+            updateInterest();
+        }
+        catch (IOException e)
+        {
+            pool.connectionFailed(this, e, false);
+        }
+    }
+
+    /**
+     * Queues a request to be written. Called with the pool lock held, so that requests are
+     * written in the same order they are added to the requests in flight.
+     */
+    void assign(NioHttpClientExchange exchange)
+    {
+        inFlight.add(exchange);
+        toWrite.add(exchange);
+    }
+
+    /**
+     * Makes the selector write the requests assigned to the connection. Can be called from any
+     * thread.
+     */
+    void requestWrite()
+    {
+        loop.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (key != null && key.isValid())
+                {
+                    updateInterest();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts reading again after a slow response consumer caught up. Can be called from any
+     * thread.
+     */
+    void resumeReading()
+    {
+        loop.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                paused = false;
+                if (key != null && key.isValid())
+                {
+                    updateInterest();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fails the exchange and closes the connection after its consumer timed out waiting for the
+     * body. Can be called from any thread.
+     */
+    void bodyTimedOut(final NioHttpClientExchange exchange, final SocketTimeoutException e)
+    {
+        loop.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // the body may have completed meanwhile, then the connection is fine
+                if (!exchange.isDone())
+                {
+                    exchange.failed(e);
+                    pool.connectionFailed(NioHttpClientConnection.this, e, true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Handles a selected key of the connection.
+     */
+    void handle(SelectionKey selectedKey)
+    {
+        try
+        {
+            if (selectedKey.isConnectable() && channel.finishConnect())
+            {
+                connected = true;
+                pool.connected(this);
+            }
+            if (connected && selectedKey.isValid() && selectedKey.isWritable())
+            {
+                write();
+            }
+            if (selectedKey.isValid() && selectedKey.isReadable())
+            {
+                read();
+            }
+            if (selectedKey.isValid())
+            {
+                updateInterest();
+            }
+        }
+        catch (IOException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("HTTP connection to " + pool + " failed: " + e.getMessage());
+            }
+            pool.connectionFailed(this, e, true);
+        }
+    }
+
+    private void updateInterest()
+    {
+        int ops;
+        if (!connected)
+        {
+            ops = SelectionKey.OP_CONNECT;
+        }
+        else
+        {
+            ops = paused ? 0 : SelectionKey.OP_READ;
+            if (writeBuffer != null || !toWrite.isEmpty())
+            {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(ops);
+    }
+
+    private void write() throws IOException
+    {
+        while (true)
+        {
+            if (writeBuffer == null)
+            {
+                writing = toWrite.poll();
+                if (writing == null)
+                {
+                    return;
+                }
+                writeBuffer = writing.getRequest();
+            }
+
+            channel.write(writeBuffer);
+            if (writeBuffer.hasRemaining())
+            {
+                return;
+            }
+            writing.requestSent();
+            writing = null;
+            writeBuffer = null;
+        }
+    }
+
+    private void read() throws IOException
+    {
+        ByteBuffer buffer = loop.getReadBuffer();
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (read < 0)
+        {
+            endOfStream();
+        }
+        else if (read > 0)
+        {
+            parse(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + read);
+        }
+    }
+
+    private void endOfStream()
+    {
+        if (state == BODY_UNTIL_CLOSE)
+        {
+            // the pool closes the connection once the response is completed
+            responseCompleted();
+            return;
+        }
+
+        IOException e;
+        if (state == STATUS_LINE && line.length() == 0)
+        {
+            e = new NoHttpResponseException("The server " + pool + " failed to respond");
+        }
+        else
+        {
+            e = new IOException("Connection closed by " + pool + " while receiving a response");
+        }
+        pool.connectionFailed(this, e, true);
+    }
+
+    private void parse(byte[] data, int offset, int end) throws IOException
+    {
+        int position = offset;
+        while (position < end)
+        {
+            switch (state)
+            {
+                case FIXED_BODY:
+                case CHUNK_DATA:
+                {
+                    int count = (int) Math.min(remaining, end - position);
+                    deliver(data, position, count);
+                    position += count;
+                    remaining -= count;
+                    if (remaining == 0)
+                    {
+                        if (state == FIXED_BODY)
+                        {
+                            responseCompleted();
+                        }
+                        else
+                        {
+                            state = CHUNK_END;
+                        }
+                    }
+                    break;
+                }
+                case BODY_UNTIL_CLOSE:
+                {
+                    deliver(data, position, end - position);
+                    position = end;
+                    break;
+                }
+                default:
+                {
+                    position = readLine(data, position, end);
+                }
+            }
+        }
+    }
+
+    private int readLine(byte[] data, int position, int end) throws IOException
+    {
+        int lineEnd = position;
+        while (lineEnd < end && data[lineEnd] != '\n')
+        {
+            lineEnd++;
+        }
+
+        for (int i = position; i < lineEnd; i++)
+        {
+            line.append((char) (data[i] & 0xFF));
+        }
+        if (line.length() > MAX_HEAD_SIZE)
+        {
+            throw new IOException("HTTP response line too long");
+        }
+
+        if (lineEnd == end)
+        {
+            return end;
+        }
+
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r')
+        {
+            line.setLength(length - 1);
+        }
+        String text = line.toString();
+        line.setLength(0);
+        processLine(text);
+        return lineEnd + 1;
+    }
+
+    private void processLine(String text) throws IOException
+    {
+        switch (state)
+        {
+            case STATUS_LINE:
+            {
+                if (text.length() == 0)
+                {
+                    // Empty lines before the status line are ignored
+                    return;
+                }
+                current = inFlight.peek();
+                if (current == null)
+                {
+                    throw new IOException("Received a response without a request from " + pool);
+                }
+                statusLine = new StatusLine(text);
+                headers = new ArrayList<Header>();
+                headSize = text.length();
+                state = HEADERS;
+                break;
+            }
+            case HEADERS:
+            {
+                headSize += text.length();
+                if (headSize > MAX_HEAD_SIZE)
+                {
+                    throw new IOException("HTTP response head too long");
+                }
+                if (text.length() == 0)
+                {
+                    headersReceived();
+                }
+                else if ((text.charAt(0) == ' ' || text.charAt(0) == '\t') && !headers.isEmpty())
+                {
+                    // folded header value
+                    Header folded = headers.remove(headers.size() - 1);
+                    headers.add(new Header(folded.getName(), folded.getValue() + " " + text.trim()));
+                }
+                else
+                {
+                    int colon = text.indexOf(':');
+                    if (colon <= 0)
+                    {
+                        throw new IOException("Invalid HTTP response header: " + text);
+                    }
+                    headers.add(new Header(text.substring(0, colon).trim(), text.substring(colon + 1).trim()));
+                }
+                break;
+            }
+            case CHUNK_SIZE:
+            {
+                int extension = text.indexOf(';');
+                String size = (extension < 0 ? text : text.substring(0, extension)).trim();
+                try
+                {
+                    remaining = Long.parseLong(size, 16);
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException("Invalid chunk size: " + text);
+                }
+                state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+                break;
+            }
+            case CHUNK_END:
+            {
+                if (text.length() != 0)
+                {
+                    throw new IOException("Invalid end of chunk: " + text);
+                }
+                state = CHUNK_SIZE;
+                break;
+            }
+            case TRAILERS:
+            {
+                // trailers are ignored
+                if (text.length() == 0)
+                {
+                    responseCompleted();
+                }
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException("Not reading a line");
+            }
+        }
+    }
+
+    private void headersReceived() throws IOException
+    {
+        int statusCode = statusLine.getStatusCode();
+        if (statusCode >= 100 && statusCode < 200)
+        {
+            // interim response, the final one follows
+            state = STATUS_LINE;
+            return;
+        }
+
+        Header[] headerArray = headers.toArray(new Header[headers.size()]);
+        keepAlive = keepAlive && !current.isCloseConnection() && isKeepAlive(headerArray);
+
+        String transferEncoding = getHeaderValue(headerArray, HttpConstants.HEADER_TRANSFER_ENCODING);
+        String contentLength = getHeaderValue(headerArray, HttpConstants.HEADER_CONTENT_LENGTH);
+        boolean hasBody = true;
+        if (!current.expectsResponseBody() || statusCode == 204 || statusCode == 304)
+        {
+            hasBody = false;
+        }
+        else if (transferEncoding != null && transferEncoding.toLowerCase().contains(HttpConstants.TRANSFER_ENCODING_CHUNKED))
+        {
+            state = CHUNK_SIZE;
+        }
+        else if (contentLength != null)
+        {
+            try
+            {
+                remaining = Long.parseLong(contentLength.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid content length: " + contentLength);
+            }
+            hasBody = remaining > 0;
+            state = FIXED_BODY;
+        }
+        else
+        {
+            state = BODY_UNTIL_CLOSE;
+            keepAlive = false;
+        }
+
+        if (hasBody)
+        {
+            body = new NioHttpResponseInputStream(this, current, !current.isBufferedBody());
+            if (!current.responseReceived(createResponse(headerArray)))
+            {
+                // the request already failed, nobody reads the body
+                body.close();
+            }
+        }
+        else
+        {
+            responseCompleted(createResponse(headerArray));
+        }
+    }
+
+    private HttpClientResponse createResponse(Header[] headerArray)
+    {
+        return new HttpClientResponse(current.getMethod(), current.getUri(), statusLine, headerArray, body);
+    }
+
+    private boolean isKeepAlive(Header[] headerArray)
+    {
+        String connection = getHeaderValue(headerArray, HttpConstants.HEADER_CONNECTION);
+        if (connection != null && connection.toLowerCase().contains("close"))
+        {
+            return false;
+        }
+        if (HttpConstants.HTTP10.equalsIgnoreCase(statusLine.getHttpVersion()))
+        {
+            return connection != null && connection.toLowerCase().contains("keep-alive");
+        }
+        return true;
+    }
+
+    private String getHeaderValue(Header[] headerArray, String name)
+    {
+        for (Header header : headerArray)
+        {
+            if (header.getName().equalsIgnoreCase(name))
+            {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void deliver(byte[] data, int offset, int length)
+    {
+        current.bodyReceived(System.currentTimeMillis());
+        if (body.append(data, offset, length))
+        {
+            paused = true;
+        }
+    }
+
+    private void responseCompleted()
+    {
+        responseCompleted(null);
+    }
+
+    /**
+     * @param bodilessResponse the response to notify if it has no body, null if it was already
+     *            notified when its headers were received
+     */
+    private void responseCompleted(HttpClientResponse bodilessResponse)
+    {
+        NioHttpClientExchange exchange = current;
+        NioHttpResponseInputStream completedBody = body;
+
+        state = STATUS_LINE;
+        current = null;
+        statusLine = null;
+        headers = null;
+        body = null;
+        reused = true;
+
+        // the connection goes back to the pool before the response is notified so a request
+        // sent right after reading it can reuse the connection
+        pool.responseCompleted(this, exchange);
+
+        if (bodilessResponse != null)
+        {
+            exchange.responseReceived(bodilessResponse);
+        }
+        if (completedBody != null)
+        {
+            completedBody.complete();
+        }
+        try
+        {
+            exchange.completed();
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Error notifying the completion of " + exchange, e);
+        }
+    }
+
+    /**
+     * Closes the connection if it was waiting too long to connect or to receive a response. A body
+     * is not timed out while reading is paused for a slow consumer. Called by the selector thread.
+     */
+    void checkTimeouts(long now)
+    {
+        if (!connected)
+        {
+            if (now > connectDeadline)
+            {
+                pool.connectionFailed(this, new SocketTimeoutException("Connection to " + pool + " timed out"), false);
+            }
+            return;
+        }
+
+        NioHttpClientExchange head = inFlight.peek();
+        if (head != null && !paused && head.isExpired(now))
+        {
+            SocketTimeoutException e = head.createTimeoutException();
+            head.failed(e);
+            pool.connectionFailed(this, e, true);
+        }
+        else if (head == null)
+        {
+            pool.closeIfIdle(this, now);
+        }
+    }
+
+    /**
+     * @return true if another request can be pipelined after the ones in flight. Called with the
+     *         pool lock held.
+     */
+    boolean canPipeline(int pipelineDepth)
+    {
+        if (!connected || !keepAlive || closed)
+        {
+            return false;
+        }
+        int count = 0;
+        for (NioHttpClientExchange exchange : inFlight)
+        {
+            if (!exchange.isIdempotent() || exchange.isCloseConnection())
+            {
+                return false;
+            }
+            count++;
+        }
+        return count < pipelineDepth;
+    }
+
+    NioHttpClient.HostPool getPool()
+    {
+        return pool;
+    }
+
+    int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
+    /**
+     * Removes all the requests in flight, in the order they were written. Called with the pool
+     * lock held.
+     */
+    List<NioHttpClientExchange> removeInFlight()
+    {
+        List<NioHttpClientExchange> exchanges = new ArrayList<NioHttpClientExchange>(inFlight);
+        inFlight.clear();
+        toWrite.clear();
+        return exchanges;
+    }
+
+    void removeInFlight(NioHttpClientExchange exchange)
+    {
+        inFlight.remove(exchange);
+    }
+
+    boolean isKeepAlive()
+    {
+        return keepAlive;
+    }
+
+    boolean isReused()
+    {
+        return reused;
+    }
+
+    boolean isClosed()
+    {
+        return closed;
+    }
+
+    void setClosed()
+    {
+        closed = true;
+    }
+
+    long getIdleSince()
+    {
+        return idleSince;
+    }
+
+    void setIdleSince(long idleSince)
+    {
+        this.idleSince = idleSince;
+    }
+
+    void closeChannel()
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("(Ignored) Error closing the socket: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NioHttpClientConnection{" + pool + ", inFlight=" + inFlight.size() + "}";
+    }
+}
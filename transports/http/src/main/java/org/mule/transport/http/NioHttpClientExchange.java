@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A request executed by a {@link NioHttpClient} and the response received for it.
+ * <p/>
+ * Threads waiting for the response use {@link #awaitResponse()}, which returns as soon as the
+ * status line and headers are received while the body keeps being streamed. Alternatively a
+ * {@link Callback} gets notified by the selector thread once the whole response was received, in
+ * which case the body is buffered without flow control.
+ */
+class NioHttpClientExchange
+{
+
+    /**
+     * Notified by the selector thread, so it must not block.
+     */
+    interface Callback
+    {
+
+        void completed(HttpClientResponse response);
+
+        void failed(Exception e);
+    }
+
+    private static final int PENDING = 0;
+    private static final int RESPONSE_RECEIVED = 1;
+    private static final int COMPLETED = 2;
+    private static final int FAILED = 3;
+
+    /**
+     * Time given to the client to report a timeout before the waiting thread does it itself.
+     */
+    private static final long AWAIT_GRACE_PERIOD = 2000;
+
+    private final String host;
+    private final int port;
+    private final String method;
+    private final String uri;
+    private final byte[] request;
+    private final boolean idempotent;
+    private final long timeout;
+    private final long deadline;
+    private final Callback callback;
+
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private final CountDownLatch responseLatch = new CountDownLatch(1);
+    private volatile HttpClientResponse response;
+    private volatile Exception failure;
+    private volatile boolean requestSent = false;
+    private volatile long lastReceived;
+    private boolean closeConnection = false;
+    private boolean retried = false;
+
+    /**
+     * @param request the serialized request line, headers and body
+     * @param timeout milliseconds to wait for the response status line and headers, including the
+     *            time needed to get a connection, and then for each part of the body, 0 or less
+     *            to wait forever
+     * @param callback notified once the whole response was received, null if the response is
+     *            waited for with {@link #awaitResponse()}
+     */
+    NioHttpClientExchange(String host, int port, String method, String uri, byte[] request, long timeout, Callback callback)
+    {
+        this.host = host;
+        this.port = port;
+        this.method = method;
+        this.uri = uri;
+        this.request = request;
+        this.idempotent = isIdempotent(method);
+        this.timeout = timeout;
+        this.deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        this.callback = callback;
+    }
+
+    /**
+     * Idempotent requests can be pipelined and safely sent again if the connection fails before
+     * their response arrives.
+     */
+    private static boolean isIdempotent(String method)
+    {
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method)
+               || "OPTIONS".equalsIgnoreCase(method) || "TRACE".equalsIgnoreCase(method)
+               || "PUT".equalsIgnoreCase(method) || "DELETE".equalsIgnoreCase(method);
+    }
+
+    String getHost()
+    {
+        return host;
+    }
+
+    int getPort()
+    {
+        return port;
+    }
+
+    String getMethod()
+    {
+        return method;
+    }
+
+    String getUri()
+    {
+        return uri;
+    }
+
+    ByteBuffer getRequest()
+    {
+        return ByteBuffer.wrap(request);
+    }
+
+    boolean isIdempotent()
+    {
+        return idempotent;
+    }
+
+    boolean expectsResponseBody()
+    {
+        return !"HEAD".equalsIgnoreCase(method);
+    }
+
+    /**
+     * @return true if the body must be buffered regardless of how fast it is consumed
+     */
+    boolean isBufferedBody()
+    {
+        return callback != null;
+    }
+
+    /**
+     * @return true if the request asks the server to close the connection after the response
+     */
+    boolean isCloseConnection()
+    {
+        return closeConnection;
+    }
+
+    void setCloseConnection(boolean closeConnection)
+    {
+        this.closeConnection = closeConnection;
+    }
+
+    boolean isRequestSent()
+    {
+        return requestSent;
+    }
+
+    void requestSent()
+    {
+        requestSent = true;
+    }
+
+    /**
+     * Guarded by the lock of the host pool executing the exchange.
+     */
+    boolean isRetried()
+    {
+        return retried;
+    }
+
+    void retried()
+    {
+        retried = true;
+        requestSent = false;
+    }
+
+    boolean isResponseReceived()
+    {
+        return state.get() != PENDING;
+    }
+
+    boolean isDone()
+    {
+        int current = state.get();
+        return current == COMPLETED || current == FAILED;
+    }
+
+    long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * Records that part of the body was received. Called by the selector thread.
+     */
+    void bodyReceived(long now)
+    {
+        lastReceived = now;
+    }
+
+    /**
+     * @return true if the response headers did not arrive in time, or if nothing was received for
+     *         the body in the last timeout period
+     */
+    boolean isExpired(long now)
+    {
+        if (deadline <= 0)
+        {
+            return false;
+        }
+        int current = state.get();
+        if (current == PENDING)
+        {
+            return now > deadline;
+        }
+        return current == RESPONSE_RECEIVED && now - lastReceived > timeout;
+    }
+
+    SocketTimeoutException createTimeoutException()
+    {
+        if (isResponseReceived())
+        {
+            return new SocketTimeoutException("No part of the response body received from " + host + ":" + port + " within " + timeout + " ms");
+        }
+        return new SocketTimeoutException("No response received from " + host + ":" + port + " within " + timeout + " ms");
+    }
+
+    /**
+     * @return false if the exchange already failed, in which case nobody will read the response
+     */
+    boolean responseReceived(HttpClientResponse response)
+    {
+        lastReceived = System.currentTimeMillis();
+        if (state.compareAndSet(PENDING, RESPONSE_RECEIVED))
+        {
+            this.response = response;
+            responseLatch.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    void completed()
+    {
+        if (state.compareAndSet(RESPONSE_RECEIVED, COMPLETED) && callback != null)
+        {
+            callback.completed(response);
+        }
+    }
+
+    /**
+     * Fails the exchange unless its response was already completely received.
+     */
+    void failed(Exception e)
+    {
+        int current = state.get();
+        while (current == PENDING || current == RESPONSE_RECEIVED)
+        {
+            if (state.compareAndSet(current, FAILED))
+            {
+                failure = e;
+                if (current == PENDING)
+                {
+                    responseLatch.countDown();
+                }
+                else
+                {
+                    failBody(e);
+                }
+
+                if (callback != null)
+                {
+                    callback.failed(e);
+                }
+                return;
+            }
+            current = state.get();
+        }
+    }
+
+    private void failBody(Exception e)
+    {
+        HttpClientResponse received = response;
+        if (received != null && received.getBody() instanceof NioHttpResponseInputStream)
+        {
+            ((NioHttpResponseInputStream) received.getBody()).fail(e instanceof IOException
+                                                                   ? (IOException) e
+                                                                   : new IOException(e.getMessage()));
+        }
+    }
+
+    /**
+     * Waits until the status line and headers of the response are received.
+     *
+     * @throws IOException if the request failed or timed out
+     */
+    HttpClientResponse awaitResponse() throws IOException
+    {
+        try
+        {
+            if (deadline > 0)
+            {
+                long remaining = deadline - System.currentTimeMillis() + AWAIT_GRACE_PERIOD;
+                if (!responseLatch.await(remaining, TimeUnit.MILLISECONDS))
+                {
+                    failed(createTimeoutException());
+                }
+            }
+            else
+            {
+                responseLatch.await();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            failed(new InterruptedIOException("Interrupted while waiting for the HTTP response"));
+        }
+
+        if (response == null)
+        {
+            if (failure instanceof IOException)
+            {
+                throw (IOException) failure;
+            }
+            IOException e = new IOException("HTTP request failed: " + failure);
+            e.initCause(failure);
+            throw e;
+        }
+        return response;
+    }
+
+    @Override
+    public String toString()
+    {
+        return method + " " + uri;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import org.mule.api.ExceptionPayload;
+import org.mule.api.MuleEvent;
+import org.mule.api.MuleException;
+import org.mule.api.MuleMessage;
+import org.mule.api.endpoint.OutboundEndpoint;
+import org.mule.api.transport.DispatchException;
+import org.mule.message.DefaultExceptionPayload;
+import org.mule.util.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.commons.httpclient.Cookie;
+import org.apache.commons.httpclient.Credentials;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.auth.BasicScheme;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.cookie.CookieSpec;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+
+/**
+ * <code>NioHttpClientMessageDispatcher</code> dispatches Mule events over HTTP using the
+ * connector's {@link NioHttpClient}, so no thread is held while a request waits for a pooled
+ * connection or for its response to arrive.
+ * <p/>
+ * Requests are created by the same transformers used by the {@link HttpClientMessageDispatcher},
+ * and written once their body was serialized. One-way dispatches of asynchronous events return as
+ * soon as the request is queued, errors are reported to the exception listener of the context.
+ * Request-response sends wait for the response status line and headers, the body is streamed
+ * into the response message while it is received.
+ * <p/>
+ * Used when {@link HttpConnector#isNioDispatcher()} is enabled. Only preemptive basic
+ * authentication is supported.
+ */
+public class NioHttpClientMessageDispatcher extends HttpClientMessageDispatcher
+{
+
+    private volatile NioHttpClient nioClient;
+
+    public NioHttpClientMessageDispatcher(OutboundEndpoint endpoint)
+    {
+        super(endpoint);
+    }
+
+    @Override
+    protected void doConnect() throws Exception
+    {
+        super.doConnect();
+        if (nioClient == null)
+        {
+            nioClient = httpConnector.getNioHttpClient();
+        }
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception
+    {
+        nioClient = null;
+        super.doDisconnect();
+    }
+
+    @Override
+    protected void doDispatch(MuleEvent event) throws Exception
+    {
+        if (!event.isSynchronous())
+        {
+            execute(event, new DispatchCallback(event));
+            return;
+        }
+
+        HttpClientResponse response = awaitResponse(event, execute(event, null));
+        try
+        {
+            checkDispatchResponse(event, response);
+        }
+        finally
+        {
+            discardBody(response);
+        }
+    }
+
+    @Override
+    protected MuleMessage doSend(MuleEvent event) throws Exception
+    {
+        HttpClientResponse response = awaitResponse(event, execute(event, null));
+        try
+        {
+            DefaultExceptionPayload ep = null;
+
+            if (returnException(event, response.getStatusCode()))
+            {
+                ep = new DefaultExceptionPayload(new DispatchException(event, getEndpoint(),
+                        new HttpResponseException(response.getStatusText(), response.getStatusCode())));
+            }
+            else if (response.getStatusCode() >= REDIRECT_STATUS_CODE_RANGE_START)
+            {
+                try
+                {
+                    return handleRedirect(response, event);
+                }
+                catch (Exception e)
+                {
+                    ep = new DefaultExceptionPayload(new DispatchException(event, getEndpoint(), e));
+                }
+            }
+            return getResponseFromNioResponse(response, ep);
+        }
+        catch (Exception e)
+        {
+            discardBody(response);
+            if (e instanceof DispatchException)
+            {
+                throw (DispatchException) e;
+            }
+            throw new DispatchException(event, getEndpoint(), e);
+        }
+    }
+
+    protected MuleMessage handleRedirect(HttpClientResponse response, MuleEvent event) throws HttpResponseException, MuleException
+    {
+        String followRedirects = (String) endpoint.getProperty("followRedirects");
+        if (followRedirects == null || "false".equalsIgnoreCase(followRedirects))
+        {
+            if (logger.isInfoEnabled())
+            {
+                logger.info("Received a redirect, but followRedirects=false. Response code: " + response.getStatusCode() + " " + response.getStatusText());
+            }
+            return getResponseFromNioResponse(response, null);
+        }
+        Header locationHeader = response.getFirstHeader(HttpConstants.HEADER_LOCATION);
+        if (locationHeader == null)
+        {
+            throw new HttpResponseException(response.getStatusText(), response.getStatusCode());
+        }
+        discardBody(response);
+        return redirect(locationHeader.getValue(), event);
+    }
+
+    protected MuleMessage getResponseFromNioResponse(HttpClientResponse response, ExceptionPayload ep) throws MuleException
+    {
+        MuleMessage message = createMuleMessage(response);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Http response is: " + message.getOutboundProperty(HttpConnector.HTTP_STATUS_PROPERTY));
+        }
+
+        message.setExceptionPayload(ep);
+        return message;
+    }
+
+    private void checkDispatchResponse(MuleEvent event, HttpClientResponse response) throws DispatchException
+    {
+        if (returnException(event, response.getStatusCode()))
+        {
+            logger.error(getBodyAsString(response));
+
+            Exception cause = new Exception(String.format("Http call returned a status of: %1d %1s",
+                response.getStatusCode(), response.getStatusText()));
+            throw new DispatchException(event, getEndpoint(), cause);
+        }
+        else if (response.getStatusCode() >= REDIRECT_STATUS_CODE_RANGE_START)
+        {
+            if (logger.isInfoEnabled())
+            {
+                logger.info("Received a redirect response code: " + response.getStatusCode() + " " + response.getStatusText());
+            }
+        }
+    }
+
+    private NioHttpClientExchange execute(MuleEvent event, NioHttpClientExchange.Callback callback) throws Exception
+    {
+        HttpMethod httpMethod = getMethod(event);
+        httpConnector.setupClientAuthorization(event, httpMethod, getClient(), endpoint);
+
+        try
+        {
+            processCookies(event);
+            processMuleSession(event, httpMethod);
+
+            NioHttpClientExchange exchange = createExchange(httpMethod, callback);
+            nioClient.execute(exchange);
+            return exchange;
+        }
+        catch (IOException e)
+        {
+            throw new DispatchException(event, getEndpoint(), e);
+        }
+    }
+
+    private HttpClientResponse awaitResponse(MuleEvent event, NioHttpClientExchange exchange) throws DispatchException
+    {
+        try
+        {
+            return exchange.awaitResponse();
+        }
+        catch (IOException e)
+        {
+            throw new DispatchException(event, getEndpoint(), e);
+        }
+    }
+
+    /**
+     * Serializes the request, adding the headers commons-httpclient would add when executing it.
+     */
+    private NioHttpClientExchange createExchange(HttpMethod httpMethod, NioHttpClientExchange.Callback callback) throws IOException
+    {
+        org.apache.commons.httpclient.URI methodUri = httpMethod.getURI();
+        String host;
+        int port;
+        if (methodUri.isAbsoluteURI())
+        {
+            host = methodUri.getHost();
+            port = methodUri.getPort();
+        }
+        else
+        {
+            URI uri = endpoint.getEndpointURI().getUri();
+            host = uri.getHost();
+            port = uri.getPort();
+        }
+        if (port < 0)
+        {
+            port = HttpConstants.DEFAULT_HTTP_PORT;
+        }
+
+        String path = httpMethod.getPath();
+        String requestUri = httpMethod.getQueryString() == null ? path : path + "?" + httpMethod.getQueryString();
+
+        byte[] entity = null;
+        String contentType = null;
+        if (httpMethod instanceof EntityEnclosingMethod)
+        {
+            RequestEntity requestEntity = ((EntityEnclosingMethod) httpMethod).getRequestEntity();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (requestEntity != null)
+            {
+                requestEntity.writeRequest(out);
+                contentType = requestEntity.getContentType();
+            }
+            entity = out.toByteArray();
+        }
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(httpMethod.getName()).append(' ').append(requestUri).append(' ').append(HttpConstants.HTTP11).append(HttpConstants.CRLF);
+        for (Header header : httpMethod.getRequestHeaders())
+        {
+            // the body is sent whole, its length replaces any chunked encoding
+            if (!HttpConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(header.getName())
+                && !HttpConstants.HEADER_TRANSFER_ENCODING.equalsIgnoreCase(header.getName()))
+            {
+                appendHeader(head, header.getName(), header.getValue());
+            }
+        }
+        if (httpMethod.getRequestHeader(HttpConstants.HEADER_HOST) == null)
+        {
+            appendHeader(head, HttpConstants.HEADER_HOST, port == HttpConstants.DEFAULT_HTTP_PORT ? host : host + ":" + port);
+        }
+        if (httpMethod.getRequestHeader(HttpConstants.HEADER_USER_AGENT) == null)
+        {
+            Object userAgent = httpMethod.getParams().getParameter(HttpMethodParams.USER_AGENT);
+            if (userAgent != null)
+            {
+                appendHeader(head, HttpConstants.HEADER_USER_AGENT, userAgent.toString());
+            }
+        }
+        appendAuthorization(head, httpMethod, host, port);
+        appendCookies(head, httpMethod, host, port, path);
+        if (entity != null)
+        {
+            if (contentType != null && httpMethod.getRequestHeader(HttpConstants.HEADER_CONTENT_TYPE) == null)
+            {
+                appendHeader(head, HttpConstants.HEADER_CONTENT_TYPE, contentType);
+            }
+            appendHeader(head, HttpConstants.HEADER_CONTENT_LENGTH, String.valueOf(entity.length));
+        }
+        head.append(HttpConstants.CRLF);
+
+        byte[] headBytes = head.toString().getBytes(httpMethod.getParams().getHttpElementCharset());
+        byte[] request = headBytes;
+        if (entity != null && entity.length > 0)
+        {
+            request = new byte[headBytes.length + entity.length];
+            System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+            System.arraycopy(entity, 0, request, headBytes.length, entity.length);
+        }
+
+        String uri = methodUri.isAbsoluteURI() ? methodUri.toString() : "http://" + host + ":" + port + requestUri;
+        NioHttpClientExchange exchange = new NioHttpClientExchange(host, port, httpMethod.getName(), uri, request,
+            endpoint.getResponseTimeout(), callback);
+        Header connection = httpMethod.getRequestHeader(HttpConstants.HEADER_CONNECTION);
+        exchange.setCloseConnection(connection != null && "close".equalsIgnoreCase(connection.getValue()));
+        return exchange;
+    }
+
+    private void appendAuthorization(StringBuilder head, HttpMethod httpMethod, String host, int port)
+    {
+        HttpClient client = getClient();
+        if (httpMethod.getRequestHeader(HttpConstants.HEADER_AUTHORIZATION) != null
+            || !client.getParams().isAuthenticationPreemptive())
+        {
+            return;
+        }
+        Credentials credentials = client.getState().getCredentials(new AuthScope(host, port));
+        if (credentials instanceof UsernamePasswordCredentials)
+        {
+            appendHeader(head, HttpConstants.HEADER_AUTHORIZATION, BasicScheme.authenticate(
+                (UsernamePasswordCredentials) credentials, httpMethod.getParams().getCredentialCharset()));
+        }
+    }
+
+    private void appendCookies(StringBuilder head, HttpMethod httpMethod, String host, int port, String path)
+    {
+        HttpClient client = getClient();
+        Cookie[] cookies = client.getState().getCookies();
+        if (cookies.length == 0 || httpMethod.getRequestHeader(HttpConstants.HEADER_COOKIE) != null)
+        {
+            return;
+        }
+        CookieSpec cookieSpec = CookiePolicy.getCookieSpec(client.getParams().getCookiePolicy());
+        Cookie[] matching = cookieSpec.match(host, port, path, false, cookies);
+        if (matching.length > 0)
+        {
+            appendHeader(head, HttpConstants.HEADER_COOKIE, cookieSpec.formatCookies(matching));
+        }
+    }
+
+    private void appendHeader(StringBuilder head, String name, String value)
+    {
+        head.append(name).append(": ").append(value).append(HttpConstants.CRLF);
+    }
+
+    private String getBodyAsString(HttpClientResponse response)
+    {
+        InputStream body = response.getBody();
+        if (body == null)
+        {
+            return "";
+        }
+        try
+        {
+            return IOUtils.toString(body, getEndpoint().getEncoding());
+        }
+        catch (IOException e)
+        {
+            return "Unable to read the response body: " + e.getMessage();
+        }
+    }
+
+    private void discardBody(HttpClientResponse response)
+    {
+        if (response.getBody() != null)
+        {
+            IOUtils.closeQuietly(response.getBody());
+        }
+    }
+
+    /**
+     * Checks the response of a one-way request that was dispatched without waiting for it.
+     */
+    private class DispatchCallback implements NioHttpClientExchange.Callback
+    {
+
+        private final MuleEvent event;
+
+        public DispatchCallback(MuleEvent event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public void completed(HttpClientResponse response)
+        {
+            try
+            {
+                checkDispatchResponse(event, response);
+            }
+            catch (DispatchException e)
+            {
+                handleDispatchException(e);
+            }
+            finally
+            {
+                discardBody(response);
+            }
+        }
+
+        @Override
+        public void failed(Exception e)
+        {
+            handleDispatchException(new DispatchException(event, getEndpoint(), e));
+        }
+
+        private void handleDispatchException(DispatchException e)
+        {
+            getEndpoint().getMuleContext().getExceptionListener().handleException(e);
+        }
+    }
+}
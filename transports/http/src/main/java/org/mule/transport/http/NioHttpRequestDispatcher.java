@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import org.mule.api.context.WorkManager;
+import org.mule.api.retry.RetryPolicyTemplate;
+import org.mule.util.concurrent.DaemonThreadFactory;
+import org.mule.util.concurrent.ThreadNameHelper;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpRequestDispatcher} that hands over the accepted connections to a set of
+ * {@link HttpConnectionSelector}, so connections only hold a dispatcher thread while a request
+ * is being processed.
+ * <p/>
+ * Used when {@link HttpConnector#isNioReceiver()} is enabled.
+ */
+class NioHttpRequestDispatcher extends HttpRequestDispatcher
+{
+
+    private final HttpConnectionSelector[] selectors;
+    private final AtomicInteger nextSelector = new AtomicInteger();
+
+    public NioHttpRequestDispatcher(final HttpConnector httpConnector, final RetryPolicyTemplate retryPolicyTemplate, final ServerSocketChannel serverSocketChannel, final WorkManager workManager) throws IOException
+    {
+        super(httpConnector, retryPolicyTemplate, serverSocketChannel.socket(), workManager);
+
+        String threadNamePrefix = ThreadNameHelper.getPrefix(httpConnector.getMuleContext()) + "http.request.selector." + serverSocketChannel.socket().getLocalPort();
+        ThreadFactory threadFactory = new DaemonThreadFactory(threadNamePrefix, getClass().getClassLoader());
+        selectors = new HttpConnectionSelector[httpConnector.getNioSelectorThreads()];
+        try
+        {
+            for (int i = 0; i < selectors.length; i++)
+            {
+                selectors[i] = new HttpConnectionSelector(httpConnector, requestHandOffExecutor);
+                threadFactory.newThread(selectors[i]).start();
+            }
+        }
+        catch (IOException e)
+        {
+            disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void processConnection(Socket socket)
+    {
+        int index = (nextSelector.getAndIncrement() & Integer.MAX_VALUE) % selectors.length;
+        selectors[index].register(socket.getChannel());
+    }
+
+    @Override
+    void disconnect()
+    {
+        for (HttpConnectionSelector selector : selectors)
+        {
+            if (selector != null)
+            {
+                selector.stop();
+            }
+        }
+        super.disconnect();
+    }
+}
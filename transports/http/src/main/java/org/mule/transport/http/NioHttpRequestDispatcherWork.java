@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Dispatches the requests received by a connection watched by a {@link HttpConnectionSelector}.
+ * <p/>
+ * Once there are no more requests ready to be read, a keep alive connection is handed back to the
+ * selector instead of waiting for the next request.
+ */
+class NioHttpRequestDispatcherWork extends HttpRequestDispatcherWork
+{
+
+    private final SocketChannel channel;
+    private final byte[] requestHead;
+    private final HttpConnectionSelector selector;
+
+    NioHttpRequestDispatcherWork(HttpConnector httpConnector, SocketChannel channel, byte[] requestHead, HttpConnectionSelector selector)
+    {
+        super(httpConnector, channel.socket());
+        this.channel = channel;
+        this.requestHead = requestHead;
+        this.selector = selector;
+    }
+
+    @Override
+    protected HttpServerConnection createHttpServerConnection(Socket socket, String encoding) throws IOException
+    {
+        return new HttpServerConnection(socket, requestHead, encoding, getHttpConnector());
+    }
+
+    @Override
+    protected boolean hasPendingRequest(HttpServerConnection connection) throws IOException
+    {
+        return connection.hasBufferedInput();
+    }
+
+    @Override
+    protected boolean releaseIdleConnection(HttpServerConnection connection)
+    {
+        if (!connection.isOpen())
+        {
+            return false;
+        }
+        selector.register(channel);
+        return true;
+    }
+}
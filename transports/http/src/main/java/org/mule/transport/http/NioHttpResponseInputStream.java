@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+
+/**
+ * The body of a response received by a {@link NioHttpClientConnection}. Data is appended by the
+ * selector thread as it is received and read by the thread consuming the response.
+ * <p/>
+ * When flow controlled, the connection stops reading once too much data is waiting to be consumed
+ * and resumes when most of it was read, so a slow consumer does not make the whole body pile up
+ * in memory. Closing the stream before the end of the body discards the rest of it, which is still
+ * read so that the connection can be reused.
+ * <p/>
+ * A consumer waiting longer than the timeout of the exchange for more data gets a
+ * {@link SocketTimeoutException} and the connection is closed.
+ */
+class NioHttpResponseInputStream extends InputStream
+{
+
+    static final int HIGH_WATER_MARK = 64 * 1024;
+    static final int LOW_WATER_MARK = 16 * 1024;
+
+    private final NioHttpClientConnection connection;
+    private final NioHttpClientExchange exchange;
+    private final boolean flowControlled;
+
+    private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+    private int chunkOffset = 0;
+    private int available = 0;
+    private boolean complete = false;
+    private IOException failure;
+    private boolean closed = false;
+    private boolean paused = false;
+    private long lastAppended = System.currentTimeMillis();
+
+    NioHttpResponseInputStream(NioHttpClientConnection connection, NioHttpClientExchange exchange, boolean flowControlled)
+    {
+        this.connection = connection;
+        this.exchange = exchange;
+        this.flowControlled = flowControlled;
+    }
+
+    /**
+     * Appends received data. Called by the selector thread.
+     *
+     * @return true if the connection should stop reading until the consumer catches up
+     */
+    synchronized boolean append(byte[] data, int offset, int length)
+    {
+        if (closed || length == 0)
+        {
+            return false;
+        }
+
+        byte[] chunk = new byte[length];
+        System.arraycopy(data, offset, chunk, 0, length);
+        chunks.add(chunk);
+        available += length;
+        lastAppended = System.currentTimeMillis();
+        notifyAll();
+
+        if (flowControlled && available >= HIGH_WATER_MARK)
+        {
+            paused = true;
+        }
+        return paused;
+    }
+
+    /**
+     * Signals that the whole body was received. Called by the selector thread.
+     */
+    synchronized void complete()
+    {
+        complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Signals that the body could not be completely received, the consumer gets the exception
+     * once it has read the data received so far. Called by the selector thread.
+     */
+    synchronized void fail(IOException e)
+    {
+        if (!complete)
+        {
+            failure = e;
+            notifyAll();
+        }
+    }
+
+    synchronized boolean isComplete()
+    {
+        return complete;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        int read = 0;
+        boolean resume = false;
+        SocketTimeoutException timedOut = null;
+        long timeout = exchange.getTimeout();
+        synchronized (this)
+        {
+            while (chunks.isEmpty() && !complete && failure == null && !closed)
+            {
+                try
+                {
+                    if (timeout > 0)
+                    {
+                        long remaining = lastAppended + timeout - System.currentTimeMillis();
+                        if (remaining <= 0)
+                        {
+                            timedOut = exchange.createTimeoutException();
+                            failure = timedOut;
+                            break;
+                        }
+                        wait(remaining);
+                    }
+                    else
+                    {
+                        wait();
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the HTTP response body");
+                }
+            }
+
+            if (closed)
+            {
+                throw new IOException("Stream closed");
+            }
+            if (chunks.isEmpty())
+            {
+                if (failure != null)
+                {
+                    IOException e = failure instanceof SocketTimeoutException
+                                    ? new SocketTimeoutException("Failed reading the HTTP response body: " + failure.getMessage())
+                                    : new IOException("Failed reading the HTTP response body: " + failure.getMessage());
+                    e.initCause(failure);
+                    if (timedOut != null)
+                    {
+                        connection.bodyTimedOut(exchange, timedOut);
+                    }
+                    throw e;
+                }
+                return -1;
+            }
+
+            while (read < length && !chunks.isEmpty())
+            {
+                byte[] chunk = chunks.getFirst();
+                int count = Math.min(length - read, chunk.length - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, buffer, offset + read, count);
+                read += count;
+                chunkOffset += count;
+                if (chunkOffset == chunk.length)
+                {
+                    chunks.removeFirst();
+                    chunkOffset = 0;
+                }
+            }
+            available -= read;
+
+            if (paused && available <= LOW_WATER_MARK)
+            {
+                paused = false;
+                resume = true;
+            }
+        }
+
+        if (resume)
+        {
+            connection.resumeReading();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int available() throws IOException
+    {
+        return available;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        boolean resume;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            chunks.clear();
+            available = 0;
+            resume = paused;
+            paused = false;
+            notifyAll();
+        }
+
+        if (resume)
+        {
+            connection.resumeReading();
+        }
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.tck.probe.PollingProber;
+import org.mule.tck.probe.Probe;
+import org.mule.tck.size.SmallTest;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SmallTest
+public class NioHttpClientTestCase extends AbstractMuleTestCase
+{
+
+    private static final String HOST = "localhost";
+    private static final int RECEIVE_TIMEOUT = 5000;
+
+    private NioHttpClient client;
+    private TestServer server;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        client = new NioHttpClient(new DaemonThreadFactory("test.http.client"), 1);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        client.stop();
+        if (server != null)
+        {
+            server.close();
+        }
+    }
+
+    @Test
+    public void reusesKeptAliveConnection() throws Exception
+    {
+        server = new TestServer(new EchoResponder());
+
+        assertEquals("/first", readBody(execute("/first").awaitResponse()));
+        assertEquals("/second", readBody(execute("/second").awaitResponse()));
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void streamsResponseBodyWhileItIsReceived() throws Exception
+    {
+        final CountDownLatch firstChunkRead = new CountDownLatch(1);
+        server = new TestServer(new Responder()
+        {
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                write(out, "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nfirst\r\n");
+                assertTrue(firstChunkRead.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+                write(out, "6\r\nsecond\r\n0\r\n\r\n");
+            }
+        });
+
+        HttpClientResponse response = execute("/").awaitResponse();
+        assertEquals(200, response.getStatusCode());
+        byte[] first = new byte[5];
+        assertEquals(5, response.getBody().read(first));
+        assertEquals("first", new String(first));
+        firstChunkRead.countDown();
+        assertEquals("second", readBody(response));
+    }
+
+    @Test
+    public void queuesRequestsWhenAllConnectionsAreBusy() throws Exception
+    {
+        client.setMaxConnectionsPerHost(1);
+        server = new TestServer(new EchoResponder());
+
+        List<NioHttpClientExchange> exchanges = new ArrayList<NioHttpClientExchange>();
+        for (int i = 0; i < 5; i++)
+        {
+            exchanges.add(execute("/" + i));
+        }
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals("/" + i, readBody(exchanges.get(i).awaitResponse()));
+        }
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void pipelinesIdempotentRequests() throws Exception
+    {
+        client.setMaxConnectionsPerHost(1);
+        client.setPipelineDepth(3);
+        final CountDownLatch allReceived = new CountDownLatch(3);
+        server = new TestServer(new EchoResponder()
+        {
+            @Override
+            public void received(String request)
+            {
+                allReceived.countDown();
+            }
+
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                // no response is sent until all the requests were received
+                assertTrue(allReceived.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+                super.respond(request, out);
+            }
+        });
+
+        NioHttpClientExchange first = execute("/first");
+        NioHttpClientExchange second = execute("/second");
+        NioHttpClientExchange third = execute("/third");
+
+        assertEquals("/first", readBody(first.awaitResponse()));
+        assertEquals("/second", readBody(second.awaitResponse()));
+        assertEquals("/third", readBody(third.awaitResponse()));
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void retriesRequestWhenReusedConnectionWasClosed() throws Exception
+    {
+        server = new TestServer(new EchoResponder()
+        {
+            @Override
+            public boolean closeAfter(String request)
+            {
+                // closes without telling the client, as when a kept alive connection times out
+                return true;
+            }
+        });
+
+        assertEquals("/first", readBody(execute("/first").awaitResponse()));
+        assertEquals("/second", readBody(execute("/second").awaitResponse()));
+        assertEquals(2, server.getAcceptedConnections());
+    }
+
+    @Test
+    public void failsWhenResponseTimesOut() throws Exception
+    {
+        server = new TestServer(new Responder()
+        {
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                Thread.sleep(RECEIVE_TIMEOUT);
+            }
+        });
+
+        NioHttpClientExchange exchange = new NioHttpClientExchange(HOST, server.getPort(), "GET", "/", request("GET", "/"), 100, null);
+        client.execute(exchange);
+        try
+        {
+            exchange.awaitResponse();
+            fail("Response should time out");
+        }
+        catch (SocketTimeoutException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void failsWhenResponseBodyStalls() throws Exception
+    {
+        server = new TestServer(new Responder()
+        {
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                write(out, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nfirst");
+                Thread.sleep(RECEIVE_TIMEOUT);
+            }
+        });
+
+        final NioHttpClientExchange exchange = new NioHttpClientExchange(HOST, server.getPort(), "GET", "/", request("GET", "/"), 500, null);
+        client.execute(exchange);
+        InputStream body = exchange.awaitResponse().getBody();
+        byte[] first = new byte[5];
+        assertEquals(5, body.read(first));
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            body.read(first);
+            fail("Response body should time out");
+        }
+        catch (SocketTimeoutException e)
+        {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < RECEIVE_TIMEOUT);
+
+        new PollingProber(RECEIVE_TIMEOUT, 50).check(new Probe()
+        {
+            @Override
+            public boolean isSatisfied()
+            {
+                return exchange.isDone();
+            }
+
+            @Override
+            public String describeFailure()
+            {
+                return "The stalled exchange was not failed";
+            }
+        });
+    }
+
+    @Test
+    public void notifiesCallbackWithWholeResponse() throws Exception
+    {
+        server = new TestServer(new EchoResponder());
+        final AtomicReference<String> body = new AtomicReference<String>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        client.execute(new NioHttpClientExchange(HOST, server.getPort(), "GET", "/callback", request("GET", "/callback"), RECEIVE_TIMEOUT, new NioHttpClientExchange.Callback()
+        {
+            @Override
+            public void completed(HttpClientResponse response)
+            {
+                try
+                {
+                    // the body is already buffered, reading it does not block
+                    assertTrue(((NioHttpResponseInputStream) response.getBody()).isComplete());
+                    body.set(readBody(response));
+                }
+                catch (IOException e)
+                {
+                    body.set(e.toString());
+                }
+                completed.countDown();
+            }
+
+            @Override
+            public void failed(Exception e)
+            {
+                body.set(e.toString());
+                completed.countDown();
+            }
+        }));
+
+        assertTrue(completed.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals("/callback", body.get());
+    }
+
+    @Test
+    public void readsLargeBodyConsumedSlowly() throws Exception
+    {
+        final byte[] content = new byte[10 * NioHttpResponseInputStream.HIGH_WATER_MARK];
+        for (int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte) i;
+        }
+        server = new TestServer(new Responder()
+        {
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                write(out, "HTTP/1.1 200 OK\r\nContent-Length: " + content.length + "\r\n\r\n");
+                out.write(content);
+            }
+        });
+
+        HttpClientResponse response = execute("/").awaitResponse();
+        InputStream body = response.getBody();
+        Thread.sleep(200);
+        assertTrue(body.available() < content.length);
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = body.read(buffer)) >= 0)
+        {
+            received.write(buffer, 0, read);
+        }
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+    }
+
+    @Test
+    public void headResponseHasNoBody() throws Exception
+    {
+        server = new TestServer(new EchoResponder()
+        {
+            @Override
+            public void respond(String request, OutputStream out) throws Exception
+            {
+                if (request.startsWith("HEAD"))
+                {
+                    write(out, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n");
+                }
+                else
+                {
+                    super.respond(request, out);
+                }
+            }
+        });
+
+        NioHttpClientExchange exchange = new NioHttpClientExchange(HOST, server.getPort(), "HEAD", "/", request("HEAD", "/"), RECEIVE_TIMEOUT, null);
+        client.execute(exchange);
+        HttpClientResponse response = exchange.awaitResponse();
+        assertEquals("10", response.getFirstHeader("content-length").getValue());
+        assertNull(response.getBody());
+
+        assertEquals("/again", readBody(execute("/again").awaitResponse()));
+        assertEquals(1, server.getAcceptedConnections());
+    }
+
+    private NioHttpClientExchange execute(String path) throws Exception
+    {
+        NioHttpClientExchange exchange = new NioHttpClientExchange(HOST, server.getPort(), "GET", path, request("GET", path), RECEIVE_TIMEOUT, null);
+        client.execute(exchange);
+        return exchange;
+    }
+
+    private static byte[] request(String method, String path)
+    {
+        return (method + " " + path + " HTTP/1.1\r\nHost: " + HOST + "\r\n\r\n").getBytes();
+    }
+
+    private static String readBody(HttpClientResponse response) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = response.getBody().read(buffer)) >= 0)
+        {
+            out.write(buffer, 0, read);
+        }
+        return out.toString();
+    }
+
+    private static void write(OutputStream out, String data) throws IOException
+    {
+        out.write(data.getBytes());
+        out.flush();
+    }
+
+    private static abstract class Responder
+    {
+
+        void received(String request)
+        {
+        }
+
+        abstract void respond(String request, OutputStream out) throws Exception;
+
+        boolean closeAfter(String request)
+        {
+            return false;
+        }
+    }
+
+    private static class EchoResponder extends Responder
+    {
+
+        @Override
+        public void respond(String request, OutputStream out) throws Exception
+        {
+            String path = request.split(" ")[1];
+            write(out, "HTTP/1.1 200 OK\r\nContent-Length: " + path.length() + "\r\n\r\n" + path);
+        }
+    }
+
+    /**
+     * Answers GET and HEAD requests on a socket, reading requests as soon as they arrive so
+     * pipelined requests can be detected.
+     */
+    private static class TestServer implements Runnable
+    {
+
+        private final ServerSocket serverSocket;
+        private final Responder responder;
+        private final AtomicInteger acceptedConnections = new AtomicInteger();
+        private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+        TestServer(Responder responder) throws IOException
+        {
+            this.responder = responder;
+            this.serverSocket = new ServerSocket(0);
+            new DaemonThreadFactory("test.http.server").newThread(this).start();
+        }
+
+        int getPort()
+        {
+            return serverSocket.getLocalPort();
+        }
+
+        int getAcceptedConnections()
+        {
+            return acceptedConnections.get();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    final Socket socket = serverSocket.accept();
+                    acceptedConnections.incrementAndGet();
+                    sockets.add(socket);
+                    new DaemonThreadFactory("test.http.connection").newThread(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            serve(socket);
+                        }
+                    }).start();
+                }
+            }
+            catch (IOException e)
+            {
+                // closed
+            }
+        }
+
+        private void serve(Socket socket)
+        {
+            final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+            final InputStream in;
+            try
+            {
+                in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                String request;
+                while ((request = readRequestHead(in)) != null)
+                {
+                    requests.add(request);
+                    responder.received(request);
+                    readPipelinedRequests(in, requests);
+
+                    while (!requests.isEmpty())
+                    {
+                        String next = requests.remove(0);
+                        responder.respond(next, out);
+                        if (responder.closeAfter(next))
+                        {
+                            socket.close();
+                            return;
+                        }
+                        readPipelinedRequests(in, requests);
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                // connection closed
+            }
+            finally
+            {
+                try
+                {
+                    socket.close();
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
+            }
+        }
+
+        private void readPipelinedRequests(InputStream in, List<String> requests) throws IOException
+        {
+            long end = System.currentTimeMillis() + 100;
+            while (System.currentTimeMillis() < end)
+            {
+                if (in.available() > 0)
+                {
+                    String request = readRequestHead(in);
+                    requests.add(request);
+                    responder.received(request);
+                }
+                else
+                {
+                    try
+                    {
+                        Thread.sleep(10);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private String readRequestHead(InputStream in) throws IOException
+        {
+            StringBuilder head = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0)
+            {
+                head.append((char) c);
+                if (head.length() >= 4 && head.substring(head.length() - 4).equals("\r\n\r\n"))
+                {
+                    return head.toString();
+                }
+            }
+            return null;
+        }
+
+        void close() throws IOException
+        {
+            serverSocket.close();
+            synchronized (sockets)
+            {
+                for (Socket socket : sockets)
+                {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http.functional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.api.MuleMessage;
+import org.mule.api.client.MuleClient;
+import org.mule.tck.junit4.FunctionalTestCase;
+import org.mule.tck.junit4.rule.DynamicPort;
+import org.mule.transport.http.HttpConnector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HttpNioDispatcherFunctionalTestCase extends FunctionalTestCase
+{
+
+    @Rule
+    public DynamicPort dynamicPort = new DynamicPort("port1");
+
+    @Override
+    protected String getConfigFile()
+    {
+        return "http-nio-dispatcher-config.xml";
+    }
+
+    @Test
+    public void usesNioDispatcher() throws Exception
+    {
+        HttpConnector connector = (HttpConnector) muleContext.getRegistry().lookupConnector("nioConnector");
+        assertTrue(connector.isNioDispatcher());
+        assertEquals(2, connector.getNioMaxConnectionsPerHost());
+    }
+
+    @Test
+    public void sendsRequests() throws Exception
+    {
+        MuleClient client = muleContext.getClient();
+
+        MuleMessage response = client.send("vm://in", "first", null);
+        assertEquals("first Received", response.getPayloadAsString());
+        int status = response.getInboundProperty(HttpConnector.HTTP_STATUS_PROPERTY, 0);
+        assertEquals(200, status);
+
+        response = client.send("vm://in", "second", null);
+        assertEquals("second Received", response.getPayloadAsString());
+    }
+
+    @Test
+    public void sendsConcurrentRequestsThroughBoundedPool() throws Exception
+    {
+        final MuleClient client = muleContext.getClient();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try
+        {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < 10; i++)
+            {
+                final String payload = "request" + i;
+                responses.add(executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call() throws Exception
+                    {
+                        return client.send("vm://in", payload, null).getPayloadAsString();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 10; i++)
+            {
+                assertEquals("request" + i + " Received", responses.get(i).get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.http.functional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.mule.tck.junit4.FunctionalTestCase;
+import org.mule.tck.junit4.rule.DynamicPort;
+import org.mule.transport.http.HttpConnector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HttpNioReceiverFunctionalTestCase extends FunctionalTestCase
+{
+
+    @Rule
+    public DynamicPort dynamicPort = new DynamicPort("port1");
+
+    @Override
+    protected String getConfigFile()
+    {
+        return "http-nio-receiver-config.xml";
+    }
+
+    @Test
+    public void usesNioReceiver() throws Exception
+    {
+        HttpConnector connector = (HttpConnector) muleContext.getRegistry().lookupConnector("nioConnector");
+        assertTrue(connector.isNioReceiver());
+        assertEquals(2, connector.getNioSelectorThreads());
+    }
+
+    @Test
+    public void processesRequestsOnKeptAliveConnection() throws Exception
+    {
+        Socket socket = connect();
+        try
+        {
+            send(socket, post("first"));
+            assertEquals("first Received", readResponseBody(socket));
+
+            // Gives the connection time to go back to the selector
+            Thread.sleep(200);
+
+            send(socket, post("second"));
+            assertEquals("second Received", readResponseBody(socket));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void processesPipelinedRequests() throws Exception
+    {
+        Socket socket = connect();
+        try
+        {
+            send(socket, post("first") + post("second"));
+            assertEquals("first Received", readResponseBody(socket));
+            assertEquals("second Received", readResponseBody(socket));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void processesRequestHeadSentInParts() throws Exception
+    {
+        Socket socket = connect();
+        try
+        {
+            String request = post("split");
+            int split = request.indexOf("Content-Length");
+            send(socket, request.substring(0, split));
+            Thread.sleep(200);
+            send(socket, request.substring(split));
+            assertEquals("split Received", readResponseBody(socket));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void idleConnectionsDoNotHoldReceiverThreads() throws Exception
+    {
+        // More idle connections than receiver threads available
+        List<Socket> idleSockets = new ArrayList<Socket>();
+        try
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                Socket idleSocket = connect();
+                idleSockets.add(idleSocket);
+                send(idleSocket, post("idle" + i));
+                assertEquals("idle" + i + " Received", readResponseBody(idleSocket));
+            }
+
+            Socket socket = connect();
+            try
+            {
+                send(socket, post("active"));
+                assertEquals("active Received", readResponseBody(socket));
+            }
+            finally
+            {
+                socket.close();
+            }
+        }
+        finally
+        {
+            for (Socket idleSocket : idleSockets)
+            {
+                idleSocket.close();
+            }
+        }
+    }
+
+    private Socket connect() throws IOException
+    {
+        Socket socket = new Socket("localhost", dynamicPort.getNumber());
+        socket.setSoTimeout(RECEIVE_TIMEOUT);
+        return socket;
+    }
+
+    private String post(String body)
+    {
+        return "POST /echo HTTP/1.1\r\n"
+               + "Host: localhost\r\n"
+               + "Content-Type: text/plain\r\n"
+               + "Content-Length: " + body.length() + "\r\n"
+               + "\r\n"
+               + body;
+    }
+
+    private void send(Socket socket, String data) throws IOException
+    {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes("US-ASCII"));
+        out.flush();
+    }
+
+    private String readResponseBody(Socket socket) throws IOException
+    {
+        // Read byte by byte, so nothing from the next response is consumed
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        assertTrue(statusLine, statusLine.startsWith("HTTP/1.1 200"));
+
+        int contentLength = -1;
+        boolean chunked = false;
+        String header;
+        while ((header = readLine(in)).length() > 0)
+        {
+            String name = header.substring(0, header.indexOf(':')).trim();
+            String value = header.substring(header.indexOf(':') + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length"))
+            {
+                contentLength = Integer.parseInt(value);
+            }
+            else if (name.equalsIgnoreCase("Transfer-Encoding") && value.equalsIgnoreCase("chunked"))
+            {
+                chunked = true;
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (chunked)
+        {
+            int chunkSize;
+            while ((chunkSize = Integer.parseInt(readLine(in).trim(), 16)) > 0)
+            {
+                readFully(in, body, chunkSize);
+                readLine(in);
+            }
+            readLine(in);
+        }
+        else
+        {
+            readFully(in, body, contentLength);
+        }
+        return body.toString("UTF-8");
+    }
+
+    private void readFully(InputStream in, ByteArrayOutputStream target, int length) throws IOException
+    {
+        for (int i = 0; i < length; i++)
+        {
+            int read = in.read();
+            if (read < 0)
+            {
+                throw new IOException("Unexpected end of response");
+            }
+            target.write(read);
+        }
+    }
+
+    private String readLine(InputStream in) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        int read;
+        while ((read = in.read()) != '\n')
+        {
+            if (read < 0)
+            {
+                throw new IOException("Unexpected end of response");
+            }
+            if (read != '\r')
+            {
+                line.append((char) read);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import org.mule.api.DefaultMuleException;
+import org.mule.api.endpoint.ImmutableEndpoint;
+import org.mule.config.i18n.MessageFactory;
+import org.mule.util.concurrent.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sends the messages of one-way dispatches in the background, in batches. Each batch is sent
+ * on a transacted session and committed at once, so the broker acknowledges a whole batch
+ * instead of every message.
+ * <p/>
+ * A batch is sent once it reaches the configured size or when the flush interval elapses since
+ * its first message was queued. Dispatching blocks while the queue of messages waiting to be
+ * sent is full.
+ * <p/>
+ * Destinations are resolved and messages sent on the sessions of the sender, which belong to
+ * its thread.
+ * <p/>
+ * The messages are sent after the dispatch returned, so failures can't be reported to the
+ * flow that dispatched them. A batch that can't be sent is rolled back and sent again on new
+ * sessions. If that fails too, or the connection fails, the sender stops: the messages it could
+ * not send are reported to the exception listener of the Mule context and later dispatches
+ * fail until the connector reconnects with a new sender.
+ */
+public class JmsBatchSender implements Runnable
+{
+
+    /**
+     * How long the sender thread waits for messages, and dispatches wait for room in the queue,
+     * before checking whether the sender was stopped or failed.
+     */
+    private static final long POLL_TIMEOUT = 1000;
+
+    protected final transient Log logger = LogFactory.getLog(getClass());
+
+    private final JmsConnector connector;
+    private final Connection connection;
+    private final long flushInterval;
+    private final int batchSize;
+    private final BlockingQueue<PendingSend> queue;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile Exception failure;
+
+    // only used by the sender thread, keyed by topic
+    private final Map<Boolean, BatchSession> sessions = new HashMap<Boolean, BatchSession>();
+
+    public JmsBatchSender(JmsConnector connector, Connection connection, String threadName, long flushInterval, int batchSize)
+    {
+        this.connector = connector;
+        this.connection = connection;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<PendingSend>(batchSize * 2);
+        this.thread = new DaemonThreadFactory(threadName).newThread(this);
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Queues a message to be sent to the destination of the endpoint with the next batch, waiting
+     * if too many messages are queued.
+     *
+     * @throws JMSException if the sender is stopped or failed
+     */
+    public void send(ImmutableEndpoint endpoint, Message message, boolean persistent, int priority, long ttl,
+                     boolean topic) throws JMSException, InterruptedException
+    {
+        checkAccepting();
+        PendingSend pending = new PendingSend(endpoint, message, persistent, priority, ttl, topic);
+        while (!queue.offer(pending, POLL_TIMEOUT, TimeUnit.MILLISECONDS))
+        {
+            checkAccepting();
+        }
+    }
+
+    private void checkAccepting() throws JMSException
+    {
+        Exception cause = failure;
+        if (cause != null)
+        {
+            JMSException e = new JMSException("The batch sender of connector " + connector.getName() + " failed: " + cause);
+            e.setLinkedException(cause);
+            throw e;
+        }
+        if (!running)
+        {
+            throw new JMSException("The batch sender of connector " + connector.getName() + " is stopped");
+        }
+    }
+
+    /**
+     * Stops sending because the connection failed. Can be called from any thread.
+     */
+    public void fail(Exception cause)
+    {
+        failure = cause;
+    }
+
+    /**
+     * Sends the queued messages and stops the sender thread.
+     */
+    public void stop()
+    {
+        running = false;
+        try
+        {
+            thread.join(flushInterval + connector.getMuleContext().getConfiguration().getShutdownTimeout());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive())
+        {
+            // queued by dispatches that raced with the end of the sender thread
+            List<PendingSend> unsent = new ArrayList<PendingSend>();
+            queue.drainTo(unsent);
+            reportUnsent(unsent.size(), failure);
+        }
+    }
+
+    public void run()
+    {
+        List<PendingSend> batch = new ArrayList<PendingSend>(batchSize);
+        try
+        {
+            while ((running || !queue.isEmpty()) && failure == null)
+            {
+                try
+                {
+                    collectBatch(batch);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+                if (!batch.isEmpty() && failure == null && sendBatch(batch))
+                {
+                    batch.clear();
+                }
+            }
+        }
+        finally
+        {
+            closeSessions();
+            if (!batch.isEmpty() || !queue.isEmpty())
+            {
+                queue.drainTo(batch);
+                reportUnsent(batch.size(), failure);
+            }
+        }
+    }
+
+    private void collectBatch(List<PendingSend> batch) throws InterruptedException
+    {
+        PendingSend first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        if (first == null)
+        {
+            return;
+        }
+        batch.add(first);
+
+        // a stopped sender flushes what it has without waiting for the interval to elapse
+        long deadline = System.currentTimeMillis() + flushInterval;
+        while (true)
+        {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.currentTimeMillis();
+            if (batch.size() >= batchSize || remaining <= 0 || !running || failure != null)
+            {
+                return;
+            }
+            PendingSend next = queue.poll(Math.min(remaining, POLL_TIMEOUT), TimeUnit.MILLISECONDS);
+            if (next != null)
+            {
+                batch.add(next);
+            }
+        }
+    }
+
+    /**
+     * @return false if the batch could not be sent, in which case the sender failed
+     */
+    private boolean sendBatch(List<PendingSend> batch)
+    {
+        try
+        {
+            sendBatchOnce(batch);
+            return true;
+        }
+        catch (Exception e)
+        {
+            if (failure != null)
+            {
+                return false;
+            }
+            logger.debug("Failed to send batch, sending it again on new sessions", e);
+        }
+
+        try
+        {
+            sendBatchOnce(batch);
+            return true;
+        }
+        catch (Exception e)
+        {
+            if (failure == null)
+            {
+                failure = e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Sends and commits the batch, or rolls it back and closes the sessions if it fails.
+     */
+    private void sendBatchOnce(List<PendingSend> batch) throws Exception
+    {
+        List<BatchSession> used = new ArrayList<BatchSession>(2);
+        try
+        {
+            for (PendingSend pending : batch)
+            {
+                BatchSession session = getSession(pending.topic);
+                if (!used.contains(session))
+                {
+                    used.add(session);
+                }
+                Destination destination = session.getDestination(pending.endpoint);
+                MessageProducer producer = session.getProducer(destination, pending.topic);
+                connector.getJmsSupport().send(producer, pending.message, pending.persistent, pending.priority,
+                                               pending.ttl, pending.topic, pending.endpoint);
+            }
+            for (BatchSession session : used)
+            {
+                session.session.commit();
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Sent batch of " + batch.size() + " messages");
+            }
+        }
+        catch (Exception e)
+        {
+            for (BatchSession session : used)
+            {
+                try
+                {
+                    session.session.rollback();
+                }
+                catch (JMSException rollbackException)
+                {
+                    logger.debug("Failed to roll back batch", rollbackException);
+                }
+            }
+            // the sessions may be broken, new ones are created for the next attempt
+            closeSessions();
+            throw e;
+        }
+    }
+
+    private void reportUnsent(int count, Exception cause)
+    {
+        if (count == 0)
+        {
+            return;
+        }
+        connector.getMuleContext().getExceptionListener().handleException(new DefaultMuleException(
+            MessageFactory.createStaticMessage("Failed to send " + count + " messages dispatched through connector "
+                                               + connector.getName()), cause));
+    }
+
+    private BatchSession getSession(boolean topic) throws JMSException
+    {
+        BatchSession session = sessions.get(topic);
+        if (session == null)
+        {
+            session = new BatchSession(connector.getJmsSupport().createSession(connection, topic, true,
+                                                                              Session.SESSION_TRANSACTED,
+                                                                              connector.isNoLocal()));
+            sessions.put(topic, session);
+        }
+        return session;
+    }
+
+    private void closeSessions()
+    {
+        for (BatchSession session : sessions.values())
+        {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    private class BatchSession
+    {
+
+        private final Session session;
+        private final Map<String, Destination> destinations = new HashMap<String, Destination>();
+        private final Map<Destination, MessageProducer> producers = new HashMap<Destination, MessageProducer>();
+
+        private BatchSession(Session session)
+        {
+            this.session = session;
+        }
+
+        private Destination getDestination(ImmutableEndpoint endpoint) throws JMSException
+        {
+            String address = endpoint.getEndpointURI().getAddress();
+            Destination destination = destinations.get(address);
+            if (destination == null)
+            {
+                if (destinations.size() >= JmsSessionCache.MAX_PRODUCERS_PER_SESSION)
+                {
+                    destinations.clear();
+                }
+                destination = connector.getJmsSupport().createDestination(session, endpoint);
+                destinations.put(address, destination);
+            }
+            return destination;
+        }
+
+        private MessageProducer getProducer(Destination destination, boolean topic) throws JMSException
+        {
+            MessageProducer producer = producers.get(destination);
+            if (producer == null)
+            {
+                if (producers.size() >= JmsSessionCache.MAX_PRODUCERS_PER_SESSION)
+                {
+                    closeProducers();
+                }
+                producer = connector.getJmsSupport().createProducer(session, destination, topic);
+                producers.put(destination, producer);
+            }
+            return producer;
+        }
+
+        private void closeProducers()
+        {
+            for (MessageProducer producer : producers.values())
+            {
+                connector.closeQuietly(producer);
+            }
+            producers.clear();
+        }
+
+        private void close()
+        {
+            closeProducers();
+            connector.closeQuietly(session);
+        }
+    }
+
+    private static final class PendingSend
+    {
+
+        private final ImmutableEndpoint endpoint;
+        private final Message message;
+        private final boolean persistent;
+        private final int priority;
+        private final long ttl;
+        private final boolean topic;
+
+        private PendingSend(ImmutableEndpoint endpoint, Message message, boolean persistent, int priority, long ttl,
+                            boolean topic)
+        {
+            this.endpoint = endpoint;
+            this.message = message;
+            this.persistent = persistent;
+            this.priority = priority;
+            this.ttl = ttl;
+            this.topic = topic;
+        }
+    }
+}
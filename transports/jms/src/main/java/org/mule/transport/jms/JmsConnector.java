@@ -39,6 +39,7 @@ import org.mule.transport.jms.jndi.SimpleJndiNameResolver;
 import org.mule.transport.jms.redelivery.AutoDiscoveryRedeliveryHandlerFactory;
 import org.mule.transport.jms.redelivery.RedeliveryHandlerFactory;
 import org.mule.util.BeanUtils;
+import org.mule.util.concurrent.ThreadNameHelper;
 
 import java.text.MessageFormat;
 import java.util.Map;
@@ -165,6 +166,36 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
      */
     private boolean returnOriginalMessageAsReply = false;
 
+    /**
+     * Whether request/response calls receive their replies on a single temporary queue shared by
+     * all the calls made through this connector, instead of a temporary destination per call.
+     */
+    private boolean sharedReplyToDestination = false;
+
+    private JmsSharedReplyToConsumer sharedReplyToConsumer;
+
+    /**
+     * Maximum number of idle sessions kept open to dispatch messages outside transactions. The
+     * producers created on them are kept open too. 0 disables the cache, and a session is
+     * created and closed for every dispatch.
+     */
+    private int sessionCacheSize = 0;
+
+    private volatile JmsSessionCache sessionCache;
+
+    /**
+     * When greater than 0, one-way dispatches outside transactions are sent in the background,
+     * in batches committed at once, at most this many milliseconds after being dispatched.
+     */
+    private long asyncSendFlushInterval = 0;
+
+    /**
+     * Maximum number of messages sent in one batch when {@link #asyncSendFlushInterval} is set.
+     */
+    private int asyncSendBatchSize = 100;
+
+    private volatile JmsBatchSender batchSender;
+
     /**
      * In-container embedded mode disables some features for strict Java EE compliance.
      */
@@ -349,6 +380,7 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
     @Override
     protected void doDispose()
     {
+        stopDispatchResources();
         if (connection != null)
         {
             try
@@ -475,6 +507,18 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
 
     public void onException(JMSException jmsException)
     {
+        // the cached sessions and the batch sender belong to the failed connection
+        JmsSessionCache cache = sessionCache;
+        if (cache != null)
+        {
+            cache.invalidate();
+        }
+        JmsBatchSender sender = batchSender;
+        if (sender != null)
+        {
+            sender.fail(jmsException);
+        }
+
         final JmsConnector jmsConnector = JmsConnector.this;
         Map receivers = jmsConnector.getReceivers();
         boolean isMultiConsumerReceiver = false;
@@ -518,11 +562,23 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
         {
             connection.start();
         }
+        if (sessionCacheSize > 0)
+        {
+            sessionCache = new JmsSessionCache(this, connection, sessionCacheSize);
+        }
+        if (asyncSendFlushInterval > 0)
+        {
+            batchSender = new JmsBatchSender(this, connection, ThreadNameHelper.getPrefix(muleContext)
+                                                               + "jms.batch.sender." + getName(),
+                                             asyncSendFlushInterval, asyncSendBatchSize);
+            batchSender.start();
+        }
     }
 
     @Override
     protected void doDisconnect() throws Exception
     {
+        stopDispatchResources();
         try
         {
             if (connection != null)
@@ -626,6 +682,78 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
         return session;
     }
 
+    /**
+     * Returns the consumer receiving the replies to request/response calls when
+     * {@link #isSharedReplyToDestination()} is set, creating it on the current connection if
+     * needed. A consumer created on a previous connection is replaced after a reconnection.
+     */
+    public synchronized JmsSharedReplyToConsumer getSharedReplyToConsumer() throws JMSException
+    {
+        if (connection == null)
+        {
+            throw new JMSException("No JMS Connection");
+        }
+        if (sharedReplyToConsumer == null || !sharedReplyToConsumer.isConsumingFrom(connection))
+        {
+            if (sharedReplyToConsumer != null)
+            {
+                sharedReplyToConsumer.close();
+            }
+            sharedReplyToConsumer = new JmsSharedReplyToConsumer(this, connection);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Created " + sharedReplyToConsumer);
+            }
+        }
+        return sharedReplyToConsumer;
+    }
+
+    /**
+     * Sends the messages still waiting in the batch sender and closes the sessions that belong
+     * to the current connection, before the connection itself is closed.
+     */
+    private void stopDispatchResources()
+    {
+        if (batchSender != null)
+        {
+            batchSender.stop();
+            batchSender = null;
+        }
+        if (sessionCache != null)
+        {
+            sessionCache.invalidate();
+            sessionCache = null;
+        }
+        closeSharedReplyToConsumer();
+    }
+
+    /**
+     * @return the cache of sessions used to dispatch on the current connection, or null if
+     *         {@link #getSessionCacheSize()} is 0 or the connector is not connected
+     */
+    public JmsSessionCache getSessionCache()
+    {
+        return sessionCache;
+    }
+
+    /**
+     * @return the sender of one-way dispatches on the current connection, or null if
+     *         {@link #getAsyncSendFlushInterval()} is 0 or the connector is not connected
+     */
+    public JmsBatchSender getBatchSender()
+    {
+        return batchSender;
+    }
+
+    private synchronized void closeSharedReplyToConsumer()
+    {
+        if (sharedReplyToConsumer != null)
+        {
+            sharedReplyToConsumer.close();
+            sharedReplyToConsumer = null;
+        }
+    }
+
     @Override
     protected void doStart() throws MuleException
     {
@@ -1328,6 +1456,61 @@ public class JmsConnector extends AbstractConnector implements ExceptionListener
         this.returnOriginalMessageAsReply = returnOriginalMessageAsReply;
     }
 
+    public boolean isSharedReplyToDestination()
+    {
+        return sharedReplyToDestination;
+    }
+
+    public void setSharedReplyToDestination(boolean sharedReplyToDestination)
+    {
+        this.sharedReplyToDestination = sharedReplyToDestination;
+    }
+
+    public int getSessionCacheSize()
+    {
+        return sessionCacheSize;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize)
+    {
+        if (sessionCacheSize < 0)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("sessionCacheSize", sessionCacheSize).toString());
+        }
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public long getAsyncSendFlushInterval()
+    {
+        return asyncSendFlushInterval;
+    }
+
+    public void setAsyncSendFlushInterval(long asyncSendFlushInterval)
+    {
+        if (asyncSendFlushInterval < 0)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("asyncSendFlushInterval", asyncSendFlushInterval).toString());
+        }
+        this.asyncSendFlushInterval = asyncSendFlushInterval;
+    }
+
+    public int getAsyncSendBatchSize()
+    {
+        return asyncSendBatchSize;
+    }
+
+    public void setAsyncSendBatchSize(int asyncSendBatchSize)
+    {
+        if (asyncSendBatchSize < 1)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("asyncSendBatchSize", asyncSendBatchSize).toString());
+        }
+        this.asyncSendBatchSize = asyncSendBatchSize;
+    }
+
     /**
      * @return Returns underlying connection factory properties.
      */
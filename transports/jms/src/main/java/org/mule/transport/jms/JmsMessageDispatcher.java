@@ -100,8 +100,13 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
         MessageProducer producer = null;
         MessageConsumer consumer = null;
         Destination replyTo = null;
+        JmsSharedReplyToConsumer sharedReplyToConsumer = null;
+        JmsSharedReplyToConsumer.PendingReply pendingReply = null;
+        JmsSessionCache sessionCache = null;
+        JmsSessionCache.CachedSession cachedSession = null;
         boolean transacted = false;
         boolean cached = false;
+        boolean failed = false;
         boolean useReplyToDestination;
 
         final Transaction muleTx = TransactionCoordination.getInstance().getTransaction();
@@ -115,7 +120,34 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
 
         try
         {
-            session = connector.getTransactionalResource(endpoint);
+            boolean topic = connector.getTopicResolver().isTopic(endpoint, true);
+            boolean outsideTransaction = muleTx == null && !endpoint.getTransactionConfig().isTransacted();
+
+            // One-way dispatches outside transactions can be sent later in a batch, resolving
+            // a reply-to destination needs a session of the dispatcher though
+            JmsBatchSender batchSender = null;
+            if (outsideTransaction && !doSend && !endpoint.getExchangePattern().hasResponse() && !hasReplyTo(event))
+            {
+                batchSender = connector.getBatchSender();
+            }
+
+            // Sessions waiting for replies are not cached, the reply consumer is created on them.
+            // The batch sender resolves the destination and sends on its own sessions instead, as
+            // any session of this call is closed before the batch is sent.
+            sessionCache = connector.getSessionCache();
+            Destination dest = null;
+            if (batchSender == null && sessionCache != null && outsideTransaction && !returnResponse(event, doSend))
+            {
+                cachedSession = sessionCache.acquire(topic);
+                cached = true;
+                session = cachedSession.getSession();
+                dest = cachedSession.getDestination(endpoint);
+            }
+            else if (batchSender == null)
+            {
+                session = connector.getTransactionalResource(endpoint);
+                dest = connector.getJmsSupport().createDestination(session, endpoint);
+            }
 
             transacted = (muleTx != null && muleTx.hasResource(connector.getConnection()) || endpoint.getTransactionConfig().isTransacted());
 
@@ -123,10 +155,11 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
             // in the same transaction using a replyTo destination
             useReplyToDestination = returnResponse(event, doSend) && !transacted;
 
-            boolean topic = connector.getTopicResolver().isTopic(endpoint, true);
-
-            Destination dest = connector.getJmsSupport().createDestination(session, endpoint);
-            producer = connector.getJmsSupport().createProducer(session, dest, topic);
+            if (batchSender == null)
+            {
+                producer = cached ? cachedSession.getProducer(dest, topic)
+                                  : connector.getJmsSupport().createProducer(session, dest, topic);
+            }
 
             Object message = event.getMessage().getPayload();
             if (!(message instanceof Message))
@@ -141,6 +174,10 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
             MuleMessage eventMsg = event.getMessage();
 
             replyTo = getReplyToDestination(msg, session, event, useReplyToDestination, topic);
+            if (useReplyToDestination)
+            {
+                sharedReplyToConsumer = getSharedReplyToConsumer(replyTo);
+            }
 
             // Set the replyTo property
             if (replyTo != null)
@@ -151,6 +188,21 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
             //Allow overrides to alter the message if necessary
             processMessage(msg, event);
 
+            // A reply matched by a correlation ID set on the request can arrive as soon as it is
+            // sent, so the shared consumer must be waiting for it before sending
+            if (sharedReplyToConsumer != null && msg.getJMSCorrelationID() != null)
+            {
+                pendingReply = sharedReplyToConsumer.register(msg.getJMSCorrelationID());
+                if (pendingReply == null)
+                {
+                    // Another call is waiting for a reply with the same correlation ID, so replies
+                    // could not be told apart on the shared destination
+                    sharedReplyToConsumer = null;
+                    replyTo = connector.getJmsSupport().createTemporaryDestination(session, topic);
+                    msg.setJMSReplyTo(replyTo);
+                }
+            }
+
             // QoS support
             long ttl = eventMsg.getOutboundProperty(JmsConstants.TIME_TO_LIVE_PROPERTY, Message.DEFAULT_TIME_TO_LIVE);
             int priority = eventMsg.getOutboundProperty(JmsConstants.PRIORITY_PROPERTY, Message.DEFAULT_PRIORITY);
@@ -182,9 +234,45 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
                        "\n  JMSPriority=" + priority +
                        "\n  JMSReplyTo=" + msg.getJMSReplyTo());
             }
+            if (batchSender != null)
+            {
+                batchSender.send(endpoint, msg, persistent, priority, ttl, topic);
+                return null;
+            }
             connector.getJmsSupport().send(producer, msg, persistent, priority, ttl, topic, endpoint);
 
-            if (useReplyToDestination && replyTo != null)
+            if (useReplyToDestination && sharedReplyToConsumer != null)
+            {
+                if (pendingReply == null)
+                {
+                    // The reply is correlated by the message ID assigned when sending
+                    pendingReply = sharedReplyToConsumer.register(msg.getJMSMessageID());
+                    if (pendingReply == null)
+                    {
+                        throw new JMSException("Already waiting for a reply to message " + msg.getJMSMessageID());
+                    }
+                }
+
+                int timeout = event.getTimeout();
+
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Waiting for return event for: " + timeout + " ms on shared " + replyTo
+                                 + " with correlation ID " + pendingReply.getCorrelationId());
+                }
+
+                Message result = sharedReplyToConsumer.awaitReply(pendingReply, timeout);
+                if (result == null)
+                {
+                    logger.debug("No message was returned via replyTo destination " + replyTo);
+                    return createNullMuleMessage();
+                }
+                else
+                {
+                    return createMessageWithJmsMessagePayload(result);
+                }
+            }
+            else if (useReplyToDestination && replyTo != null)
             {
                 consumer = createReplyToConsumer(msg, event, session, replyTo, topic);
 
@@ -247,13 +335,29 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
                 return returnOriginalMessageAsReply ? createMuleMessage(msg) : null;
             }
         }
+        catch (JMSException e)
+        {
+            failed = true;
+            throw e;
+        }
         finally
         {
-            connector.closeQuietly(producer);
+            // Cached producers stay open with their session
+            if (!cached)
+            {
+                connector.closeQuietly(producer);
+            }
             connector.closeQuietly(consumer);
 
+            if (pendingReply != null)
+            {
+                sharedReplyToConsumer.cancel(pendingReply);
+            }
+
             // TODO AP check if TopicResolver is to be utilized for temp destinations as well
-            if (replyTo != null && (replyTo instanceof TemporaryQueue || replyTo instanceof TemporaryTopic))
+            // The shared reply destination outlives this call, so it is never deleted here
+            if (replyTo != null && sharedReplyToConsumer == null
+                && (replyTo instanceof TemporaryQueue || replyTo instanceof TemporaryTopic))
             {
                 if (replyTo instanceof TemporaryQueue)
                 {
@@ -269,7 +373,11 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
 
             // If the session is from the current transaction, it is up to the
             // transaction to close it.
-            if (session != null && !cached && !transacted)
+            if (cachedSession != null)
+            {
+                sessionCache.release(cachedSession, failed);
+            }
+            else if (session != null && !cached && !transacted)
             {
                 connector.closeQuietly(session);
             }
@@ -338,6 +446,13 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
      * @throws JMSException if the JmsMessage cannot be written to, this should not happen because the JMSMessage passed
      *                      in will always be newly created
      */
+    private boolean hasReplyTo(MuleEvent event)
+    {
+        MuleMessage message = event.getMessage();
+        return message.getOutboundProperty(JmsConstants.JMS_REPLY_TO) != null
+               || message.getOutboundProperty(MuleProperties.MULE_REPLY_TO_PROPERTY) != null;
+    }
+
     protected boolean isHandleReplyTo(Message msg, MuleEvent event) throws JMSException
     {
         return connector.supportsProperty(JmsConstants.JMS_REPLY_TO);
@@ -391,6 +506,27 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
                                                         connector.isNoLocal(), null, topic, endpoint);
     }
 
+    /**
+     * @return true if the replies to request/response calls are received on the shared reply
+     *         destination of the connector instead of a temporary destination per call
+     */
+    protected boolean isUseSharedReplyToDestination(boolean topic)
+    {
+        // Listeners can't be registered in embedded mode, and replies to topics are not
+        // queued for a single consumer
+        return connector.isSharedReplyToDestination() && !topic && !connector.isEmbeddedMode();
+    }
+
+    private JmsSharedReplyToConsumer getSharedReplyToConsumer(Destination replyTo) throws JMSException
+    {
+        if (!(replyTo instanceof TemporaryQueue) || !isUseSharedReplyToDestination(false))
+        {
+            return null;
+        }
+        JmsSharedReplyToConsumer sharedReplyToConsumer = connector.getSharedReplyToConsumer();
+        return sharedReplyToConsumer.getReplyTo() == replyTo ? sharedReplyToConsumer : null;
+    }
+
     protected Destination getReplyToDestination(Message message, Session session, MuleEvent event, boolean remoteSync, boolean topic) throws JMSException, EndpointException, InitialisationException
     {
         Destination replyTo = null;
@@ -449,7 +585,14 @@ public class JmsMessageDispatcher extends AbstractMessageDispatcher
             // Are we going to wait for a return event ?
             if (remoteSync && replyTo == null && !disableTemporaryDestinations)
             {
-                replyTo = connector.getJmsSupport().createTemporaryDestination(session, topic);
+                if (isUseSharedReplyToDestination(topic))
+                {
+                    replyTo = connector.getSharedReplyToConsumer().getReplyTo();
+                }
+                else
+                {
+                    replyTo = connector.getJmsSupport().createTemporaryDestination(session, topic);
+                }
             }
         }
         return replyTo;
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import org.mule.api.endpoint.ImmutableEndpoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the non-transacted sessions used to dispatch messages open between dispatches, together
+ * with the destinations and producers created on them, so sending a message does not need to
+ * create and close a session and a producer every time.
+ * <p/>
+ * A JMS session must not be used by several threads at the same time, so a session is taken out
+ * of the cache while a dispatch uses it and put back afterwards. The number of idle sessions and
+ * the number of producers kept open on each session are bounded.
+ * <p/>
+ * The cache belongs to a single connection. It is invalidated when the connection fails or the
+ * connector disconnects, after which sessions in use are closed instead of being put back.
+ */
+public class JmsSessionCache
+{
+
+    /**
+     * Producers kept open on each session, the least recently used one is closed when exceeded.
+     */
+    public static final int MAX_PRODUCERS_PER_SESSION = 32;
+
+    protected final transient Log logger = LogFactory.getLog(getClass());
+
+    private final JmsConnector connector;
+    private final Connection connection;
+    private final int maxIdleSessions;
+
+    // guarded by this
+    private final Map<SessionKey, LinkedList<CachedSession>> idleSessions = new HashMap<SessionKey, LinkedList<CachedSession>>();
+    private int idleCount = 0;
+    private boolean invalidated = false;
+
+    public JmsSessionCache(JmsConnector connector, Connection connection, int maxIdleSessions)
+    {
+        this.connector = connector;
+        this.connection = connection;
+        this.maxIdleSessions = maxIdleSessions;
+    }
+
+    /**
+     * Takes an idle session out of the cache, or creates a new one. It must be given back with
+     * {@link #release(CachedSession, boolean)} once the dispatch is done.
+     */
+    public CachedSession acquire(boolean topic) throws JMSException
+    {
+        SessionKey key = new SessionKey(topic, connector.getAcknowledgementMode());
+        synchronized (this)
+        {
+            if (invalidated)
+            {
+                throw new JMSException("The session cache of connector " + connector.getName() + " was invalidated");
+            }
+            LinkedList<CachedSession> idle = idleSessions.get(key);
+            if (idle != null && !idle.isEmpty())
+            {
+                idleCount--;
+                return idle.removeFirst();
+            }
+        }
+
+        Session session = connector.getJmsSupport().createSession(connection, topic, false, key.acknowledgementMode,
+                                                                 connector.isNoLocal());
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Created cached jms session: " + session);
+        }
+        return new CachedSession(key, session);
+    }
+
+    /**
+     * Gives a session back to the cache.
+     *
+     * @param failed true if the session was being used when a JMS operation failed, in which
+     *            case it is closed as it may be unusable
+     */
+    public void release(CachedSession session, boolean failed)
+    {
+        synchronized (this)
+        {
+            if (!failed && !invalidated && idleCount < maxIdleSessions)
+            {
+                LinkedList<CachedSession> idle = idleSessions.get(session.key);
+                if (idle == null)
+                {
+                    idle = new LinkedList<CachedSession>();
+                    idleSessions.put(session.key, idle);
+                }
+                // most recently used first, so the others can be closed if the load drops
+                idle.addFirst(session);
+                idleCount++;
+                return;
+            }
+        }
+        session.close();
+    }
+
+    /**
+     * Closes the idle sessions and makes sure the ones in use are closed when released.
+     */
+    public void invalidate()
+    {
+        List<CachedSession> toClose = new ArrayList<CachedSession>();
+        synchronized (this)
+        {
+            invalidated = true;
+            for (LinkedList<CachedSession> idle : idleSessions.values())
+            {
+                toClose.addAll(idle);
+            }
+            idleSessions.clear();
+            idleCount = 0;
+        }
+        for (CachedSession session : toClose)
+        {
+            session.close();
+        }
+    }
+
+    public synchronized boolean isInvalidated()
+    {
+        return invalidated;
+    }
+
+    /**
+     * @return true if this cache creates its sessions on the given connection
+     */
+    public boolean isCachingFor(Connection connection)
+    {
+        return this.connection == connection;
+    }
+
+    synchronized int getIdleCount()
+    {
+        return idleCount;
+    }
+
+    /**
+     * A session with the destinations and producers already created on it. Only used by one
+     * thread at a time.
+     */
+    public class CachedSession
+    {
+
+        private final SessionKey key;
+        private final Session session;
+        private final Map<String, Destination> destinations = new LruMap<String, Destination>();
+        private final Map<Destination, MessageProducer> producers = new LruMap<Destination, MessageProducer>()
+        {
+            @Override
+            protected void evicted(MessageProducer producer)
+            {
+                connector.closeQuietly(producer);
+            }
+        };
+
+        private CachedSession(SessionKey key, Session session)
+        {
+            this.key = key;
+            this.session = session;
+        }
+
+        public Session getSession()
+        {
+            return session;
+        }
+
+        /**
+         * Returns the destination of the endpoint, looking it up only the first time.
+         */
+        public Destination getDestination(ImmutableEndpoint endpoint) throws JMSException
+        {
+            String address = endpoint.getEndpointURI().getAddress();
+            Destination destination = destinations.get(address);
+            if (destination == null)
+            {
+                destination = connector.getJmsSupport().createDestination(session, endpoint);
+                destinations.put(address, destination);
+            }
+            return destination;
+        }
+
+        /**
+         * Returns a producer for the destination. It must not be closed, it stays open while the
+         * session is cached.
+         */
+        public MessageProducer getProducer(Destination destination, boolean topic) throws JMSException
+        {
+            MessageProducer producer = producers.get(destination);
+            if (producer == null)
+            {
+                producer = connector.getJmsSupport().createProducer(session, destination, topic);
+                producers.put(destination, producer);
+            }
+            return producer;
+        }
+
+        private void close()
+        {
+            for (MessageProducer producer : producers.values())
+            {
+                connector.closeQuietly(producer);
+            }
+            producers.clear();
+            destinations.clear();
+            connector.closeQuietly(session);
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V>
+    {
+
+        private static final long serialVersionUID = -8041402717346432813L;
+
+        LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+        {
+            if (size() > MAX_PRODUCERS_PER_SESSION)
+            {
+                evicted(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        protected void evicted(V value)
+        {
+            // nothing to release by default
+        }
+    }
+
+    private static final class SessionKey
+    {
+
+        private final boolean topic;
+        private final int acknowledgementMode;
+
+        private SessionKey(boolean topic, int acknowledgementMode)
+        {
+            this.topic = topic;
+            this.acknowledgementMode = acknowledgementMode;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof SessionKey))
+            {
+                return false;
+            }
+            SessionKey other = (SessionKey) o;
+            return topic == other.topic && acknowledgementMode == other.acknowledgementMode;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * (topic ? 1 : 0) + acknowledgementMode;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import org.mule.util.concurrent.Latch;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Receives the replies to all the request-response calls made by a {@link JmsConnector} on a
+ * single temporary queue, instead of creating a temporary destination and a consumer for every
+ * call. Replies are matched to the waiting callers by their JMSCorrelationID, which the replying
+ * side sets to the correlation ID of the request or, when the request had none, to its
+ * JMSMessageID.
+ * <p/>
+ * The queue lives as long as the JMS connection it was created on. When the connector
+ * disconnects, either when stopped or when reconnecting, the consumer is closed and the callers
+ * still waiting for a reply fail.
+ */
+public class JmsSharedReplyToConsumer implements MessageListener
+{
+
+    /**
+     * Replies received before their caller starts waiting are kept this long. This happens when
+     * the reply is matched by the JMSMessageID of the request, which is only known once sent.
+     */
+    static final long UNCLAIMED_REPLY_EXPIRY = 30000;
+
+    protected final transient Log logger = LogFactory.getLog(getClass());
+
+    private final JmsConnector connector;
+    private final Connection connection;
+    private final Session session;
+    private final TemporaryQueue replyTo;
+    private final MessageConsumer consumer;
+
+    private final ConcurrentMap<String, PendingReply> pending = new ConcurrentHashMap<String, PendingReply>();
+    private final ConcurrentMap<String, UnclaimedReply> unclaimed = new ConcurrentHashMap<String, UnclaimedReply>();
+    private volatile boolean closed = false;
+
+    public JmsSharedReplyToConsumer(JmsConnector connector, Connection connection) throws JMSException
+    {
+        this.connector = connector;
+        this.connection = connection;
+        JmsSupport jmsSupport = connector.getJmsSupport();
+        session = jmsSupport.createSession(connection, false, false, Session.AUTO_ACKNOWLEDGE, false);
+        try
+        {
+            replyTo = (TemporaryQueue) jmsSupport.createTemporaryDestination(session, false);
+            consumer = jmsSupport.createConsumer(session, replyTo, false, null);
+            consumer.setMessageListener(this);
+        }
+        catch (JMSException e)
+        {
+            connector.closeQuietly(session);
+            throw e;
+        }
+    }
+
+    public Destination getReplyTo()
+    {
+        return replyTo;
+    }
+
+    /**
+     * @return true if this consumer receives on the given connection
+     */
+    public boolean isConsumingFrom(Connection connection)
+    {
+        return !closed && this.connection == connection;
+    }
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Starts waiting for the reply with the given correlation ID. Must be called before sending
+     * the request when the reply is matched by a correlation ID set on the request, so the reply
+     * can't arrive first.
+     *
+     * @return the reply to wait for, or null if another call is already waiting for a reply with
+     *         the same correlation ID
+     */
+    public PendingReply register(String correlationId) throws JMSException
+    {
+        if (closed)
+        {
+            throw new JMSException("The shared reply destination of connector " + connector.getName() + " is closed");
+        }
+
+        PendingReply reply = new PendingReply(correlationId);
+        if (pending.putIfAbsent(correlationId, reply) != null)
+        {
+            return null;
+        }
+
+        UnclaimedReply early = unclaimed.remove(correlationId);
+        if (early != null)
+        {
+            pending.remove(correlationId, reply);
+            reply.received(early.message);
+        }
+        else if (closed)
+        {
+            // closed while registering, the waiters were already failed
+            pending.remove(correlationId, reply);
+            reply.fail();
+        }
+        return reply;
+    }
+
+    /**
+     * Waits for a reply.
+     *
+     * @return the reply, or null if it was not received in time
+     * @throws JMSException if the consumer was closed while waiting
+     */
+    public Message awaitReply(PendingReply reply, long timeout) throws JMSException, InterruptedException
+    {
+        try
+        {
+            if (!reply.latch.await(timeout, TimeUnit.MILLISECONDS))
+            {
+                return null;
+            }
+        }
+        finally
+        {
+            pending.remove(reply.correlationId, reply);
+        }
+
+        if (reply.failed)
+        {
+            throw new JMSException("The shared reply destination of connector " + connector.getName()
+                                   + " was closed while waiting for reply " + reply.correlationId);
+        }
+        return reply.message;
+    }
+
+    /**
+     * Stops waiting for a reply, used when the request could not be sent.
+     */
+    public void cancel(PendingReply reply)
+    {
+        pending.remove(reply.correlationId, reply);
+    }
+
+    public void onMessage(Message message)
+    {
+        String correlationId;
+        try
+        {
+            correlationId = message.getJMSCorrelationID();
+        }
+        catch (JMSException e)
+        {
+            logger.warn("Discarding reply with an unreadable JMSCorrelationID", e);
+            return;
+        }
+        if (correlationId == null)
+        {
+            logger.warn("Discarding reply without JMSCorrelationID received on " + replyTo);
+            return;
+        }
+
+        PendingReply reply = pending.remove(correlationId);
+        if (reply != null)
+        {
+            reply.received(message);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        expireUnclaimedReplies(now);
+        unclaimed.put(correlationId, new UnclaimedReply(message, now));
+
+        // the caller may have registered between the lookup and the parking of the reply
+        reply = pending.get(correlationId);
+        if (reply != null && unclaimed.remove(correlationId) != null && pending.remove(correlationId, reply))
+        {
+            reply.received(message);
+        }
+    }
+
+    private void expireUnclaimedReplies(long now)
+    {
+        for (Iterator<Map.Entry<String, UnclaimedReply>> it = unclaimed.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<String, UnclaimedReply> entry = it.next();
+            if (now - entry.getValue().receivedAt > UNCLAIMED_REPLY_EXPIRY)
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Discarding reply " + entry.getKey() + ", nobody was waiting for it");
+                }
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Closes the consumer and its temporary queue and fails the callers waiting for a reply.
+     */
+    public void close()
+    {
+        closed = true;
+        connector.closeQuietly(consumer);
+        connector.closeQuietly(replyTo);
+        connector.closeQuietly(session);
+
+        for (Iterator<PendingReply> it = pending.values().iterator(); it.hasNext(); )
+        {
+            PendingReply reply = it.next();
+            it.remove();
+            reply.fail();
+        }
+        unclaimed.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JmsSharedReplyToConsumer{connector=" + connector.getName() + ", replyTo=" + replyTo + "}";
+    }
+
+    /**
+     * A reply some caller is waiting for.
+     */
+    public static final class PendingReply
+    {
+
+        private final String correlationId;
+        private final Latch latch = new Latch();
+        private volatile Message message;
+        private volatile boolean failed;
+
+        private PendingReply(String correlationId)
+        {
+            this.correlationId = correlationId;
+        }
+
+        public String getCorrelationId()
+        {
+            return correlationId;
+        }
+
+        private void received(Message message)
+        {
+            this.message = message;
+            latch.countDown();
+        }
+
+        private void fail()
+        {
+            failed = true;
+            latch.countDown();
+        }
+    }
+
+    private static final class UnclaimedReply
+    {
+
+        private final Message message;
+        private final long receivedAt;
+
+        private UnclaimedReply(Message message, long receivedAt)
+        {
+            this.message = message;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
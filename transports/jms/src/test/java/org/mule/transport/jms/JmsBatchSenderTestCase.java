@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.endpoint.ImmutableEndpoint;
+import org.mule.api.exception.SystemExceptionHandler;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+import org.mule.util.concurrent.Latch;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JmsBatchSenderTestCase extends AbstractMuleContextTestCase
+{
+
+    private static final long LONG_FLUSH_INTERVAL = 60000;
+    private static final long SHORT_FLUSH_INTERVAL = 200;
+
+    private JmsConnector connector;
+    private JmsSupport jmsSupport;
+    private Connection connection;
+    private Session session;
+    private MessageProducer producer;
+    private SystemExceptionHandler exceptionListener;
+    private ImmutableEndpoint endpoint;
+    private JmsBatchSender sender;
+
+    @Before
+    public void createConnector() throws Exception
+    {
+        jmsSupport = mock(JmsSupport.class);
+        session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        when(jmsSupport.createSession(any(Connection.class), anyBoolean(), anyBoolean(), anyInt(), anyBoolean())).thenReturn(session);
+        when(jmsSupport.createDestination(any(Session.class), any(ImmutableEndpoint.class))).thenReturn(mock(Destination.class));
+        when(jmsSupport.createProducer(any(Session.class), any(Destination.class), anyBoolean())).thenReturn(producer);
+
+        exceptionListener = mock(SystemExceptionHandler.class);
+        muleContext.setExceptionListener(exceptionListener);
+
+        connection = mock(Connection.class);
+        connector = spy(new JmsConnector(muleContext));
+        connector.setJmsSupport(jmsSupport);
+        doReturn(connection).when(connector).createConnection();
+        endpoint = getTestOutboundEndpoint("out", "jms://queue");
+    }
+
+    @After
+    public void stopSender()
+    {
+        if (sender != null)
+        {
+            sender.stop();
+        }
+    }
+
+    @Test
+    public void sendsFullBatchInOneTransaction() throws Exception
+    {
+        Latch committed = new Latch();
+        doAnswer(countDown(committed)).when(session).commit();
+        startSender(LONG_FLUSH_INTERVAL, 2);
+
+        Message first = mock(Message.class);
+        Message second = mock(Message.class);
+        sender.send(endpoint, first, true, 4, 0, false);
+        sender.send(endpoint, second, true, 4, 0, false);
+
+        assertTrue(committed.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        verify(jmsSupport).send(producer, first, true, 4, 0, false, endpoint);
+        verify(jmsSupport).send(producer, second, true, 4, 0, false, endpoint);
+        verify(session, times(1)).commit();
+        verify(jmsSupport, times(1)).createSession(connection, false, true, Session.SESSION_TRANSACTED, false);
+    }
+
+    @Test
+    public void flushesQueuedMessagesOnStop() throws Exception
+    {
+        startSender(SHORT_FLUSH_INTERVAL, 10);
+        Message message = mock(Message.class);
+        sender.send(endpoint, message, true, 4, 0, false);
+
+        sender.stop();
+
+        verify(jmsSupport).send(producer, message, true, 4, 0, false, endpoint);
+        verify(session).commit();
+        verify(session).close();
+        try
+        {
+            sender.send(endpoint, message, true, 4, 0, false);
+            fail("A stopped sender should not accept messages");
+        }
+        catch (JMSException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void sendsFailedBatchAgainOnNewSession() throws Exception
+    {
+        doThrow(new JMSException("broken session")).doNothing().when(jmsSupport).send(any(MessageProducer.class),
+            any(Message.class), anyBoolean(), anyInt(), anyLong(), anyBoolean(), any(ImmutableEndpoint.class));
+        startSender(SHORT_FLUSH_INTERVAL, 10);
+        sender.send(endpoint, mock(Message.class), true, 4, 0, false);
+
+        sender.stop();
+
+        verify(session).rollback();
+        verify(session).commit();
+        verify(jmsSupport, times(2)).createSession(connection, false, true, Session.SESSION_TRANSACTED, false);
+        verify(exceptionListener, never()).handleException(any(Exception.class));
+    }
+
+    @Test
+    public void failsWhenBatchCannotBeSent() throws Exception
+    {
+        Latch reported = new Latch();
+        doAnswer(countDown(reported)).when(exceptionListener).handleException(any(Exception.class));
+        doThrow(new JMSException("broker down")).when(jmsSupport).send(any(MessageProducer.class), any(Message.class),
+            anyBoolean(), anyInt(), anyLong(), anyBoolean(), any(ImmutableEndpoint.class));
+        startSender(SHORT_FLUSH_INTERVAL, 10);
+        sender.send(endpoint, mock(Message.class), true, 4, 0, false);
+
+        assertTrue(reported.await(RECEIVE_TIMEOUT, TimeUnit.MILLISECONDS));
+        verify(session, never()).commit();
+        try
+        {
+            sender.send(endpoint, mock(Message.class), true, 4, 0, false);
+            fail("A failed sender should not accept messages");
+        }
+        catch (JMSException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void failsWhenConnectionFails() throws Exception
+    {
+        connector.setAsyncSendFlushInterval(LONG_FLUSH_INTERVAL);
+        connector.doConnect();
+        JmsBatchSender connectorSender = connector.getBatchSender();
+        connectorSender.send(endpoint, mock(Message.class), true, 4, 0, false);
+
+        connector.onException(new JMSException("connection lost"));
+
+        try
+        {
+            connectorSender.send(endpoint, mock(Message.class), true, 4, 0, false);
+            fail("The sender of a failed connection should not accept messages");
+        }
+        catch (JMSException e)
+        {
+            // expected
+        }
+        connector.doDisconnect();
+        verify(jmsSupport, never()).send(any(MessageProducer.class), any(Message.class), anyBoolean(), anyInt(),
+            anyLong(), anyBoolean(), any(ImmutableEndpoint.class));
+    }
+
+    private void startSender(long flushInterval, int batchSize)
+    {
+        sender = new JmsBatchSender(connector, connection, "test.jms.batch.sender", flushInterval, batchSize);
+        sender.start();
+    }
+
+    private static Answer<Object> countDown(final Latch latch)
+    {
+        return new Answer<Object>()
+        {
+            @Override
+            public Object answer(InvocationOnMock invocation)
+            {
+                latch.countDown();
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.endpoint.ImmutableEndpoint;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JmsSessionCacheTestCase extends AbstractMuleContextTestCase
+{
+
+    private JmsConnector connector;
+    private JmsSupport jmsSupport;
+    private Connection connection;
+    private Session session1;
+    private Session session2;
+
+    @Before
+    public void createConnector() throws Exception
+    {
+        jmsSupport = mock(JmsSupport.class);
+        session1 = mock(Session.class);
+        session2 = mock(Session.class);
+        when(jmsSupport.createSession(any(Connection.class), anyBoolean(), anyBoolean(), anyInt(), anyBoolean())).thenReturn(session1, session2);
+        when(jmsSupport.createProducer(any(Session.class), any(Destination.class), anyBoolean())).thenReturn(mock(MessageProducer.class));
+
+        connection = mock(Connection.class);
+        connector = spy(new JmsConnector(muleContext));
+        connector.setJmsSupport(jmsSupport);
+        connector.setSessionCacheSize(1);
+        doReturn(connection).when(connector).createConnection();
+        connector.doConnect();
+    }
+
+    @Test
+    public void createsCacheOnConnect() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+
+        assertNotNull(cache);
+        assertTrue(cache.isCachingFor(connection));
+    }
+
+    @Test
+    public void noCacheByDefault() throws Exception
+    {
+        JmsConnector defaultConnector = spy(new JmsConnector(muleContext));
+        doReturn(connection).when(defaultConnector).createConnection();
+        defaultConnector.doConnect();
+
+        assertNull(defaultConnector.getSessionCache());
+    }
+
+    @Test
+    public void reusesReleasedSession() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+
+        JmsSessionCache.CachedSession cached = cache.acquire(false);
+        cache.release(cached, false);
+
+        assertSame(cached, cache.acquire(false));
+        verify(jmsSupport, times(1)).createSession(connection, false, false, Session.AUTO_ACKNOWLEDGE, false);
+    }
+
+    @Test
+    public void reusesProducerForSameDestination() throws Exception
+    {
+        JmsSessionCache.CachedSession cached = connector.getSessionCache().acquire(false);
+        Destination destination = mock(Destination.class);
+
+        assertSame(cached.getProducer(destination, false), cached.getProducer(destination, false));
+        verify(jmsSupport, times(1)).createProducer(session1, destination, false);
+    }
+
+    @Test
+    public void resolvesDestinationOnce() throws Exception
+    {
+        ImmutableEndpoint endpoint = getTestOutboundEndpoint("out", "jms://queue");
+        Destination destination = mock(Destination.class);
+        when(jmsSupport.createDestination(session1, endpoint)).thenReturn(destination);
+        JmsSessionCache.CachedSession cached = connector.getSessionCache().acquire(false);
+
+        assertSame(destination, cached.getDestination(endpoint));
+        assertSame(destination, cached.getDestination(endpoint));
+        verify(jmsSupport, times(1)).createDestination(session1, endpoint);
+    }
+
+    @Test
+    public void sessionsInUseAreNotShared() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+
+        JmsSessionCache.CachedSession first = cache.acquire(false);
+        JmsSessionCache.CachedSession second = cache.acquire(false);
+
+        assertNotSame(first.getSession(), second.getSession());
+    }
+
+    @Test
+    public void closesSessionsOverCacheSize() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+        JmsSessionCache.CachedSession first = cache.acquire(false);
+        JmsSessionCache.CachedSession second = cache.acquire(false);
+
+        cache.release(first, false);
+        cache.release(second, false);
+
+        assertEquals(1, cache.getIdleCount());
+        verify(session1, never()).close();
+        verify(session2).close();
+    }
+
+    @Test
+    public void closesFailedSession() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+        JmsSessionCache.CachedSession cached = cache.acquire(false);
+
+        cache.release(cached, true);
+
+        assertEquals(0, cache.getIdleCount());
+        verify(session1).close();
+    }
+
+    @Test
+    public void closesSessionsWhenInvalidated() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+        JmsSessionCache.CachedSession idle = cache.acquire(false);
+        JmsSessionCache.CachedSession inUse = cache.acquire(false);
+        cache.release(idle, false);
+
+        cache.invalidate();
+
+        verify(session1).close();
+
+        cache.release(inUse, false);
+        verify(session2).close();
+        try
+        {
+            cache.acquire(false);
+            fail("Invalidated cache should not hand out sessions");
+        }
+        catch (JMSException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void replacedAfterReconnection() throws Exception
+    {
+        JmsSessionCache cache = connector.getSessionCache();
+
+        connector.doDisconnect();
+        assertTrue(cache.isInvalidated());
+        assertNull(connector.getSessionCache());
+
+        Connection newConnection = mock(Connection.class);
+        doReturn(newConnection).when(connector).createConnection();
+        connector.doConnect();
+
+        assertTrue(connector.getSessionCache().isCachingFor(newConnection));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeCacheSize()
+    {
+        connector.setSessionCacheSize(-1);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.jms;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.mule.api.endpoint.ImmutableEndpoint;
+import org.mule.tck.junit4.AbstractMuleContextTestCase;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JmsSharedReplyToConsumerTestCase extends AbstractMuleContextTestCase
+{
+
+    private static final String CORRELATION_ID = "correlation1";
+
+    private JmsConnector connector;
+    private JmsSupport jmsSupport;
+    private Connection connection;
+    private TemporaryQueue replyQueue;
+    private MessageConsumer replyConsumer;
+
+    @Before
+    public void createConnector() throws Exception
+    {
+        jmsSupport = mock(JmsSupport.class);
+        Session session = mock(Session.class);
+        replyQueue = mock(TemporaryQueue.class);
+        replyConsumer = mock(MessageConsumer.class);
+        when(jmsSupport.createSession(any(Connection.class), anyBoolean(), anyBoolean(), anyInt(), anyBoolean())).thenReturn(session);
+        when(jmsSupport.createTemporaryDestination(session, false)).thenReturn(replyQueue);
+        when(jmsSupport.createConsumer(any(Session.class), any(Destination.class), anyBoolean(), any(ImmutableEndpoint.class))).thenReturn(replyConsumer);
+
+        connection = mock(Connection.class);
+        connector = spy(new JmsConnector(muleContext));
+        connector.setJmsSupport(jmsSupport);
+        connector.setSharedReplyToDestination(true);
+        doReturn(connection).when(connector).createConnection();
+        connector.doConnect();
+    }
+
+    @Test
+    public void listensOnTemporaryQueue() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+
+        assertSame(replyQueue, consumer.getReplyTo());
+        verify(replyConsumer).setMessageListener(consumer);
+    }
+
+    @Test
+    public void reusesConsumerForAllCalls() throws Exception
+    {
+        assertSame(connector.getSharedReplyToConsumer(), connector.getSharedReplyToConsumer());
+    }
+
+    @Test
+    public void deliversReplyToWaitingCaller() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+        JmsSharedReplyToConsumer.PendingReply pendingReply = consumer.register(CORRELATION_ID);
+
+        Message reply = createReply(CORRELATION_ID);
+        consumer.onMessage(createReply("unknown"));
+        consumer.onMessage(reply);
+
+        assertSame(reply, consumer.awaitReply(pendingReply, RECEIVE_TIMEOUT));
+    }
+
+    @Test
+    public void deliversReplyReceivedBeforeCallerWaits() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+        Message reply = createReply(CORRELATION_ID);
+        consumer.onMessage(reply);
+
+        JmsSharedReplyToConsumer.PendingReply pendingReply = consumer.register(CORRELATION_ID);
+
+        assertSame(reply, consumer.awaitReply(pendingReply, RECEIVE_TIMEOUT));
+    }
+
+    @Test
+    public void returnsNullWhenNoReplyIsReceivedInTime() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+        JmsSharedReplyToConsumer.PendingReply pendingReply = consumer.register(CORRELATION_ID);
+
+        assertNull(consumer.awaitReply(pendingReply, 50));
+
+        // the correlation ID can be used again once the caller gave up
+        assertTrue(consumer.register(CORRELATION_ID) != null);
+    }
+
+    @Test
+    public void rejectsCorrelationIdAlreadyWaitedFor() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+        consumer.register(CORRELATION_ID);
+
+        assertNull(consumer.register(CORRELATION_ID));
+    }
+
+    @Test
+    public void failsWaitingCallersOnDisconnect() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+        JmsSharedReplyToConsumer.PendingReply pendingReply = consumer.register(CORRELATION_ID);
+
+        connector.doDisconnect();
+
+        verify(replyConsumer).close();
+        verify(replyQueue).delete();
+        try
+        {
+            consumer.awaitReply(pendingReply, RECEIVE_TIMEOUT);
+            fail("Waiting caller should fail when the consumer is closed");
+        }
+        catch (JMSException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void createsNewConsumerAfterReconnection() throws Exception
+    {
+        JmsSharedReplyToConsumer consumer = connector.getSharedReplyToConsumer();
+
+        connector.doDisconnect();
+        doReturn(mock(Connection.class)).when(connector).createConnection();
+        connector.doConnect();
+
+        assertTrue(consumer.isClosed());
+        assertNotSame(consumer, connector.getSharedReplyToConsumer());
+    }
+
+    private Message createReply(String correlationId) throws JMSException
+    {
+        Message reply = mock(Message.class);
+        when(reply.getJMSCorrelationID()).thenReturn(correlationId);
+        return reply;
+    }
+}
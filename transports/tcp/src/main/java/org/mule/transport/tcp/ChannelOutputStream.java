@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.tcp;
+
+import org.mule.util.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered stream over a socket that also gives access to the channel of the socket, so
+ * protocols can send the content of a file with {@link FileChannel#transferTo} instead of
+ * copying it through the stream.
+ */
+public class ChannelOutputStream extends BufferedOutputStream
+{
+
+    private final WritableByteChannel channel;
+
+    public ChannelOutputStream(OutputStream out, WritableByteChannel channel)
+    {
+        super(out);
+        this.channel = channel;
+    }
+
+    /**
+     * Sends the rest of the file, after the bytes already written to this stream.
+     *
+     * @return the number of bytes sent
+     */
+    public long transferFrom(FileChannel file) throws IOException
+    {
+        flush();
+        return IOUtils.copyLarge(file, channel);
+    }
+}
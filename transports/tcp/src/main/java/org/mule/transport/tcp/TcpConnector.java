@@ -91,6 +91,12 @@ public class TcpConnector extends AbstractConnector
      */
     private boolean keepAlive = false;
 
+    /**
+     * Creates the outbound sockets from socket channels, so file payloads sent with a streaming
+     * protocol are transferred by the operating system without being copied to the heap.
+     */
+    private boolean zeroCopyFileTransfer = false;
+
     //TODO MULE-2300 remove once fixed
     private TcpSocketKey lastSocketKey;
 
@@ -453,6 +459,16 @@ public class TcpConnector extends AbstractConnector
         this.keepAlive = keepAlive;
     }
 
+    public boolean isZeroCopyFileTransfer()
+    {
+        return zeroCopyFileTransfer;
+    }
+
+    public void setZeroCopyFileTransfer(boolean zeroCopyFileTransfer)
+    {
+        this.zeroCopyFileTransfer = zeroCopyFileTransfer;
+    }
+
     public boolean isSendTcpNoDelay()
     {
         return sendTcpNoDelay;
@@ -120,7 +120,15 @@ public class TcpMessageDispatcher extends AbstractMessageDispatcher
 
     private void write(Socket socket, Object data) throws IOException, TransformerException
     {
-        BufferedOutputStream bos = new BufferedOutputStream(socket.getOutputStream());
+        BufferedOutputStream bos;
+        if (socket.getChannel() != null)
+        {
+            bos = new ChannelOutputStream(socket.getOutputStream(), socket.getChannel());
+        }
+        else
+        {
+            bos = new BufferedOutputStream(socket.getOutputStream());
+        }
         connector.getTcpProtocol().write(bos, data);
         bos.flush();
     }
@@ -15,6 +15,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.URI;
+import java.nio.channels.ServerSocketChannel;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -28,7 +29,7 @@ public class TcpServerSocketFactory implements SimpleServerSocketFactory
         String host = StringUtils.defaultIfEmpty(uri.getHost(), "localhost");
         InetAddress inetAddress = InetAddress.getByName(host);
 
-        if ((inetAddress.equals(NetworkUtils.getLocalHost()) || host.trim().equals("localhost")) && TcpPropertyHelper.isBindingLocalhostToAllLocalInterfaces())
+        if (isBoundToAllLocalInterfaces(host, inetAddress))
         {
             logger.warn(TcpMessages.localhostBoundToAllLocalInterfaces());
             return createServerSocket(uri.getPort(), backlog, reuse);
@@ -39,6 +40,44 @@ public class TcpServerSocketFactory implements SimpleServerSocketFactory
         }
     }
 
+    /**
+     * Creates a bound {@link ServerSocketChannel}, resolving the address in the same way as
+     * {@link #createServerSocket(URI, int, Boolean)}. The channel is left in blocking mode.
+     */
+    public ServerSocketChannel createServerSocketChannel(URI uri, int backlog, Boolean reuse) throws IOException
+    {
+        String host = StringUtils.defaultIfEmpty(uri.getHost(), "localhost");
+        InetAddress inetAddress = InetAddress.getByName(host);
+
+        InetSocketAddress address;
+        if (isBoundToAllLocalInterfaces(host, inetAddress))
+        {
+            logger.warn(TcpMessages.localhostBoundToAllLocalInterfaces());
+            address = new InetSocketAddress(uri.getPort());
+        }
+        else
+        {
+            address = new InetSocketAddress(inetAddress, uri.getPort());
+        }
+
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try
+        {
+            configure(channel.socket(), reuse, address, backlog);
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private boolean isBoundToAllLocalInterfaces(String host, InetAddress inetAddress) throws IOException
+    {
+        return (inetAddress.equals(NetworkUtils.getLocalHost()) || host.trim().equals("localhost")) && TcpPropertyHelper.isBindingLocalhostToAllLocalInterfaces();
+    }
+
     public ServerSocket createServerSocket(InetAddress address, int port, int backlog, Boolean reuse) throws IOException
     {
         return configure(new ServerSocket(), reuse, new InetSocketAddress(address, port), backlog);
@@ -11,13 +11,23 @@ import org.mule.api.transport.Connector;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 public class TcpSocketFactory extends AbstractTcpSocketFactory
 {
 
     protected Socket createSocket(TcpSocketKey key) throws IOException
     {
-        Socket socket = new Socket();
+        Socket socket;
+        if (key.getConnector().isZeroCopyFileTransfer())
+        {
+            // sockets of channels can send files with FileChannel.transferTo
+            socket = SocketChannel.open().socket();
+        }
+        else
+        {
+            socket = new Socket();
+        }
 
         int timeout = getConnectionTimeout() != Connector.INT_VALUE_NOT_SET ? getConnectionTimeout() : key.getEndpoint().getResponseTimeout();
 
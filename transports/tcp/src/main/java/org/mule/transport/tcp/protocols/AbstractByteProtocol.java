@@ -9,11 +9,13 @@ package org.mule.transport.tcp.protocols;
 
 import org.mule.ResponseOutputStream;
 import org.mule.api.MuleMessage;
+import org.mule.transport.tcp.ChannelOutputStream;
 import org.mule.transport.tcp.TcpProtocol;
 import org.mule.util.ClassUtils;
 import org.mule.util.IOUtils;
 import org.mule.util.SerializationUtils;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -61,7 +63,15 @@ public abstract class AbstractByteProtocol implements TcpProtocol
             if (streamOk)
             {
                 InputStream is = (InputStream) data;
-                IOUtils.copyLarge(is, os);
+                if (is instanceof FileInputStream && os instanceof ChannelOutputStream)
+                {
+                    // the operating system sends the file without copying it to the heap
+                    ((ChannelOutputStream) os).transferFrom(((FileInputStream) is).getChannel());
+                }
+                else
+                {
+                    IOUtils.copyLarge(is, os);
+                }
                 os.flush();
                 os.close();
                 is.close();
@@ -47,6 +47,7 @@ public class TcpNamespaceHandlerTestCase extends FunctionalTestCase
         assertEquals(3000, c.getClientSoTimeout());
         assertEquals(3000, c.getSocketMaxWait());
         assertTrue(c.isKeepAlive());
+        assertTrue(c.isZeroCopyFileTransfer());
         assertTrue(c.isConnected());
         assertTrue(c.isStarted());
 
@@ -58,6 +59,7 @@ public class TcpNamespaceHandlerTestCase extends FunctionalTestCase
     public void testSeparateTimeouts() throws Exception
     {
         TcpConnector c = lookupTcpConnector("separateTimeouts");
+        assertFalse(c.isZeroCopyFileTransfer());
         assertNotNull(c);
         assertEquals(4000, c.getServerSoTimeout());
         assertEquals(3000, c.getClientSoTimeout());
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package org.mule.transport.tcp.protocols;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.mule.tck.junit4.AbstractMuleTestCase;
+import org.mule.transport.tcp.ChannelOutputStream;
+import org.mule.transport.tcp.TcpProtocol;
+import org.mule.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileChannelTransferTestCase extends AbstractMuleTestCase
+{
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int TRANSFER_TIMEOUT = 30000;
+
+    private final TcpProtocol protocol = new EOFProtocol();
+    private ServerSocketChannel server;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+
+        file = File.createTempFile("transfer", ".junit");
+        file.deleteOnExit();
+        byte[] block = new byte[64 * 1024];
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            for (int written = 0; written < FILE_SIZE; written += block.length)
+            {
+                block[0] = (byte) (written / block.length);
+                out.write(block);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.close();
+        file.delete();
+    }
+
+    @Test
+    public void sendsFileThroughSocketChannel() throws Exception
+    {
+        final AtomicReference<Object> received = new AtomicReference<Object>();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Socket socket = server.accept().socket();
+                    try
+                    {
+                        received.set(protocol.read(socket.getInputStream()));
+                    }
+                    finally
+                    {
+                        socket.close();
+                    }
+                }
+                catch (Exception e)
+                {
+                    failure.set(e);
+                }
+            }
+        };
+        reader.start();
+
+        Socket socket = SocketChannel.open().socket();
+        try
+        {
+            socket.connect(server.socket().getLocalSocketAddress());
+            protocol.write(new ChannelOutputStream(socket.getOutputStream(), socket.getChannel()),
+                           new FileInputStream(file));
+        }
+        finally
+        {
+            socket.close();
+        }
+        reader.join(TRANSFER_TIMEOUT);
+
+        assertNull(failure.get());
+        assertArrayEquals(FileUtils.readFileToByteArray(file), (byte[]) received.get());
+    }
+}
@@ -16,6 +16,7 @@ import org.mule.api.endpoint.InboundEndpoint;
 import org.mule.api.lifecycle.InitialisationException;
 import org.mule.api.transport.MessageReceiver;
 import org.mule.config.QueueProfile;
+import org.mule.config.i18n.CoreMessages;
 import org.mule.endpoint.DynamicURIInboundEndpoint;
 import org.mule.endpoint.MuleEndpointURI;
 import org.mule.routing.filters.WildcardFilter;
@@ -37,6 +38,12 @@ public class VMConnector extends AbstractConnector
     private QueueProfile queueProfile;
     private Integer queueTimeout;
 
+    /**
+     * Maximum number of messages a transacted endpoint takes from its queue in a single
+     * transaction. They are processed one after the other and committed together.
+     */
+    private int transactedBatchSize = 1;
+
     public VMConnector(MuleContext context)
     {
         super(context);
@@ -207,6 +214,21 @@ public class VMConnector extends AbstractConnector
         this.queueTimeout = queueTimeout;
     }
 
+    public int getTransactedBatchSize()
+    {
+        return transactedBatchSize;
+    }
+
+    public void setTransactedBatchSize(int transactedBatchSize)
+    {
+        if (transactedBatchSize < 1)
+        {
+            throw new IllegalArgumentException(
+                    CoreMessages.propertyHasInvalidValue("transactedBatchSize", transactedBatchSize).toString());
+        }
+        this.transactedBatchSize = transactedBatchSize;
+    }
+
     public QueueManager getQueueManager()
     {
         return getMuleContext().getQueueManager();
@@ -26,6 +26,7 @@ import org.mule.transport.TransactedPollingMessageReceiver;
 import org.mule.util.queue.Queue;
 import org.mule.util.queue.QueueSession;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -156,12 +157,18 @@ public class VMMessageReceiver extends TransactedPollingMessageReceiver
     }
 
     /**
-     * It's impossible to process all messages in the receive transaction
+     * In a transaction, only the messages configured with
+     * {@link VMConnector#getTransactedBatchSize()} are received, since all of them are processed
+     * by the polling thread the transaction is bound to.
      */
     @Override
     protected List<MuleMessage> getMessages() throws Exception
     {
-        if (isReceiveMessagesInTransaction())
+        if (isReceiveMessagesInTransaction() && connector.getTransactedBatchSize() > 1)
+        {
+            return getFirstMessagesInTransaction(connector.getTransactedBatchSize());
+        }
+        else if (isReceiveMessagesInTransaction())
         {
             MuleEvent message = getFirstMessage();
             if (message == null)
@@ -191,29 +198,52 @@ public class VMMessageReceiver extends TransactedPollingMessageReceiver
 
         int batchSize = getBatchSize(queue.size());
 
-        // try to get the first event off the queue
-        MuleEvent message = (MuleEvent) queue.poll(connector.getQueueTimeout());
+        // wait for the first event and take the ones available after it at once
+        List<Serializable> events = queue.poll(batchSize + 1, connector.getQueueTimeout());
 
-        if (message != null)
+        for (Serializable event : events)
         {
-            // keep first dequeued event
-            ((DefaultMuleMessage)message.getMessage()).setMuleContext(endpoint.getMuleContext());
-            messages.add(message.getMessage());
-
-            // keep batching if more events are available
-            for (int i = 0; i < batchSize && message != null; i++)
+            MuleEvent message = (MuleEvent) event;
+            if (messages.isEmpty())
             {
-                message = (MuleEvent)queue.poll(0);
-                if (message != null)
-                {
-                    messages.add(new DefaultMuleMessage(message.getMessage(), endpoint.getMuleContext()));
-                }
+                // keep first dequeued event
+                ((DefaultMuleMessage)message.getMessage()).setMuleContext(endpoint.getMuleContext());
+                messages.add(message.getMessage());
+            }
+            else
+            {
+                messages.add(new DefaultMuleMessage(message.getMessage(), endpoint.getMuleContext()));
             }
         }
 
         // let our workManager handle the batch of events
         return messages;
     }
+
+    /**
+     * Takes up to batchSize events off the queue with a single operation of the current
+     * transaction, so they are committed or rolled back together.
+     */
+    protected List<MuleMessage> getFirstMessagesInTransaction(int batchSize) throws Exception
+    {
+        QueueSession qs = connector.getTransactionalResource(endpoint);
+        Queue queue = qs.getQueue(endpoint.getEndpointURI().getAddress());
+
+        List<Serializable> events = queue.poll(batchSize, connector.getQueueTimeout());
+        if (events.isEmpty())
+        {
+            return null;
+        }
+
+        List<MuleMessage> messages = new ArrayList<MuleMessage>(events.size());
+        for (Serializable event : events)
+        {
+            MuleMessage message = ((MuleEvent) event).getMessage();
+            ((DefaultMuleMessage) message).setMuleContext(endpoint.getMuleContext());
+            messages.add(message);
+        }
+        return messages;
+    }
     
     protected MuleEvent getFirstMessage() throws Exception
     {